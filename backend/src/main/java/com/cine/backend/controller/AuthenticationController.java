@@ -1,5 +1,7 @@
 package com.cine.backend.controller;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,7 +11,10 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.http.HttpStatus;
 // import com.cine.backend.service.TokenService;
 import com.cine.backend.model.ExternalToken;
+import com.cine.backend.model.SessionInfo;
+import com.cine.backend.repository.SessionRepository;
 import com.cine.backend.catedra.TokenResponse;
+import com.cine.backend.service.SessionTokenSigner;
 import java.util.Optional;
 import java.time.Instant;
 import java.util.Base64;
@@ -20,16 +25,24 @@ import java.time.Duration;
 
 @RestController
 public class AuthenticationController {
+    /** Canal donde se publican los tokens invalidados (logout), para que los proxies los saquen de su cache. */
+    public static final String CANAL_SESIONES_INVALIDADAS = "sesiones:invalidadas";
+
+    private static final Logger log = LoggerFactory.getLogger(AuthenticationController.class);
+
     private static final Map<String, String> USERS = new ConcurrentHashMap<>();
-    private static final Map<String, SessionInfo> SESSIONS = new ConcurrentHashMap<>();
     static {
         USERS.put("alu_1764429639", "secreto");
     }
 
-    static class SessionInfo {
-        String username;
-        String token;
-        Instant expiresAt;
+    private final StringRedisTemplate redis;
+    private final SessionTokenSigner tokenSigner;
+    private final SessionRepository sessions;
+
+    public AuthenticationController(StringRedisTemplate redis, SessionTokenSigner tokenSigner, SessionRepository sessions) {
+        this.redis = redis;
+        this.tokenSigner = tokenSigner;
+        this.sessions = sessions;
     }
 
     @PostMapping("/authenticate")
@@ -44,27 +57,62 @@ public class AuthenticationController {
             return ResponseEntity.status(401).body("Invalid credentials");
         }
 
-        String token = UUID.randomUUID().toString();
         Instant expiresAt = Instant.now().plusSeconds(15 * 60);
+        if (tokenSigner.isHabilitado()) {
+            // Token firmado: lo validan los proxies sin consultar al backend
+            return ResponseEntity.ok(Map.of("token", tokenSigner.emitir(username, expiresAt), "expiresAt", expiresAt.toString()));
+        }
 
-        SessionInfo session = new SessionInfo();
-        session.username = username;
-        session.token = token;
-        session.expiresAt = expiresAt;
-        SESSIONS.put(token, session);
+        String token = UUID.randomUUID().toString();
+        sessions.save(new SessionInfo(token, username, expiresAt));
 
         return ResponseEntity.ok(Map.of("token", token, "expiresAt", expiresAt.toString()));
     }
 
+    /**
+     * Si el token es válido devuelve también su expiresAt: el proxy no lo cachea más allá de eso.
+     */
     @PostMapping("/validate-token")
     public ResponseEntity<?> validateToken(@RequestBody Map<String, String> body) {
+        Instant expiresAt = vencimientoSiValido(body.get("token"));
+        if (expiresAt == null) {
+            return ResponseEntity.ok(Map.of("valid", false));
+        }
+        return ResponseEntity.ok(Map.of("valid", true, "expiresAt", expiresAt.toString()));
+    }
+
+    /**
+     * Cierra la sesión y avisa a los proxies (canal sesiones:invalidadas) para que dejen de
+     * aceptarla sin esperar a que venza su cache. Un token firmado además queda en la lista de
+     * revocados hasta su vencimiento.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestBody Map<String, String> body) {
         String token = body.get("token");
-        boolean valid = isTokenValid(token);
-        return ResponseEntity.ok(Map.of("valid", valid));
+        if (token == null || token.isBlank()) {
+            return ResponseEntity.badRequest().body("token required");
+        }
+        try {
+            sessions.delete(token);
+            SessionTokenSigner.Datos firmado = tokenSigner.leer(token);
+            if (firmado != null) {
+                tokenSigner.revocar(firmado);
+            }
+            redis.convertAndSend(CANAL_SESIONES_INVALIDADAS, token);
+        } catch (Exception e) {
+            log.warn("No se pudo cerrar la sesión o avisar el logout a los proxies: {}", e.getMessage());
+        }
+        return ResponseEntity.noContent().build();
     }
 
-    private static boolean isTokenValid(String token) {
-        SessionInfo s = SESSIONS.get(token);
-        return s != null && s.expiresAt.isAfter(Instant.now());
+    /**
+     * expiresAt del token si es válido, null si no.
+     */
+    private Instant vencimientoSiValido(String token) {
+        if (SessionTokenSigner.esFirmado(token)) {
+            SessionTokenSigner.Datos datos = tokenSigner.leer(token);
+            return datos != null && !tokenSigner.revocado(datos.getId()) ? datos.getExpiresAt() : null;
+        }
+        return sessions.findVigente(token).map(SessionInfo::getExpiresAt).orElse(null);
     }
 }
\ No newline at end of file
@@ -5,12 +5,14 @@ import com.cine.backend.model.VentaAsiento;
 import com.cine.backend.service.VentaService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -163,6 +165,85 @@ public class VentasController {
     }
 
 
+    /**
+     * Ventas que entrega en tandas el outbox del proxy.
+     * Body: { "ventas": [ { "idempotencia": "...", "usuario": "...", "eventoId": 1, "total": 2000,
+     *                       "fechaVenta": "...", "asientos": [ { "fila": 1, "columna": 2, "precio": 1000 } ] } ] }
+     *
+     * Cada venta se guarda por separado y se responde un resultado por clave:
+     * - guardada / duplicada (esa clave ya estaba guardada): el proxy la da por entregada.
+     * - rechazada: datos inválidos, reintentar no sirve.
+     * - error: falla al guardar, el proxy la reintenta.
+     */
+    @PostMapping("/api/endpoints/v1/realizar-ventas/lote")
+    public ResponseEntity<?> guardarVentasLote(@RequestBody Map<String, Object> request) {
+        if (!(request.get("ventas") instanceof List<?> ventas)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "ventas debe ser una lista"));
+        }
+        List<Map<String, Object>> resultados = new ArrayList<>();
+        for (Object item : ventas) {
+            if (item instanceof Map<?, ?> venta) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> datos = (Map<String, Object>) venta;
+                resultados.add(guardarVentaDeLote(datos));
+            }
+        }
+        log.info("Lote de {} ventas procesado", resultados.size());
+        return ResponseEntity.ok(Map.of("resultados", resultados));
+    }
+
+    private Map<String, Object> guardarVentaDeLote(Map<String, Object> request) {
+        Map<String, Object> resultado = new HashMap<>();
+        String idempotencia = extractString(request, "idempotencia");
+        resultado.put("idempotencia", idempotencia);
+
+        String usuario = extractString(request, "usuario", "sessionId", "user");
+        Double total = extractDoubleOrDefault(request, 0.0, "total", "precio", "precioVenta");
+        LocalDateTime fechaVenta = extractFecha(request, "fechaVenta", "fecha", "datetime");
+        Long eventoId = extractLong(request, "eventoId", "evento");
+        List<Map<String, Object>> asientos = request.get("asientos") instanceof List<?> l
+                ? l.stream().filter(Map.class::isInstance).map(a -> {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> asiento = (Map<String, Object>) a;
+                    return asiento;
+                }).collect(Collectors.toList())
+                : List.of();
+
+        if (idempotencia == null || idempotencia.isBlank()
+                || usuario == null || usuario.trim().isEmpty() || eventoId == null || asientos.isEmpty()) {
+            resultado.put("estado", "rechazada");
+            resultado.put("error", "Faltan idempotencia, usuario, eventoId o asientos");
+            return resultado;
+        }
+        Optional<Venta> existente = ventaService.buscarPorIdempotencia(idempotencia);
+        if (existente.isPresent()) {
+            resultado.put("estado", "duplicada");
+            resultado.put("id", existente.get().getId());
+            return resultado;
+        }
+        try {
+            Venta venta = ventaService.guardarVenta(idempotencia, usuario, total, 
+                    fechaVenta != null ? fechaVenta : LocalDateTime.now(), eventoId, asientos);
+            resultado.put("estado", "guardada");
+            resultado.put("id", venta.getId());
+        } catch (DataIntegrityViolationException e) {
+            // Otra entrega de la misma venta la guardó en paralelo
+            Optional<Venta> guardada = ventaService.buscarPorIdempotencia(idempotencia);
+            if (guardada.isPresent()) {
+                resultado.put("estado", "duplicada");
+                resultado.put("id", guardada.get().getId());
+            } else {
+                log.error("Error guardando venta {} del lote: {}", idempotencia, e.getMessage());
+                resultado.put("estado", "error");
+            }
+        } catch (Exception e) {
+            log.error("Error guardando venta {} del lote: {}", idempotencia, e.getMessage(), e);
+            resultado.put("estado", "error");
+        }
+        return resultado;
+    }
+
+
     @GetMapping("/api/endpoints/v1/listar-ventas")
     public ResponseEntity<?> listarVentas() {
         try {
@@ -0,0 +1,31 @@
+package com.cine.backend.model;
+
+import java.time.Instant;
+
+
+public class SessionInfo {
+
+    private String token;
+    private String username;
+    private Instant expiresAt;
+
+    public SessionInfo() {
+    }
+
+    public SessionInfo(String token, String username, Instant expiresAt) {
+        this.token = token;
+        this.username = username;
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isVigente() {
+        return expiresAt != null && expiresAt.isAfter(Instant.now());
+    }
+
+    public String getToken() { return token; }
+    public void setToken(String token) { this.token = token; }
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
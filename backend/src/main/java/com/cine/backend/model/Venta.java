@@ -29,6 +29,10 @@ public class Venta {
     @Column(nullable = false)
     private Instant createdAt;
 
+    // Clave de idempotencia del outbox del proxy: la misma venta reintentada no se guarda dos veces
+    @Column(unique = true, length = 64)
+    private String idempotencia;
+
     @OneToMany(mappedBy = "venta", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<VentaAsiento> asientos = new ArrayList<>();
 
@@ -92,6 +96,14 @@ public class Venta {
         this.createdAt = createdAt;
     }
 
+    public String getIdempotencia() {
+        return idempotencia;
+    }
+
+    public void setIdempotencia(String idempotencia) {
+        this.idempotencia = idempotencia;
+    }
+
     public List<VentaAsiento> getAsientos() {
         return asientos;
     }
@@ -0,0 +1,53 @@
+package com.cine.backend.repository;
+
+import com.cine.backend.model.SessionInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sesiones en memoria de esta instancia (auth.session.store=memory, para correr sin Redis).
+ * Las vencidas se purgan periódicamente.
+ */
+@Repository
+@ConditionalOnProperty(name = "auth.session.store", havingValue = "memory")
+public class InMemorySessionRepository implements SessionRepository {
+
+    private final ConcurrentMap<String, SessionInfo> store = new ConcurrentHashMap<>();
+
+    @Override
+    public SessionInfo save(SessionInfo session) {
+        if (session == null || session.getToken() == null) throw new IllegalArgumentException("token cannot be null");
+        store.put(session.getToken(), session);
+        return session;
+    }
+
+    @Override
+    public Optional<SessionInfo> findVigente(String token) {
+        SessionInfo session = token == null ? null : store.get(token);
+        if (session == null) return Optional.empty();
+        if (!session.isVigente()) {
+            store.remove(token, session);
+            return Optional.empty();
+        }
+        return Optional.of(session);
+    }
+
+    @Override
+    public void delete(String token) {
+        if (token != null) {
+            store.remove(token);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.session.purge-interval-ms:60000}")
+    public void purgarVencidas() {
+        Instant ahora = Instant.now();
+        store.values().removeIf(s -> !s.getExpiresAt().isAfter(ahora));
+    }
+}
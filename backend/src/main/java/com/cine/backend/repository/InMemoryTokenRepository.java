@@ -6,14 +6,19 @@ import org.springframework.stereotype.Repository;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 
+/**
+ * Tokens por servicio ordenados por id: el último sale de lastEntry() sin locks ni recorrer la lista.
+ */
 @Repository
 public class InMemoryTokenRepository implements TokenRepository {
 
     private final AtomicLong idGen = new AtomicLong(1);
-    private final ConcurrentMap<String, List<ExternalToken>> store = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Long, ExternalToken>> store = new ConcurrentHashMap<>();
 
     @Override
     public ExternalToken save(ExternalToken token) {
@@ -23,23 +28,17 @@ public class InMemoryTokenRepository implements TokenRepository {
         if (token.getId() == null) {
             token.setId(idGen.getAndIncrement());
         }
-        store.compute(token.getServiceName(), (k, list) -> {
-            if (list == null) {
-                list = Collections.synchronizedList(new ArrayList<>());
-            }
-            list.add(token);
-            return list;
-        });
+        store.computeIfAbsent(token.getServiceName(), k -> new ConcurrentSkipListMap<>())
+                .put(token.getId(), token);
         return token;
     }
 
     @Override
     public Optional<ExternalToken> findTopByServiceNameOrderByIdDesc(String serviceName) {
-        List<ExternalToken> list = store.get(serviceName);
-        if (list == null || list.isEmpty()) return Optional.empty();
+        ConcurrentNavigableMap<Long, ExternalToken> tokens = store.get(serviceName);
+        if (tokens == null) return Optional.empty();
 
-        synchronized (list) {
-            return list.stream().max(Comparator.comparing(ExternalToken::getId));
-        }
+        Map.Entry<Long, ExternalToken> ultimo = tokens.lastEntry();
+        return ultimo == null ? Optional.empty() : Optional.of(ultimo.getValue());
     }
 }
\ No newline at end of file
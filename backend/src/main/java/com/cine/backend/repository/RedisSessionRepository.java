@@ -0,0 +1,59 @@
+package com.cine.backend.repository;
+
+import com.cine.backend.model.SessionInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Una clave por sesión, sesion:{token} = "{expiresAt epoch ms}:{username}", con TTL hasta el
+ * vencimiento: Redis las borra solo y cualquier réplica del backend ve las mismas sesiones.
+ */
+@Repository
+@ConditionalOnProperty(name = "auth.session.store", havingValue = "redis", matchIfMissing = true)
+public class RedisSessionRepository implements SessionRepository {
+
+    private static final String PREFIJO = "sesion:";
+
+    private final StringRedisTemplate redis;
+
+    public RedisSessionRepository(StringRedisTemplate redis) {
+        this.redis = redis;
+    }
+
+    @Override
+    public SessionInfo save(SessionInfo session) {
+        if (session == null || session.getToken() == null) throw new IllegalArgumentException("token cannot be null");
+        Duration ttl = Duration.between(Instant.now(), session.getExpiresAt());
+        if (ttl.isNegative() || ttl.isZero()) {
+            return session;
+        }
+        redis.opsForValue().set(PREFIJO + session.getToken(),
+                session.getExpiresAt().toEpochMilli() + ":" + session.getUsername(), ttl);
+        return session;
+    }
+
+    @Override
+    public Optional<SessionInfo> findVigente(String token) {
+        if (token == null) return Optional.empty();
+        String valor = redis.opsForValue().get(PREFIJO + token);
+        if (valor == null) return Optional.empty();
+        int sep = valor.indexOf(':');
+        if (sep < 0) return Optional.empty();
+        SessionInfo session = new SessionInfo(token, valor.substring(sep + 1),
+                Instant.ofEpochMilli(Long.parseLong(valor.substring(0, sep))));
+        // El TTL de Redis tiene resolución de ms, pero por las dudas no se devuelve una vencida
+        return session.isVigente() ? Optional.of(session) : Optional.empty();
+    }
+
+    @Override
+    public void delete(String token) {
+        if (token != null) {
+            redis.delete(PREFIJO + token);
+        }
+    }
+}
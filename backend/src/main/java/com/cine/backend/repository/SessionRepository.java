@@ -0,0 +1,14 @@
+package com.cine.backend.repository;
+
+import com.cine.backend.model.SessionInfo;
+import java.util.Optional;
+
+/**
+ * Sesiones de login (tokens UUID). Una sesión vencida no se devuelve nunca.
+ * Implementación según auth.session.store: redis (por defecto, compartida entre réplicas) o memory.
+ */
+public interface SessionRepository {
+    SessionInfo save(SessionInfo session);
+    Optional<SessionInfo> findVigente(String token);
+    void delete(String token);
+}
@@ -18,5 +18,7 @@ public interface VentaRepository extends JpaRepository<Venta, Long> {
     List<Venta> findByEventoId(Long eventoId);
     
     List<Venta> findByUsuario(String usuario);
+
+    Optional<Venta> findByIdempotencia(String idempotencia);
 }
 
@@ -0,0 +1,131 @@
+package com.cine.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Tokens de sesión firmados (auth.token.signed=true): los proxies los validan con la clave
+ * compartida auth.token.secret, sin consultar al backend.
+ *
+ * Formato: s1.{username base64url}.{expira epoch s}.{id}.{HMAC-SHA256 base64url}
+ * La firma cubre todo lo anterior al último punto. El id identifica el token en la lista de
+ * revocados (ZSET sesiones:revocadas, score = vencimiento en ms): un logout revoca antes de que venza.
+ */
+@Service
+public class SessionTokenSigner {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionTokenSigner.class);
+
+    public static final String PREFIJO = "s1.";
+    public static final String REVOCADOS_KEY = "sesiones:revocadas";
+
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private final StringRedisTemplate redis;
+    private final boolean habilitado;
+    private final byte[] secreto;
+    private final SecureRandom random = new SecureRandom();
+
+    public SessionTokenSigner(StringRedisTemplate redis,
+                              @Value("${auth.token.signed:false}") boolean signed,
+                              @Value("${auth.token.secret:}") String secret) {
+        this.redis = redis;
+        this.secreto = secret.getBytes(StandardCharsets.UTF_8);
+        this.habilitado = signed && !secret.isBlank();
+        if (signed && secret.isBlank()) {
+            log.warn("auth.token.signed=true sin auth.token.secret: se siguen emitiendo tokens UUID");
+        }
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    public static boolean esFirmado(String token) {
+        return token != null && token.startsWith(PREFIJO);
+    }
+
+    public String emitir(String username, Instant expiresAt) {
+        byte[] id = new byte[9];
+        random.nextBytes(id);
+        String cuerpo = PREFIJO + B64.encodeToString(username.getBytes(StandardCharsets.UTF_8))
+                + "." + expiresAt.getEpochSecond() + "." + B64.encodeToString(id);
+        return cuerpo + "." + B64.encodeToString(firmar(cuerpo));
+    }
+
+    /**
+     * Datos del token si la firma es correcta y no venció (sin mirar la revocación); null si no.
+     */
+    public Datos leer(String token) {
+        if (!habilitado || !esFirmado(token)) {
+            return null;
+        }
+        String[] partes = token.split("\\.");
+        if (partes.length != 5) {
+            return null;
+        }
+        try {
+            String cuerpo = token.substring(0, token.lastIndexOf('.'));
+            if (!MessageDigest.isEqual(firmar(cuerpo), B64D.decode(partes[4]))) {
+                return null;
+            }
+            Instant expira = Instant.ofEpochSecond(Long.parseLong(partes[2]));
+            if (!expira.isAfter(Instant.now())) {
+                return null;
+            }
+            return new Datos(new String(B64D.decode(partes[1]), StandardCharsets.UTF_8), expira, partes[3]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public boolean revocado(String id) {
+        return redis.opsForZSet().score(REVOCADOS_KEY, id) != null;
+    }
+
+    /**
+     * Agrega el token a la lista de revocados hasta su vencimiento y de paso poda los ya vencidos.
+     */
+    public void revocar(Datos datos) {
+        redis.opsForZSet().add(REVOCADOS_KEY, datos.getId(), datos.getExpiresAt().toEpochMilli());
+        redis.opsForZSet().removeRangeByScore(REVOCADOS_KEY, 0, System.currentTimeMillis());
+    }
+
+    private byte[] firmar(String cuerpo) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secreto, "HmacSHA256"));
+            return mac.doFinal(cuerpo.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo firmar el token", e);
+        }
+    }
+
+    public static final class Datos {
+        private final String username;
+        private final Instant expiresAt;
+        private final String id;
+
+        Datos(String username, Instant expiresAt, String id) {
+            this.username = username;
+            this.expiresAt = expiresAt;
+            this.id = id;
+        }
+
+        public String getUsername() { return username; }
+        public Instant getExpiresAt() { return expiresAt; }
+        public String getId() { return id; }
+    }
+}
@@ -36,11 +36,23 @@ public class VentaService {
     @Transactional
     public Venta guardarVenta(String usuario, Double total, LocalDateTime fechaVenta, 
                              Long eventoId, List<Map<String, Object>> asientos) {
+        return guardarVenta(null, usuario, total, fechaVenta, eventoId, asientos);
+    }
+
+    /**
+     * Igual que guardarVenta, con la clave de idempotencia que manda el outbox del proxy.
+     * El llamador busca antes por la clave (buscarPorIdempotencia); dos entregas simultáneas de
+     * la misma venta las frena la restricción unique: la segunda falla al hacer flush.
+     */
+    @Transactional
+    public Venta guardarVenta(String idempotencia, String usuario, Double total, LocalDateTime fechaVenta,
+                             Long eventoId, List<Map<String, Object>> asientos) {
         log.info("Guardando venta: usuario={}, total={}, eventoId={}, asientos={}", 
                 usuario, total, eventoId, asientos.size());
         
         // Crear la venta
         Venta venta = new Venta(usuario, total, fechaVenta, eventoId);
+        venta.setIdempotencia(idempotencia);
         
         // Agregar los asientos
         for (Map<String, Object> asientoData : asientos) {
@@ -57,12 +69,16 @@ public class VentaService {
         }
         
         // Guardar la venta (los asientos se guardan en cascada)
-        Venta saved = ventaRepository.save(venta);
+        Venta saved = ventaRepository.saveAndFlush(venta);
         log.info("Venta guardada exitosamente con ID: {}", saved.getId());
         
         return saved;
     }
 
+    public Optional<Venta> buscarPorIdempotencia(String idempotencia) {
+        return ventaRepository.findByIdempotencia(idempotencia);
+    }
+
     /**
      * Obtiene todas las ventas ordenadas por fecha descendente.
      */
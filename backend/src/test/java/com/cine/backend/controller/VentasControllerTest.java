@@ -0,0 +1,150 @@
+package com.cine.backend.controller;
+
+import com.cine.backend.model.Venta;
+import com.cine.backend.service.VentaService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VentasControllerTest {
+
+    private VentaService ventaService;
+    private VentasController controller;
+
+    /** Ventas guardadas por clave de idempotencia, como la tabla con su restricción unique. */
+    private final Map<String, Venta> guardadas = new HashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ventaService = mock(VentaService.class);
+        controller = new VentasController(ventaService);
+        when(ventaService.buscarPorIdempotencia(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(guardadas.get(inv.<String>getArgument(0))));
+        when(ventaService.guardarVenta(anyString(), anyString(), anyDouble(), any(LocalDateTime.class), anyLong(), anyList()))
+                .thenAnswer(inv -> {
+                    String clave = inv.getArgument(0);
+                    if (guardadas.containsKey(clave)) {
+                        throw new DataIntegrityViolationException("unique idempotencia");
+                    }
+                    Venta venta = new Venta(inv.getArgument(1), inv.getArgument(2), inv.getArgument(3), inv.getArgument(4));
+                    venta.setId(ids.incrementAndGet());
+                    venta.setIdempotencia(clave);
+                    guardadas.put(clave, venta);
+                    return venta;
+                });
+    }
+
+    @Test
+    void laMismaVentaEntregadaDosVecesSeGuardaUnaSola() {
+        List<Map<String, Object>> primera = resultados(lote(venta("k1"), venta("k2")));
+        List<Map<String, Object>> reintento = resultados(lote(venta("k1"), venta("k3")));
+
+        assertEquals("guardada", primera.get(0).get("estado"));
+        assertEquals("guardada", primera.get(1).get("estado"));
+        assertEquals("k1", reintento.get(0).get("idempotencia"));
+        assertEquals("duplicada", reintento.get(0).get("estado"));
+        assertEquals(primera.get(0).get("id"), reintento.get(0).get("id"));
+        assertEquals("guardada", reintento.get(1).get("estado"));
+        assertEquals(3, guardadas.size());
+        verify(ventaService, times(1)).guardarVenta(eq("k1"), anyString(), anyDouble(), any(LocalDateTime.class), anyLong(), anyList());
+    }
+
+    @Test
+    void claveRepetidaDentroDelMismoLote() {
+        List<Map<String, Object>> r = resultados(lote(venta("k1"), venta("k1")));
+
+        assertEquals("guardada", r.get(0).get("estado"));
+        assertEquals("duplicada", r.get(1).get("estado"));
+        assertEquals(1, guardadas.size());
+    }
+
+    @Test
+    void entregaSimultaneaQueChocaConLaUniqueEsDuplicada() {
+        // Otra entrega la guardó entre la búsqueda y el insert
+        when(ventaService.buscarPorIdempotencia("k1"))
+                .thenReturn(Optional.empty())
+                .thenAnswer(inv -> Optional.ofNullable(guardadas.get("k1")));
+        Venta otra = new Venta("ana", 1000.0, LocalDateTime.now(), 1L);
+        otra.setId(99L);
+        guardadas.put("k1", otra);
+
+        List<Map<String, Object>> r = resultados(lote(venta("k1")));
+
+        assertEquals("duplicada", r.get(0).get("estado"));
+        assertEquals(99L, r.get(0).get("id"));
+    }
+
+    @Test
+    void ventaSinDatosEsRechazadaYNoSeGuarda() {
+        Map<String, Object> sinClave = venta("k1");
+        sinClave.remove("idempotencia");
+        Map<String, Object> sinAsientos = venta("k2");
+        sinAsientos.put("asientos", List.of());
+
+        List<Map<String, Object>> r = resultados(lote(sinClave, sinAsientos));
+
+        assertEquals("rechazada", r.get(0).get("estado"));
+        assertEquals("rechazada", r.get(1).get("estado"));
+        verify(ventaService, never()).guardarVenta(anyString(), anyString(), anyDouble(), any(LocalDateTime.class), anyLong(), anyList());
+    }
+
+    @Test
+    void falloAlGuardarSeInformaParaReintentar() {
+        when(ventaService.guardarVenta(eq("k1"), anyString(), anyDouble(), any(LocalDateTime.class), anyLong(), anyList()))
+                .thenThrow(new IllegalStateException("base caída"));
+
+        List<Map<String, Object>> r = resultados(lote(venta("k1")));
+
+        assertEquals("error", r.get(0).get("estado"));
+    }
+
+    @Test
+    void cuerpoSinListaDeVentasEsBadRequest() {
+        assertEquals(400, controller.guardarVentasLote(Map.of("ventas", "x")).getStatusCode().value());
+    }
+
+    private static Map<String, Object> venta(String idempotencia) {
+        Map<String, Object> venta = new HashMap<>();
+        venta.put("idempotencia", idempotencia);
+        venta.put("usuario", "ana");
+        venta.put("eventoId", 1);
+        venta.put("total", 1000.0);
+        venta.put("fechaVenta", "2025-01-01T10:00:00Z");
+        venta.put("asientos", List.of(Map.of("fila", 1, "columna", 2, "precio", 1000.0)));
+        return venta;
+    }
+
+    @SafeVarargs
+    private static Map<String, Object> lote(Map<String, Object>... ventas) {
+        return Map.of("ventas", List.of(ventas));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> resultados(Map<String, Object> lote) {
+        ResponseEntity<?> respuesta = controller.guardarVentasLote(lote);
+        assertEquals(200, respuesta.getStatusCode().value());
+        return (List<Map<String, Object>>) ((Map<String, Object>) respuesta.getBody()).get("resultados");
+    }
+}
@@ -0,0 +1,87 @@
+package com.cine.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class SessionTokenSignerTest {
+
+    private static final String SECRETO = "clave-de-prueba";
+
+    private final SessionTokenSigner signer = new SessionTokenSigner(mock(StringRedisTemplate.class), true, SECRETO);
+
+    @Test
+    void emitirYLeer() {
+        Instant expira = Instant.now().plus(10, ChronoUnit.MINUTES);
+
+        String token = signer.emitir("ana.pérez", expira);
+        SessionTokenSigner.Datos datos = signer.leer(token);
+
+        assertTrue(SessionTokenSigner.esFirmado(token));
+        assertEquals(5, token.split("\\.").length);
+        assertNotNull(datos);
+        assertEquals("ana.pérez", datos.getUsername());
+        assertEquals(expira.getEpochSecond(), datos.getExpiresAt().getEpochSecond());
+        assertNotNull(datos.getId());
+    }
+
+    @Test
+    void cadaTokenTieneSuPropioId() {
+        Instant expira = Instant.now().plus(10, ChronoUnit.MINUTES);
+
+        assertNotEquals(signer.leer(signer.emitir("ana", expira)).getId(), signer.leer(signer.emitir("ana", expira)).getId());
+    }
+
+    @Test
+    void tokenAlteradoNoSeLee() {
+        String token = signer.emitir("ana", Instant.now().plus(10, ChronoUnit.MINUTES));
+        String[] partes = token.split("\\.");
+
+        String otroVencimiento = String.join(".", partes[0], partes[1],
+                String.valueOf(Long.parseLong(partes[2]) + 3600), partes[3], partes[4]);
+        String otroId = String.join(".", partes[0], partes[1], partes[2], "otro", partes[4]);
+        int i = token.lastIndexOf('.') + 1;
+        String otraFirma = token.substring(0, i) + (token.charAt(i) == 'A' ? 'B' : 'A') + token.substring(i + 1);
+
+        assertNull(signer.leer(otroVencimiento));
+        assertNull(signer.leer(otroId));
+        assertNull(signer.leer(otraFirma));
+        assertNull(signer.leer(token + ".extra"));
+        assertNull(signer.leer(String.join(".", partes[0], partes[1], "mañana", partes[3], partes[4])));
+    }
+
+    @Test
+    void tokenDeOtraClaveNoSeLee() {
+        SessionTokenSigner otro = new SessionTokenSigner(mock(StringRedisTemplate.class), true, "otra-clave");
+
+        assertNull(signer.leer(otro.emitir("ana", Instant.now().plus(10, ChronoUnit.MINUTES))));
+    }
+
+    @Test
+    void tokenVencidoNoSeLee() {
+        assertNull(signer.leer(signer.emitir("ana", Instant.now().minusSeconds(1))));
+    }
+
+    @Test
+    void sinClaveNoEstaHabilitado() {
+        SessionTokenSigner sinClave = new SessionTokenSigner(mock(StringRedisTemplate.class), true, "");
+        SessionTokenSigner apagado = new SessionTokenSigner(mock(StringRedisTemplate.class), false, SECRETO);
+        String token = signer.emitir("ana", Instant.now().plus(10, ChronoUnit.MINUTES));
+
+        assertFalse(sinClave.isHabilitado());
+        assertFalse(apagado.isHabilitado());
+        assertNull(sinClave.leer(token));
+        assertNull(apagado.leer(token));
+        assertFalse(SessionTokenSigner.esFirmado("550e8400-e29b-41d4-a716-446655440000"));
+    }
+}
@@ -3,6 +3,7 @@ package com.cine.shared
 import com.yassuff.cinemobile.network.AuthInterceptor
 import com.yassuff.cinemobile.network.UnauthorizedException
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.withContext
 import okhttp3.MediaType.Companion.toMediaType
 import okhttp3.OkHttpClient
@@ -25,6 +26,11 @@ private val client: OkHttpClient = OkHttpClient.Builder()
     .readTimeout(20, TimeUnit.SECONDS)
     .build()
 
+// Stream SSE: el proxy manda un comentario cada 20s, más que eso sin datos es conexión caída
+private val streamClient: OkHttpClient = client.newBuilder()
+    .readTimeout(60, TimeUnit.SECONDS)
+    .build()
+
 suspend fun loginRequest(username: String, password: String): AuthResponse =
     ApiClient.login(username, password)
 
@@ -143,6 +149,24 @@ object ApiClient {
         }
     }
 
+    // Avisa al backend para que invalide la sesión (y los proxies la saquen de su cache).
+    // No bloquea la salida: si falla, la sesión vence sola.
+    fun logout(token: String) {
+        val payload = JSONObject().apply { put("token", token) }.toString()
+        val req = Request.Builder()
+            .url("$BASE_URL/logout")
+            .post(payload.toRequestBody(JSON))
+            .build()
+        client.newCall(req).enqueue(object : okhttp3.Callback {
+            override fun onFailure(call: okhttp3.Call, e: java.io.IOException) {
+                println("[DEBUG front] logout falló: ${e.message}")
+            }
+
+            override fun onResponse(call: okhttp3.Call, response: okhttp3.Response) {
+                response.close()
+            }
+        })
+    }
 
     // Helper to get session header value
     private fun sessionHeaderValue(): String {
@@ -153,7 +177,7 @@ object ApiClient {
 
 
     suspend fun blockSeats(eventId: Long, seatIds: List<String>): Boolean = withContext(Dispatchers.IO) {
-        val url = "$PROXY_BASE/api/endpoints/v1/bloquear-asiento"
+        val url = "$PROXY_BASE/api/endpoints/v1/bloquear-asientos"
         val payload = JSONObject().apply {
             put("eventoId", eventId)
             put("seatIds", JSONArray(seatIds))
@@ -260,37 +284,130 @@ object ApiClient {
     }
 
 
-    suspend fun getSeats(eventId: Long): List<Seat> = withContext(Dispatchers.IO) {
+    suspend fun getSeats(eventId: Long): List<Seat> = getSeatsSnapshot(eventId).seats
+
+    // Mapa completo más la versión del ETag ("version-vencidos") para después pedir solo cambios.
+    // Se pide el formato binario compacto; si el proxy responde JSON se parsea como antes.
+    // Con `previous` se manda su ETag en If-None-Match: si el mapa no cambió (304) se devuelve
+    // el mismo snapshot sin bajarlo de nuevo.
+    suspend fun getSeatsSnapshot(eventId: Long, previous: SeatSnapshot? = null): SeatSnapshot = withContext(Dispatchers.IO) {
+            val builder = Request.Builder()
+                .url("$PROXY_BASE/asientos/$eventId")
+                .get()
+                .addHeader("Accept", "${SeatMapCodec.MEDIA_TYPE}, application/json;q=0.9")
+                .addHeader("X-Session-Id", sessionHeaderValue())
+            previous?.etag?.let { builder.addHeader("If-None-Match", it) }
+            client.newCall(builder.build()).execute().use { resp ->
+                if (resp.code == 304 && previous != null) {
+                    return@withContext previous
+                }
+                val etag = resp.header("ETag")
+                val contentType = resp.header("Content-Type") ?: ""
+                if (resp.code in 200..299 && contentType.startsWith(SeatMapCodec.MEDIA_TYPE)) {
+                    val snapshot = SeatMapCodec.decode(resp.body?.bytes() ?: ByteArray(0))
+                    return@withContext snapshot.copy(version = parseSeatVersion(etag) ?: snapshot.version, etag = etag)
+                }
+                val body = resp.body?.string() ?: "[]"
+                if (resp.code == 401) {
+                    SessionManager.clear()
+                    throw UnauthorizedException("Session expired")
+                }
+                if (resp.code !in 200..299) {
+                    if (resp.code == 204) return@withContext SeatSnapshot(emptyList(), null)
+                    throw Exception("getSeats failed: http=${resp.code} body=$body")
+                }
+                val arr = JSONArray(body)
+                val list = mutableListOf<Seat>()
+                for (i in 0 until arr.length()) {
+                    list.add(seatFromJson(arr.getJSONObject(i)))
+                }
+                return@withContext SeatSnapshot(list, parseSeatVersion(etag), etag)
+            }
+        }
+
+    // Solo los asientos que cambiaron después de `since`; resync=true pide volver a bajar el mapa completo
+    suspend fun getSeatChanges(eventId: Long, since: Long): SeatChanges = withContext(Dispatchers.IO) {
             val req = Request.Builder()
-                .url("$PROXY_BASE/asientos/$eventId")                
+                .url("$PROXY_BASE/asientos/$eventId/changes?since=$since")
                 .get()
                 .addHeader("Accept", "application/json")
                 .addHeader("X-Session-Id", sessionHeaderValue())
                 .build()
             client.newCall(req).execute().use { resp ->
-                val body = resp.body?.string() ?: "[]"
+                val body = resp.body?.string() ?: "{}"
                 if (resp.code == 401) {
                     SessionManager.clear()
                     throw UnauthorizedException("Session expired")
                 }
                 if (resp.code !in 200..299) {
-                    if (resp.code == 204) return@withContext emptyList<Seat>()
-                    throw Exception("getSeats failed: http=${resp.code} body=$body")
+                    throw Exception("getSeatChanges failed: http=${resp.code} body=$body")
                 }
-                val arr = JSONArray(body)
+                val o = JSONObject(body)
+                val arr = o.optJSONArray("cambios") ?: JSONArray()
                 val list = mutableListOf<Seat>()
                 for (i in 0 until arr.length()) {
-                    val o = arr.getJSONObject(i)
-                    val seatId = o.optString("seatId", o.optString("asientoId", "unknown"))
-                    val status = o.optString("status", o.optString("estado", "LIBRE"))
-                    val holder = if (o.has("holder")) o.optString("holder") else o.optString("usuario", null)
-                    val updatedAt = o.optString("updatedAt", null)
-                    list.add(Seat(seatId, status, holder, updatedAt))
+                    list.add(seatFromJson(arr.getJSONObject(i)))
                 }
-                return@withContext list
+                return@withContext SeatChanges(o.optLong("version", since), o.optBoolean("resync", true), list)
             }
         }
 
+    // Lee GET /asientos/{id}/stream hasta que se corta; onEvent recibe (evento, id, data)
+    suspend fun streamSeatChanges(
+        eventId: Long,
+        since: Long?,
+        onEvent: suspend (String, Long?, JSONObject) -> Unit
+    ) = withContext(Dispatchers.IO) {
+        val url = if (since != null) "$PROXY_BASE/asientos/$eventId/stream?since=$since" else "$PROXY_BASE/asientos/$eventId/stream"
+        val req = Request.Builder()
+            .url(url)
+            .get()
+            .addHeader("Accept", "text/event-stream")
+            .addHeader("X-Session-Id", sessionHeaderValue())
+            .build()
+        val call = streamClient.newCall(req)
+        coroutineContext[Job]?.invokeOnCompletion { call.cancel() }
+        call.execute().use { resp ->
+            if (resp.code == 401) {
+                SessionManager.clear()
+                throw UnauthorizedException("Session expired")
+            }
+            if (resp.code !in 200..299) {
+                throw Exception("streamSeatChanges failed: http=${resp.code}")
+            }
+            val source = resp.body?.source() ?: return@withContext
+            var name = "message"
+            var id: Long? = null
+            val data = StringBuilder()
+            while (true) {
+                val line = source.readUtf8Line() ?: break
+                when {
+                    line.isEmpty() -> {
+                        if (data.isNotEmpty()) onEvent(name, id, JSONObject(data.toString()))
+                        name = "message"; id = null; data.setLength(0)
+                    }
+                    line.startsWith(":") -> {}   // comentario / latido
+                    line.startsWith("event:") -> name = line.substringAfter(':').trim()
+                    line.startsWith("id:") -> id = line.substringAfter(':').trim().toLongOrNull()
+                    line.startsWith("data:") -> data.append(line.substringAfter(':').trim())
+                }
+            }
+        }
+    }
+
+    fun seatFromChange(o: JSONObject): Seat = seatFromJson(o)
+
+    private fun seatFromJson(o: JSONObject): Seat {
+        val seatId = o.optString("seatId", o.optString("asientoId", "unknown"))
+        val status = o.optString("status", o.optString("estado", "LIBRE"))
+        val holder = if (o.has("holder")) o.optString("holder") else o.optString("usuario", null)
+        val updatedAt = o.optString("updatedAt", null)
+        return Seat(seatId, status, holder, updatedAt)
+    }
+
+    private fun parseSeatVersion(etag: String?): Long? =
+        etag?.removePrefix("W/")?.trim('"')?.substringBefore('-')?.toLongOrNull()
+
     private fun jsonArrayToList(arr: JSONArray): List<Any?> {
         val list = mutableListOf<Any?>()
         for (i in 0 until arr.length()) {
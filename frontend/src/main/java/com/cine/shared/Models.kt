@@ -23,6 +23,18 @@ data class Seat(
     val updatedAt: String? = null
 )
 
+data class SeatSnapshot(
+    val seats: List<Seat>,
+    val version: Long?,              // null si el proxy no manda ETag
+    val etag: String? = null         // para pedir el mapa de nuevo con If-None-Match
+)
+
+data class SeatChanges(
+    val version: Long,
+    val resync: Boolean,
+    val seats: List<Seat>            // solo los asientos que cambiaron
+)
+
 
 data class Sale(
     val evento: String,
@@ -0,0 +1,76 @@
+package com.cine.shared
+
+import java.nio.charset.StandardCharsets
+
+// Decodifica el formato binario de GET /asientos/{id} (Accept: application/vnd.cine.seatmap).
+// Mismo layout que SeatMapCodec del proxy: varints, corridas de estados, tabla de strings y
+// entradas con holder (BLOQUEADO) o comprador (VENDIDO).
+object SeatMapCodec {
+    const val MEDIA_TYPE = "application/vnd.cine.seatmap"
+
+    private val STATUS = arrayOf("LIBRE", "BLOQUEADO", "VENDIDO")
+
+    fun decode(bytes: ByteArray): SeatSnapshot {
+        val r = Reader(bytes)
+        if (r.byte() != 'S'.code || r.byte() != 'M'.code) throw IllegalArgumentException("seatmap: magic inválido")
+        val formato = r.byte()
+        if (formato != 1) throw IllegalArgumentException("seatmap: formato $formato no soportado")
+        val filas = r.varint().toInt()
+        val columnas = r.varint().toInt()
+        val version = r.varint()
+
+        val estados = ByteArray(filas * columnas)
+        var pos = 0
+        repeat(r.varint().toInt()) {
+            val status = r.byte().toByte()
+            val largo = r.varint().toInt()
+            estados.fill(status, pos, pos + largo)
+            pos += largo
+        }
+
+        val strings = Array(r.varint().toInt()) {
+            val largo = r.varint().toInt()
+            r.string(largo)
+        }
+
+        val holders = HashMap<Int, String>()
+        var indice = -1
+        repeat(r.varint().toInt()) {
+            indice += r.varint().toInt() + 1
+            when (estados[indice].toInt()) {
+                1 -> holders[indice] = strings[r.varint().toInt()]
+                2 -> { r.varint(); r.varint() }   // persona y fechaVenta: Seat no los usa
+            }
+        }
+
+        val seats = ArrayList<Seat>(estados.size)
+        for (i in estados.indices) {
+            val status = STATUS.getOrElse(estados[i].toInt()) { "LIBRE" }
+            seats.add(Seat("r${i / columnas + 1}c${i % columnas + 1}", status, holders[i]))
+        }
+        return SeatSnapshot(seats, if (version > 0) version else null)
+    }
+
+    private class Reader(private val b: ByteArray) {
+        private var p = 0
+
+        fun byte(): Int = b[p++].toInt() and 0xFF
+
+        fun varint(): Long {
+            var valor = 0L
+            var shift = 0
+            while (true) {
+                val x = byte()
+                valor = valor or ((x and 0x7F).toLong() shl shift)
+                if (x and 0x80 == 0) return valor
+                shift += 7
+            }
+        }
+
+        fun string(largo: Int): String {
+            val s = String(b, p, largo, StandardCharsets.UTF_8)
+            p += largo
+            return s
+        }
+    }
+}
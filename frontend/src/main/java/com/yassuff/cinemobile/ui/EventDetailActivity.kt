@@ -26,12 +26,16 @@ import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.cine.shared.ApiClient
 import com.cine.shared.Seat
+import com.cine.shared.SeatSnapshot
 import com.cine.shared.SessionManager
+import com.yassuff.cinemobile.network.UnauthorizedException
 import kotlinx.coroutines.launch
 import androidx.lifecycle.viewmodel.compose.viewModel
 import androidx.compose.runtime.rememberCoroutineScope
 import androidx.compose.runtime.LaunchedEffect
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.CancellationException
+import org.json.JSONObject
 import java.text.SimpleDateFormat
 import java.util.*
 
@@ -60,8 +64,54 @@ class EventDetailViewModel(private val eventId: Long) : ViewModel() {
     var seatLockTimestamps by mutableStateOf<Map<String, Long>>(emptyMap())
         private set
 
+    // Versión del mapa que tenemos: con ella se piden solo los asientos que cambiaron
+    private var seatsVersion: Long? = null
+
+    // Último mapa completo: su ETag va en If-None-Match y con un 304 se reusa tal cual
+    private var lastSnapshot: SeatSnapshot? = null
+
     init {
         loadSeats()
+        listenSeatChanges()
+    }
+
+    // Cambios en vivo por SSE; si se corta se reconecta desde la última versión recibida
+    private fun listenSeatChanges() {
+        viewModelScope.launch {
+            while (true) {
+                try {
+                    ApiClient.streamSeatChanges(eventId, seatsVersion) { name, id, data ->
+                        withContext(Dispatchers.Main) { onSeatEvent(name, id, data) }
+                    }
+                } catch (ex: CancellationException) {
+                    throw ex
+                } catch (ex: UnauthorizedException) {
+                    return@launch
+                } catch (ex: Exception) {
+                    ex.printStackTrace()
+                }
+                delay(3000)
+            }
+        }
+    }
+
+    private fun onSeatEvent(name: String, id: Long?, data: JSONObject) {
+        if (name == "resync") {
+            seatsVersion = null
+            loadSeats()
+            return
+        }
+        if (name != "asiento" || seats.isEmpty()) return
+        val changed = ApiClient.seatFromChange(data)
+        val mine = changed.holder == SessionManager.getToken() ||
+                seats.any { it.seatId == changed.seatId && it.holder == SessionManager.getToken() }
+        if (id != null) seatsVersion = maxOf(seatsVersion ?: 0, id)
+        if (mine) {
+            // Los asientos propios pasan por loadSeats para mantener los timestamps de bloqueo
+            loadSeats()
+        } else {
+            seats = seats.map { if (it.seatId == changed.seatId) changed else it }
+        }
     }
 
     fun loadSeats() {
@@ -69,7 +119,7 @@ class EventDetailViewModel(private val eventId: Long) : ViewModel() {
         error = null
         viewModelScope.launch {
             try {
-                val newSeats = ApiClient.getSeats(eventId)
+                val newSeats = fetchSeats()
                 val mySession = SessionManager.getToken()
                 val currentTime = System.currentTimeMillis()
                 
@@ -115,6 +165,30 @@ class EventDetailViewModel(private val eventId: Long) : ViewModel() {
         }
     }
 
+    private suspend fun fetchSeats(): List<Seat> {
+        val since = seatsVersion
+        if (since != null && seats.isNotEmpty()) {
+            try {
+                val changes = ApiClient.getSeatChanges(eventId, since)
+                if (!changes.resync) {
+                    seatsVersion = changes.version
+                    if (changes.seats.isEmpty()) return seats
+                    val changed = changes.seats.associateBy { it.seatId }
+                    return seats.map { changed[it.seatId] ?: it }
+                }
+            } catch (ex: UnauthorizedException) {
+                throw ex
+            } catch (ex: Exception) {
+                // Si falla el feed de cambios se baja el mapa completo
+                ex.printStackTrace()
+            }
+        }
+        val snapshot = ApiClient.getSeatsSnapshot(eventId, lastSnapshot)
+        lastSnapshot = snapshot
+        seatsVersion = snapshot.version
+        return snapshot.seats
+    }
+
     fun markSeatAsBlocked(seatId: String) {
         val currentTime = System.currentTimeMillis()
         // Guardar timestamp persistente
@@ -184,6 +258,7 @@ fun EventDetailScreen(vm: EventDetailViewModel, eventId: Long) {
                 title = { Text(text = "Detalle evento: $eventId") },
                 actions = {
                     IconButton(onClick = {
+                        SessionManager.getToken()?.let { ApiClient.logout(it) }
                         SessionManager.clear()
                         val intent = android.content.Intent(ctx, LoginActivity::class.java)
                         intent.addFlags(android.content.Intent.FLAG_ACTIVITY_NEW_TASK or android.content.Intent.FLAG_ACTIVITY_CLEAR_TASK)
@@ -85,6 +85,7 @@ fun SalesScreen(vm: SalesViewModel, onBack: () -> Unit) {
                 actions = {
                     IconButton(onClick = {
                         // logout: limpiar sesión y volver a LoginActivity
+                        SessionManager.getToken()?.let { ApiClient.logout(it) }
                         SessionManager.clear()
                         val intent = Intent(ctx, LoginActivity::class.java)
                         intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK or Intent.FLAG_ACTIVITY_CLEAR_TASK)
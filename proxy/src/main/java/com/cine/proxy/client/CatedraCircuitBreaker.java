@@ -0,0 +1,178 @@
+package com.cine.proxy.client;
+
+import com.cine.proxy.config.CatedraProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker de las llamadas a la cátedra, por conteo sobre una ventana deslizante.
+ *
+ * - CERRADO: pasa todo; se registra cada resultado en las últimas windowSize llamadas.
+ *   Con al menos minimumCalls y una tasa de fallas >= failureRatePercent se abre.
+ * - ABIERTO: se rechaza todo sin llamar hasta que pasen openMs.
+ * - SEMI_ABIERTO: pasan hasta halfOpenCalls llamadas de prueba; si todas salen bien se cierra,
+ *   con una falla vuelve a abrirse.
+ *
+ * Falla = la cátedra no respondió a tiempo o respondió 5xx; un 4xx es una respuesta válida.
+ * Las transiciones son raras y las llamadas lentas, así que alcanza con un lock. Es un
+ * ReentrantLock y no synchronized porque las transiciones escriben al log con el lock tomado:
+ * con hilos virtuales, esa escritura dentro de un monitor fijaría el hilo a su carrier.
+ */
+public class CatedraCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CatedraCircuitBreaker.class);
+
+    public enum Estado { CERRADO, ABIERTO, SEMI_ABIERTO }
+
+    private final int minLlamadas;
+    private final int umbralFallasPct;
+    private final long abiertoMs;
+    private final int llamadasPrueba;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final boolean[] fallo;   // ventana circular: true = falla
+    private int pos;
+    private int registradas;
+    private int fallas;
+
+    private Estado estado = Estado.CERRADO;
+    private long abiertoDesde;
+    private int pruebasEnCurso;
+    private int pruebasOk;
+    private long aperturas;
+
+    public CatedraCircuitBreaker(CatedraProperties.CircuitBreaker config) {
+        this.fallo = new boolean[Math.max(1, config.getWindowSize())];
+        this.minLlamadas = Math.max(1, Math.min(config.getMinimumCalls(), fallo.length));
+        this.umbralFallasPct = config.getFailureRatePercent();
+        this.abiertoMs = config.getOpenMs();
+        this.llamadasPrueba = Math.max(1, config.getHalfOpenCalls());
+    }
+
+    /**
+     * true si la llamada puede salir. En SEMI_ABIERTO reserva una de las llamadas de prueba:
+     * quien recibe true tiene que llamar a registrar().
+     */
+    public boolean permitir(long ahoraMs) {
+        lock.lock();
+        try {
+            if (estado == Estado.ABIERTO) {
+                if (ahoraMs - abiertoDesde < abiertoMs) {
+                    return false;
+                }
+                estado = Estado.SEMI_ABIERTO;
+                pruebasEnCurso = 0;
+                pruebasOk = 0;
+                log.info("Circuito cátedra SEMI_ABIERTO: {} llamadas de prueba", llamadasPrueba);
+            }
+            if (estado == Estado.SEMI_ABIERTO) {
+                if (pruebasEnCurso >= llamadasPrueba) {
+                    return false;
+                }
+                pruebasEnCurso++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void registrar(boolean ok, long ahoraMs) {
+        lock.lock();
+        try {
+            switch (estado) {
+                case SEMI_ABIERTO -> {
+                    if (!ok) {
+                        abrir(ahoraMs);
+                    } else if (++pruebasOk >= llamadasPrueba) {
+                        cerrar();
+                    }
+                }
+                case CERRADO -> {
+                    if (registradas == fallo.length) {
+                        if (fallo[pos]) fallas--;
+                    } else {
+                        registradas++;
+                    }
+                    fallo[pos] = !ok;
+                    if (!ok) fallas++;
+                    pos = (pos + 1) % fallo.length;
+                    if (registradas >= minLlamadas && fallas * 100 >= umbralFallasPct * registradas) {
+                        abrir(ahoraMs);
+                    }
+                }
+                case ABIERTO -> {
+                    // llamada que salió antes de abrirse: ya no cambia nada
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Llamada permitida que se abandonó sin resultado (el cliente cortó): no cuenta como falla
+     * ni como éxito, pero libera su lugar de prueba.
+     */
+    public void liberar() {
+        lock.lock();
+        try {
+            if (estado == Estado.SEMI_ABIERTO && pruebasEnCurso > 0) {
+                pruebasEnCurso--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Estado getEstado() {
+        lock.lock();
+        try {
+            return estado;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getTasaFallasPct() {
+        lock.lock();
+        try {
+            return registradas == 0 ? 0 : fallas * 100 / registradas;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAperturas() {
+        lock.lock();
+        try {
+            return aperturas;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void abrir(long ahoraMs) {
+        log.warn("Circuito cátedra ABIERTO por {} ms (fallas {}/{})", abiertoMs, fallas, registradas);
+        estado = Estado.ABIERTO;
+        abiertoDesde = ahoraMs;
+        aperturas++;
+        limpiarVentana();
+    }
+
+    private void cerrar() {
+        log.info("Circuito cátedra CERRADO");
+        estado = Estado.CERRADO;
+        limpiarVentana();
+    }
+
+    private void limpiarVentana() {
+        Arrays.fill(fallo, false);
+        pos = 0;
+        registradas = 0;
+        fallas = 0;
+    }
+}
@@ -0,0 +1,267 @@
+package com.cine.proxy.client;
+
+import com.cine.proxy.config.CatedraProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.ReactorClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Único punto de salida hacia la cátedra.
+ *
+ * - Conexiones keep-alive reutilizadas: un pool por endpoint, así una ráfaga de ventas no se
+ *   queda con las conexiones que necesitan los bloqueos (catedra.max-connections y
+ *   catedra.max-connections-per-endpoint.{eventos|bloqueos|ventas}).
+ * - catedra.timeout-ms vale para conectar, para esperar la respuesta y para esperar un lugar en el pool.
+ * - HTTP/2 por ALPN si la base-url es https (con fallback a HTTP/1.1); sobre http solo con
+ *   catedra.http2-cleartext=true.
+ *
+ * Aislamiento: como mucho catedra.bulkhead.max-concurrent llamadas a la vez y un circuit breaker
+ * (CatedraCircuitBreaker). Si no hay lugar o el circuito está abierto se lanza CatedraException 503
+ * sin tocar la red: los hilos de Tomcat no se quedan esperando a una cátedra caída y el resto
+ * del proxy (mapa de asientos, SSE) sigue respondiendo. Estado en /actuator/catedra.
+ *
+ * postReactivo hace lo mismo sin bloquear el hilo, por el mismo pool (flujo de compra reactivo).
+ *
+ * Mantiene la semántica de RestTemplate: un 4xx/5xx de la cátedra sale como
+ * HttpClientErrorException / HttpServerErrorException.
+ */
+@Component
+public class CatedraClient {
+
+    private static final Logger log = LoggerFactory.getLogger(CatedraClient.class);
+
+    public enum Endpoint {
+        EVENTOS("eventos"), BLOQUEOS("bloqueos"), VENTAS("ventas");
+
+        private final String clave;
+
+        Endpoint(String clave) {
+            this.clave = clave;
+        }
+
+        public String getClave() { return clave; }
+    }
+
+    private final CatedraProperties props;
+    private final String baseUrl;
+    private final Map<Endpoint, ConnectionProvider> pools = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, RestTemplate> clientes = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, WebClient> clientesReactivos = new EnumMap<>(Endpoint.class);
+
+    private final Semaphore bulkhead;
+    private final long bulkheadEsperaMs;
+    private final CatedraCircuitBreaker circuitBreaker;
+    private final Counter rechazosBulkhead;
+    private final Counter rechazosCircuito;
+
+    public CatedraClient(CatedraProperties props, MeterRegistry meterRegistry, WebClient.Builder webClientBuilder) {
+        this.props = props;
+        String base = props.getBaseUrl() == null ? "http://192.168.194.250:8080" : props.getBaseUrl();
+        this.baseUrl = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        boolean https = baseUrl.startsWith("https://");
+        Duration timeout = Duration.ofMillis(props.getTimeoutMs());
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            int maxConexiones = props.getMaxConnectionsPerEndpoint().getOrDefault(endpoint.getClave(), props.getMaxConnections());
+            ConnectionProvider pool = ConnectionProvider.builder("catedra-" + endpoint.getClave())
+                    .maxConnections(maxConexiones)
+                    .pendingAcquireTimeout(timeout)
+                    .pendingAcquireMaxCount(-1)   // la espera ya la acota timeout-ms
+                    .maxIdleTime(Duration.ofMillis(props.getIdleTimeoutMs()))
+                    .evictInBackground(Duration.ofMillis(props.getIdleTimeoutMs()))
+                    .build();
+            HttpClient http = HttpClient.create(pool)
+                    .keepAlive(true)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) props.getTimeoutMs())
+                    .responseTimeout(timeout);
+            if (https) {
+                http = http.secure().protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+            } else if (props.isHttp2Cleartext()) {
+                http = http.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+            }
+            pools.put(endpoint, pool);
+            // Buffering: el body sale con Content-Length, como con el RestTemplate por defecto
+            clientes.put(endpoint, new RestTemplate(new BufferingClientHttpRequestFactory(new ReactorClientHttpRequestFactory(http))));
+            clientesReactivos.put(endpoint, webClientBuilder.clone().clientConnector(new ReactorClientHttpConnector(http)).build());
+            log.info("Pool cátedra {}: hasta {} conexiones, timeout {} ms", endpoint.getClave(), maxConexiones, props.getTimeoutMs());
+        }
+
+        this.bulkhead = new Semaphore(props.getBulkhead().getMaxConcurrent());
+        this.bulkheadEsperaMs = props.getBulkhead().getMaxWaitMs();
+        this.circuitBreaker = new CatedraCircuitBreaker(props.getCircuitBreaker());
+        this.rechazosBulkhead = Counter.builder("catedra.rechazos").tag("motivo", "bulkhead")
+                .description("Llamadas a la cátedra rechazadas sin salir").register(meterRegistry);
+        this.rechazosCircuito = Counter.builder("catedra.rechazos").tag("motivo", "circuito")
+                .description("Llamadas a la cátedra rechazadas sin salir").register(meterRegistry);
+        Gauge.builder("catedra.circuito.estado", circuitBreaker, cb -> cb.getEstado().ordinal())
+                .description("0 cerrado, 1 abierto, 2 semi-abierto").register(meterRegistry);
+        Gauge.builder("catedra.llamadas.activas", bulkhead, b -> props.getBulkhead().getMaxConcurrent() - b.availablePermits())
+                .register(meterRegistry);
+    }
+
+    /**
+     * POST JSON autenticado con el token de la cátedra. path relativo a catedra.base-url.
+     */
+    public <T> ResponseEntity<T> post(Endpoint endpoint, String path, Object body, Class<T> tipo) {
+        return ejecutar(() -> clientes.get(endpoint).postForEntity(baseUrl + path, new HttpEntity<>(body, headers()), tipo));
+    }
+
+    public <T> ResponseEntity<T> get(Endpoint endpoint, String path, Class<T> tipo) {
+        return ejecutar(() -> clientes.get(endpoint).exchange(baseUrl + path, HttpMethod.GET, new HttpEntity<>(headers()), tipo));
+    }
+
+    /**
+     * POST sin bloquear: mismo pool, bulkhead y circuito que post(). El bulkhead no espera
+     * (max-wait-ms no aplica): sin lugar se rechaza al instante. El body de la respuesta como Map.
+     */
+    @SuppressWarnings("rawtypes")
+    public Mono<Map> postReactivo(Endpoint endpoint, String path, Object body) {
+        return Mono.defer(() -> {
+            if (!bulkhead.tryAcquire()) {
+                return Mono.error(rechazoBulkhead());
+            }
+            if (!circuitBreaker.permitir(System.currentTimeMillis())) {
+                bulkhead.release();
+                return Mono.error(rechazoCircuito());
+            }
+            return clientesReactivos.get(endpoint).post()
+                    .uri(baseUrl + path)
+                    .headers(h -> h.addAll(headers()))
+                    .bodyValue(body)
+                    .retrieve()
+                    .bodyToMono(Map.class)
+                    .doOnSuccess(r -> circuitBreaker.registrar(true, System.currentTimeMillis()))
+                    .doOnError(e -> circuitBreaker.registrar(!esFalla(e), System.currentTimeMillis()))
+                    .doOnCancel(circuitBreaker::liberar)
+                    .doFinally(s -> bulkhead.release());
+        });
+    }
+
+    public CatedraCircuitBreaker.Estado getEstadoCircuito() {
+        return circuitBreaker.getEstado();
+    }
+
+    public Map<String, Object> estado() {
+        return Map.of(
+                "circuito", circuitBreaker.getEstado().name(),
+                "tasaFallasPct", circuitBreaker.getTasaFallasPct(),
+                "aperturas", circuitBreaker.getAperturas(),
+                "llamadasActivas", props.getBulkhead().getMaxConcurrent() - bulkhead.availablePermits(),
+                "maxConcurrent", props.getBulkhead().getMaxConcurrent(),
+                "rechazosBulkhead", (long) rechazosBulkhead.count(),
+                "rechazosCircuito", (long) rechazosCircuito.count());
+    }
+
+    /**
+     * Respuesta 503 para una llamada rechazada por el bulkhead o el circuito.
+     */
+    public static ResponseEntity<Map<String, Object>> noDisponible(CatedraException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(Map.of("error", "CATEDRA_NO_DISPONIBLE", "message", e.getMessage()));
+    }
+
+    private <T> T ejecutar(Supplier<T> llamada) {
+        if (!tomarLugar()) {
+            throw rechazoBulkhead();
+        }
+        try {
+            if (!circuitBreaker.permitir(System.currentTimeMillis())) {
+                throw rechazoCircuito();
+            }
+            boolean ok = false;
+            try {
+                T resultado = llamada.get();
+                ok = true;
+                return resultado;
+            } catch (ResourceAccessException | HttpServerErrorException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                ok = true;   // 4xx u otra respuesta: la cátedra está viva
+                throw e;
+            } finally {
+                circuitBreaker.registrar(ok, System.currentTimeMillis());
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private CatedraException rechazoBulkhead() {
+        rechazosBulkhead.increment();
+        return new CatedraException(HttpStatus.SERVICE_UNAVAILABLE.value(), "Demasiadas operaciones en curso con la cátedra");
+    }
+
+    private CatedraException rechazoCircuito() {
+        rechazosCircuito.increment();
+        return new CatedraException(HttpStatus.SERVICE_UNAVAILABLE.value(), "La cátedra no está respondiendo, reintente en unos segundos");
+    }
+
+    /**
+     * Errores del cliente reactivo que cuentan como falla de la cátedra: conexión, timeout o 5xx.
+     */
+    private static boolean esFalla(Throwable e) {
+        if (e instanceof WebClientResponseException r) {
+            return r.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+
+    private boolean tomarLugar() {
+        if (bulkheadEsperaMs <= 0) {
+            return bulkhead.tryAcquire();
+        }
+        try {
+            return bulkhead.tryAcquire(bulkheadEsperaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (props.getToken() != null && !props.getToken().isBlank()) {
+            headers.setBearerAuth(props.getToken());
+        }
+        return headers;
+    }
+
+    @PreDestroy
+    void cerrar() {
+        pools.values().forEach(ConnectionProvider::dispose);
+    }
+}
@@ -0,0 +1,27 @@
+package com.cine.proxy.client;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/catedra: estado del circuit breaker y del bulkhead de CatedraClient.
+ * No se reporta como health: con la cátedra caída el proxy sigue sano (solo no puede vender).
+ */
+@Component
+@Endpoint(id = "catedra")
+public class CatedraEndpoint {
+
+    private final CatedraClient catedraClient;
+
+    public CatedraEndpoint(CatedraClient catedraClient) {
+        this.catedraClient = catedraClient;
+    }
+
+    @ReadOperation
+    public Map<String, Object> estado() {
+        return catedraClient.estado();
+    }
+}
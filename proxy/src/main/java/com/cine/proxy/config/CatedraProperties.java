@@ -3,6 +3,9 @@ package com.cine.proxy.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
+
 
 @Component
 @ConfigurationProperties(prefix = "catedra")
@@ -14,6 +17,15 @@ public class CatedraProperties {
     private String refreshPassword; // optional: password for refresh
     private long timeoutMs = 5000;
 
+    // pool de conexiones de CatedraClient: uno por endpoint (eventos, bloqueos, ventas)
+    private int maxConnections = 50;
+    private Map<String, Integer> maxConnectionsPerEndpoint = new HashMap<>();
+    private long idleTimeoutMs = 30000;
+    private boolean http2Cleartext = false; // h2c sin TLS: solo si la cátedra lo soporta
+
+    private final Bulkhead bulkhead = new Bulkhead();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
     // clave opcional en Redis donde se persiste el token (por defecto "catedra:token")
     private String redisTokenKey;
 
@@ -35,6 +47,62 @@ public class CatedraProperties {
     public long getTimeoutMs() { return timeoutMs; }
     public void setTimeoutMs(long timeoutMs) { this.timeoutMs = timeoutMs; }
 
+    public int getMaxConnections() { return maxConnections; }
+    public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+
+    public Map<String, Integer> getMaxConnectionsPerEndpoint() { return maxConnectionsPerEndpoint; }
+    public void setMaxConnectionsPerEndpoint(Map<String, Integer> maxConnectionsPerEndpoint) { this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint; }
+
+    public long getIdleTimeoutMs() { return idleTimeoutMs; }
+    public void setIdleTimeoutMs(long idleTimeoutMs) { this.idleTimeoutMs = idleTimeoutMs; }
+
+    public boolean isHttp2Cleartext() { return http2Cleartext; }
+    public void setHttp2Cleartext(boolean http2Cleartext) { this.http2Cleartext = http2Cleartext; }
+
+    public Bulkhead getBulkhead() { return bulkhead; }
+    public CircuitBreaker getCircuitBreaker() { return circuitBreaker; }
+
     public String getRedisTokenKey() { return redisTokenKey; }
     public void setRedisTokenKey(String redisTokenKey) { this.redisTokenKey = redisTokenKey; }
-}
\ No newline at end of file
+
+    /**
+     * Llamadas simultáneas a la cátedra; pasado el límite se rechaza con 503 en lugar de esperar.
+     */
+    public static class Bulkhead {
+        private int maxConcurrent = 20;
+        private long maxWaitMs = 0;
+
+        public int getMaxConcurrent() { return maxConcurrent; }
+        public void setMaxConcurrent(int maxConcurrent) { this.maxConcurrent = maxConcurrent; }
+
+        public long getMaxWaitMs() { return maxWaitMs; }
+        public void setMaxWaitMs(long maxWaitMs) { this.maxWaitMs = maxWaitMs; }
+    }
+
+    /**
+     * Se abre si en las últimas windowSize llamadas (con al menos minimumCalls) falló más del
+     * failureRatePercent; abierto rechaza todo durante openMs y después deja pasar halfOpenCalls de prueba.
+     */
+    public static class CircuitBreaker {
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private int failureRatePercent = 50;
+        private long openMs = 30000;
+        private int halfOpenCalls = 3;
+
+        public int getWindowSize() { return windowSize; }
+        public void setWindowSize(int windowSize) { this.windowSize = windowSize; }
+
+        public int getMinimumCalls() { return minimumCalls; }
+        public void setMinimumCalls(int minimumCalls) { this.minimumCalls = minimumCalls; }
+
+        public int getFailureRatePercent() { return failureRatePercent; }
+        public void setFailureRatePercent(int failureRatePercent) { this.failureRatePercent = failureRatePercent; }
+
+        public long getOpenMs() { return openMs; }
+        public void setOpenMs(long openMs) { this.openMs = openMs; }
+
+        public int getHalfOpenCalls() { return halfOpenCalls; }
+        public void setHalfOpenCalls(int halfOpenCalls) { this.halfOpenCalls = halfOpenCalls; }
+    }
+}
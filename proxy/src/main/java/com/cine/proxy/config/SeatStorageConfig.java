@@ -0,0 +1,25 @@
+package com.cine.proxy.config;
+
+import com.cine.proxy.repository.BlobSeatRepository;
+import com.cine.proxy.repository.HashSeatRepository;
+import com.cine.proxy.repository.SeatRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class SeatStorageConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatStorageConfig.class);
+
+    @Bean
+    @Primary
+    public SeatRepository seatRepository(SeatStorageProperties properties,
+                                         BlobSeatRepository blobSeatRepository,
+                                         HashSeatRepository hashSeatRepository) {
+        log.info("Almacenamiento de asientos en Redis: modo {}", properties.getMode());
+        return properties.getMode() == SeatStorageProperties.Mode.HASH ? hashSeatRepository : blobSeatRepository;
+    }
+}
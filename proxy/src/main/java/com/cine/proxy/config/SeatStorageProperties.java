@@ -0,0 +1,24 @@
+package com.cine.proxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+
+@Component
+@ConfigurationProperties(prefix = "seats.storage")
+public class SeatStorageProperties {
+
+    public enum Mode {
+        BLOB, // documento JSON completo en eventos:{id} (formato original)
+        HASH  // un hash por evento, un campo por asiento
+    }
+
+    private Mode mode = Mode.BLOB;
+    private boolean migrateOnStartup = false; // copia los blobs existentes al formato hash al arrancar
+
+    public Mode getMode() { return mode; }
+    public void setMode(Mode mode) { this.mode = mode; }
+
+    public boolean isMigrateOnStartup() { return migrateOnStartup; }
+    public void setMigrateOnStartup(boolean migrateOnStartup) { this.migrateOnStartup = migrateOnStartup; }
+}
@@ -0,0 +1,73 @@
+package com.cine.proxy.config;
+
+import com.cine.proxy.service.SessionTokenValidatorService;
+import com.cine.proxy.websocket.SeatMapWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * WebSocket /ws/asientos, solo desde los orígenes de seats.ws.allowed-origins.
+ *
+ * El token nunca va en la URL (queda en logs de accesos y proxies): un cliente que puede mandar
+ * headers usa X-Session-Id y se valida en el handshake; un navegador, que no puede, abre la
+ * conexión sin sesión y manda {"type":"auth","session":"..."} como primer mensaje
+ * (ver SeatMapWebSocketHandler). En ambos casos la sesión queda en los atributos de la conexión.
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final SeatMapWebSocketHandler seatMapHandler;
+    private final SessionTokenValidatorService sessionTokenValidatorService;
+    private final String[] allowedOrigins;
+
+    public WebSocketConfig(SeatMapWebSocketHandler seatMapHandler,
+                           SessionTokenValidatorService sessionTokenValidatorService,
+                           @Value("${seats.ws.allowed-origins:http://localhost:[*],http://127.0.0.1:[*]}") String[] allowedOrigins) {
+        this.seatMapHandler = seatMapHandler;
+        this.sessionTokenValidatorService = sessionTokenValidatorService;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(seatMapHandler, "/ws/asientos")
+                .addInterceptors(new SesionHandshakeInterceptor())
+                .setAllowedOriginPatterns(allowedOrigins);
+    }
+
+    private final class SesionHandshakeInterceptor implements HandshakeInterceptor {
+
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            String sessionId = request.getHeaders().getFirst("X-Session-Id");
+            if (sessionId == null || sessionId.isBlank()) {
+                // Sin header: la sesión llega en el primer mensaje
+                return true;
+            }
+            if (!sessionTokenValidatorService.isSessionTokenValidRemoto(sessionId)) {
+                response.setStatusCode(HttpStatus.UNAUTHORIZED);
+                return false;
+            }
+            attributes.put(SeatMapWebSocketHandler.SESSION_ATTR, sessionId);
+            attributes.put(SeatMapWebSocketHandler.VALIDATED_AT_ATTR, System.currentTimeMillis());
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.cine.proxy.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de un script de varios asientos (bloquear, vender, barrido de vencidos).
+ *
+ * Cuando el script aplica el cambio, la versión del mapa sube en uno por asiento en la misma
+ * ejecución: version es la del último y versionDe(i) la del i-ésimo.
+ */
+public class SeatBatchResult {
+
+    private final Map<String, SeatOperationResult> conflictos;
+    private final long version;
+    private final List<String> asientos;
+    private final List<String> creados;
+
+    public SeatBatchResult(Map<String, SeatOperationResult> conflictos, long version, List<String> asientos) {
+        this(conflictos, version, asientos, List.of());
+    }
+
+    public SeatBatchResult(Map<String, SeatOperationResult> conflictos, long version, List<String> asientos,
+                           List<String> creados) {
+        this.conflictos = conflictos;
+        this.version = version;
+        this.asientos = asientos;
+        this.creados = creados;
+    }
+
+    /** Asientos en conflicto con el motivo; vacío si se aplicó a todos. */
+    public Map<String, SeatOperationResult> getConflictos() { return conflictos; }
+
+    /** Versión del mapa después del último asiento (0 si el script no cambió nada). */
+    public long getVersion() { return version; }
+
+    /** Asientos que cambió el script, en orden (en el barrido: los liberados). */
+    public List<String> getAsientos() { return asientos; }
+
+    /** En un bloqueo: asientos cuya lock creó esta operación (no la renovó). Son los que se deshacen. */
+    public List<String> getCreados() { return creados; }
+
+    public boolean isOk() { return conflictos.isEmpty(); }
+
+    /** Versión del mapa después del i-ésimo asiento de getAsientos(). */
+    public long versionDe(int i) {
+        return version == 0 ? 0 : version - asientos.size() + 1 + i;
+    }
+}
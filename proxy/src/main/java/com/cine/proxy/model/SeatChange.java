@@ -0,0 +1,83 @@
+package com.cine.proxy.model;
+
+/**
+ * Cambio de estado de un asiento que se publica por Redis pub/sub (canal asientos:cambios)
+ * para que todas las instancias del proxy actualicen su grilla en memoria.
+ *
+ * status null indica que hay que descartar la grilla del evento y volver a cargarla.
+ */
+public class SeatChange {
+
+    private String eventoId;
+    private String seatId;
+    private String status;        // LIBRE, BLOQUEADO, VENDIDO o null (invalidar)
+    private String holder;
+    private long expiraEpochMs;   // vencimiento del bloqueo (0 si no aplica)
+    private String persona;
+    private String fechaVenta;
+    private String origen;        // instancia del proxy que lo publicó
+    private long version;         // versión del evento después del cambio (eventos:{id}:version)
+
+    public SeatChange() {}
+
+    public static SeatChange invalidar(String eventoId) {
+        SeatChange change = new SeatChange();
+        change.setEventoId(eventoId);
+        return change;
+    }
+
+    public static SeatChange bloqueado(String eventoId, String seatId, String holder, long expiraEpochMs) {
+        SeatChange change = new SeatChange();
+        change.setEventoId(eventoId);
+        change.setSeatId(seatId);
+        change.setStatus("BLOQUEADO");
+        change.setHolder(holder);
+        change.setExpiraEpochMs(expiraEpochMs);
+        return change;
+    }
+
+    public static SeatChange vendido(String eventoId, String seatId, String persona, String fechaVenta) {
+        SeatChange change = new SeatChange();
+        change.setEventoId(eventoId);
+        change.setSeatId(seatId);
+        change.setStatus("VENDIDO");
+        change.setPersona(persona);
+        change.setFechaVenta(fechaVenta);
+        return change;
+    }
+
+    public static SeatChange libre(String eventoId, String seatId) {
+        SeatChange change = new SeatChange();
+        change.setEventoId(eventoId);
+        change.setSeatId(seatId);
+        change.setStatus("LIBRE");
+        return change;
+    }
+
+    public String getEventoId() { return eventoId; }
+    public void setEventoId(String eventoId) { this.eventoId = eventoId; }
+
+    public String getSeatId() { return seatId; }
+    public void setSeatId(String seatId) { this.seatId = seatId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getHolder() { return holder; }
+    public void setHolder(String holder) { this.holder = holder; }
+
+    public long getExpiraEpochMs() { return expiraEpochMs; }
+    public void setExpiraEpochMs(long expiraEpochMs) { this.expiraEpochMs = expiraEpochMs; }
+
+    public String getPersona() { return persona; }
+    public void setPersona(String persona) { this.persona = persona; }
+
+    public String getFechaVenta() { return fechaVenta; }
+    public void setFechaVenta(String fechaVenta) { this.fechaVenta = fechaVenta; }
+
+    public String getOrigen() { return origen; }
+    public void setOrigen(String origen) { this.origen = origen; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+}
@@ -0,0 +1,222 @@
+package com.cine.proxy.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estado de una sala en arrays planos, un índice por asiento: (fila-1)*columnas+(columna-1).
+ *
+ * Lo usan tanto la lectura del mapa de asientos (merge del documento de la cátedra, bitmap,
+ * grilla en memoria) como la aplicación de cambios. Acceder a un asiento es O(1) y armar
+ * la sala completa es O(filas*columnas).
+ *
+ * No es thread-safe: quien lo comparte entre hilos tiene que sincronizar.
+ */
+public class SeatGrid {
+
+    /** Mismos valores que el bitmap eventos:{id}:estado. */
+    public static final byte LIBRE = 0;
+    public static final byte BLOQUEADO = 1;
+    public static final byte VENDIDO = 2;
+
+    private final int filas;
+    private final int columnas;
+    private final byte[] status;
+    private final String[] holders;
+    private final long[] holdUntil;      // epoch ms, 0 = sin vencimiento conocido
+    private final String[] personas;
+    private final String[] fechasVenta;
+    private final Map<String, String> holdersUnicos = new HashMap<>();
+
+    public SeatGrid(int filas, int columnas) {
+        int n = Math.max(filas, 0) * Math.max(columnas, 0);
+        this.filas = filas;
+        this.columnas = columnas;
+        this.status = new byte[n];
+        this.holders = new String[n];
+        this.holdUntil = new long[n];
+        this.personas = new String[n];
+        this.fechasVenta = new String[n];
+    }
+
+    public int getFilas() { return filas; }
+    public int getColumnas() { return columnas; }
+    public int size() { return status.length; }
+
+    public boolean contains(int fila, int columna) {
+        return fila >= 1 && fila <= filas && columna >= 1 && columna <= columnas;
+    }
+
+    public int index(int fila, int columna) {
+        return (fila - 1) * columnas + (columna - 1);
+    }
+
+    public static String seatId(int fila, int columna) {
+        return "r" + fila + "c" + columna;
+    }
+
+    /**
+     * Índice de un seatId r{fila}c{columna}, o -1 si el formato es inválido o está fuera de la sala.
+     */
+    public int indexOf(String seatId) {
+        if (seatId == null || seatId.length() < 4 || seatId.charAt(0) != 'r') return -1;
+        int c = seatId.indexOf('c', 1);
+        if (c < 2 || c == seatId.length() - 1) return -1;
+        try {
+            int fila = Integer.parseInt(seatId, 1, c, 10);
+            int columna = Integer.parseInt(seatId, c + 1, seatId.length(), 10);
+            return contains(fila, columna) ? index(fila, columna) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public int status(int i) { return status[i]; }
+    public String holder(int i) { return holders[i]; }
+    public long holdUntil(int i) { return holdUntil[i]; }
+    public String persona(int i) { return personas[i]; }
+    public String fechaVenta(int i) { return fechasVenta[i]; }
+
+    public void setLibre(int i) {
+        set(i, LIBRE, null, 0, null, null);
+    }
+
+    /**
+     * Los holders iguales comparten instancia dentro de la grilla (hay pocas sesiones distintas
+     * repetidas en muchos asientos), sin pasar por el pool global de String.intern().
+     */
+    public void setBloqueado(int i, String holder, long holdUntilMs) {
+        set(i, BLOQUEADO, holder, holdUntilMs, null, null);
+    }
+
+    public void setVendido(int i, String persona, String fechaVenta) {
+        set(i, VENDIDO, null, 0, persona, fechaVenta);
+    }
+
+    public void setHoldUntil(int i, long holdUntilMs) {
+        holdUntil[i] = holdUntilMs;
+    }
+
+    private void set(int i, byte st, String holder, long until, String persona, String fechaVenta) {
+        status[i] = st;
+        holders[i] = holder == null ? null : unico(holder);
+        holdUntil[i] = until;
+        personas[i] = persona;
+        fechasVenta[i] = fechaVenta;
+    }
+
+    /** A lo sumo un holder distinto por asiento: si se llena (sesiones que ya no están) se empieza de nuevo. */
+    private String unico(String holder) {
+        String existente = holdersUnicos.get(holder);
+        if (existente != null) return existente;
+        if (holdersUnicos.size() >= Math.max(status.length, 1)) holdersUnicos.clear();
+        holdersUnicos.put(holder, holder);
+        return holder;
+    }
+
+    /**
+     * Cantidad de bloqueos cuyo holdUntil ya pasó: a igual contenido, determina qué asientos
+     * se informan como LIBRE por vencimiento.
+     */
+    public int expiredHolds(long nowMs) {
+        int expirados = 0;
+        for (int i = 0; i < status.length; i++) {
+            if (status[i] == BLOQUEADO && holdUntil[i] != 0 && holdUntil[i] <= nowMs) {
+                expirados++;
+            }
+        }
+        return expirados;
+    }
+
+    /** Mismo estado, holders, vencimientos y compradores que otra grilla. */
+    public boolean sameContent(SeatGrid other) {
+        return other != null && filas == other.filas && columnas == other.columnas
+                && Arrays.equals(status, other.status) && Arrays.equals(holders, other.holders)
+                && Arrays.equals(holdUntil, other.holdUntil) && Arrays.equals(personas, other.personas)
+                && Arrays.equals(fechasVenta, other.fechasVenta);
+    }
+
+    /**
+     * Aplica el array "asientos" del documento de la cátedra (evento_{id}) en una pasada.
+     * Un asiento ya VENDIDO no se pisa; un Bloqueado sin expira o vencido queda LIBRE.
+     */
+    public void mergeCatedra(JsonNode asientos, long nowEpochSecond) {
+        if (asientos == null || !asientos.isArray()) return;
+        for (JsonNode asiento : asientos) {
+            int fila = asiento.path("fila").asInt(-1);
+            int columna = asiento.path("columna").asInt(-1);
+            if (!contains(fila, columna)) continue;
+            int i = index(fila, columna);
+            if (status[i] == VENDIDO) continue;
+
+            String estado = asiento.path("estado").asText("");
+            if ("Vendido".equalsIgnoreCase(estado)) {
+                JsonNode comprador = asiento.path("comprador");
+                if (comprador.isObject()) {
+                    setVendido(i, comprador.path("persona").asText(""), comprador.path("fechaVenta").asText(""));
+                } else {
+                    setVendido(i, null, null);
+                }
+            } else if ("Bloqueado".equalsIgnoreCase(estado) && bloqueoVigente(asiento, nowEpochSecond)) {
+                String holder = asiento.path("holder").asText("");
+                setBloqueado(i, holder.isBlank() ? null : holder, 0);
+            } else {
+                setLibre(i);
+            }
+        }
+    }
+
+    private static boolean bloqueoVigente(JsonNode asiento, long nowEpochSecond) {
+        String expiracion = asiento.path("expira").asText(null);
+        if (expiracion == null) return false;
+        try {
+            return OffsetDateTime.parse(expiracion).toInstant().getEpochSecond() > nowEpochSecond;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Mapa de asientos en el formato que devuelve GET /asientos/{eventoId}
+     * (seatId, fila, columna, status, holder si está bloqueado, comprador si está vendido).
+     * Los bloqueos con holdUntil ya pasado se informan como LIBRE.
+     */
+    public List<Map<String, Object>> toSeatMaps(long nowMs) {
+        List<Map<String, Object>> seats = new ArrayList<>(status.length);
+        int i = 0;
+        for (int fila = 1; fila <= filas; fila++) {
+            for (int columna = 1; columna <= columnas; columna++, i++) {
+                Map<String, Object> seat = new LinkedHashMap<>(8);
+                seat.put("seatId", seatId(fila, columna));
+                seat.put("fila", fila);
+                seat.put("columna", columna);
+                int st = status[i];
+                if (st == BLOQUEADO && (holdUntil[i] == 0 || holdUntil[i] > nowMs)) {
+                    seat.put("status", "BLOQUEADO");
+                    if (holders[i] != null) seat.put("holder", holders[i]);
+                } else if (st == VENDIDO) {
+                    seat.put("status", "VENDIDO");
+                    if (personas[i] != null || fechasVenta[i] != null) {
+                        Map<String, Object> comprador = new HashMap<>(4);
+                        comprador.put("persona", personas[i] == null ? "" : personas[i]);
+                        comprador.put("fechaVenta", fechasVenta[i] == null ? "" : fechasVenta[i]);
+                        seat.put("comprador", comprador);
+                    } else {
+                        seat.put("comprador", "");
+                    }
+                } else {
+                    seat.put("status", "LIBRE");
+                }
+                seats.add(seat);
+            }
+        }
+        return seats;
+    }
+}
@@ -0,0 +1,111 @@
+package com.cine.proxy.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formato binario compacto del mapa de asientos (Accept: application/vnd.cine.seatmap),
+ * pensado para salas grandes en redes móviles. Enteros sin signo en varint (LEB128):
+ *
+ * <pre>
+ * 'S' 'M' 1                                  magic + versión del formato
+ * filas, columnas, version                   version = versión del mapa (0 si no se conoce)
+ * nRuns, { status(byte), largo }*            estados en orden r1c1, r1c2, ... por corridas
+ * nStrings, { largo, utf8 }*                 tabla de strings (holders, personas, fechas)
+ * nEntradas, { salto, datos }*               asientos con holder o comprador; salto = índice - índice anterior - 1
+ *     BLOQUEADO: holder                      índices en la tabla de strings
+ *     VENDIDO:   persona, fechaVenta
+ * </pre>
+ *
+ * Status con los mismos valores que el bitmap (0 LIBRE, 1 BLOQUEADO, 2 VENDIDO). Igual que
+ * toSeatMaps, un bloqueo vencido se informa como LIBRE.
+ */
+public final class SeatMapCodec {
+
+    public static final String MEDIA_TYPE = "application/vnd.cine.seatmap";
+    public static final int FORMATO = 1;
+
+    private SeatMapCodec() {}
+
+    public static byte[] encode(SeatGrid grid, long nowMs, long version) {
+        int n = grid.size();
+        byte[] estados = new byte[n];
+        for (int i = 0; i < n; i++) {
+            int st = grid.status(i);
+            boolean vencido = st == SeatGrid.BLOQUEADO && grid.holdUntil(i) != 0 && grid.holdUntil(i) <= nowMs;
+            estados[i] = vencido ? SeatGrid.LIBRE : (byte) st;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + n / 8);
+        out.write('S');
+        out.write('M');
+        out.write(FORMATO);
+        varint(out, grid.getFilas());
+        varint(out, grid.getColumnas());
+        varint(out, version);
+
+        // Corridas de estados
+        List<int[]> runs = new ArrayList<>();
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j < n && estados[j] == estados[i]) j++;
+            runs.add(new int[]{estados[i], j - i});
+            i = j;
+        }
+        varint(out, runs.size());
+        for (int[] run : runs) {
+            out.write(run[0]);
+            varint(out, run[1]);
+        }
+
+        // Tabla de strings y entradas de holders / compradores
+        Map<String, Integer> indices = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        ByteArrayOutputStream entradas = new ByteArrayOutputStream();
+        int nEntradas = 0;
+        int anterior = -1;
+        for (int i = 0; i < n; i++) {
+            if (estados[i] == SeatGrid.BLOQUEADO && grid.holder(i) != null) {
+                varint(entradas, i - anterior - 1);
+                varint(entradas, indice(grid.holder(i), indices, strings));
+            } else if (estados[i] == SeatGrid.VENDIDO && (grid.persona(i) != null || grid.fechaVenta(i) != null)) {
+                varint(entradas, i - anterior - 1);
+                varint(entradas, indice(grid.persona(i), indices, strings));
+                varint(entradas, indice(grid.fechaVenta(i), indices, strings));
+            } else {
+                continue;
+            }
+            anterior = i;
+            nEntradas++;
+        }
+        varint(out, strings.size());
+        for (String s : strings) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            varint(out, utf8.length);
+            out.writeBytes(utf8);
+        }
+        varint(out, nEntradas);
+        out.writeBytes(entradas.toByteArray());
+        return out.toByteArray();
+    }
+
+    private static int indice(String s, Map<String, Integer> indices, List<String> strings) {
+        String valor = s == null ? "" : s;
+        return indices.computeIfAbsent(valor, v -> {
+            strings.add(v);
+            return strings.size() - 1;
+        });
+    }
+
+    private static void varint(ByteArrayOutputStream out, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            out.write((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        out.write((int) valor);
+    }
+}
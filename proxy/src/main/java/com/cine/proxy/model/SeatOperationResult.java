@@ -0,0 +1,65 @@
+package com.cine.proxy.model;
+
+import java.util.List;
+
+/**
+ * Resultado de una operación sobre un asiento (bloquear, vender, liberar).
+ */
+public class SeatOperationResult {
+
+    public enum Status {
+        OK,        // operación aplicada
+        SOLD,      // el asiento ya está vendido
+        HELD,      // bloqueado por otra sesión (ver owner)
+        EXPIRED,   // el bloqueo de la sesión ya venció
+        NOT_HELD   // nadie tiene bloqueado el asiento
+    }
+
+    private final Status status;
+    private final String owner;
+    private final long version;   // versión del mapa después del cambio (0 si no aplica)
+
+    public SeatOperationResult(Status status, String owner) {
+        this(status, owner, 0);
+    }
+
+    public SeatOperationResult(Status status, String owner, long version) {
+        this.status = status;
+        this.owner = owner;
+        this.version = version;
+    }
+
+    public static SeatOperationResult ok() {
+        return new SeatOperationResult(Status.OK, null);
+    }
+
+    public static SeatOperationResult of(Status status) {
+        return new SeatOperationResult(status, null);
+    }
+
+    /**
+     * Convierte la respuesta de los scripts Lua ({'OK', version}, {'HELD', owner}, ...).
+     */
+    public static SeatOperationResult fromScript(List<?> reply) {
+        if (reply == null || reply.isEmpty()) {
+            throw new IllegalStateException("Respuesta vacía del script de asientos");
+        }
+        Status status = Status.valueOf(String.valueOf(reply.get(0)));
+        if (status == Status.OK) {
+            return new SeatOperationResult(status, null, reply.size() > 1 ? ((Number) reply.get(1)).longValue() : 0);
+        }
+        String owner = reply.size() > 1 ? String.valueOf(reply.get(1)) : null;
+        return new SeatOperationResult(status, owner);
+    }
+
+    public Status getStatus() { return status; }
+    public String getOwner() { return owner; }
+    public long getVersion() { return version; }
+
+    public boolean isOk() { return status == Status.OK; }
+
+    @Override
+    public String toString() {
+        return owner == null ? status.name() : status.name() + "(" + owner + ")";
+    }
+}
@@ -0,0 +1,115 @@
+package com.cine.proxy.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato original: un único documento JSON por evento en eventos:{id}
+ * con todos los asientos dentro del array "asientos".
+ *
+ * Cualquier cambio de un asiento lee, parsea y reescribe el documento completo.
+ */
+@Repository
+public class BlobSeatRepository implements SeatRepository {
+
+    private final StringRedisTemplate redis;
+    private final ObjectMapper mapper;
+
+    public BlobSeatRepository(StringRedisTemplate redis, ObjectMapper mapper) {
+        this.redis = redis;
+        this.mapper = mapper;
+    }
+
+    public static String keyForEvento(String eventoId) {
+        return "eventos:" + eventoId;
+    }
+
+    @Override
+    public ObjectNode findSeat(String eventoId, String seatId) {
+        ArrayNode arr = readAsientos(readRoot(eventoId));
+        for (JsonNode n : arr) {
+            if (seatId.equals(SeatRepository.seatIdOf(n)) && n.isObject()) {
+                return (ObjectNode) n;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<ObjectNode> findAll(String eventoId) {
+        List<ObjectNode> seats = new ArrayList<>();
+        for (JsonNode n : readAsientos(readRoot(eventoId))) {
+            if (n.isObject()) seats.add((ObjectNode) n);
+        }
+        return seats;
+    }
+
+    @Override
+    public void save(String eventoId, ObjectNode seat) {
+        String seatId = SeatRepository.seatIdOf(seat);
+        ObjectNode root = readRoot(eventoId);
+        ArrayNode arr = readAsientos(root);
+
+        boolean replaced = false;
+        for (int i = 0; i < arr.size(); i++) {
+            if (seatId != null && seatId.equals(SeatRepository.seatIdOf(arr.get(i)))) {
+                arr.set(i, seat);
+                replaced = true;
+                break;
+            }
+        }
+        if (!replaced) {
+            arr.add(seat);
+        }
+        root.set("asientos", arr);
+        write(eventoId, root);
+    }
+
+    @Override
+    public void saveAll(String eventoId, List<ObjectNode> seats) {
+        ObjectNode root = readRoot(eventoId);
+        ArrayNode arr = mapper.createArrayNode();
+        seats.forEach(arr::add);
+        root.set("asientos", arr);
+        write(eventoId, root);
+    }
+
+    private ObjectNode readRoot(String eventoId) {
+        String eventJson = redis.opsForValue().get(keyForEvento(eventoId));
+        if (eventJson != null && !eventJson.isBlank()) {
+            try {
+                JsonNode parsed = mapper.readTree(eventJson);
+                if (parsed.isObject()) {
+                    return (ObjectNode) parsed;
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("JSON inválido en " + keyForEvento(eventoId), e);
+            }
+        }
+        ObjectNode root = mapper.createObjectNode();
+        try {
+            root.put("eventoId", Integer.parseInt(eventoId));
+        } catch (NumberFormatException ignore) { /* no-op */ }
+        return root;
+    }
+
+    private ArrayNode readAsientos(ObjectNode root) {
+        JsonNode seatsNode = root.path("asientos");
+        return seatsNode.isArray() ? (ArrayNode) seatsNode : mapper.createArrayNode();
+    }
+
+    private void write(String eventoId, ObjectNode root) {
+        try {
+            redis.opsForValue().set(keyForEvento(eventoId), mapper.writeValueAsString(root));
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo serializar " + keyForEvento(eventoId), e);
+        }
+    }
+}
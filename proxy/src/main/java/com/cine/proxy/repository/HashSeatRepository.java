@@ -0,0 +1,461 @@
+package com.cine.proxy.repository;
+
+import com.cine.proxy.model.SeatBatchResult;
+import com.cine.proxy.model.SeatOperationResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Un hash de Redis por evento (eventos:{id}:asientos) con un campo por seatId.
+ *
+ * Leer o escribir un asiento es un HGET/HSET O(1): no se toca el resto de la sala.
+ *
+ * Bloquear, vender y liberar se resuelven con scripts Lua (resources/scripts):
+ * el chequeo y la escritura ocurren atómicamente en Redis en un solo round trip,
+ * junto con la key de lock, el bitmap de estados y la versión del evento.
+ */
+@Repository
+public class HashSeatRepository implements SeatRepository {
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> BLOCK_SCRIPT = script("scripts/seat-block.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SELL_SCRIPT = script("scripts/seat-sell.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RELEASE_SCRIPT = script("scripts/seat-release.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> BLOCK_MANY_SCRIPT = script("scripts/seat-block-many.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SELL_MANY_SCRIPT = script("scripts/seat-sell-many.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> EXPIRE_SCRIPT = script("scripts/seat-expire.lua", List.class);
+
+    /** Eventos con bloqueos pendientes de vencer (SET de eventoId), lo recorre HoldExpirySweeper. */
+    public static final String EVENTOS_CON_BLOQUEOS_KEY = "eventos:con-bloqueos";
+    /** Stream de ventas para el backend (SaleOutbox): la venta entra en el mismo script que marca los asientos. */
+    public static final String VENTAS_OUTBOX_KEY = "ventas:outbox";
+
+    private final StringRedisTemplate redis;
+    private final ReactiveStringRedisTemplate reactiveRedis;
+    private final ObjectMapper mapper;
+
+    public HashSeatRepository(StringRedisTemplate redis, ReactiveStringRedisTemplate reactiveRedis, ObjectMapper mapper) {
+        this.redis = redis;
+        this.reactiveRedis = reactiveRedis;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Carga un script de resources/scripts con scripts/lib/marcar.lua antepuesto: una sola copia
+     * de la actualización del bitmap y los contadores para todos los scripts de asientos.
+     */
+    public static <T> RedisScript<T> script(String path, Class<T> resultType) {
+        try {
+            String marcar = new ClassPathResource("scripts/lib/marcar.lua").getContentAsString(StandardCharsets.UTF_8);
+            String script = new ClassPathResource(path).getContentAsString(StandardCharsets.UTF_8);
+            return RedisScript.of(marcar + script, resultType);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el script " + path, e);
+        }
+    }
+
+    public static String keyForEvento(String eventoId) {
+        return "eventos:" + eventoId + ":asientos";
+    }
+
+    /** Bitmap de estados: 2 bits por asiento (ver SeatBitmapService). */
+    public static String bitmapKeyForEvento(String eventoId) {
+        return "eventos:" + eventoId + ":estado";
+    }
+
+    /** filas/columnas con que se armó el bitmap; los scripts lo usan para calcular el offset. */
+    public static String dimensionesKeyForEvento(String eventoId) {
+        return "eventos:" + eventoId + ":dimensiones";
+    }
+
+    /** Versión del mapa de asientos: la incrementa el mismo script que hace el cambio, se expone como ETag. */
+    public static String versionKeyForEvento(String eventoId) {
+        return "eventos:" + eventoId + ":version";
+    }
+
+    /** Vencimientos de los bloqueos del evento: ZSET seatId -> vencimiento en epoch ms. */
+    public static String vencimientosKeyForEvento(String eventoId) {
+        return "eventos:" + eventoId + ":vencimientos";
+    }
+
+    /** Contadores libres/bloqueados/vendidos; se arman junto con el bitmap y los scripts los mantienen. */
+    public static String disponibilidadKeyForEvento(String eventoId) {
+        return "eventos:" + eventoId + ":disponibilidad";
+    }
+
+    public boolean exists(String eventoId) {
+        return Boolean.TRUE.equals(redis.hasKey(keyForEvento(eventoId)));
+    }
+
+    @Override
+    public ObjectNode findSeat(String eventoId, String seatId) {
+        Object raw = redis.opsForHash().get(keyForEvento(eventoId), seatId);
+        return raw == null ? null : parse(raw.toString());
+    }
+
+    /**
+     * HMGET de varios asientos; las posiciones sin registro quedan en null.
+     */
+    public List<ObjectNode> findSeats(String eventoId, List<String> seatIds) {
+        List<ObjectNode> seats = new ArrayList<>(seatIds.size());
+        if (seatIds.isEmpty()) {
+            return seats;
+        }
+        List<Object> raws = redis.opsForHash().multiGet(keyForEvento(eventoId), new ArrayList<>(seatIds));
+        for (Object raw : raws) {
+            seats.add(raw == null ? null : parse(raw.toString()));
+        }
+        return seats;
+    }
+
+    @Override
+    public List<ObjectNode> findAll(String eventoId) {
+        List<ObjectNode> seats = new ArrayList<>();
+        for (Object raw : redis.opsForHash().values(keyForEvento(eventoId))) {
+            ObjectNode seat = parse(raw.toString());
+            if (seat != null) seats.add(seat);
+        }
+        return seats;
+    }
+
+    @Override
+    public void save(String eventoId, ObjectNode seat) {
+        String seatId = SeatRepository.seatIdOf(seat);
+        if (seatId == null) {
+            throw new IllegalArgumentException("Asiento sin seatId ni fila/columna: " + seat);
+        }
+        redis.opsForHash().put(keyForEvento(eventoId), seatId, write(seat));
+    }
+
+    @Override
+    public void saveAll(String eventoId, List<ObjectNode> seats) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (ObjectNode seat : seats) {
+            String seatId = SeatRepository.seatIdOf(seat);
+            if (seatId != null) {
+                fields.put(seatId, write(seat));
+            }
+        }
+        if (!fields.isEmpty()) {
+            redis.opsForHash().putAll(keyForEvento(eventoId), fields);
+        }
+    }
+
+    /**
+     * HSETNX de cada asiento: solo agrega los que todavía no tienen registro local.
+     *
+     * @return cantidad de asientos agregados
+     */
+    public int saveAllIfAbsent(String eventoId, List<ObjectNode> seats) {
+        byte[] key = keyForEvento(eventoId).getBytes(StandardCharsets.UTF_8);
+        List<byte[][]> fields = new ArrayList<>();
+        for (ObjectNode seat : seats) {
+            String seatId = SeatRepository.seatIdOf(seat);
+            if (seatId != null) {
+                fields.add(new byte[][]{seatId.getBytes(StandardCharsets.UTF_8), write(seat).getBytes(StandardCharsets.UTF_8)});
+            }
+        }
+        if (fields.isEmpty()) {
+            return 0;
+        }
+        List<Object> agregados = redis.executePipelined((RedisCallback<Object>) c -> {
+            for (byte[][] field : fields) {
+                c.hashCommands().hSetNX(key, field[0], field[1]);
+            }
+            return null;
+        });
+        return (int) agregados.stream().filter(Boolean.TRUE::equals).count();
+    }
+
+    /**
+     * Bloquea el asiento si no está vendido ni bloqueado (vigente) por otra sesión.
+     * Escribe además la key lock:{evento}:{asiento} con TTL = holdTtl.
+     *
+     * @param blocked campos del asiento bloqueado que se mezclan sobre el existente
+     */
+    public SeatOperationResult tryBlock(String eventoId, String seatId, String sessionId, long nowEpoch,
+                                       ObjectNode blocked, Duration holdTtl) {
+        return run(BLOCK_SCRIPT, eventoId, seatId, sessionId, nowEpoch, blocked, String.valueOf(holdTtl.toMillis()));
+    }
+
+    /**
+     * Bloquea varios asientos del evento en una sola operación atómica: todos o ninguno.
+     *
+     * @param blocked campos a mezclar por seatId (en el orden en que se bloquean)
+     * @return asientos en conflicto (SOLD o HELD con owner), o los bloqueados con su versión y
+     *         cuáles no tenían lock (creados)
+     */
+    public SeatBatchResult tryBlockAll(String eventoId, String sessionId, long nowEpoch,
+                                                        Map<String, ObjectNode> blocked, Duration holdTtl) {
+        return runMany(BLOCK_MANY_SCRIPT, eventoId, sessionId, nowEpoch, String.valueOf(holdTtl.toMillis()), blocked,
+                List.of(), List.of());
+    }
+
+    /**
+     * tryBlockAll sin bloquear el hilo: mismo script, por el cliente reactivo.
+     */
+    public Mono<SeatBatchResult> tryBlockAllReactivo(String eventoId, String sessionId, long nowEpoch,
+                                                    Map<String, ObjectNode> blocked, Duration holdTtl) {
+        return runManyReactivo(BLOCK_MANY_SCRIPT, eventoId, sessionId, nowEpoch, String.valueOf(holdTtl.toMillis()), blocked,
+                List.of(), List.of());
+    }
+
+    /**
+     * Verifica en una sola operación que la sesión tenga bloqueados (y vigentes) todos los asientos.
+     * No modifica nada.
+     *
+     * @return asientos que no cumplen (SOLD, HELD, EXPIRED o NOT_HELD); vacío si están todos
+     */
+    public Map<String, SeatOperationResult> verifyHolds(String eventoId, String sessionId, long nowEpoch, List<String> seatIds) {
+        Map<String, ObjectNode> sinCampos = new LinkedHashMap<>();
+        for (String seatId : seatIds) {
+            sinCampos.put(seatId, mapper.createObjectNode());
+        }
+        return runMany(SELL_MANY_SCRIPT, eventoId, sessionId, nowEpoch, "verify", sinCampos,
+                List.of(VENTAS_OUTBOX_KEY), List.of("", "")).getConflictos();
+    }
+
+    /**
+     * Marca vendidos todos los asientos en una sola escritura atómica, una vez confirmada la venta
+     * en la cátedra, y en la misma ejecución agrega la venta a ventas:outbox. Solo falla si alguno
+     * ya está vendido o bloqueado por otra sesión: entonces no marca ninguno ni encola la venta.
+     *
+     * @param idempotencia clave de la venta para el backend
+     * @param ventaJson venta en el formato de realizar-ventas del backend
+     * @return asientos en conflicto, o los vendidos con su versión
+     */
+    public SeatBatchResult trySellAll(String eventoId, String sessionId, long nowEpoch,
+                                                       Map<String, ObjectNode> sold, String idempotencia, String ventaJson) {
+        return runMany(SELL_MANY_SCRIPT, eventoId, sessionId, nowEpoch, "apply", sold,
+                List.of(VENTAS_OUTBOX_KEY), List.of(idempotencia, ventaJson));
+    }
+
+    /**
+     * verifyHolds / trySellAll sin bloquear el hilo: mismo script, por el cliente reactivo.
+     */
+    public Mono<Map<String, SeatOperationResult>> verifyHoldsReactivo(String eventoId, String sessionId, long nowEpoch,
+                                                                    List<String> seatIds) {
+        Map<String, ObjectNode> sinCampos = new LinkedHashMap<>();
+        for (String seatId : seatIds) {
+            sinCampos.put(seatId, mapper.createObjectNode());
+        }
+        return runManyReactivo(SELL_MANY_SCRIPT, eventoId, sessionId, nowEpoch, "verify", sinCampos,
+                List.of(VENTAS_OUTBOX_KEY), List.of("", "")).map(SeatBatchResult::getConflictos);
+    }
+
+    public Mono<SeatBatchResult> trySellAllReactivo(String eventoId, String sessionId, long nowEpoch,
+                                                                   Map<String, ObjectNode> sold, String idempotencia,
+                                                                   String ventaJson) {
+        return runManyReactivo(SELL_MANY_SCRIPT, eventoId, sessionId, nowEpoch, "apply", sold,
+                List.of(VENTAS_OUTBOX_KEY), List.of(idempotencia, ventaJson));
+    }
+
+    /**
+     * Ejecuta un script de varios asientos: KEYS = hash, bitmap, dimensiones, vencimientos, disponibilidad,
+     * eventos con bloqueos, versión, las locks de cada asiento y extraKeys; ARGV = sessionId, ahora, arg
+     * propio del script, eventoId, pares seatId/JSON y extraArgs.
+     */
+    @SuppressWarnings("rawtypes")
+    private SeatBatchResult runMany(RedisScript<List> script, String eventoId, String sessionId,
+                                                     long nowEpoch, String scriptArg, Map<String, ObjectNode> seats,
+                                                     List<String> extraKeys, List<String> extraArgs) {
+        List<String> keys = keysVariosAsientos(eventoId, seats, extraKeys);
+        List<String> args = argsVariosAsientos(eventoId, sessionId, nowEpoch, scriptArg, seats, extraArgs);
+        return resultado(redis.execute(script, keys, args.toArray()), seats);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Mono<SeatBatchResult> runManyReactivo(RedisScript<List> script, String eventoId, String sessionId,
+                                                                  long nowEpoch, String scriptArg, Map<String, ObjectNode> seats,
+                                                                  List<String> extraKeys, List<String> extraArgs) {
+        return reactiveRedis.execute(script, keysVariosAsientos(eventoId, seats, extraKeys),
+                        argsVariosAsientos(eventoId, sessionId, nowEpoch, scriptArg, seats, extraArgs))
+                .next()
+                .map(reply -> resultado(reply, seats));
+    }
+
+    private static List<String> keysVariosAsientos(String eventoId, Map<String, ObjectNode> seats, List<String> extraKeys) {
+        List<String> keys = new ArrayList<>(List.of(keyForEvento(eventoId),
+                bitmapKeyForEvento(eventoId), dimensionesKeyForEvento(eventoId), vencimientosKeyForEvento(eventoId),
+                disponibilidadKeyForEvento(eventoId), EVENTOS_CON_BLOQUEOS_KEY, versionKeyForEvento(eventoId)));
+        for (String seatId : seats.keySet()) {
+            keys.add(SeatRepository.lockKey(eventoId, seatId));
+        }
+        keys.addAll(extraKeys);
+        return keys;
+    }
+
+    private List<String> argsVariosAsientos(String eventoId, String sessionId, long nowEpoch, String scriptArg,
+                                            Map<String, ObjectNode> seats, List<String> extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                sessionId == null ? "" : sessionId, String.valueOf(nowEpoch), scriptArg, eventoId));
+        for (Map.Entry<String, ObjectNode> e : seats.entrySet()) {
+            args.add(e.getKey());
+            args.add(write(e.getValue()));
+        }
+        args.addAll(extraArgs);
+        return args;
+    }
+
+    /**
+     * {'OK'[, version, creados...]} o {'CONFLICT', seatId, motivo, owner, ...}.
+     */
+    private static SeatBatchResult resultado(List<?> reply, Map<String, ObjectNode> seats) {
+        if (reply == null || reply.isEmpty()) {
+            throw new IllegalStateException("Respuesta vacía del script de asientos");
+        }
+        if ("OK".equals(String.valueOf(reply.get(0)))) {
+            long version = reply.size() > 1 ? ((Number) reply.get(1)).longValue() : 0;
+            List<String> creados = new ArrayList<>();
+            for (Object seatId : reply.subList(Math.min(2, reply.size()), reply.size())) {
+                creados.add(String.valueOf(seatId));
+            }
+            return new SeatBatchResult(Map.of(), version, List.copyOf(seats.keySet()), creados);
+        }
+        Map<String, SeatOperationResult> conflicts = new LinkedHashMap<>();
+        for (int i = 1; i + 2 < reply.size(); i += 3) {
+            String owner = String.valueOf(reply.get(i + 2));
+            conflicts.put(String.valueOf(reply.get(i)), new SeatOperationResult(
+                    SeatOperationResult.Status.valueOf(String.valueOf(reply.get(i + 1))), owner.isEmpty() ? null : owner));
+        }
+        return new SeatBatchResult(conflicts, 0, List.of());
+    }
+
+    /**
+     * Marca como vendido un asiento bloqueado (y no vencido) por la sesión.
+     */
+    public SeatOperationResult trySell(String eventoId, String seatId, String sessionId, long nowEpoch, ObjectNode sold) {
+        return run(SELL_SCRIPT, eventoId, seatId, sessionId, nowEpoch, sold);
+    }
+
+    /**
+     * Libera el bloqueo del asiento. Con sessionId vacío se libera sin importar el dueño.
+     */
+    public SeatOperationResult release(String eventoId, String seatId, String sessionId, long nowEpoch, ObjectNode free) {
+        return run(RELEASE_SCRIPT, eventoId, seatId, sessionId, nowEpoch, free);
+    }
+
+    /**
+     * release sin bloquear el hilo: mismo script, por el cliente reactivo.
+     */
+    public Mono<SeatOperationResult> releaseReactivo(String eventoId, String seatId, String sessionId, long nowEpoch,
+                                                     ObjectNode free) {
+        return runReactivo(RELEASE_SCRIPT, eventoId, seatId, sessionId, nowEpoch, free);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private SeatOperationResult run(RedisScript<List> script, String eventoId, String seatId,
+                                    String sessionId, long nowEpoch, ObjectNode fields, String... extraArgs) {
+        List reply = redis.execute(script, keysUnAsiento(eventoId, seatId),
+                argsUnAsiento(eventoId, seatId, sessionId, nowEpoch, fields, extraArgs).toArray());
+        return SeatOperationResult.fromScript(reply);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Mono<SeatOperationResult> runReactivo(RedisScript<List> script, String eventoId, String seatId,
+                                                  String sessionId, long nowEpoch, ObjectNode fields, String... extraArgs) {
+        return reactiveRedis.execute(script, keysUnAsiento(eventoId, seatId),
+                        argsUnAsiento(eventoId, seatId, sessionId, nowEpoch, fields, extraArgs))
+                .next()
+                .map(SeatOperationResult::fromScript);
+    }
+
+    /**
+     * KEYS de los scripts de un asiento: hash, lock, bitmap, dimensiones, vencimientos,
+     * disponibilidad, eventos con bloqueos y versión.
+     */
+    private static List<String> keysUnAsiento(String eventoId, String seatId) {
+        return List.of(keyForEvento(eventoId), SeatRepository.lockKey(eventoId, seatId),
+                bitmapKeyForEvento(eventoId), dimensionesKeyForEvento(eventoId),
+                vencimientosKeyForEvento(eventoId), disponibilidadKeyForEvento(eventoId), EVENTOS_CON_BLOQUEOS_KEY,
+                versionKeyForEvento(eventoId));
+    }
+
+    private List<String> argsUnAsiento(String eventoId, String seatId, String sessionId, long nowEpoch,
+                                       ObjectNode fields, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                seatId, sessionId == null ? "" : sessionId, String.valueOf(nowEpoch), write(fields), eventoId));
+        args.addAll(List.of(extraArgs));
+        return args;
+    }
+
+    /**
+     * Eventos que tienen (o tuvieron hasta el último barrido) bloqueos pendientes de vencer.
+     */
+    public Set<String> eventosConBloqueos() {
+        Set<String> eventos = redis.opsForSet().members(EVENTOS_CON_BLOQUEOS_KEY);
+        return eventos == null ? Set.of() : eventos;
+    }
+
+    /**
+     * Libera hasta {@code limite} bloqueos vencidos del evento en una sola operación atómica:
+     * registro sin holder ni expira, bitmap y contadores en LIBRE. Un asiento cuya key de lock
+     * sigue viva (se renovó) solo se reprograma con el TTL que le queda.
+     *
+     * @param free campos del asiento libre que se mezclan sobre el existente
+     * @return seatIds liberados y la versión del mapa después del último
+     */
+    @SuppressWarnings("rawtypes")
+    public SeatBatchResult releaseExpired(String eventoId, long nowMs, int limite, ObjectNode free) {
+        Set<String> vencidos = redis.opsForZSet().rangeByScore(vencimientosKeyForEvento(eventoId), 0, nowMs, 0, limite);
+        List<String> keys = new ArrayList<>(List.of(keyForEvento(eventoId),
+                bitmapKeyForEvento(eventoId), dimensionesKeyForEvento(eventoId), vencimientosKeyForEvento(eventoId),
+                disponibilidadKeyForEvento(eventoId), EVENTOS_CON_BLOQUEOS_KEY, versionKeyForEvento(eventoId)));
+        List<String> args = new ArrayList<>(List.of(eventoId, String.valueOf(nowMs), write(free)));
+        if (vencidos != null) {
+            for (String seatId : vencidos) {
+                keys.add(SeatRepository.lockKey(eventoId, seatId));
+                args.add(seatId);
+            }
+        }
+        List reply = redis.execute(EXPIRE_SCRIPT, keys, args.toArray());
+        if (reply == null || reply.isEmpty()) {
+            throw new IllegalStateException("Respuesta vacía del script de vencidos");
+        }
+        List<String> liberados = new ArrayList<>();
+        for (Object seatId : reply.subList(1, reply.size())) {
+            liberados.add(String.valueOf(seatId));
+        }
+        return new SeatBatchResult(Map.of(), ((Number) reply.get(0)).longValue(), liberados);
+    }
+
+    private ObjectNode parse(String json) {
+        try {
+            JsonNode node = mapper.readTree(json);
+            return node.isObject() ? (ObjectNode) node : null;
+        } catch (Exception e) {
+            throw new IllegalStateException("JSON de asiento inválido: " + json, e);
+        }
+    }
+
+    private String write(ObjectNode seat) {
+        try {
+            return mapper.writeValueAsString(seat);
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo serializar el asiento " + seat, e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.cine.proxy.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+
+/**
+ * Almacenamiento local (Redis del proxy) del estado de los asientos de cada evento.
+ *
+ * Cada asiento es un ObjectNode con el mismo formato que siempre usamos
+ * (seatId, fila, columna, status, estado, holder, expira, comprador, ...).
+ * La forma en que se guardan en Redis depende de la implementación.
+ */
+public interface SeatRepository {
+
+    ObjectNode findSeat(String eventoId, String seatId);
+
+    List<ObjectNode> findAll(String eventoId);
+
+    void save(String eventoId, ObjectNode seat);
+
+    void saveAll(String eventoId, List<ObjectNode> seats);
+
+    /**
+     * Key con TTL que representa el bloqueo vigente de un asiento (valor = sessionId del dueño).
+     */
+    static String lockKey(String eventoId, String seatId) {
+        return "lock:" + eventoId + ":" + seatId;
+    }
+
+    /**
+     * Devuelve el seatId de un nodo de asiento, reconstruyéndolo desde fila/columna si hace falta.
+     */
+    static String seatIdOf(JsonNode seat) {
+        JsonNode sid = seat.path("seatId");
+        if (sid.isTextual() && !sid.asText().isBlank()) {
+            return sid.asText();
+        }
+        JsonNode fNode = seat.path("fila");
+        JsonNode cNode = seat.path("columna");
+        if (fNode.isInt() && cNode.isInt()) {
+            return "r" + fNode.asInt() + "c" + cNode.asInt();
+        }
+        return null;
+    }
+}
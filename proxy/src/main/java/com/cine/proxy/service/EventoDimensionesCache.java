@@ -0,0 +1,105 @@
+package com.cine.proxy.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache en memoria de las dimensiones (filas/columnas) de cada evento.
+ *
+ * Se completa desde el documento evento_{id} que guarda ProxyEventoInitializationService
+ * (si no existe, se inicializa desde la cátedra). Solo como último recurso se consulta
+ * la lista de eventos del backend. Los mensajes de eventos-actualizacion la invalidan.
+ */
+@Service
+public class EventoDimensionesCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EventoDimensionesCache.class);
+
+    private final StringRedisTemplate redis;
+    private final ObjectMapper mapper;
+    private final ProxyEventoInitializationService eventoInitializationService;
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final String backendBaseUrl;
+
+    private final Map<String, int[]> dimensiones = new ConcurrentHashMap<>();
+
+    public EventoDimensionesCache(StringRedisTemplate redis,
+                                  ObjectMapper mapper,
+                                  ProxyEventoInitializationService eventoInitializationService,
+                                  @Value("${backend.base-url:http://localhost:8080}") String backendBaseUrl) {
+        this.redis = redis;
+        this.mapper = mapper;
+        this.eventoInitializationService = eventoInitializationService;
+        this.backendBaseUrl = backendBaseUrl.endsWith("/") ? backendBaseUrl.substring(0, backendBaseUrl.length() - 1) : backendBaseUrl;
+    }
+
+    /**
+     * @return {filas, columnas}; {0, 0} si no se pudieron obtener (no se cachea)
+     */
+    public int[] obtener(String eventoId) {
+        int[] cached = dimensiones.get(eventoId);
+        if (cached != null) {
+            return cached;
+        }
+        int[] dims = desdeRedis(eventoId);
+        if (dims == null && eventoInitializationService.ensureEventoInitialized(eventoId)) {
+            dims = desdeRedis(eventoId);
+        }
+        if (dims == null) {
+            dims = desdeBackend(eventoId);
+        }
+        if (dims[0] > 0 && dims[1] > 0) {
+            dimensiones.put(eventoId, dims);
+        }
+        return dims;
+    }
+
+    public void invalidar(String eventoId) {
+        dimensiones.remove(eventoId);
+    }
+
+    public void invalidarTodo() {
+        dimensiones.clear();
+    }
+
+    private int[] desdeRedis(String eventoId) {
+        try {
+            String json = redis.opsForValue().get(SeatBitmapService.catedraKeyForEvento(eventoId));
+            if (json == null || json.isBlank()) {
+                return null;
+            }
+            JsonNode root = mapper.readTree(json);
+            int filas = root.path("filas").asInt(0);
+            int columnas = root.path("columnas").asInt(0);
+            return filas > 0 && columnas > 0 ? new int[]{filas, columnas} : null;
+        } catch (Exception e) {
+            log.warn("No se pudieron leer las dimensiones de evento_{} desde Redis: {}", eventoId, e.getMessage());
+            return null;
+        }
+    }
+
+    private int[] desdeBackend(String eventoId) {
+        try {
+            String eventosJson = restTemplate.getForObject(backendBaseUrl + "/api/endpoints/v1/eventos", String.class);
+            if (eventosJson != null && !eventosJson.isBlank()) {
+                for (JsonNode evento : mapper.readTree(eventosJson)) {
+                    if (evento.path("id").asText().equals(eventoId)) {
+                        return new int[]{evento.path("filas").asInt(0), evento.path("columnas").asInt(0)};
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo obtener la lista de eventos del backend: {}", e.getMessage());
+        }
+        return new int[]{0, 0};
+    }
+}
@@ -1,4 +1,4 @@
-package com.example.proxy.service;
+package com.cine.proxy.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -15,16 +15,28 @@ public class EventosKafkaListener {
     private static final Logger log = LoggerFactory.getLogger(EventosKafkaListener.class);
 
     private final WebClient backendRestClient;
+    private final EventoDimensionesCache dimensionesCache;
+    private final ObjectMapper mapper;
 
-    public EventosKafkaListener(WebClient.Builder webClientBuilder) {
+    public EventosKafkaListener(WebClient.Builder webClientBuilder, EventoDimensionesCache dimensionesCache, ObjectMapper mapper) {
         this.backendRestClient = webClientBuilder.baseUrl("http://localhost:8080").build(); // URL de tu backend
+        this.dimensionesCache = dimensionesCache;
+        this.mapper = mapper;
     }
 
     @KafkaListener(
-        topics = "${kafka.topic.eventos:eventos-actualizacion}",
+        topics = "${kafka.topic.eventos-actualizacion:eventos-actualizacion}",
         groupId = "${spring.kafka.consumer.group-id:proxy-group}"
     )
     public void onEventoChange(String raw) {
+        // Cambió la metadata de un evento: las dimensiones cacheadas pueden quedar viejas
+        Optional<String> eventoId = eventoIdDe(raw);
+        if (eventoId.isPresent()) {
+            dimensionesCache.invalidar(eventoId.get());
+        } else {
+            dimensionesCache.invalidarTodo();
+        }
+
         try {
             backendRestClient.post()
                 .uri("/api/eventos/sync/all")
@@ -35,4 +47,14 @@ public class EventosKafkaListener {
             log.error("Error notificando al backend para sync all eventos", e);
         }
     }
-}
\ No newline at end of file
+
+    private Optional<String> eventoIdDe(String raw) {
+        try {
+            JsonNode node = mapper.readTree(raw);
+            JsonNode id = node.has("eventoId") ? node.get("eventoId") : node.get("id");
+            return id != null && id.isValueNode() && !id.asText().isBlank() ? Optional.of(id.asText()) : Optional.empty();
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+}
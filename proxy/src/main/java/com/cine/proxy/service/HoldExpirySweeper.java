@@ -0,0 +1,78 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.repository.HashSeatRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Barrido periódico de bloqueos vencidos.
+ *
+ * La key de lock expira sola, pero el registro del asiento, el bitmap y los contadores de
+ * disponibilidad quedaban en BLOQUEADO hasta que alguien lo tocara (cada lector lo resolvía
+ * mirando las locks). Los scripts de bloqueo anotan el vencimiento en eventos:{id}:vencimientos
+ * y este barrido libera lo vencido en tandas: deja el estado limpio para los lectores y avisa
+ * el cambio por pub/sub como cualquier otra liberación.
+ *
+ * Con varias instancias cada una barre, pero el script vuelve a chequear cada asiento: un
+ * bloqueo se libera (y se publica) una sola vez.
+ */
+@Service
+public class HoldExpirySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(HoldExpirySweeper.class);
+
+    private final HashSeatRepository hashSeatRepository;
+    private final RedisSeatService redisSeatService;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Counter liberados;
+
+    public HoldExpirySweeper(HashSeatRepository hashSeatRepository,
+                             RedisSeatService redisSeatService,
+                             MeterRegistry meterRegistry,
+                             @Value("${seats.sweeper.batch-size:200}") int batchSize,
+                             @Value("${seats.sweeper.max-batches:10}") int maxBatches) {
+        this.hashSeatRepository = hashSeatRepository;
+        this.redisSeatService = redisSeatService;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.liberados = Counter.builder("asientos.bloqueos.vencidos")
+                .description("Bloqueos vencidos liberados por el barrido")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${seats.sweeper.interval-ms:1000}")
+    public void barrer() {
+        try {
+            for (String eventoId : hashSeatRepository.eventosConBloqueos()) {
+                barrerEvento(eventoId);
+            }
+        } catch (Exception e) {
+            log.warn("Error en el barrido de bloqueos vencidos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Tandas de hasta batchSize asientos; como mucho maxBatches por pasada para no acaparar
+     * Redis con un evento grande (lo que quede sale en la próxima pasada).
+     */
+    private void barrerEvento(String eventoId) {
+        int total = 0;
+        for (int tanda = 0; tanda < maxBatches; tanda++) {
+            int n = redisSeatService.liberarBloqueosVencidos(eventoId, batchSize);
+            total += n;
+            if (n < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            liberados.increment(total);
+            log.info("Barrido: {} bloqueos vencidos liberados en evento {}", total, eventoId);
+        }
+    }
+}
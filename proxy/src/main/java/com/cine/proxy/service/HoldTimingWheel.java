@@ -0,0 +1,233 @@
+package com.cine.proxy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Rueda de tiempo (hashed timing wheel) para los vencimientos de bloqueos en memoria.
+ *
+ * - ruedaSize casillas de tickMs cada una; un bloqueo cae en la casilla de su vencimiento y
+ *   lleva cuántas vueltas completas le faltan. Programar y cancelar son O(1).
+ * - Un solo hilo avanza la rueda: por tick recorre una casilla, no todos los bloqueos.
+ * - Hay a lo sumo un vencimiento por clave (evento + asiento): programar de nuevo reemplaza al anterior.
+ * - Las altas y bajas se encolan y las aplica el hilo de la rueda, así las listas de cada
+ *   casilla no necesitan locks.
+ *
+ * La resolución es de un tick: un bloqueo vence entre 0 y tickMs después de su hora.
+ */
+public class HoldTimingWheel {
+
+    private static final Logger log = LoggerFactory.getLogger(HoldTimingWheel.class);
+
+    private final long tickMs;
+    private final Casilla[] rueda;
+    private final int mascara;
+    private final Consumer<Vencimiento> alVencer;
+
+    private final Map<String, Vencimiento> activos = new ConcurrentHashMap<>();
+    private final Queue<Vencimiento> altas = new ConcurrentLinkedQueue<>();
+    private final Queue<Vencimiento> bajas = new ConcurrentLinkedQueue<>();
+
+    private final Thread hilo;
+    private volatile boolean corriendo;
+    private long inicio;
+    private long tick;
+
+    /**
+     * @param ruedaSize cantidad de casillas, se redondea a potencia de 2
+     * @param alVencer se llama en el hilo de la rueda: no debe bloquear
+     */
+    public HoldTimingWheel(String nombre, long tickMs, int ruedaSize, Consumer<Vencimiento> alVencer) {
+        this.tickMs = tickMs;
+        int size = Integer.highestOneBit(Math.max(ruedaSize, 2) - 1) << 1;
+        this.rueda = new Casilla[size];
+        for (int i = 0; i < size; i++) {
+            rueda[i] = new Casilla();
+        }
+        this.mascara = size - 1;
+        this.alVencer = alVencer;
+        this.hilo = new Thread(this::correr, nombre);
+        this.hilo.setDaemon(true);
+    }
+
+    public void iniciar() {
+        inicio = System.nanoTime();
+        corriendo = true;
+        hilo.start();
+    }
+
+    public void detener() {
+        corriendo = false;
+        hilo.interrupt();
+    }
+
+    /**
+     * Programa (o reprograma) el vencimiento de un bloqueo. Si ya estaba programado a la misma
+     * hora no hace nada.
+     */
+    public void programar(String eventoId, String seatId, long venceEpochMs) {
+        String clave = clave(eventoId, seatId);
+        Vencimiento nuevo = new Vencimiento(eventoId, seatId, venceEpochMs);
+        Vencimiento anterior = activos.get(clave);
+        if (anterior != null && anterior.venceEpochMs == venceEpochMs) {
+            return;
+        }
+        anterior = activos.put(clave, nuevo);
+        if (anterior != null) {
+            bajas.add(anterior);
+        }
+        altas.add(nuevo);
+    }
+
+    /**
+     * Cancela el vencimiento del asiento (se vendió, se liberó o cambió de dueño sin vencimiento).
+     */
+    public void cancelar(String eventoId, String seatId) {
+        Vencimiento anterior = activos.remove(clave(eventoId, seatId));
+        if (anterior != null) {
+            bajas.add(anterior);
+        }
+    }
+
+    public int activos() {
+        return activos.size();
+    }
+
+    private void correr() {
+        while (corriendo) {
+            long proximo = inicio + TimeUnit.MILLISECONDS.toNanos((tick + 1) * tickMs);
+            long espera = proximo - System.nanoTime();
+            if (espera > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(espera);
+                } catch (InterruptedException e) {
+                    if (!corriendo) return;
+                    continue;
+                }
+            }
+            try {
+                aplicarBajas();
+                aplicarAltas();
+                vencer(rueda[(int) (tick & mascara)]);
+            } catch (Exception e) {
+                log.warn("Error en la rueda de vencimientos: {}", e.getMessage());
+            }
+            tick++;
+        }
+    }
+
+    private void aplicarBajas() {
+        Vencimiento v;
+        while ((v = bajas.poll()) != null) {
+            if (v.casilla != null) {
+                v.casilla.quitar(v);
+            } else {
+                v.cancelado = true;   // todavía en la cola de altas
+            }
+        }
+    }
+
+    private void aplicarAltas() {
+        // Si el hilo viene atrasado, los ticks siguientes se procesan seguidos hasta alcanzar la
+        // hora: se cuentan desde la hora que le corresponde a este tick, no desde ahora, para no
+        // vencer antes de tiempo.
+        // El atraso se redondea para arriba: truncarlo a ms adelantaba el aviso hasta 1 ms.
+        long atrasoNs = Math.max(0, System.nanoTime() - inicio - TimeUnit.MILLISECONDS.toNanos((tick + 1) * tickMs));
+        long atrasoMs = (atrasoNs + 999_999) / 1_000_000;
+        long ahoraMs = System.currentTimeMillis();
+        Vencimiento v;
+        while ((v = altas.poll()) != null) {
+            if (v.cancelado) continue;
+            // Ticks que faltan desde el tick actual (uno ya vencido sale en este mismo tick)
+            long ticks = Math.max(0, (v.venceEpochMs - ahoraMs + atrasoMs + tickMs - 1) / tickMs);
+            v.vueltas = ticks / rueda.length;
+            rueda[(int) ((tick + ticks) & mascara)].agregar(v);
+        }
+    }
+
+    private void vencer(Casilla casilla) {
+        Vencimiento v = casilla.primero;
+        while (v != null) {
+            Vencimiento siguiente = v.siguiente;
+            if (v.vueltas > 0) {
+                v.vueltas--;
+            } else {
+                casilla.quitar(v);
+                if (activos.remove(clave(v.eventoId, v.seatId), v)) {
+                    try {
+                        alVencer.accept(v);
+                    } catch (Exception e) {
+                        log.warn("Error avisando vencimiento de {}:{}: {}", v.eventoId, v.seatId, e.getMessage());
+                    }
+                }
+            }
+            v = siguiente;
+        }
+    }
+
+    private static String clave(String eventoId, String seatId) {
+        return eventoId + ":" + seatId;
+    }
+
+    /**
+     * Un bloqueo programado: nodo de la lista doblemente enlazada de su casilla.
+     */
+    public static final class Vencimiento {
+        private final String eventoId;
+        private final String seatId;
+        private final long venceEpochMs;
+
+        private long vueltas;
+        private boolean cancelado;
+        private Casilla casilla;
+        private Vencimiento anterior;
+        private Vencimiento siguiente;
+
+        Vencimiento(String eventoId, String seatId, long venceEpochMs) {
+            this.eventoId = eventoId;
+            this.seatId = seatId;
+            this.venceEpochMs = venceEpochMs;
+        }
+
+        public String getEventoId() { return eventoId; }
+        public String getSeatId() { return seatId; }
+        public long getVenceEpochMs() { return venceEpochMs; }
+    }
+
+    /**
+     * Lista de los vencimientos de una casilla; solo la toca el hilo de la rueda.
+     */
+    private static final class Casilla {
+        private Vencimiento primero;
+
+        void agregar(Vencimiento v) {
+            v.casilla = this;
+            v.siguiente = primero;
+            if (primero != null) {
+                primero.anterior = v;
+            }
+            primero = v;
+        }
+
+        void quitar(Vencimiento v) {
+            if (v.anterior != null) {
+                v.anterior.siguiente = v.siguiente;
+            } else {
+                primero = v.siguiente;
+            }
+            if (v.siguiente != null) {
+                v.siguiente.anterior = v.anterior;
+            }
+            v.anterior = null;
+            v.siguiente = null;
+            v.casilla = null;
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package com.cine.proxy.service;
 
+import com.cine.proxy.client.CatedraClient;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -29,17 +28,15 @@ public class ProxyEventoInitializationService {
     private static final Logger log = LoggerFactory.getLogger(ProxyEventoInitializationService.class);
 
     private final StringRedisTemplate redis;
-    private final RestTemplate restTemplate;
+    private final CatedraClient catedraClient;
     private final ObjectMapper mapper;
-    private final String catedraBase;
 
     public ProxyEventoInitializationService(StringRedisTemplate redis, 
                                           ObjectMapper mapper,
-                                          @Value("${catedra.base-url:http://192.168.194.250:8080}") String catedraBase) {
+                                          CatedraClient catedraClient) {
         this.redis = redis;
-        this.restTemplate = new RestTemplate();
+        this.catedraClient = catedraClient;
         this.mapper = mapper;
-        this.catedraBase = catedraBase;
     }
 
     /**
@@ -68,10 +65,9 @@ public class ProxyEventoInitializationService {
             }
             
             // 3. Consultar datos del evento desde Cátedra
-            String catedraUrl = catedraBase + "/eventos/" + eventoId;
-            log.info("Consultando evento desde Cátedra: {}", catedraUrl);
+            log.info("Consultando evento {} desde Cátedra", eventoId);
             
-            Map<String, Object> eventoData = restTemplate.getForObject(catedraUrl, Map.class);
+            Map<String, Object> eventoData = catedraClient.get(CatedraClient.Endpoint.EVENTOS, "/eventos/" + eventoId, Map.class).getBody();
             if (eventoData == null) {
                 log.error("No se pudo obtener datos del evento {} desde Cátedra", eventoId);
                 return false;
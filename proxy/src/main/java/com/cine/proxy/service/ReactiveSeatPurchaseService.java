@@ -0,0 +1,259 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.client.CatedraClient;
+import com.cine.proxy.client.CatedraException;
+import com.cine.proxy.model.SeatOperationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bloqueo y venta de un asiento (bloquear-asiento / realizar-venta) sin bloquear hilos.
+ *
+ * Cada paso es no bloqueante: validación del token (cache o WebClient), lock y script Lua por el
+ * cliente reactivo de Redis, POST a la cátedra por CatedraClient.postReactivo y la venta al
+ * outbox del backend (SaleOutbox). El controller devuelve el Mono y Spring MVC lo atiende en modo async: el hilo de
+ * Tomcat se libera mientras la compra espera a la cátedra, así miles de compras en curso no
+ * ocupan miles de hilos.
+ *
+ * Las respuestas son las mismas que las del flujo bloqueante original.
+ */
+@Service
+public class ReactiveSeatPurchaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveSeatPurchaseService.class);
+
+    private final SessionTokenValidatorService sessionTokenValidatorService;
+    private final RedisSeatService seatService;
+    private final CatedraClient catedraClient;
+    private final SaleOutbox saleOutbox;
+
+    public ReactiveSeatPurchaseService(SessionTokenValidatorService sessionTokenValidatorService,
+                                       RedisSeatService seatService,
+                                       CatedraClient catedraClient,
+                                       SaleOutbox saleOutbox) {
+        this.sessionTokenValidatorService = sessionTokenValidatorService;
+        this.seatService = seatService;
+        this.catedraClient = catedraClient;
+        this.saleOutbox = saleOutbox;
+    }
+
+    /**
+     * Body: { "eventoId": 1, "seatId": "r1c1" }
+     */
+    public Mono<ResponseEntity<?>> bloquear(Map<String, Object> request, String sessionId) {
+        return sessionTokenValidatorService.validarReactivo(sessionId)
+                .flatMap(valida -> valida ? bloquearValidado(request, sessionId) : Mono.just(noAutorizado()))
+                .onErrorResume(CatedraException.class, e -> Mono.just(CatedraClient.noDisponible(e)))
+                .onErrorResume(e -> {
+                    log.error("Error blockSeatForPurchase: {}", e.getMessage(), e);
+                    return Mono.just(interno());
+                });
+    }
+
+    /**
+     * Body: { "eventoId": 1, "seatId": "r1c1", "persona": "...", "precioVenta": 1000 }
+     */
+    public Mono<ResponseEntity<?>> vender(Map<String, Object> request, String sessionId) {
+        return sessionTokenValidatorService.validarReactivo(sessionId)
+                .flatMap(valida -> valida ? venderValidado(request, sessionId) : Mono.just(noAutorizado()))
+                .onErrorResume(CatedraException.class, e -> Mono.just(CatedraClient.noDisponible(e)))
+                .onErrorResume(e -> {
+                    log.error("Error purchaseSeat: {}", e.getMessage(), e);
+                    return Mono.just(interno());
+                });
+    }
+
+    private Mono<ResponseEntity<?>> bloquearValidado(Map<String, Object> request, String sessionId) {
+        Integer eventoId = SeatCommandService.parseEventoId(request.get("eventoId"));
+        if (eventoId == null) {
+            return Mono.just(eventoIdInvalido());
+        }
+        String seatId = request.get("seatId") instanceof String s ? s : null;
+        Map<String, Object> filaColumna = SeatCommandService.parseSeatId(seatId);
+        if (filaColumna == null) {
+            return Mono.just(seatIdInvalido());
+        }
+        String evento = String.valueOf(eventoId);
+
+        // Mismo orden que SeatCommandService.bloquearAsientos: primero el Redis local (si otra sesión
+        // lo tiene no se va a la cátedra), después la cátedra; si no confirma se deshace solo la lock
+        // que creó este pedido.
+        return seatService.bloquearAsientosReactivo(evento, List.of(seatId), sessionId).flatMap(bloqueo -> {
+            if (!bloqueo.isOk()) {
+                return Mono.just(respuestaBloqueo(bloqueo.getConflictos().get(seatId), Map.of()));
+            }
+            Map<String, Object> catedraBody = Map.of(
+                "eventoId", eventoId,
+                "asientos", List.of(filaColumna)
+            );
+            return catedraClient.postReactivo(CatedraClient.Endpoint.BLOQUEOS, "/api/endpoints/v1/bloquear-asientos", catedraBody)
+                    .defaultIfEmpty(Map.of())
+                    .onErrorResume(e -> seatService.deshacerBloqueosReactivo(evento, bloqueo.getCreados(), sessionId)
+                            .then(Mono.error(e)))
+                    .flatMap(catedraResult -> {
+                        if (!Boolean.TRUE.equals(catedraResult.get("resultado"))) {
+                            return seatService.deshacerBloqueosReactivo(evento, bloqueo.getCreados(), sessionId)
+                                    .then(Mono.just(ResponseEntity.status(HttpStatus.CONFLICT)
+                                        .body(Map.of("error", "No se pudo bloquear en cátedra", "detalle_catedra", catedraResult))));
+                        }
+                        return Mono.just(respuestaBloqueo(SeatOperationResult.ok(), catedraResult));
+                    });
+        });
+    }
+
+    private ResponseEntity<?> respuestaBloqueo(SeatOperationResult bloqueo, Map<?, ?> catedraResult) {
+        if (bloqueo.isOk()) {
+            Map<String, Object> ok = new HashMap<>();
+            ok.put("message", "Asiento bloqueado. Tiene 5 minutos para comprar.");
+            ok.put("respuesta_catedra", catedraResult);
+            return ResponseEntity.ok(ok);
+        }
+        if (bloqueo.getStatus() == SeatOperationResult.Status.HELD) {
+            return bloqueadoPorOtro(bloqueo.getOwner());
+        }
+        Map<String, Object> unavailable = new HashMap<>();
+        unavailable.put("error", "SEAT_NOT_AVAILABLE");
+        unavailable.put("message", "Asiento no disponible para bloqueo local (posiblemente vendido)");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(unavailable);
+    }
+
+    /**
+     * Mismo orden que SeatCommandService.venderAsientos: se verifica el bloqueo (sin modificar nada),
+     * se vende en la cátedra y recién con la venta confirmada se marca vendido en Redis. Si la
+     * cátedra rechaza, el asiento sigue bloqueado por la sesión.
+     */
+    private Mono<ResponseEntity<?>> venderValidado(Map<String, Object> request, String sessionId) {
+        Integer eventoId = SeatCommandService.parseEventoId(request.get("eventoId"));
+        if (eventoId == null) {
+            return Mono.just(eventoIdInvalido());
+        }
+        String seatId = request.get("seatId") instanceof String s ? s : null;
+        Map<String, Object> filaColumna = SeatCommandService.parseSeatId(seatId);
+        if (filaColumna == null) {
+            return Mono.just(seatIdInvalido());
+        }
+        String persona = request.get("persona") != null ? String.valueOf(request.get("persona")) : "Sin nombre";
+        Double precioVenta;
+        try {
+            precioVenta = request.get("precioVenta") != null ? Double.valueOf(request.get("precioVenta").toString()) : 1000.0;
+        } catch (NumberFormatException e) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "precioVenta debe ser un número")));
+        }
+        String evento = String.valueOf(eventoId);
+
+        return seatService.verificarBloqueosReactivo(evento, List.of(seatId), sessionId).flatMap(sinBloqueo -> {
+            if (!sinBloqueo.isEmpty()) {
+                return Mono.just(respuestaVentaRechazada(sinBloqueo.get(seatId)));
+            }
+            Map<String, Object> asiento = new HashMap<>(filaColumna);
+            asiento.put("persona", persona);
+            Map<String, Object> catedraBody = Map.of(
+                "eventoId", eventoId,
+                "fecha", java.time.Instant.now().toString(),
+                "precioVenta", precioVenta,
+                "asientos", List.of(asiento)
+            );
+            return catedraClient.postReactivo(CatedraClient.Endpoint.VENTAS, "/api/endpoints/v1/realizar-venta", catedraBody)
+                    .defaultIfEmpty(Map.of())
+                    .flatMap(catedraResult -> {
+                        if (!Boolean.TRUE.equals(catedraResult.get("resultado"))) {
+                            return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT)
+                                .body(Map.of("error", "Venta rechazada en cátedra", "detalle_catedra", catedraResult)));
+                        }
+                        // La venta ya es un hecho en la cátedra: marcarla solo falla si otra sesión tomó el
+                        // asiento entre medio. Queda en el outbox en la misma escritura; si no se pudo marcar
+                        // o encolar no se confirma.
+                        SaleOutbox.Venta venta = saleOutbox.nueva(ventaParaBackend(persona, eventoId, filaColumna, precioVenta));
+                        return seatService.venderAsientosReactivo(evento, List.of(seatId), sessionId, persona, venta)
+                                .then(Mono.<ResponseEntity<?>>fromSupplier(() -> {
+                                    Map<String, Object> ok = new HashMap<>();
+                                    ok.put("result", "venta_guardada_en_catedra");
+                                    ok.put("seatId", seatId);
+                                    ok.put("comprador", Map.of("persona", persona));
+                                    ok.put("ventaId_catedra", catedraResult.get("ventaId"));
+                                    ok.put("fechaVenta", catedraResult.get("fechaVenta") != null
+                                            ? catedraResult.get("fechaVenta") : java.time.Instant.now().toString());
+                                    ok.put("respuesta_catedra", catedraResult);
+                                    return ResponseEntity.ok(ok);
+                                }))
+                                .onErrorResume(IllegalStateException.class,
+                                        e -> Mono.just(SeatCommandService.ventaNoRegistrada(catedraResult)));
+                    });
+        });
+    }
+
+    private ResponseEntity<?> respuestaVentaRechazada(SeatOperationResult venta) {
+        Map<String, Object> r = new HashMap<>();
+        switch (venta.getStatus()) {
+            case NOT_HELD -> {
+                r.put("error", "SEAT_NOT_BLOCKED");
+                r.put("message", "Debe bloquear el asiento antes de comprarlo");
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(r);
+            }
+            case EXPIRED -> {
+                r.put("error", "BLOCK_EXPIRED");
+                r.put("message", "El bloqueo del asiento venció, debe bloquearlo nuevamente");
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(r);
+            }
+            case HELD -> {
+                r.put("error", "BLOCKED_BY_OTHER");
+                r.put("owner", venta.getOwner());
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(r);
+            }
+            default -> {
+                r.put("error", "SEAT_NOT_AVAILABLE");
+                r.put("message", "Asiento ya vendido o no disponible");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(r);
+            }
+        }
+    }
+
+    /**
+     * Venta para el backend (mismo formato que realizar-ventas, un asiento). La compra no espera al
+     * backend: SaleOutboxRelay la entrega desde el outbox y la reintenta si el backend no responde.
+     */
+    private static Map<String, Object> ventaParaBackend(String persona, int eventoId, Map<String, Object> filaColumna, Double precio) {
+        Map<String, Object> venta = new HashMap<>();
+        venta.put("usuario", persona);
+        venta.put("eventoId", eventoId);
+        venta.put("total", precio);
+        venta.put("fechaVenta", java.time.Instant.now().toString());
+        Map<String, Object> asiento = new HashMap<>(filaColumna);
+        asiento.put("precio", precio);
+        venta.put("asientos", List.of(asiento));
+        return venta;
+    }
+
+    private static ResponseEntity<?> noAutorizado() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Missing or invalid X-Session-Id"));
+    }
+
+    private static ResponseEntity<?> eventoIdInvalido() {
+        return ResponseEntity.badRequest().body(Map.of("error", "eventoId debe ser un número entero"));
+    }
+
+    private static ResponseEntity<?> seatIdInvalido() {
+        return ResponseEntity.badRequest().body(Map.of("error", "Formato de seatId inválido (esperado r{fila}c{columna})"));
+    }
+
+    private static ResponseEntity<?> bloqueadoPorOtro(String owner) {
+        Map<String, Object> conflict = new HashMap<>();
+        conflict.put("error", "BLOCKED_BY_OTHER");
+        conflict.put("owner", owner);
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(conflict);
+    }
+
+    private static ResponseEntity<?> interno() {
+        Map<String, Object> err = new HashMap<>();
+        err.put("error", "internal");
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(err);
+    }
+}
@@ -1,12 +1,21 @@
 package com.cine.proxy.service;
 
+import com.cine.proxy.config.SeatStorageProperties;
 import com.cine.proxy.model.Seat;
+import com.cine.proxy.model.SeatBatchResult;
+import com.cine.proxy.model.SeatChange;
+import com.cine.proxy.model.SeatOperationResult;
+import com.cine.proxy.repository.HashSeatRepository;
+import com.cine.proxy.repository.SeatRepository;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -27,19 +36,58 @@ public class RedisSeatService {
 
     private static final Logger log = LoggerFactory.getLogger(RedisSeatService.class);
 
+    /** Duración de un bloqueo: TTL de lock:{evento}:{asiento} y expira del registro. */
+    public static final Duration HOLD_TTL = Duration.ofMinutes(5);
+
+    // Modo blob: toma o renueva la lock solo si está libre o ya es de la sesión
+    // (0 = de otra sesión, 1 = renovada, 2 = creada)
+    private static final RedisScript<Long> LOCK_TOMAR = RedisScript.of(
+            "local v = redis.call('GET', KEYS[1]) "
+            + "if v and v ~= ARGV[1] then return 0 end "
+            + "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) "
+            + "if v then return 1 end return 2", Long.class);
+    // Borra la lock solo si sigue siendo de la sesión
+    private static final RedisScript<Long> LOCK_SOLTAR = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
     private final StringRedisTemplate redis;
     private final ObjectMapper mapper;
-
-    public RedisSeatService(StringRedisTemplate redis, ObjectMapper mapper) {
+    private final SeatRepository seatRepository;
+    private final HashSeatRepository hashSeatRepository;
+    private final SeatStorageProperties storageProperties;
+    private final SeatGridCache seatGridCache;
+    private final SaleOutbox saleOutbox;
+
+    public RedisSeatService(StringRedisTemplate redis, ObjectMapper mapper,
+                            SeatRepository seatRepository, HashSeatRepository hashSeatRepository,
+                            SeatStorageProperties storageProperties, SeatGridCache seatGridCache,
+                            SaleOutbox saleOutbox) {
         this.redis = redis;
         this.mapper = mapper;
+        this.seatRepository = seatRepository;
+        this.hashSeatRepository = hashSeatRepository;
+        this.storageProperties = storageProperties;
+        this.seatGridCache = seatGridCache;
+        this.saleOutbox = saleOutbox;
+    }
+
+    /**
+     * En modo hash las operaciones de bloqueo/venta/liberación son atómicas (scripts Lua).
+     * En modo blob se mantiene el read-modify-write original.
+     */
+    private boolean atomicMode() {
+        return storageProperties.getMode() == SeatStorageProperties.Mode.HASH;
     }
 
 
-   
+
+    /**
+     * Guarda el estado de un asiento que llega de afuera, salvo que el guardado sea más reciente.
+     * En modo hash un BLOQUEADO pasa por el script de bloqueo (key de lock, vencimiento y bitmap):
+     * escrito solo en el hash no vencería nunca.
+     */
     public void upsertSeatWithTimestamp(String eventoId, Seat incoming) {
         try {
-            String key = keyForEvento(eventoId);
             String field = incoming.getSeatId();
 
             java.time.ZoneId zone = java.time.ZoneId.of("America/Argentina/Buenos_Aires");
@@ -50,35 +98,9 @@ public class RedisSeatService {
             }
             java.time.ZonedDateTime updatedZ = java.time.ZonedDateTime.ofInstant(incoming.getUpdatedAt(), zone);
 
-            String eventJson = redis.opsForValue().get(key);
-            com.fasterxml.jackson.databind.node.ObjectNode root;
-            com.fasterxml.jackson.databind.node.ArrayNode arr;
-
-            if (eventJson == null || eventJson.isBlank()) {
-                root = mapper.createObjectNode();
-                try {
-                    root.put("eventoId", Integer.parseInt(eventoId));
-                } catch (NumberFormatException ignore) { /* no-op */ }
-                arr = mapper.createArrayNode();
-            } else {
-               
-                // Existe --> Parseás el contenido, y extraés la estructura actual:
-                com.fasterxml.jackson.databind.JsonNode parsed = mapper.readTree(eventJson);
-                if (parsed.isObject()) {
-                    root = (com.fasterxml.jackson.databind.node.ObjectNode) parsed;
-                } else {
-                    root = mapper.createObjectNode();
-                    try {
-                        root.put("eventoId", Integer.parseInt(eventoId));
-                    } catch (NumberFormatException ignore) { /* no-op */ }
-                }
-                // Si existe array actual de asientos
-                com.fasterxml.jackson.databind.JsonNode seatsNode = root.path("asientos");
-                if (seatsNode.isArray()) {
-                    arr = (com.fasterxml.jackson.databind.node.ArrayNode) seatsNode;
-                } else {
-                    arr = mapper.createArrayNode();
-                }
+            if (atomicMode() && "BLOQUEADO".equalsIgnoreCase(incoming.getStatus())) {
+                upsertBloqueo(eventoId, incoming, updatedZ);
+                return;
             }
 
         //Armar asiento nuevo o actualizado completando datos
@@ -116,84 +138,93 @@ public class RedisSeatService {
                 seatNode.put("expiraEpoch", expZ.toInstant().getEpochSecond());
             }
 
-            boolean replaced = false;
-            for (int i = 0; i < arr.size(); i++) {
-                com.fasterxml.jackson.databind.JsonNode existing = arr.get(i);
-                com.fasterxml.jackson.databind.JsonNode sid = existing.path("seatId");
-                String existingSeatId = null;
-                if (sid != null && sid.isTextual()) existingSeatId = sid.asText();
-
-                if (existingSeatId == null) {
-                    com.fasterxml.jackson.databind.JsonNode fNode = existing.path("fila");
-                    com.fasterxml.jackson.databind.JsonNode cNode = existing.path("columna");
-                    if (fNode.isInt() && cNode.isInt()) {
-                        existingSeatId = "r" + fNode.asInt() + "c" + cNode.asInt();
-                    }
-                }
-                // Busca el timestamp existente:
-                if (existingSeatId != null && field.equals(existingSeatId)) {
-                    com.fasterxml.jackson.databind.JsonNode upd = existing.path("updatedAt");
-                    boolean shouldReplace = false;
-                    if (upd.isTextual()) {
-                        try {
-                            java.time.Instant existingTs = java.time.OffsetDateTime.parse(upd.asText()).toInstant();
-                            // Solo actualiza si el update entrante NO es más viejo que el guardado
-                            if (!incoming.getUpdatedAt().isBefore(existingTs)) {
-                                shouldReplace = true;
-                            }
-                        } catch (Exception ex) {
-                            shouldReplace = true;
-                        }
-                    } else {
-                        shouldReplace = true;
-                    }
-
-                    if (shouldReplace) {
-                        com.fasterxml.jackson.databind.node.ObjectNode existingNode = (com.fasterxml.jackson.databind.node.ObjectNode) existing;
-                        com.fasterxml.jackson.databind.node.ObjectNode merged = existingNode.deepCopy();
-                        
-                        // Actualiza SOLO los campos de ese asiento usando los nuevos valores:
-                        if (seatNode.has("status")) merged.set("status", seatNode.get("status"));
-                        if (seatNode.has("estado")) merged.set("estado", seatNode.get("estado"));
-                        if (seatNode.has("holder")) merged.set("holder", seatNode.get("holder"));
-                        if (seatNode.has("updatedAt")) merged.set("updatedAt", seatNode.get("updatedAt"));
-                        if (seatNode.has("updatedAtEpoch")) merged.set("updatedAtEpoch", seatNode.get("updatedAtEpoch"));
-                        if (seatNode.has("expira")) merged.set("expira", seatNode.get("expira"));
-                        if (seatNode.has("expiraEpoch")) merged.set("expiraEpoch", seatNode.get("expiraEpoch"));
-
-                        if (seatNode.has("comprador")) {
-                            merged.set("comprador", seatNode.get("comprador"));
-                            if (seatNode.has("fechaVenta")) merged.set("fechaVenta", seatNode.get("fechaVenta"));
-                        }
-
-                        if (seatNode.has("fila")) merged.set("fila", seatNode.get("fila"));
-                        if (seatNode.has("columna")) merged.set("columna", seatNode.get("columna"));
-                        merged.put("seatId", field);
-                        
-                        // Solo se reemplaza ese asiento en el array de asientos
-                        arr.set(i, merged);
-                    } 
-                    // Si guardado es el más reciente, deja el existente tal como está
-                    replaced = true;
-                    break;
-                }
+            com.fasterxml.jackson.databind.node.ObjectNode existing = seatRepository.findSeat(eventoId, field);
+            if (existing == null) {
+                // Si es un asiento nuevo (no estaba guardado), lo agrega
+                seatRepository.save(eventoId, seatNode);
+                seatGridCache.publicar(SeatChange.invalidar(eventoId));
+                return;
             }
 
-            // Si es un asiento nuevo (no estaba en el array), lo agrega
-            if (!replaced) {
-                arr.add(seatNode);
+            // Si guardado es el más reciente, deja el existente tal como está
+            if (!shouldReplace(existing, incoming.getUpdatedAt())) {
+                return;
             }
 
-            root.set("asientos", arr);
+            com.fasterxml.jackson.databind.node.ObjectNode merged = existing.deepCopy();
 
-            String newEventJson = mapper.writeValueAsString(root);
-            redis.opsForValue().set(key, newEventJson);
+            // Actualiza SOLO los campos de ese asiento usando los nuevos valores:
+            if (seatNode.has("status")) merged.set("status", seatNode.get("status"));
+            if (seatNode.has("estado")) merged.set("estado", seatNode.get("estado"));
+            if (seatNode.has("holder")) merged.set("holder", seatNode.get("holder"));
+            if (seatNode.has("updatedAt")) merged.set("updatedAt", seatNode.get("updatedAt"));
+            if (seatNode.has("updatedAtEpoch")) merged.set("updatedAtEpoch", seatNode.get("updatedAtEpoch"));
+            if (seatNode.has("expira")) merged.set("expira", seatNode.get("expira"));
+            if (seatNode.has("expiraEpoch")) merged.set("expiraEpoch", seatNode.get("expiraEpoch"));
+
+            if (seatNode.has("comprador")) {
+                merged.set("comprador", seatNode.get("comprador"));
+                if (seatNode.has("fechaVenta")) merged.set("fechaVenta", seatNode.get("fechaVenta"));
+            }
+
+            if (seatNode.has("fila")) merged.set("fila", seatNode.get("fila"));
+            if (seatNode.has("columna")) merged.set("columna", seatNode.get("columna"));
+            merged.put("seatId", field);
+
+            // Solo se reescribe ese asiento
+            seatRepository.save(eventoId, merged);
+            seatGridCache.publicar(SeatChange.invalidar(eventoId));
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to upsert seat with timestamp in Redis", e);
         }
     }
 
+    /**
+     * Solo se reemplaza si el update entrante NO es más viejo que el guardado (o este no tiene updatedAt válido).
+     */
+    private static boolean shouldReplace(ObjectNode existing, Instant incomingTs) {
+        JsonNode upd = existing.path("updatedAt");
+        if (!upd.isTextual()) {
+            return true;
+        }
+        try {
+            return !incomingTs.isBefore(OffsetDateTime.parse(upd.asText()).toInstant());
+        } catch (Exception ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Bloqueo que llega por upsertSeatWithTimestamp (modo hash): mismo script que bloquearAsiento, con
+     * el holder del asiento y lo que le queda de los 5 minutos desde su updatedAt. Un bloqueo ya
+     * vencido no se escribe; uno de otra sesión vigente o un asiento vendido no se pisan.
+     */
+    private void upsertBloqueo(String eventoId, Seat incoming, ZonedDateTime updatedZ) {
+        String seatId = incoming.getSeatId();
+        String holder = incoming.getHolder();
+        if (holder == null || holder.isBlank()) {
+            throw new IllegalArgumentException("Asiento BLOQUEADO sin holder: " + seatId);
+        }
+        ObjectNode existing = seatRepository.findSeat(eventoId, seatId);
+        if (existing != null && !shouldReplace(existing, incoming.getUpdatedAt())) {
+            return;
+        }
+        long ahoraMs = System.currentTimeMillis();
+        long restanteMs = updatedZ.plus(HOLD_TTL).toInstant().toEpochMilli() - ahoraMs;
+        if (restanteMs <= 0) {
+            log.info("Bloqueo de {}:{} por {} ya vencido, no se guarda", eventoId, seatId, holder);
+            return;
+        }
+        SeatOperationResult result = hashSeatRepository.tryBlock(eventoId, seatId, holder, ahoraMs / 1000,
+                nodoBloqueado(seatId, holder, updatedZ), Duration.ofMillis(restanteMs));
+        log.info("Upsert de bloqueo {}:{} por {} -> {}", eventoId, seatId, holder, result);
+        if (result.isOk()) {
+            seatGridCache.publicar(conVersion(SeatChange.bloqueado(eventoId, seatId, holder, ahoraMs + restanteMs),
+                    result.getVersion()));
+        }
+    }
+
 
 
     /**
@@ -214,93 +245,332 @@ public class RedisSeatService {
     }
 
 
-
 /**
      * Intenta comprar (vender realmente) un asiento bloqueado por el usuario.
      * Si puede, marca el asiento como 'VENDIDO' y elimina el bloqueo.
      */
     public boolean intentarComprarAsiento(String eventoId, String seatId, String sessionId, String persona) {
+        return venderAsiento(eventoId, seatId, sessionId, persona).isOk();
+    }
+
+    /**
+     * Igual que intentarComprarAsiento pero indica por qué no se pudo vender
+     * (vendido, bloqueado por otro, bloqueo vencido o sin bloquear).
+     */
+    public SeatOperationResult venderAsiento(String eventoId, String seatId, String sessionId, String persona) {
+        if (!atomicMode()) {
+            if (!venderLegacy(eventoId, seatId, sessionId, persona)) {
+                return conflictoTrasFallo(eventoId, seatId, sessionId);
+            }
+            seatGridCache.publicar(SeatChange.invalidar(eventoId));
+            return SeatOperationResult.ok();
+        }
         try {
-            String key = keyForEvento(eventoId);
-            String eventJson = redis.opsForValue().get(key);
-            if (eventJson == null || eventJson.isBlank()) {
+            ObjectNode vendido = nodoVendido(persona);
+            SeatOperationResult result = hashSeatRepository.trySell(eventoId, seatId, sessionId,
+                    Instant.now().getEpochSecond(), vendido);
+            log.info("Venta de asiento {}:{} por {} -> {}", eventoId, seatId, sessionId, result);
+            if (result.isOk()) {
+                seatGridCache.publicar(conVersion(SeatChange.vendido(eventoId, seatId,
+                        vendido.path("comprador").path("persona").asText(""), vendido.path("fechaVenta").asText("")),
+                        result.getVersion()));
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("venderAsiento error para {}:{} -> {}", eventoId, seatId, e.getMessage(), e);
+            throw new RuntimeException("Failed to sell seat in Redis", e);
+        }
+    }
+
+    private boolean venderLegacy(String eventoId, String seatId, String sessionId, String persona) {
+        try {
+            // Sin key de lock propia no hay bloqueo vigente: se evita parsear el documento
+            String owner = redis.opsForValue().get(lockKeyForSeat(eventoId, seatId));
+            if (owner == null || !owner.equals(sessionId)) {
                 return false;
             }
 
-            ObjectNode root = (ObjectNode) mapper.readTree(eventJson);
-            ArrayNode arr = root.withArray("asientos");
+            ObjectNode node = seatRepository.findSeat(eventoId, seatId);
+            if (node == null) {
+                return false;
+            }
             long ahora = Instant.now().getEpochSecond();
 
-            for (int i = 0; i < arr.size(); i++) {
-                ObjectNode node = (ObjectNode) arr.get(i);
-
-                // Reconstruir seatId si hiciera falta
-                String sid = node.path("seatId").asText(null);
-                if (sid == null || sid.isBlank()) {
-                    var fNode = node.path("fila");
-                    var cNode = node.path("columna");
-                    if (fNode.isInt() && cNode.isInt()) {
-                        sid = "r" + fNode.asInt() + "c" + cNode.asInt();
-                    }
+            String holder = node.path("holder").asText(null);
+
+            // Validar expiración del bloqueo
+            long expEpoch = 0;
+            var expEpochNode = node.path("expiraEpoch");
+            if (expEpochNode.isNumber()) expEpoch = expEpochNode.asLong();
+            else {
+                String expIso = node.path("expira").asText(null);
+                if (expIso != null) {
+                    try { expEpoch = ZonedDateTime.parse(expIso).toInstant().getEpochSecond(); }
+                    catch (Exception ex) { expEpoch = 0; }
                 }
-                if (!seatId.equals(sid)) continue;
-
-                String holder = node.path("holder").asText(null);
-
-                // Validar expiración del bloqueo
-                long expEpoch = 0;
-                var expEpochNode = node.path("expiraEpoch");
-                if (expEpochNode.isNumber()) expEpoch = expEpochNode.asLong();
-                else {
-                    String expIso = node.path("expira").asText(null);
-                    if (expIso != null) {
-                        try { expEpoch = ZonedDateTime.parse(expIso).toInstant().getEpochSecond(); }
-                        catch (Exception ex) { expEpoch = 0; }
-                    }
-                }
-
-                // Debe ser el dueño del bloqueo y no estar vencido
-                if (holder == null || !holder.equals(sessionId)) return false;
-                if (expEpoch != 0 && expEpoch <= ahora) return false;
-
-                // Marcar como vendido
-                ObjectNode merged = node.deepCopy();
-                merged.put("status", "VENDIDO");
-                merged.put("estado", "Vendido");
-
-                ObjectNode compradorNode = mapper.createObjectNode();
-                compradorNode.put("persona", persona != null ? persona : "");
-                String fechaVenta = ZonedDateTime.now(java.time.ZoneId.of("America/Argentina/Buenos_Aires"))
-                        .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-                compradorNode.put("fechaVenta", fechaVenta);
-                merged.set("comprador", compradorNode);
-                merged.put("fechaVenta", fechaVenta);
-
-                merged.remove("holder");
-                merged.remove("expira");
-                merged.remove("expiraEpoch");
-                merged.remove("updatedAt");
-                merged.remove("updatedAtEpoch");
-
-                arr.set(i, merged);
-                root.set("asientos", arr);
-                String nuevoJson = mapper.writeValueAsString(root);
-                redis.opsForValue().set(key, nuevoJson);
-
-                // Quitar la key de lock en Redis, si usás lockKeyForSeat
-                String lockKey = lockKeyForSeat(eventoId, seatId);
-                redis.delete(lockKey);
-
-                return true;
             }
 
-            return false;
+            // Debe ser el dueño del bloqueo y no estar vencido
+            if (holder == null || !holder.equals(sessionId)) return false;
+            if (expEpoch != 0 && expEpoch <= ahora) return false;
+
+            // Marcar como vendido
+            ObjectNode merged = node.deepCopy();
+            merged.put("seatId", seatId);
+            merged.setAll(nodoVendido(persona));
+
+            merged.remove("holder");
+            merged.remove("expira");
+            merged.remove("expiraEpoch");
+            merged.remove("updatedAt");
+            merged.remove("updatedAtEpoch");
+
+            seatRepository.save(eventoId, merged);
+
+            // Quitar la key de lock en Redis, si usás lockKeyForSeat
+            String lockKey = lockKeyForSeat(eventoId, seatId);
+            redis.delete(lockKey);
+
+            return true;
         } catch (Exception e) {
             log.error("intentarComprarAsiento error para {}:{} -> {}", eventoId, seatId, e.getMessage(), e);
             return false;
         }
     }
 
+    /**
+     * Verifica en una sola operación que la sesión tenga bloqueados (y vigentes) todos los asientos.
+     *
+     * @return asientos que no cumplen, con el motivo; vacío si están todos bloqueados por la sesión
+     */
+    public Map<String, SeatOperationResult> verificarBloqueos(String eventoId, List<String> seatIds, String sessionId) {
+        if (!atomicMode()) {
+            Map<String, SeatOperationResult> conflictos = new java.util.LinkedHashMap<>();
+            for (String seatId : seatIds) {
+                SeatOperationResult r = describirConflicto(eventoId, seatId, sessionId);
+                if (!r.isOk()) conflictos.put(seatId, r);
+            }
+            return conflictos;
+        }
+        return hashSeatRepository.verifyHolds(eventoId, sessionId, Instant.now().getEpochSecond(), seatIds);
+    }
+
+    /**
+     * verificarBloqueos sin bloquear el hilo: asientos que la sesión no tiene bloqueados y vigentes,
+     * con el motivo (SOLD, HELD, EXPIRED o NOT_HELD). No modifica nada.
+     */
+    public Mono<Map<String, SeatOperationResult>> verificarBloqueosReactivo(String eventoId, List<String> seatIds,
+                                                                           String sessionId) {
+        if (!atomicMode()) {
+            return Mono.fromCallable(() -> verificarBloqueos(eventoId, seatIds, sessionId)).subscribeOn(Schedulers.boundedElastic());
+        }
+        return hashSeatRepository.verifyHoldsReactivo(eventoId, sessionId, Instant.now().getEpochSecond(), seatIds);
+    }
+
+    /**
+     * venderAsientos sin bloquear el hilo (venta ya confirmada por la cátedra). Si algún asiento ya
+     * está vendido o lo tiene otra sesión, o la venta no se pudo encolar para el backend, el Mono
+     * termina con IllegalStateException.
+     */
+    public Mono<Void> venderAsientosReactivo(String eventoId, List<String> seatIds, String sessionId, String persona,
+                                             SaleOutbox.Venta venta) {
+        if (!atomicMode()) {
+            return Mono.fromRunnable(() -> venderAsientos(eventoId, seatIds, sessionId, persona, venta))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then();
+        }
+        ObjectNode vendido = nodoVendido(persona);
+        Map<String, ObjectNode> vendidos = new java.util.LinkedHashMap<>();
+        for (String seatId : seatIds) {
+            vendidos.put(seatId, vendido);
+        }
+        String fechaVenta = vendido.path("fechaVenta").asText("");
+        return hashSeatRepository.trySellAllReactivo(eventoId, sessionId, Instant.now().getEpochSecond(), vendidos,
+                        venta.idempotencia(), venta.json())
+                .onErrorMap(e -> SaleOutbox.noEncolada(venta, e))
+                .doOnNext(r -> log.info("Venta de asientos {}:{} por {} -> {}", eventoId, seatIds, sessionId,
+                        r.isOk() ? "OK" : r.getConflictos()))
+                .flatMap(r -> r.isOk()
+                        ? reactor.core.publisher.Flux.range(0, r.getAsientos().size())
+                                .concatMap(i -> seatGridCache.publicarReactivo(conVersion(SeatChange.vendido(eventoId,
+                                        r.getAsientos().get(i), persona != null ? persona : "", fechaVenta), r.versionDe(i))))
+                                .then()
+                        : Mono.error(SaleOutbox.noEncolada(venta, noMarcados(r.getConflictos()))));
+    }
+
+    /**
+     * Marca vendidos todos los asientos de una venta ya confirmada por la cátedra, en una sola escritura,
+     * y encola la venta para el backend (en modo hash, en el mismo script). La venta se encola solo
+     * si se marcaron todos los asientos.
+     *
+     * @throws IllegalStateException si algún asiento no se pudo marcar (vendido o bloqueado por otra
+     *         sesión) o la venta no quedó en el outbox
+     */
+    public void venderAsientos(String eventoId, List<String> seatIds, String sessionId, String persona,
+                               SaleOutbox.Venta venta) {
+        if (!atomicMode()) {
+            // De a uno: con un conflicto los anteriores ya quedaron vendidos, pero la venta no se encola
+            Map<String, SeatOperationResult> conflictos = new java.util.LinkedHashMap<>();
+            for (String seatId : seatIds) {
+                SeatOperationResult r = venderAsiento(eventoId, seatId, sessionId, persona);
+                if (!r.isOk()) conflictos.put(seatId, r);
+            }
+            if (!conflictos.isEmpty()) {
+                throw SaleOutbox.noEncolada(venta, noMarcados(conflictos));
+            }
+            saleOutbox.registrar(venta);
+            return;
+        }
+        ObjectNode vendido = nodoVendido(persona);
+        Map<String, ObjectNode> vendidos = new java.util.LinkedHashMap<>();
+        for (String seatId : seatIds) {
+            vendidos.put(seatId, vendido);
+        }
+        SeatBatchResult resultado;
+        try {
+            resultado = hashSeatRepository.trySellAll(eventoId, sessionId,
+                    Instant.now().getEpochSecond(), vendidos, venta.idempotencia(), venta.json());
+        } catch (Exception e) {
+            log.error("venderAsientos error para {}:{} -> {}", eventoId, seatIds, e.getMessage(), e);
+            throw SaleOutbox.noEncolada(venta, e);
+        }
+        log.info("Venta de asientos {}:{} por {} -> {}", eventoId, seatIds, sessionId,
+                resultado.isOk() ? "OK" : resultado.getConflictos());
+        String fechaVenta = vendido.path("fechaVenta").asText("");
+        if (!resultado.isOk()) {
+            throw SaleOutbox.noEncolada(venta, noMarcados(resultado.getConflictos()));
+        }
+        List<String> marcados = resultado.getAsientos();
+        for (int i = 0; i < marcados.size(); i++) {
+            seatGridCache.publicar(conVersion(SeatChange.vendido(eventoId, marcados.get(i),
+                    persona != null ? persona : "", fechaVenta), resultado.versionDe(i)));
+        }
+    }
+
+    private static IllegalStateException noMarcados(Map<String, SeatOperationResult> conflictos) {
+        return new IllegalStateException("Asientos no marcados como vendidos: " + conflictos);
+    }
+
+    /**
+     * Libera el bloqueo de un asiento. Con sessionId null/vacío se libera sin importar el dueño.
+     */
+    public SeatOperationResult liberarAsiento(String eventoId, String seatId, String sessionId) {
+        try {
+            long ahora = Instant.now().getEpochSecond();
+            SeatOperationResult result;
+            if (atomicMode()) {
+                result = hashSeatRepository.release(eventoId, seatId, sessionId, ahora, nodoLibre());
+            } else {
+                result = describirConflicto(eventoId, seatId, sessionId);
+                SeatOperationResult.Status actual = result.getStatus();
+                boolean liberable = actual == SeatOperationResult.Status.OK
+                        || actual == SeatOperationResult.Status.EXPIRED
+                        || (actual == SeatOperationResult.Status.HELD && (sessionId == null || sessionId.isBlank()));
+                if (liberable) {
+                    ObjectNode merged = seatRepository.findSeat(eventoId, seatId).deepCopy();
+                    merged.put("seatId", seatId);
+                    merged.setAll(nodoLibre());
+                    merged.remove("expira");
+                    merged.remove("expiraEpoch");
+                    seatRepository.save(eventoId, merged);
+                    redis.delete(lockKeyForSeat(eventoId, seatId));
+                    result = SeatOperationResult.ok();
+                }
+            }
+            if (result.isOk()) {
+                seatGridCache.publicar(conVersion(SeatChange.libre(eventoId, seatId), result.getVersion()));
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("liberarAsiento error para {}:{} -> {}", eventoId, seatId, e.getMessage(), e);
+            throw new RuntimeException("Failed to release seat in Redis", e);
+        }
+    }
+
+    /**
+     * Estado de un asiento desde el punto de vista de la sesión (solo modo blob,
+     * en modo hash lo devuelven directamente los scripts). OK = bloqueado y vigente para la sesión.
+     * Con sessionId vacío, EXPIRED indica un holder cuyo bloqueo ya venció.
+     */
+    private SeatOperationResult describirConflicto(String eventoId, String seatId, String sessionId) {
+        ObjectNode node = seatRepository.findSeat(eventoId, seatId);
+        if (node == null) {
+            return SeatOperationResult.of(SeatOperationResult.Status.NOT_HELD);
+        }
+        if ("VENDIDO".equalsIgnoreCase(node.path("status").asText(null))
+                || "Vendido".equalsIgnoreCase(node.path("estado").asText(null))) {
+            return SeatOperationResult.of(SeatOperationResult.Status.SOLD);
+        }
+        String holder = node.path("holder").asText("");
+        if (holder.isBlank()) {
+            return SeatOperationResult.of(SeatOperationResult.Status.NOT_HELD);
+        }
+        // El bloqueo está vigente solo mientras exista su key de lock (expira sola en Redis)
+        String owner = redis.opsForValue().get(lockKeyForSeat(eventoId, seatId));
+        if (owner != null) {
+            return owner.equals(sessionId)
+                    ? SeatOperationResult.ok()
+                    : new SeatOperationResult(SeatOperationResult.Status.HELD, owner);
+        }
+        if (holder.equals(sessionId)) {
+            return SeatOperationResult.of(SeatOperationResult.Status.EXPIRED);
+        }
+        if (sessionId != null && !sessionId.isBlank()) {
+            return SeatOperationResult.of(SeatOperationResult.Status.NOT_HELD);
+        }
+        return new SeatOperationResult(SeatOperationResult.Status.EXPIRED, holder);
+    }
+
+    private SeatOperationResult conflictoTrasFallo(String eventoId, String seatId, String sessionId) {
+        SeatOperationResult r = describirConflicto(eventoId, seatId, sessionId);
+        // Si el asiento figura bloqueado por la sesión pero la operación falló, no se informa OK
+        return r.isOk() ? SeatOperationResult.of(SeatOperationResult.Status.NOT_HELD) : r;
+    }
+
+    private ObjectNode nodoVendido(String persona) {
+        ObjectNode sold = mapper.createObjectNode();
+        sold.put("status", "VENDIDO");
+        sold.put("estado", "Vendido");
+
+        ObjectNode compradorNode = mapper.createObjectNode();
+        compradorNode.put("persona", persona != null ? persona : "");
+        String fechaVenta = ZonedDateTime.now(java.time.ZoneId.of("America/Argentina/Buenos_Aires"))
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        compradorNode.put("fechaVenta", fechaVenta);
+        sold.set("comprador", compradorNode);
+        sold.put("fechaVenta", fechaVenta);
+        return sold;
+    }
+
+    /**
+     * Libera hasta {@code limite} bloqueos vencidos del evento (ver HoldExpirySweeper) y publica
+     * cada asiento liberado como LIBRE. Solo aplica en modo hash.
+     *
+     * @return cantidad de asientos liberados
+     */
+    public int liberarBloqueosVencidos(String eventoId, int limite) {
+        if (!atomicMode()) {
+            return 0;
+        }
+        SeatBatchResult resultado = hashSeatRepository.releaseExpired(eventoId, System.currentTimeMillis(), limite, nodoLibre());
+        List<String> liberados = resultado.getAsientos();
+        for (int i = 0; i < liberados.size(); i++) {
+            seatGridCache.publicar(conVersion(SeatChange.libre(eventoId, liberados.get(i)), resultado.versionDe(i)));
+        }
+        return liberados.size();
+    }
+
+    private ObjectNode nodoLibre() {
+        ObjectNode free = mapper.createObjectNode();
+        free.put("status", "LIBRE");
+        free.put("estado", "Libre");
+        free.put("holder", "");
+        free.put("updatedAt", ZonedDateTime.now(java.time.ZoneId.of("America/Argentina/Buenos_Aires"))
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        free.put("updatedAtEpoch", Instant.now().getEpochSecond());
+        return free;
+    }
+
     /**
      * Devuelve el sessionId que tiene bloqueado un asiento, o null si no está bloqueado.
      */
@@ -315,87 +585,208 @@ public class RedisSeatService {
     }
 
 
-    /** Helpers para keys en Redis */
-    private String keyForEvento(String eventoId) {
-        return "eventos:" + eventoId;
+    /**
+     * Versión que el script le asignó al cambio: SeatGridCache no vuelve a incrementarla.
+     */
+    private static SeatChange conVersion(SeatChange change, long version) {
+        change.setVersion(version);
+        return change;
     }
+
+    /** Helpers para keys en Redis */
     private String lockKeyForSeat(String eventoId, String seatId) {
-        return "lock:" + eventoId + ":" + seatId;
+        return SeatRepository.lockKey(eventoId, seatId);
     }
 
     public boolean tryBlockSeatWithTTL(String eventoId, String seatId, String sessionId) {
+        return bloquearAsiento(eventoId, seatId, sessionId).isOk();
+    }
+
+    /**
+     * Bloquea el asiento por 5 minutos para la sesión. Si no se puede, indica si está
+     * vendido o quién lo tiene bloqueado.
+     */
+    public SeatOperationResult bloquearAsiento(String eventoId, String seatId, String sessionId) {
+        if (!atomicMode()) {
+            if (bloquearLegacy(eventoId, seatId, sessionId) == 0) {
+                return conflictoTrasFallo(eventoId, seatId, sessionId);
+            }
+            seatGridCache.publicar(SeatChange.invalidar(eventoId));
+            return SeatOperationResult.ok();
+        }
+        try {
+            java.time.ZonedDateTime nowZ = java.time.ZonedDateTime.now(java.time.ZoneId.of("America/Argentina/Buenos_Aires"));
+            SeatOperationResult result = hashSeatRepository.tryBlock(eventoId, seatId, sessionId,
+                    nowZ.toEpochSecond(), nodoBloqueado(seatId, sessionId, nowZ), HOLD_TTL);
+            log.info("Bloqueo de asiento {}:{} por {} -> {}", eventoId, seatId, sessionId, result);
+            if (result.isOk()) {
+                seatGridCache.publicar(conVersion(SeatChange.bloqueado(eventoId, seatId, sessionId,
+                        nowZ.plus(HOLD_TTL).toEpochSecond() * 1000), result.getVersion()));
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("Error bloqueando asiento {} en evento {}: {}", seatId, eventoId, e.getMessage(), e);
+            throw new RuntimeException("Failed to block seat in Redis", e);
+        }
+    }
+
+    /**
+     * Bloquea varios asientos del evento para la sesión: se bloquean todos o ninguno.
+     *
+     * @return asientos que no se pudieron bloquear (vendidos o bloqueados por otra sesión), o si
+     *         quedaron todos bloqueados, cuáles no tenían lock antes (getCreados: los que se
+     *         liberan si la cátedra no confirma)
+     */
+    public SeatBatchResult bloquearAsientos(String eventoId, List<String> seatIds, String sessionId) {
+        if (!atomicMode()) {
+            return bloquearAsientosLegacy(eventoId, seatIds, sessionId);
+        }
+        try {
+            java.time.ZonedDateTime nowZ = java.time.ZonedDateTime.now(java.time.ZoneId.of("America/Argentina/Buenos_Aires"));
+            SeatBatchResult resultado = hashSeatRepository.tryBlockAll(eventoId, sessionId,
+                    nowZ.toEpochSecond(), nodosBloqueados(seatIds, sessionId, nowZ), HOLD_TTL);
+            log.info("Bloqueo de asientos {}:{} por {} -> {}", eventoId, seatIds, sessionId,
+                    resultado.isOk() ? "OK" : resultado.getConflictos());
+            long expira = nowZ.plus(HOLD_TTL).toEpochSecond() * 1000;
+            List<String> marcados = resultado.getAsientos();
+            for (int i = 0; i < marcados.size(); i++) {
+                seatGridCache.publicar(conVersion(SeatChange.bloqueado(eventoId, marcados.get(i), sessionId, expira),
+                        resultado.versionDe(i)));
+            }
+            return resultado;
+        } catch (Exception e) {
+            log.error("Error bloqueando asientos {} en evento {}: {}", seatIds, eventoId, e.getMessage(), e);
+            throw new RuntimeException("Failed to block seats in Redis", e);
+        }
+    }
+
+    /**
+     * bloquearAsientos sin bloquear el hilo (mismo script y mismo aviso de cambio).
+     */
+    public Mono<SeatBatchResult> bloquearAsientosReactivo(String eventoId, List<String> seatIds, String sessionId) {
+        if (!atomicMode()) {
+            return Mono.fromCallable(() -> bloquearAsientos(eventoId, seatIds, sessionId)).subscribeOn(Schedulers.boundedElastic());
+        }
+        java.time.ZonedDateTime nowZ = java.time.ZonedDateTime.now(java.time.ZoneId.of("America/Argentina/Buenos_Aires"));
+        long expira = nowZ.plus(HOLD_TTL).toEpochSecond() * 1000;
+        return hashSeatRepository.tryBlockAllReactivo(eventoId, sessionId,
+                        nowZ.toEpochSecond(), nodosBloqueados(seatIds, sessionId, nowZ), HOLD_TTL)
+                .doOnNext(r -> log.info("Bloqueo de asientos {}:{} por {} -> {}", eventoId, seatIds, sessionId,
+                        r.isOk() ? "OK" : r.getConflictos()))
+                .flatMap(r -> reactor.core.publisher.Flux.range(0, r.getAsientos().size())
+                        .concatMap(i -> seatGridCache.publicarReactivo(conVersion(
+                                SeatChange.bloqueado(eventoId, r.getAsientos().get(i), sessionId, expira), r.versionDe(i))))
+                        .then(Mono.just(r)));
+    }
+
+    /**
+     * Deshace un bloqueo que la cátedra no confirmó: libera los asientos cuya lock creó (solo si
+     * siguen siendo de la sesión). Un error se loguea y no corta el resto.
+     */
+    public void deshacerBloqueos(String eventoId, List<String> creados, String sessionId) {
+        for (String seatId : creados) {
+            try {
+                liberarAsiento(eventoId, seatId, sessionId);
+            } catch (Exception e) {
+                log.warn("No se pudo deshacer el bloqueo local de {}:{}: {}", eventoId, seatId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * deshacerBloqueos sin bloquear el hilo. Nunca termina con error.
+     */
+    public Mono<Void> deshacerBloqueosReactivo(String eventoId, List<String> creados, String sessionId) {
+        if (creados.isEmpty()) {
+            return Mono.empty();
+        }
+        if (!atomicMode()) {
+            return Mono.fromRunnable(() -> deshacerBloqueos(eventoId, creados, sessionId))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then();
+        }
+        long ahora = Instant.now().getEpochSecond();
+        return reactor.core.publisher.Flux.fromIterable(creados)
+                .concatMap(seatId -> hashSeatRepository.releaseReactivo(eventoId, seatId, sessionId, ahora, nodoLibre())
+                        .flatMap(r -> r.isOk()
+                                ? seatGridCache.publicarReactivo(conVersion(SeatChange.libre(eventoId, seatId), r.getVersion()))
+                                : Mono.empty())
+                        .onErrorResume(e -> {
+                            log.warn("No se pudo deshacer el bloqueo local de {}:{}: {}", eventoId, seatId, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Map<String, ObjectNode> nodosBloqueados(List<String> seatIds, String sessionId, java.time.ZonedDateTime nowZ) {
+        Map<String, ObjectNode> bloqueados = new java.util.LinkedHashMap<>();
+        for (String seatId : seatIds) {
+            bloqueados.put(seatId, nodoBloqueado(seatId, sessionId, nowZ));
+        }
+        return bloqueados;
+    }
+
+    /**
+     * Modo blob: bloquea de a uno y, si alguno falla, libera los que este pedido bloqueó
+     * (no los que ya eran de la sesión).
+     */
+    private SeatBatchResult bloquearAsientosLegacy(String eventoId, List<String> seatIds, String sessionId) {
+        Map<String, SeatOperationResult> conflictos = new java.util.LinkedHashMap<>();
+        List<String> bloqueados = new ArrayList<>();
+        List<String> creados = new ArrayList<>();
+        for (String seatId : seatIds) {
+            int tomada = bloquearLegacy(eventoId, seatId, sessionId);
+            if (tomada == 0) {
+                conflictos.put(seatId, conflictoTrasFallo(eventoId, seatId, sessionId));
+                continue;
+            }
+            bloqueados.add(seatId);
+            if (tomada == 2) {
+                creados.add(seatId);
+            }
+        }
+        if (!bloqueados.isEmpty()) {
+            seatGridCache.publicar(SeatChange.invalidar(eventoId));
+        }
+        if (!conflictos.isEmpty()) {
+            deshacerBloqueos(eventoId, creados, sessionId);
+            return new SeatBatchResult(conflictos, 0, List.of());
+        }
+        return new SeatBatchResult(conflictos, 0, List.of(), creados);
+    }
+
+    /**
+     * Modo blob: bloquea un asiento. Devuelve el resultado de LOCK_TOMAR (1 si la lock ya era de la
+     * sesión, 2 si la creó) o 0 si no se pudo bloquear.
+     */
+    private int bloquearLegacy(String eventoId, String seatId, String sessionId) {
+        String lockKey = lockKeyForSeat(eventoId, seatId);
+        long tomada = 0;
+        boolean bloqueado = false;
         try {
-            String key = keyForEvento(eventoId); // Tipo: "evento_{eventId}"
             java.time.ZoneId zone = java.time.ZoneId.of("America/Argentina/Buenos_Aires");
             java.time.ZonedDateTime nowZ = java.time.ZonedDateTime.now(zone);
-            java.time.ZonedDateTime expireZ = nowZ.plusMinutes(5);
-            java.time.Instant nowInstant = java.time.Instant.now();
+            java.time.ZonedDateTime expireZ = nowZ.plus(HOLD_TTL);
 
             log.info("[info][BLOCK] ---------- NUEVA OPERACION BLOQUEO ----------");
             log.info("[info][BLOCK] sessionId = {}", sessionId);
             log.info("[info][BLOCK] eventoId = {}, seatId = {}", eventoId, seatId);
-            log.info("[info][BLOCK] Redis key a buscar: '{}'", key);
-
-            String eventJson = redis.opsForValue().get(key);
-            log.info("[info][BLOCK] JSON actual en Redis (key={}): {}", key, eventJson);
-
-            com.fasterxml.jackson.databind.node.ObjectNode root;
-            com.fasterxml.jackson.databind.node.ArrayNode arr;
-
-            if (eventJson == null || eventJson.isBlank()) {
-                // Solo si no existe, arma estructura (esto no crea clave en Redis aún, solo en memoria local)
-                log.info("[info][BLOCK] NO existía evento en Redis: armo estructura mínima.");
-                root = mapper.createObjectNode();
-                try { root.put("eventoId", Integer.parseInt(eventoId)); } catch (NumberFormatException ignore) {}
-                arr = mapper.createArrayNode();
-            } else {
-                log.info("[info][BLOCK] Evento encontrado en Redis, parseando...");
-                com.fasterxml.jackson.databind.JsonNode parsed = mapper.readTree(eventJson);
-                if (parsed.isObject()) {
-                    root = (com.fasterxml.jackson.databind.node.ObjectNode) parsed;
-                } else {
-                    log.info("[info][BLOCK] Valor en Redis NO es objeto, reset structure.");
-                    root = mapper.createObjectNode();
-                    try { root.put("eventoId", Integer.parseInt(eventoId)); } catch (NumberFormatException ignore) {}
-                }
-                com.fasterxml.jackson.databind.JsonNode seatsNode = root.path("asientos");
-                if (seatsNode.isArray()) {
-                    arr = (com.fasterxml.jackson.databind.node.ArrayNode) seatsNode;
-                } else {
-                    arr = mapper.createArrayNode();
-                }
-            }
 
-            log.info("[info][BLOCK] Asientos actuales (arr.size={}):", arr.size());
-            for (int i = 0; i < arr.size(); i++) {
-                log.info("[info][BLOCK] Asiento[{}]: {}", i, arr.get(i));
+            // La key de lock decide quién tiene el asiento; expira sola en Redis. Tomarla y
+            // renovarla es un solo compare-and-set: no se pisa la lock que otra sesión tomó recién
+            Long resultado = redis.execute(LOCK_TOMAR, List.of(lockKey), sessionId, String.valueOf(HOLD_TTL.toMillis()));
+            tomada = resultado == null ? 0 : resultado;
+            if (tomada == 0) {
+                log.info("[info][BLOCK] Asiento BLOQUEADO por OTRO ({}). RETURN false", redis.opsForValue().get(lockKey));
+                return 0;
             }
 
-            int foundIndex = -1;
-            for (int i = 0; i < arr.size(); i++) {
-                com.fasterxml.jackson.databind.JsonNode n = arr.get(i);
-                com.fasterxml.jackson.databind.JsonNode sid = n.path("seatId");
-                boolean match = false;
-                if (sid != null && sid.isTextual() && seatId.equals(sid.asText())) {
-                    foundIndex = i;
-                    match = true;
-                }
-                if (!match) {
-                    com.fasterxml.jackson.databind.JsonNode fNode = n.path("fila");
-                    com.fasterxml.jackson.databind.JsonNode cNode = n.path("columna");
-                    if (fNode.isInt() && cNode.isInt()) {
-                        String cand = "r" + fNode.asInt() + "c" + cNode.asInt();
-                        if (cand.equals(seatId)) {
-                            foundIndex = i;
-                        }
-                    }
-                }
-                log.info("[info][BLOCK] Iteracion {}: seatId {}, foundIndex={}, match={}", i, sid, foundIndex, match);
-            }
+            com.fasterxml.jackson.databind.node.ObjectNode existingNode = seatRepository.findSeat(eventoId, seatId);
+            log.info("[info][BLOCK] Asiento actual en Redis: {}", existingNode);
 
-            if (foundIndex >= 0) {
-                log.info("[info][BLOCK] Asiento YA EXISTE en evento (foundIndex={})", foundIndex);
-                com.fasterxml.jackson.databind.JsonNode existing = arr.get(foundIndex);
+            if (existingNode != null) {
+                log.info("[info][BLOCK] Asiento YA EXISTE en evento");
+                com.fasterxml.jackson.databind.JsonNode existing = existingNode;
 
                 // Estado VENDIDO/legacy
                 String statusTxt = existing.path("status").asText(null);
@@ -405,69 +796,18 @@ public class RedisSeatService {
                 log.info("[info][BLOCK] Estado seat: status={}, estado={}, sold={}", statusTxt, estadoTxt, sold);
                 if (sold) {
                     log.info("[info][BLOCK] Asiento ya VENDIDO, no se puede bloquear. RETURN false");
-                    return false;
-                }
-
-                com.fasterxml.jackson.databind.JsonNode holderNode = existing.path("holder");
-                com.fasterxml.jackson.databind.JsonNode expEpochNode = existing.path("expiraEpoch");
-                com.fasterxml.jackson.databind.JsonNode expNode = existing.path("expira");
-                if (expEpochNode.isNumber()) {
-                    long expEpoch = expEpochNode.asLong();
-                    log.info("[info][BLOCK] expEpoch={}, ahora={}", expEpoch, nowInstant.getEpochSecond());
-                    if (expEpoch > nowInstant.getEpochSecond() && holderNode.isTextual() && !sessionId.equals(holderNode.asText())) {
-                        log.info("[info][BLOCK] Asiento BLOQUEADO por OTRO. RETURN false");
-                        return false;
-                    }
-                } else if (expNode.isTextual() && holderNode.isTextual()) {
-                    try {
-                        java.time.Instant exp = java.time.OffsetDateTime.parse(expNode.asText()).toInstant();
-                        log.info("[info][BLOCK] exp (iso)={}, ahora={}", exp, nowInstant);
-                        if (exp.isAfter(nowInstant) && !sessionId.equals(holderNode.asText())) {
-                            log.info("[info][BLOCK] Asiento BLOQUEADO por OTRO. RETURN false");
-                            return false;
-                        }
-                    } catch (Exception ex) {
-                        if (holderNode.isTextual() && !sessionId.equals(holderNode.asText())) {
-                            log.info("[info][BLOCK] Error parseando expNode, pero holder es OTRO. RETURN false");
-                            return false;
-                        }
-                    }
-                } else if (holderNode.isTextual() && !sessionId.equals(holderNode.asText())) {
-                    log.info("[info][BLOCK] Asiento BLOQUEADO por OTRO (sin expira explícito). RETURN false");
-                    return false;
+                    return 0;
                 }
             }
 
             log.info("[info][BLOCK] Asiento DISPONIBLE: se procederá a bloquearlo con holder={} por 5min", sessionId);
 
             // Nodo actualizado para el asiento
-            com.fasterxml.jackson.databind.node.ObjectNode updatedNode = mapper.createObjectNode();
-            try {
-                if (seatId != null && seatId.startsWith("r") && seatId.contains("c")) {
-                    String[] parts = seatId.substring(1).split("c", 2);
-                    int fila = Integer.parseInt(parts[0]);
-                    int columna = Integer.parseInt(parts[1]);
-                    updatedNode.put("fila", fila);
-                    updatedNode.put("columna", columna);
-                    updatedNode.put("estado", "Bloqueado");
-                    updatedNode.put("expira", expireZ.format(java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME));
-                    updatedNode.put("expiraEpoch", expireZ.toInstant().getEpochSecond());
-                }
-            } catch (Exception ex) {
-                log.info("No se pudo derivar fila/columna desde seatId {}: {}", seatId, ex.getMessage());
-            }
-
-            updatedNode.put("seatId", seatId);
-            updatedNode.put("status", "BLOQUEADO");
-            updatedNode.put("holder", sessionId != null ? sessionId : "");
-            updatedNode.put("owner", sessionId != null ? sessionId : "");
-            updatedNode.put("updatedAt", nowZ.format(java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME));
-            updatedNode.put("updatedAtEpoch", nowInstant.getEpochSecond());
+            com.fasterxml.jackson.databind.node.ObjectNode updatedNode = nodoBloqueado(seatId, sessionId, nowZ);
 
             // MERGE O CREAR
-            if (foundIndex >= 0) {
-                log.info("[info][BLOCK] Modo MERGE: actualizando asiento en arr[{}]", foundIndex);
-                com.fasterxml.jackson.databind.node.ObjectNode existingNode = (com.fasterxml.jackson.databind.node.ObjectNode) arr.get(foundIndex);
+            if (existingNode != null) {
+                log.info("[info][BLOCK] Modo MERGE: actualizando asiento existente");
                 com.fasterxml.jackson.databind.node.ObjectNode merged = existingNode.deepCopy();
                 // Mergeo sólo campos actualizables
                 if (updatedNode.has("estado")) merged.set("estado", updatedNode.get("estado"));
@@ -485,30 +825,57 @@ public class RedisSeatService {
                     if (existingNode.has("fechaVenta")) merged.set("fechaVenta", existingNode.get("fechaVenta"));
                 }
 
-                arr.set(foundIndex, merged);
+                seatRepository.save(eventoId, merged);
                 log.info("[info][BLOCK] After MERGE nodo actualizado: {}", merged);
             } else {
                 log.info("[info][BLOCK] Asiento NO EXISTÍA: agregando como NUEVO nodo");
-                arr.add(updatedNode);
+                seatRepository.save(eventoId, updatedNode);
                 log.info("[info][BLOCK] Nuevo nodo: {}", updatedNode);
             }
 
-            root.set("asientos", arr);
-
-            String newEventJson = mapper.writeValueAsString(root);
-            log.info("[info][BLOCK] Evento final a persistir en Redis (key={}): {}", key, newEventJson);
-
-            redis.opsForValue().set(key, newEventJson);
-
             log.info("[info][BLOCK] Operación EXITOSA: asiento {} bloqueado por session {} hasta {}", seatId, sessionId, expireZ);
 
-            return true;
+            bloqueado = true;
+            return (int) tomada;
 
         } catch (Exception e) {
             log.error("Error bloqueando asiento {} en evento {}: {}", seatId, eventoId, e.getMessage(), e);
-            return false;
+            return 0;
+        } finally {
+            // Sin bloqueo (vendido o error) la lock no queda: tampoco la renovada por la misma sesión
+            if (tomada > 0 && !bloqueado) {
+                redis.execute(LOCK_SOLTAR, List.of(lockKey), sessionId);
+            }
         }
     }
 
+    /**
+     * Campos de un asiento bloqueado por la sesión durante 5 minutos desde nowZ.
+     */
+    private ObjectNode nodoBloqueado(String seatId, String sessionId, java.time.ZonedDateTime nowZ) {
+        java.time.ZonedDateTime expireZ = nowZ.plus(HOLD_TTL);
+        ObjectNode updatedNode = mapper.createObjectNode();
+        try {
+            if (seatId != null && seatId.startsWith("r") && seatId.contains("c")) {
+                String[] parts = seatId.substring(1).split("c", 2);
+                int fila = Integer.parseInt(parts[0]);
+                int columna = Integer.parseInt(parts[1]);
+                updatedNode.put("fila", fila);
+                updatedNode.put("columna", columna);
+                updatedNode.put("estado", "Bloqueado");
+                updatedNode.put("expira", expireZ.format(java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+                updatedNode.put("expiraEpoch", expireZ.toInstant().getEpochSecond());
+            }
+        } catch (Exception ex) {
+            log.info("No se pudo derivar fila/columna desde seatId {}: {}", seatId, ex.getMessage());
+        }
 
+        updatedNode.put("seatId", seatId);
+        updatedNode.put("status", "BLOQUEADO");
+        updatedNode.put("holder", sessionId != null ? sessionId : "");
+        updatedNode.put("owner", sessionId != null ? sessionId : "");
+        updatedNode.put("updatedAt", nowZ.format(java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        updatedNode.put("updatedAtEpoch", nowZ.toEpochSecond());
+        return updatedNode;
+    }
 }
@@ -0,0 +1,128 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.repository.HashSeatRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Outbox de ventas confirmadas por la cátedra, pendientes de guardar en el backend.
+ *
+ * La venta se agrega al stream ventas:outbox dentro del camino de la compra (un XADD, sin esperar
+ * al backend) con una clave de idempotencia propia. SaleOutboxRelay la entrega en tandas y la
+ * borra recién cuando el backend la guardó, así que una caída del backend no pierde la venta.
+ *
+ * En modo hash el XADD lo hace el mismo script que marca los asientos vendidos (seat-sell-many.lua):
+ * o quedan las dos cosas o ninguna. En modo blob se encola acá, con reintentos. En los dos casos,
+ * si no se pudo encolar la compra falla: al cliente no se le confirma una venta que el backend
+ * nunca va a recibir.
+ *
+ * Cada entrada: idempotencia = UUID de la venta, venta = JSON con el mismo formato que
+ * realizar-ventas del backend (usuario, eventoId, total, fechaVenta, asientos).
+ */
+@Service
+public class SaleOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(SaleOutbox.class);
+
+    public static final String STREAM = HashSeatRepository.VENTAS_OUTBOX_KEY;
+    public static final String FALLIDAS = "ventas:outbox:fallidas";
+
+    private static final Duration ESPERA_REINTENTO = Duration.ofMillis(100);
+
+    /**
+     * Venta lista para encolar. La clave se asigna una sola vez: si un XADD se reintenta después
+     * de haber entrado, el backend descarta la copia como duplicada.
+     */
+    public record Venta(String idempotencia, String json) {}
+
+    private final StringRedisTemplate redis;
+    private final ReactiveStringRedisTemplate reactiveRedis;
+    private final ObjectMapper mapper;
+    private final int intentos;
+
+    public SaleOutbox(StringRedisTemplate redis, ReactiveStringRedisTemplate reactiveRedis, ObjectMapper mapper,
+                      @Value("${backend.outbox.enqueue-attempts:3}") int intentos) {
+        this.redis = redis;
+        this.reactiveRedis = reactiveRedis;
+        this.mapper = mapper;
+        this.intentos = Math.max(1, intentos);
+    }
+
+    /**
+     * Serializa la venta (formato realizar-ventas) y le asigna su clave de idempotencia.
+     */
+    public Venta nueva(Map<String, Object> venta) {
+        try {
+            return new Venta(UUID.randomUUID().toString(), mapper.writeValueAsString(venta));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Venta no serializable: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encola la venta, reintentando hasta backend.outbox.enqueue-attempts veces.
+     *
+     * @throws IllegalStateException si no se pudo; la venta completa queda en el log
+     */
+    public void registrar(Venta venta) {
+        RuntimeException ultimo = null;
+        for (int intento = 1; intento <= intentos; intento++) {
+            try {
+                redis.opsForStream().add(entrada(venta));
+                return;
+            } catch (RuntimeException e) {
+                ultimo = e;
+                log.warn("No se pudo encolar la venta {} (intento {}/{}): {}", venta.idempotencia(), intento, intentos, e.getMessage());
+                if (intento < intentos) {
+                    try {
+                        Thread.sleep(ESPERA_REINTENTO.toMillis() * intento);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        throw noEncolada(venta, ultimo);
+    }
+
+    /**
+     * Igual que registrar sin bloquear el hilo (flujo de compra reactivo).
+     */
+    public Mono<Void> registrarReactivo(Venta venta) {
+        return Mono.defer(() -> reactiveRedis.opsForStream().add(entrada(venta)))
+                .retryWhen(Retry.backoff(intentos - 1, ESPERA_REINTENTO))
+                .onErrorMap(e -> noEncolada(venta, e))
+                .then();
+    }
+
+    /**
+     * Error de una venta confirmada en la cátedra que no llegó al outbox: se loguea entera para
+     * poder cargarla a mano.
+     */
+    public static IllegalStateException noEncolada(Venta venta, Throwable causa) {
+        log.error("Venta confirmada en cátedra que no se pudo encolar para el backend: {} - {}",
+                venta.idempotencia(), venta.json(), causa);
+        return new IllegalStateException("No se pudo registrar la venta " + venta.idempotencia(), causa);
+    }
+
+    private static MapRecord<String, String, String> entrada(Venta venta) {
+        return StreamRecords.newRecord().in(STREAM).ofMap(Map.of(
+                "idempotencia", venta.idempotencia(),
+                "venta", venta.json()));
+    }
+}
@@ -0,0 +1,249 @@
+package com.cine.proxy.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Entrega al backend las ventas del outbox (ventas:outbox) en tandas.
+ *
+ * - Lee con el consumer group relay-backend: con varias instancias cada venta la toma una sola.
+ * - POST realizar-ventas/lote con hasta backend.outbox.batch-size ventas, cada una con su clave
+ *   de idempotencia: una venta reintentada que el backend ya había guardado vuelve como duplicada.
+ * - guardada / duplicada: XACK y se borra del stream.
+ * - Backend caído o error al guardar: la entrada queda pendiente y se reintenta pasado
+ *   backend.outbox.retry-ms (también las que dejó sin confirmar una instancia que se cayó).
+ * - Rechazada por el backend, o más de backend.outbox.max-attempts entregas: se mueve a
+ *   ventas:outbox:fallidas para revisarla a mano.
+ */
+@Service
+public class SaleOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(SaleOutboxRelay.class);
+
+    public static final String GRUPO = "relay-backend";
+
+    private static final TypeReference<Map<String, Object>> MAPA = new TypeReference<>() {};
+
+    private final StringRedisTemplate redis;
+    private final ObjectMapper mapper;
+    private final WebClient webClient;
+    private final String loteUrl;
+    private final Duration timeout;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration retry;
+    private final int maxAttempts;
+    private final Consumer consumidor = Consumer.from(GRUPO, "proxy-" + UUID.randomUUID());
+    private final Counter entregadas;
+    private final Counter fallidas;
+
+    private volatile boolean grupoCreado;
+
+    public SaleOutboxRelay(StringRedisTemplate redis,
+                           ObjectMapper mapper,
+                           WebClient.Builder webClientBuilder,
+                           MeterRegistry meterRegistry,
+                           @Value("${backend.base-url:http://localhost:8080}") String backendBaseUrl,
+                           @Value("${backend.timeout-ms:5000}") long timeoutMs,
+                           @Value("${backend.outbox.batch-size:50}") int batchSize,
+                           @Value("${backend.outbox.max-batches:20}") int maxBatches,
+                           @Value("${backend.outbox.retry-ms:10000}") long retryMs,
+                           @Value("${backend.outbox.max-attempts:10}") int maxAttempts) {
+        this.redis = redis;
+        this.mapper = mapper;
+        this.webClient = webClientBuilder.build();
+        this.loteUrl = (backendBaseUrl.endsWith("/") ? backendBaseUrl.substring(0, backendBaseUrl.length() - 1) : backendBaseUrl)
+                + "/api/endpoints/v1/realizar-ventas/lote";
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.retry = Duration.ofMillis(retryMs);
+        this.maxAttempts = maxAttempts;
+        this.entregadas = Counter.builder("ventas.outbox.entregadas")
+                .description("Ventas del outbox guardadas en el backend")
+                .register(meterRegistry);
+        this.fallidas = Counter.builder("ventas.outbox.fallidas")
+                .description("Ventas del outbox movidas a ventas:outbox:fallidas")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${backend.outbox.relay-interval-ms:1000}")
+    public void entregar() {
+        try {
+            asegurarGrupo();
+            // Primero los reintentos, después lo nuevo; se corta con una tanda incompleta o si el backend falló
+            for (int tanda = 0; tanda < maxBatches; tanda++) {
+                List<MapRecord<String, Object, Object>> ventas = new ArrayList<>(reintentos());
+                if (ventas.size() < batchSize) {
+                    ventas.addAll(nuevas(batchSize - ventas.size()));
+                }
+                if (ventas.isEmpty() || !enviar(ventas) || ventas.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            // Si el stream se borró (y con él el grupo) se vuelve a crear en la próxima pasada
+            grupoCreado = false;
+            log.warn("Error en el relay de ventas al backend: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Pendientes sin confirmar hace más de retry-ms (entrega fallida o instancia caída).
+     * Las que ya agotaron los intentos van a fallidas.
+     */
+    private List<MapRecord<String, Object, Object>> reintentos() {
+        PendingMessages pendientes = redis.opsForStream().pending(SaleOutbox.STREAM, GRUPO, Range.unbounded(), batchSize);
+        List<RecordId> reintentar = new ArrayList<>();
+        List<RecordId> agotadas = new ArrayList<>();
+        for (PendingMessage p : pendientes) {
+            if (p.getElapsedTimeSinceLastDelivery().compareTo(retry) < 0) {
+                continue;
+            }
+            (p.getTotalDeliveryCount() >= maxAttempts ? agotadas : reintentar).add(p.getId());
+        }
+        if (!agotadas.isEmpty()) {
+            for (MapRecord<String, Object, Object> r : reclamar(agotadas)) {
+                moverAFallidas(r, "sin confirmar tras " + maxAttempts + " entregas");
+            }
+        }
+        return reintentar.isEmpty() ? List.of() : reclamar(reintentar);
+    }
+
+    /**
+     * XCLAIM con el mismo mínimo de inactividad: si otra instancia la tomó recién, no vuelve.
+     */
+    private List<MapRecord<String, Object, Object>> reclamar(List<RecordId> ids) {
+        return redis.opsForStream().claim(SaleOutbox.STREAM, GRUPO, consumidor.getName(), retry, ids.toArray(new RecordId[0]));
+    }
+
+    private List<MapRecord<String, Object, Object>> nuevas(int cantidad) {
+        List<MapRecord<String, Object, Object>> leidas = redis.opsForStream().read(consumidor,
+                StreamReadOptions.empty().count(cantidad),
+                StreamOffset.create(SaleOutbox.STREAM, ReadOffset.lastConsumed()));
+        return leidas == null ? List.of() : leidas;
+    }
+
+    /**
+     * Manda la tanda y resuelve cada entrada según el resultado por clave. false si el backend no
+     * respondió: la tanda queda pendiente entera.
+     */
+    private boolean enviar(List<MapRecord<String, Object, Object>> tanda) {
+        Map<String, MapRecord<String, Object, Object>> porClave = new LinkedHashMap<>();
+        List<Map<String, Object>> ventas = new ArrayList<>();
+        for (MapRecord<String, Object, Object> r : tanda) {
+            String clave = String.valueOf(r.getValue().get("idempotencia"));
+            Map<String, Object> venta;
+            try {
+                venta = new HashMap<>(mapper.readValue(String.valueOf(r.getValue().get("venta")), MAPA));
+            } catch (Exception e) {
+                moverAFallidas(r, "JSON inválido");
+                continue;
+            }
+            venta.put("idempotencia", clave);
+            ventas.add(venta);
+            porClave.put(clave, r);
+        }
+        if (ventas.isEmpty()) {
+            return true;
+        }
+
+        Map<?, ?> respuesta;
+        try {
+            respuesta = webClient.post()
+                    .uri(loteUrl)
+                    .bodyValue(Map.of("ventas", ventas))
+                    .retrieve()
+                    .bodyToMono(Map.class)
+                    .block(timeout);
+        } catch (Exception e) {
+            log.warn("Backend no disponible para {} ventas del outbox, se reintentan en {} ms: {}",
+                    ventas.size(), retry.toMillis(), e.getMessage());
+            return false;
+        }
+
+        List<RecordId> confirmadas = new ArrayList<>();
+        if (respuesta != null && respuesta.get("resultados") instanceof List<?> resultados) {
+            for (Object o : resultados) {
+                if (!(o instanceof Map<?, ?> resultado)) continue;
+                MapRecord<String, Object, Object> r = porClave.get(String.valueOf(resultado.get("idempotencia")));
+                if (r == null) continue;
+                String estado = String.valueOf(resultado.get("estado"));
+                switch (estado) {
+                    case "guardada", "duplicada" -> confirmadas.add(r.getId());
+                    case "rechazada" -> moverAFallidas(r, String.valueOf(resultado.get("error")));
+                    default -> log.warn("Venta {} del outbox no se pudo guardar en el backend, se reintenta", r.getId());
+                }
+            }
+        }
+        if (!confirmadas.isEmpty()) {
+            RecordId[] ids = confirmadas.toArray(new RecordId[0]);
+            redis.opsForStream().acknowledge(SaleOutbox.STREAM, GRUPO, ids);
+            redis.opsForStream().delete(SaleOutbox.STREAM, ids);
+            entregadas.increment(ids.length);
+            log.info("Outbox: {} ventas guardadas en el backend", ids.length);
+        }
+        return true;
+    }
+
+    private void moverAFallidas(MapRecord<String, Object, Object> r, String motivo) {
+        Map<String, String> campos = new HashMap<>();
+        r.getValue().forEach((k, v) -> campos.put(String.valueOf(k), String.valueOf(v)));
+        campos.put("motivo", motivo);
+        redis.opsForStream().add(StreamRecords.newRecord().in(SaleOutbox.FALLIDAS).ofMap(campos));
+        redis.opsForStream().acknowledge(SaleOutbox.STREAM, GRUPO, r.getId());
+        redis.opsForStream().delete(SaleOutbox.STREAM, r.getId());
+        fallidas.increment();
+        log.error("Venta {} del outbox movida a {}: {} - {}", r.getId(), SaleOutbox.FALLIDAS, motivo, campos.get("venta"));
+    }
+
+    /**
+     * XGROUP CREATE ... MKSTREAM desde el principio del stream (las ventas encoladas antes de que
+     * exista el grupo también se entregan). BUSYGROUP = ya existe.
+     */
+    private void asegurarGrupo() {
+        if (grupoCreado) {
+            return;
+        }
+        try {
+            redis.execute((RedisCallback<String>) c -> c.streamCommands().xGroupCreate(
+                    SaleOutbox.STREAM.getBytes(StandardCharsets.UTF_8), GRUPO, ReadOffset.from("0"), true));
+        } catch (RuntimeException e) {
+            String detalle = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (detalle == null || !detalle.contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+        grupoCreado = true;
+    }
+}
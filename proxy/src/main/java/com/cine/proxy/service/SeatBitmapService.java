@@ -0,0 +1,295 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.model.SeatGrid;
+import com.cine.proxy.repository.HashSeatRepository;
+import com.cine.proxy.repository.SeatRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapa de asientos compacto: un bitmap por evento (eventos:{id}:estado) con 2 bits por asiento
+ * en la posición (fila-1)*columnas+(columna-1). Valores: 0 libre, 1 bloqueado, 2 vendido.
+ *
+ * - Los scripts de bloqueo/venta/liberación lo actualizan con BITFIELD.
+ * - La sala completa se lee con un único GET de filas*columnas/4 bytes.
+ * - Holder y comprador no están en el bitmap: se consultan (lock keys / hash de asientos)
+ *   solo para los asientos bloqueados o vendidos.
+ *
+ * El bitmap se arma (seed) desde el documento de la cátedra (evento_{id}) más el estado local
+ * y vive seats.bitmap.ttl-seconds: al vencer se vuelve a armar e incorpora los cambios hechos
+ * en la cátedra por otros clientes. Junto con él se arman los contadores de disponibilidad
+ * (eventos:{id}:disponibilidad), con el mismo TTL.
+ */
+@Service
+public class SeatBitmapService {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatBitmapService.class);
+
+    public static final int LIBRE = SeatGrid.LIBRE;
+    public static final int BLOQUEADO = SeatGrid.BLOQUEADO;
+    public static final int VENDIDO = SeatGrid.VENDIDO;
+
+    /**
+     * holdUntil de un bloqueo local cuya key de lock ya no existe: vencido, se informa LIBRE y
+     * cuenta en SeatGrid.expiredHolds hasta que el barrido lo libere (y suba la versión).
+     */
+    public static final long YA_VENCIDO = 1;
+
+    private static final RedisScript<byte[]> SEED_SCRIPT = HashSeatRepository.script("scripts/seat-bitmap-seed.lua", byte[].class);
+
+    private final StringRedisTemplate redis;
+    private final ObjectMapper mapper;
+    private final HashSeatRepository hashSeatRepository;
+    private final long ttlSeconds;
+
+    public SeatBitmapService(StringRedisTemplate redis,
+                             ObjectMapper mapper,
+                             HashSeatRepository hashSeatRepository,
+                             @Value("${seats.bitmap.ttl-seconds:30}") long ttlSeconds) {
+        this.redis = redis;
+        this.mapper = mapper;
+        this.hashSeatRepository = hashSeatRepository;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public static int index(int fila, int columna, int columnas) {
+        return (fila - 1) * columnas + (columna - 1);
+    }
+
+    public static int byteLength(int filas, int columnas) {
+        return (filas * columnas * 2 + 7) / 8;
+    }
+
+    /** Mismo orden de bits que BITFIELD u2 #index (bit más significativo primero). */
+    public static int status(byte[] bitmap, int index) {
+        int shift = 6 - 2 * (index % 4);
+        return (bitmap[index / 4] >> shift) & 0b11;
+    }
+
+    static void setStatus(byte[] bitmap, int index, int value) {
+        int shift = 6 - 2 * (index % 4);
+        bitmap[index / 4] = (byte) ((bitmap[index / 4] & ~(0b11 << shift)) | (value << shift));
+    }
+
+    /** Documento de asientos que mantiene la cátedra en su Redis. */
+    public static String catedraKeyForEvento(String eventoId) {
+        return "evento_" + eventoId;
+    }
+
+    /**
+     * Devuelve el bitmap del evento, armándolo si no existe o si fue creado con otras dimensiones.
+     */
+    public byte[] getOrSeed(String eventoId, int filas, int columnas) {
+        byte[] key = HashSeatRepository.bitmapKeyForEvento(eventoId).getBytes(StandardCharsets.UTF_8);
+        byte[] bitmap = redis.execute((RedisCallback<byte[]>) c -> c.stringCommands().get(key));
+        int expected = byteLength(filas, columnas);
+        if (bitmap != null && bitmap.length == expected) {
+            return bitmap;
+        }
+        if (bitmap != null) {
+            log.info("Bitmap de evento {} con tamaño {} (esperado {}), se vuelve a armar", eventoId, bitmap.length, expected);
+            redis.delete(HashSeatRepository.bitmapKeyForEvento(eventoId));
+        }
+        return seed(eventoId, filas, columnas);
+    }
+
+    /**
+     * Arma el mapa de asientos (mismo formato que devolvía AsientosController) a partir del bitmap.
+     */
+    public List<Map<String, Object>> readSeatMap(String eventoId, int filas, int columnas) {
+        if (filas <= 0 || columnas <= 0) {
+            return new ArrayList<>();
+        }
+        return readGrid(eventoId, filas, columnas).toSeatMaps(System.currentTimeMillis());
+    }
+
+    /**
+     * Carga la sala desde el bitmap en un SeatGrid, con holder y comprador resueltos
+     * solo para los asientos bloqueados o vendidos.
+     */
+    public SeatGrid readGrid(String eventoId, int filas, int columnas) {
+        SeatGrid grid = new SeatGrid(filas, columnas);
+        byte[] bitmap = getOrSeed(eventoId, filas, columnas);
+
+        List<Integer> held = new ArrayList<>();
+        List<Integer> sold = new ArrayList<>();
+        for (int i = 0; i < grid.size(); i++) {
+            int st = status(bitmap, i);
+            if (st == BLOQUEADO) {
+                grid.setBloqueado(i, null, 0);
+                held.add(i);
+            } else if (st == VENDIDO) {
+                grid.setVendido(i, null, null);
+                sold.add(i);
+            }
+        }
+
+        resolveHolders(eventoId, grid, held);
+        resolveCompradores(eventoId, grid, sold);
+        return grid;
+    }
+
+    /**
+     * Bloqueados: el holder es el valor de la key de lock. Sin lock, si el bloqueo era local ya
+     * venció (queda con holdUntil YA_VENCIDO); si no hay registro local es un bloqueo hecho en la
+     * cátedra por otro.
+     */
+    private void resolveHolders(String eventoId, SeatGrid grid, List<Integer> held) {
+        if (held.isEmpty()) return;
+        List<String> lockKeys = new ArrayList<>(held.size());
+        for (int i : held) {
+            lockKeys.add(SeatRepository.lockKey(eventoId, seatIdOf(grid, i)));
+        }
+        List<String> owners = redis.opsForValue().multiGet(lockKeys);
+
+        List<Integer> sinLock = new ArrayList<>();
+        for (int k = 0; k < held.size(); k++) {
+            String owner = owners == null ? null : owners.get(k);
+            if (owner != null) {
+                grid.setBloqueado(held.get(k), owner, 0);
+            } else {
+                sinLock.add(held.get(k));
+            }
+        }
+        if (sinLock.isEmpty()) return;
+
+        List<ObjectNode> locales = hashSeatRepository.findSeats(eventoId, seatIds(grid, sinLock));
+        for (int k = 0; k < sinLock.size(); k++) {
+            ObjectNode local = locales.get(k);
+            if (local != null && !local.path("holder").asText("").isBlank()) {
+                grid.setBloqueado(sinLock.get(k), null, YA_VENCIDO);
+            }
+        }
+    }
+
+    private void resolveCompradores(String eventoId, SeatGrid grid, List<Integer> sold) {
+        if (sold.isEmpty()) return;
+        List<ObjectNode> locales = hashSeatRepository.findSeats(eventoId, seatIds(grid, sold));
+        for (int k = 0; k < sold.size(); k++) {
+            ObjectNode local = locales.get(k);
+            JsonNode compradorNode = local == null ? null : local.path("comprador");
+            if (compradorNode != null && compradorNode.isObject()) {
+                grid.setVendido(sold.get(k), compradorNode.path("persona").asText(""),
+                        compradorNode.path("fechaVenta").asText(""));
+            }
+        }
+    }
+
+    /**
+     * Arma el bitmap con el estado de la cátedra y lo guarda con SEED_SCRIPT, que en la misma
+     * ejecución le aplica el estado local (vendidos y bloqueos con lock vigente) y sus contadores.
+     */
+    private byte[] seed(String eventoId, int filas, int columnas) {
+        byte[] bitmap = new byte[byteLength(filas, columnas)];
+        long ahora = Instant.now().getEpochSecond();
+
+        String catedraJson = redis.opsForValue().get(catedraKeyForEvento(eventoId));
+        if (catedraJson != null && !catedraJson.isBlank()) {
+            try {
+                for (JsonNode asiento : mapper.readTree(catedraJson).path("asientos")) {
+                    int fila = asiento.path("fila").asInt(-1);
+                    int columna = asiento.path("columna").asInt(-1);
+                    if (fila < 1 || fila > filas || columna < 1 || columna > columnas) continue;
+                    String estado = asiento.path("estado").asText("");
+                    if ("Vendido".equalsIgnoreCase(estado)) {
+                        setStatus(bitmap, index(fila, columna, columnas), VENDIDO);
+                    } else if ("Bloqueado".equalsIgnoreCase(estado) && bloqueoVigente(asiento, ahora)) {
+                        setStatus(bitmap, index(fila, columna, columnas), BLOQUEADO);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("No se pudo parsear {} para armar el bitmap: {}", catedraKeyForEvento(eventoId), e.getMessage());
+            }
+        }
+
+        long[] cantidades = contar(bitmap, filas * columnas);
+        byte[] guardado = redis.execute(SEED_SCRIPT, RedisSerializer.byteArray(), RedisSerializer.byteArray(),
+                List.of(HashSeatRepository.bitmapKeyForEvento(eventoId), HashSeatRepository.disponibilidadKeyForEvento(eventoId),
+                        HashSeatRepository.dimensionesKeyForEvento(eventoId), HashSeatRepository.keyForEvento(eventoId),
+                        HashSeatRepository.versionKeyForEvento(eventoId)),
+                bitmap, bytes(ttlSeconds), bytes(cantidades[LIBRE]), bytes(cantidades[BLOQUEADO]), bytes(cantidades[VENDIDO]),
+                bytes(filas), bytes(columnas), SeatRepository.lockKey(eventoId, "").getBytes(StandardCharsets.UTF_8));
+        log.info("Bitmap de asientos armado para evento {} ({}x{}, {} bytes)", eventoId, filas, columnas, bitmap.length);
+        return guardado != null && guardado.length == bitmap.length ? guardado : bitmap;
+    }
+
+    /**
+     * Contadores libres/bloqueados/vendidos del evento. Los mantienen los scripts y el barrido de
+     * vencidos; si no están (venció el bitmap) se vuelven a armar junto con él.
+     */
+    public Map<String, Long> disponibilidad(String eventoId, int filas, int columnas) {
+        String key = HashSeatRepository.disponibilidadKeyForEvento(eventoId);
+        Map<Object, Object> contadores = redis.opsForHash().entries(key);
+        if (contadores.isEmpty()) {
+            long[] cantidades = contar(getOrSeed(eventoId, filas, columnas), filas * columnas);
+            return disponibilidad(cantidades[LIBRE], cantidades[BLOQUEADO], cantidades[VENDIDO]);
+        }
+        return disponibilidad(valor(contadores.get("libres")), valor(contadores.get("bloqueados")),
+                valor(contadores.get("vendidos")));
+    }
+
+    private static Map<String, Long> disponibilidad(long libres, long bloqueados, long vendidos) {
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        resultado.put("libres", libres);
+        resultado.put("bloqueados", bloqueados);
+        resultado.put("vendidos", vendidos);
+        return resultado;
+    }
+
+    private static long valor(Object contador) {
+        return contador == null ? 0 : Long.parseLong(contador.toString());
+    }
+
+    private static long[] contar(byte[] bitmap, int asientos) {
+        long[] cantidades = new long[4];
+        for (int i = 0; i < asientos; i++) {
+            cantidades[status(bitmap, i)]++;
+        }
+        return cantidades;
+    }
+
+    private static byte[] bytes(long valor) {
+        return String.valueOf(valor).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean bloqueoVigente(JsonNode asiento, long ahora) {
+        String expiracion = asiento.path("expira").asText(null);
+        if (expiracion == null) {
+            return false;
+        }
+        try {
+            return OffsetDateTime.parse(expiracion).toInstant().getEpochSecond() > ahora;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String seatIdOf(SeatGrid grid, int i) {
+        return SeatGrid.seatId(i / grid.getColumnas() + 1, i % grid.getColumnas() + 1);
+    }
+
+    private static List<String> seatIds(SeatGrid grid, List<Integer> indices) {
+        List<String> ids = new ArrayList<>(indices.size());
+        for (int i : indices) {
+            ids.add(seatIdOf(grid, i));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,190 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.model.SeatChange;
+import com.cine.proxy.repository.HashSeatRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Log acotado de cambios de asientos por evento: ZSET eventos:{id}:cambios con score = versión
+ * y como miembro el SeatChange en JSON. Se guardan los últimos seats.changes.max-entries.
+ *
+ * Permite que un cliente que ya tiene el mapa en la versión V pida solo lo que cambió después.
+ * Si el log ya no cubre desde V+1 (se recortó, o hubo un cambio que no se puede expresar
+ * asiento por asiento) se le pide que vuelva a bajar el mapa completo.
+ */
+@Service
+public class SeatChangeLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatChangeLog.class);
+
+    private final StringRedisTemplate redis;
+    private final ReactiveStringRedisTemplate reactiveRedis;
+    private final ObjectMapper mapper;
+    private final int maxEntries;
+
+    public SeatChangeLog(StringRedisTemplate redis,
+                         ReactiveStringRedisTemplate reactiveRedis,
+                         ObjectMapper mapper,
+                         @Value("${seats.changes.max-entries:500}") int maxEntries) {
+        this.redis = redis;
+        this.reactiveRedis = reactiveRedis;
+        this.mapper = mapper;
+        this.maxEntries = maxEntries;
+    }
+
+    public static String keyForEvento(String eventoId) {
+        return "eventos:" + eventoId + ":cambios";
+    }
+
+    /**
+     * Agrega el cambio (ya versionado) y recorta el log. Un error no afecta la operación:
+     * los clientes detectan el hueco y vuelven a pedir el mapa completo.
+     */
+    public void append(SeatChange change) {
+        if (change.getVersion() <= 0) {
+            return;
+        }
+        try {
+            String key = keyForEvento(change.getEventoId());
+            String json = mapper.writeValueAsString(change);
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection c = (StringRedisConnection) connection;
+                c.zAdd(key, change.getVersion(), json);
+                c.zRemRange(key, 0, -(maxEntries + 1L));
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("No se pudo registrar el cambio {} del evento {}: {}", change.getVersion(), change.getEventoId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Igual que append, sin bloquear el hilo (flujo de compra reactivo). Nunca termina con error.
+     */
+    public Mono<Void> appendReactivo(SeatChange change) {
+        if (change.getVersion() <= 0) {
+            return Mono.empty();
+        }
+        String key = keyForEvento(change.getEventoId());
+        return Mono.fromCallable(() -> mapper.writeValueAsString(change))
+                .flatMap(json -> reactiveRedis.opsForZSet().add(key, json, change.getVersion()))
+                .then(reactiveRedis.opsForZSet().removeRange(key, Range.closed(0L, -(maxEntries + 1L))))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("No se pudo registrar el cambio {} del evento {}: {}", change.getVersion(), change.getEventoId(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Cambios posteriores a la versión indicada, uno por asiento (el último).
+     *
+     * @return { eventoId, version, resync, cambios: [ {seatId, fila, columna, status, ...} ] }
+     */
+    public Map<String, Object> since(String eventoId, long since) {
+        String guardada = redis.opsForValue().get(HashSeatRepository.versionKeyForEvento(eventoId));
+        long actual = guardada == null ? 0 : Long.parseLong(guardada);
+
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("eventoId", eventoId);
+        respuesta.put("version", actual);
+        if (since == actual) {
+            respuesta.put("resync", false);
+            respuesta.put("cambios", List.of());
+            return respuesta;
+        }
+        if (since > actual) {
+            return resync(respuesta);
+        }
+
+        Set<ZSetOperations.TypedTuple<String>> entradas =
+                redis.opsForZSet().rangeByScoreWithScores(keyForEvento(eventoId), since + 1, actual);
+        if (entradas == null || entradas.isEmpty()) {
+            return resync(respuesta);
+        }
+
+        Map<String, Map<String, Object>> porAsiento = new LinkedHashMap<>();
+        long esperada = since + 1;
+        for (ZSetOperations.TypedTuple<String> entrada : entradas) {
+            long version = entrada.getScore() == null ? -1 : entrada.getScore().longValue();
+            if (version != esperada) {
+                // Hueco en el log: falta algún cambio
+                return resync(respuesta);
+            }
+            esperada++;
+            SeatChange change;
+            try {
+                change = mapper.readValue(entrada.getValue(), SeatChange.class);
+            } catch (Exception e) {
+                return resync(respuesta);
+            }
+            if (change.getStatus() == null) {
+                // Invalidación completa: no se puede expresar asiento por asiento
+                return resync(respuesta);
+            }
+            porAsiento.remove(change.getSeatId());
+            porAsiento.put(change.getSeatId(), asiento(change));
+        }
+
+        respuesta.put("version", esperada - 1);
+        respuesta.put("resync", false);
+        respuesta.put("cambios", new ArrayList<>(porAsiento.values()));
+        return respuesta;
+    }
+
+    private Map<String, Object> resync(Map<String, Object> respuesta) {
+        respuesta.put("resync", true);
+        respuesta.put("cambios", List.of());
+        return respuesta;
+    }
+
+    /** Asiento del cambio en el formato de GET /asientos/{eventoId}, más la versión. */
+    static Map<String, Object> asiento(SeatChange change) {
+        Map<String, Object> seat = new LinkedHashMap<>();
+        seat.put("seatId", change.getSeatId());
+        String seatId = change.getSeatId();
+        int c = seatId.indexOf('c', 1);
+        if (seatId.startsWith("r") && c > 1) {
+            try {
+                seat.put("fila", Integer.parseInt(seatId.substring(1, c)));
+                seat.put("columna", Integer.parseInt(seatId.substring(c + 1)));
+            } catch (NumberFormatException ignored) {
+                // seatId fuera de formato: se informa solo el id
+            }
+        }
+        seat.put("status", change.getStatus());
+        if ("BLOQUEADO".equals(change.getStatus())) {
+            if (change.getHolder() != null) seat.put("holder", change.getHolder());
+            if (change.getExpiraEpochMs() > 0) seat.put("expiraEpochMs", change.getExpiraEpochMs());
+        } else if ("VENDIDO".equals(change.getStatus())) {
+            if (change.getPersona() != null || change.getFechaVenta() != null) {
+                Map<String, Object> comprador = new HashMap<>();
+                comprador.put("persona", change.getPersona() == null ? "" : change.getPersona());
+                comprador.put("fechaVenta", change.getFechaVenta() == null ? "" : change.getFechaVenta());
+                seat.put("comprador", comprador);
+            } else {
+                seat.put("comprador", "");
+            }
+        }
+        seat.put("version", change.getVersion());
+        return seat;
+    }
+}
@@ -0,0 +1,476 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.model.SeatChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Stream SSE de cambios de asientos por evento (GET /asientos/{eventoId}/stream).
+ *
+ * - Por instancia hay una sola suscripción pub/sub por evento (canal asientos:cambios:{id}),
+ *   abierta con el primer cliente y cerrada con el último; cada mensaje se serializa una vez
+ *   y se escribe igual en todos los clientes del evento.
+ * - Las escrituras se hacen en un pool acotado (seats.stream.send-threads), nunca en el hilo del
+ *   cliente Redis; cada cliente tiene su propia cola acotada (seats.stream.max-pending).
+ * - Los vencimientos de bloqueos llegan de la rueda de SeatGridCache y se avisan como LIBRE
+ *   (motivo BLOQUEO_VENCIDO) sin esperar al barrido que los escribe en Redis.
+ * - El id de cada evento es la versión del mapa; al reconectar con Last-Event-ID (o ?since=)
+ *   se reenvía lo que falta desde SeatChangeLog, o un evento resync si el log no alcanza.
+ * - Otros canales (WebSocket) se registran como Oyente sobre la misma suscripción.
+ */
+@Service
+public class SeatChangeStream {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatChangeStream.class);
+
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper mapper;
+    private final SeatChangeLog changeLog;
+    private final SeatGridCache seatGridCache;
+    private final EventoDimensionesCache dimensionesCache;
+    private final long timeoutMs;
+
+    private final Map<String, Canal> canales = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor envios;
+    private final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(r -> hilo(r, "sse-asientos-timer"));
+    private final int maxPendientes;
+    private final long aperturaMs;
+
+    public SeatChangeStream(RedisMessageListenerContainer listenerContainer,
+                            ObjectMapper mapper,
+                            SeatChangeLog changeLog,
+                            SeatGridCache seatGridCache,
+                            EventoDimensionesCache dimensionesCache,
+                            @Value("${seats.stream.timeout-ms:1800000}") long timeoutMs,
+                            @Value("${seats.stream.heartbeat-ms:20000}") long heartbeatMs,
+                            @Value("${seats.stream.send-threads:4}") int sendThreads,
+                            @Value("${seats.stream.max-pending:1000}") int maxPendientes,
+                            @Value("${seats.stream.open-timeout-ms:5000}") long aperturaMs) {
+        this.listenerContainer = listenerContainer;
+        this.mapper = mapper;
+        this.changeLog = changeLog;
+        this.seatGridCache = seatGridCache;
+        this.dimensionesCache = dimensionesCache;
+        this.timeoutMs = timeoutMs;
+        this.maxPendientes = maxPendientes;
+        this.aperturaMs = aperturaMs;
+        // Cada cliente tiene como mucho una tarea en la cola (ver Cliente): la cola se acota igual
+        AtomicInteger hilos = new AtomicInteger();
+        this.envios = new ThreadPoolExecutor(sendThreads, sendThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(10_000), r -> hilo(r, "sse-asientos-" + hilos.incrementAndGet()));
+        timers.scheduleWithFixedDelay(this::latido, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        seatGridCache.alVencerBloqueo(this::bloqueoVencido);
+    }
+
+    /**
+     * Recibe los avisos de un evento en el hilo del cliente Redis (o de la rueda de vencimientos):
+     * no debe bloquear. tipo es "asiento" (data = asiento en el formato de /changes) o "resync".
+     */
+    public interface Oyente {
+        void aviso(String eventoId, String tipo, Map<String, Object> data);
+    }
+
+    public static String channelForEvento(String eventoId) {
+        return SeatGridCache.CHANNEL + ":" + eventoId;
+    }
+
+    /**
+     * Registra un cliente del evento. Si se indica desdeVersion se le reenvían primero los cambios
+     * posteriores a esa versión.
+     *
+     * El cliente se registra en pausa: lo que llegue por pub/sub se encola pero no sale hasta que
+     * la respuesta inicial (o el reenvío) quedó adelante en su cola; los cambios que ya vinieron
+     * en el reenvío se descartan por versión.
+     *
+     * Si el canal lo está abriendo otro cliente, este no espera en el hilo del request: el inicio
+     * sale por el pool de envíos cuando el canal quedó abierto, o el emitter termina con error si
+     * no se abrió en seats.stream.open-timeout-ms (el cliente reconecta con Last-Event-ID).
+     */
+    public SseEmitter suscribir(String eventoId, Long desdeVersion) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Cliente cliente = new Cliente(eventoId, emitter);
+        Canal canal = registrar(eventoId, c -> c.clientes.add(cliente));
+        emitter.onCompletion(() -> quitar(eventoId, cliente));
+        emitter.onTimeout(() -> quitar(eventoId, cliente));
+        emitter.onError(e -> quitar(eventoId, cliente));
+
+        if (canal.abierto.isDone()) {
+            iniciar(cliente, desdeVersion);
+            return emitter;
+        }
+        // copy(): el timeout es de este cliente, no del canal
+        canal.abierto.copy().orTimeout(aperturaMs, TimeUnit.MILLISECONDS).whenComplete((ok, error) -> {
+            if (error != null) {
+                log.warn("Canal de asientos del evento {} sin abrir tras {} ms", eventoId, aperturaMs);
+                emitter.completeWithError(error);
+                return;
+            }
+            try {
+                envios.execute(() -> iniciar(cliente, desdeVersion));
+            } catch (RejectedExecutionException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Respuesta inicial (o reenvío desde desdeVersion) de un cliente recién suscripto; después
+     * sale lo que se encoló mientras tanto.
+     */
+    private void iniciar(Cliente cliente, Long desdeVersion) {
+        String eventoId = cliente.eventoId;
+        SseEmitter emitter = cliente.emitter;
+        try {
+            List<Envio> inicio = new ArrayList<>();
+            long hastaVersion = 0;
+            if (desdeVersion == null) {
+                inicio.add(new Envio(0, SseEmitter.event().comment("ok").build()));
+            } else {
+                Map<String, Object> cambios = changeLog.since(eventoId, desdeVersion);
+                hastaVersion = ((Number) cambios.get("version")).longValue();
+                if (Boolean.TRUE.equals(cambios.get("resync"))) {
+                    inicio.add(new Envio(0, evento(null, "resync", Map.of("eventoId", eventoId, "version", cambios.get("version")))));
+                } else {
+                    for (Object cambio : (List<?>) cambios.get("cambios")) {
+                        Object version = ((Map<?, ?>) cambio).get("version");
+                        inicio.add(new Envio(0, evento(String.valueOf(version), "asiento", cambio)));
+                    }
+                }
+            }
+            cliente.reanudar(inicio, hastaVersion);
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    public void agregarOyente(String eventoId, Oyente oyente) {
+        registrar(eventoId, c -> c.oyentes.add(oyente));
+    }
+
+    public void quitarOyente(String eventoId, Oyente oyente) {
+        quitar(eventoId, c -> c.oyentes.remove(oyente));
+    }
+
+    public int clientes(String eventoId) {
+        Canal canal = canales.get(eventoId);
+        return canal == null ? 0 : canal.clientes.size() + canal.oyentes.size();
+    }
+
+    @PreDestroy
+    void cerrar() {
+        timers.shutdownNow();
+        envios.shutdownNow();
+        canales.values().forEach(c -> c.clientes.forEach(cliente -> cliente.emitter.complete()));
+    }
+
+    /**
+     * Alta de un cliente u oyente. El mapa solo se toca en memoria; si el alta crea el canal, la
+     * suscripción pub/sub y la precarga de la grilla (I/O contra Redis) se hacen después, fuera
+     * del lock del mapa. Quien se suma mientras tanto espera canal.abierto.
+     */
+    private Canal registrar(String eventoId, Consumer<Canal> alta) {
+        Canal[] nuevo = new Canal[1];
+        Canal canal = canales.compute(eventoId, (id, existente) -> {
+            Canal c = existente != null ? existente : (nuevo[0] = new Canal(id));
+            alta.accept(c);
+            return c;
+        });
+        if (canal == nuevo[0]) {
+            abrir(canal);
+        }
+        return canal;
+    }
+
+    private void abrir(Canal canal) {
+        try {
+            // Bloqueos anteriores a la suscripción: con la grilla cargada quedan en la rueda de vencimientos
+            try {
+                int[] dims = dimensionesCache.obtener(canal.eventoId);
+                seatGridCache.precargar(canal.eventoId, dims[0], dims[1]);
+            } catch (Exception e) {
+                log.warn("No se pudieron leer los bloqueos vigentes del evento {}: {}", canal.eventoId, e.getMessage());
+            }
+            listenerContainer.addMessageListener(canal, canal.topic);
+            log.info("Stream de asientos abierto para evento {}", canal.eventoId);
+        } finally {
+            canal.abierto.complete(null);
+        }
+    }
+
+    private void quitar(String eventoId, Cliente cliente) {
+        quitar(eventoId, c -> c.clientes.remove(cliente));
+    }
+
+    /**
+     * Baja de un cliente u oyente; el último cierra el canal. La desuscripción va fuera del lock
+     * del mapa y después de la suscripción (si el canal se cierra mientras se estaba abriendo).
+     */
+    private void quitar(String eventoId, Consumer<Canal> baja) {
+        Canal[] cerrado = new Canal[1];
+        canales.computeIfPresent(eventoId, (id, canal) -> {
+            baja.accept(canal);
+            if (!canal.clientes.isEmpty() || !canal.oyentes.isEmpty()) {
+                return canal;
+            }
+            cerrado[0] = canal;
+            return null;
+        });
+        if (cerrado[0] != null) {
+            Canal canal = cerrado[0];
+            canal.abierto.thenRun(() -> {
+                listenerContainer.removeMessageListener(canal, canal.topic);
+                log.info("Stream de asientos cerrado para evento {} (sin clientes)", canal.eventoId);
+            });
+        }
+    }
+
+    /**
+     * Entrega un aviso a los oyentes y, serializado una sola vez, a los clientes SSE.
+     */
+    private void avisar(Canal canal, String id, String tipo, Map<String, Object> data) {
+        for (Oyente oyente : canal.oyentes) {
+            try {
+                oyente.aviso(canal.eventoId, tipo, data);
+            } catch (Exception e) {
+                log.warn("Error entregando aviso del evento {}: {}", canal.eventoId, e.getMessage());
+            }
+        }
+        if (canal.clientes.isEmpty()) {
+            return;
+        }
+        try {
+            difundir(canal, evento(id, tipo, data), id != null ? Long.parseLong(id) : 0);
+        } catch (Exception e) {
+            log.warn("No se pudo serializar el aviso del evento {}: {}", canal.eventoId, e.getMessage());
+        }
+    }
+
+    private void difundir(Canal canal, Set<ResponseBodyEmitter.DataWithMediaType> evento, long version) {
+        for (Cliente cliente : canal.clientes) {
+            cliente.encolar(new Envio(version, evento));
+        }
+    }
+
+    private void latido() {
+        Set<ResponseBodyEmitter.DataWithMediaType> ping = SseEmitter.event().comment("ping").build();
+        for (Canal canal : canales.values()) {
+            for (Cliente cliente : canal.clientes) {
+                cliente.latido(ping);
+            }
+        }
+    }
+
+    private void bloqueoVencido(SeatChange vencido) {
+        Canal canal = canales.get(vencido.getEventoId());
+        if (canal == null) {
+            return;
+        }
+        Map<String, Object> asiento = SeatChangeLog.asiento(vencido);
+        asiento.remove("version");
+        asiento.put("motivo", "BLOQUEO_VENCIDO");
+        avisar(canal, null, "asiento", asiento);
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> evento(String id, String nombre, Object data) throws Exception {
+        SseEmitter.SseEventBuilder builder = SseEmitter.event().name(nombre).data(mapper.writeValueAsString(data));
+        if (id != null) {
+            builder.id(id);
+        }
+        return builder.build();
+    }
+
+    private static Thread hilo(Runnable r, String nombre) {
+        Thread t = new Thread(r, nombre);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Clientes SSE y oyentes de un evento; es también el listener de su canal pub/sub.
+     */
+    private final class Canal implements MessageListener {
+        final String eventoId;
+        final ChannelTopic topic;
+        final List<Cliente> clientes = new CopyOnWriteArrayList<>();
+        final List<Oyente> oyentes = new CopyOnWriteArrayList<>();
+        /** Se completa cuando la suscripción pub/sub quedó hecha (o falló). */
+        final CompletableFuture<Void> abierto = new CompletableFuture<>();
+
+        Canal(String eventoId) {
+            this.eventoId = eventoId;
+            this.topic = new ChannelTopic(channelForEvento(eventoId));
+        }
+
+        @Override
+        public void onMessage(Message message, byte[] pattern) {
+            try {
+                SeatChange change = mapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8), SeatChange.class);
+                if (change.getStatus() == null) {
+                    avisar(this, null, "resync", Map.of("eventoId", eventoId, "version", change.getVersion()));
+                    return;
+                }
+                String id = change.getVersion() > 0 ? String.valueOf(change.getVersion()) : null;
+                avisar(this, id, "asiento", SeatChangeLog.asiento(change));
+            } catch (Exception e) {
+                log.warn("Mensaje inválido en {}: {}", topic.getTopic(), e.getMessage());
+            }
+        }
+    }
+
+    /** Un evento SSE ya serializado; version 0 = sin versión (ping, vencimientos, respuesta inicial). */
+    private record Envio(long version, Set<ResponseBodyEmitter.DataWithMediaType> datos) {}
+
+    /**
+     * Cola propia de un cliente SSE, acotada a seats.stream.max-pending. Como mucho una tarea del
+     * pool de envíos por cliente (enCurso): un cliente lento solo demora su propia cola. Si la cola
+     * se llena se descarta entera y queda un único resync (el cliente vuelve a leer el mapa).
+     */
+    private final class Cliente {
+        private static final int LOTE = 100;
+
+        final String eventoId;
+        final SseEmitter emitter;
+        private final ArrayDeque<Envio> pendientes = new ArrayDeque<>();
+        private boolean pausado = true;
+        private boolean enCurso;
+        private long hastaVersion;
+
+        Cliente(String eventoId, SseEmitter emitter) {
+            this.eventoId = eventoId;
+            this.emitter = emitter;
+        }
+
+        void encolar(Envio envio) {
+            synchronized (this) {
+                if (envio.version() > 0 && envio.version() <= hastaVersion) {
+                    return;
+                }
+                if (pendientes.size() >= maxPendientes) {
+                    pendientes.clear();
+                    try {
+                        pendientes.add(new Envio(0, evento(null, "resync", Map.of("eventoId", eventoId, "version", envio.version()))));
+                    } catch (Exception e) {
+                        log.warn("No se pudo serializar el resync del evento {}: {}", eventoId, e.getMessage());
+                    }
+                    return;
+                }
+                pendientes.add(envio);
+                if (!tomarTurno()) {
+                    return;
+                }
+            }
+            programar();
+        }
+
+        /** El ping solo hace falta si no hay nada por salir. */
+        void latido(Set<ResponseBodyEmitter.DataWithMediaType> ping) {
+            synchronized (this) {
+                if (!pendientes.isEmpty() || pausado) {
+                    return;
+                }
+                pendientes.add(new Envio(0, ping));
+                if (!tomarTurno()) {
+                    return;
+                }
+            }
+            programar();
+        }
+
+        /**
+         * Pone la respuesta inicial delante de lo que llegó en pausa y descarta de eso lo que ya
+         * cubre (versión <= hastaVersion).
+         */
+        void reanudar(List<Envio> inicio, long hastaVersion) {
+            synchronized (this) {
+                this.hastaVersion = hastaVersion;
+                pendientes.removeIf(e -> e.version() > 0 && e.version() <= hastaVersion);
+                for (int i = inicio.size() - 1; i >= 0; i--) {
+                    pendientes.addFirst(inicio.get(i));
+                }
+                pausado = false;
+                if (!tomarTurno()) {
+                    return;
+                }
+            }
+            programar();
+        }
+
+        private boolean tomarTurno() {
+            if (pausado || enCurso || pendientes.isEmpty()) {
+                return false;
+            }
+            enCurso = true;
+            return true;
+        }
+
+        private void programar() {
+            try {
+                envios.execute(this::vaciar);
+            } catch (RejectedExecutionException e) {
+                // Pool saturado: se corta el cliente, reconecta con Last-Event-ID
+                descartar(e);
+            }
+        }
+
+        private void vaciar() {
+            for (int i = 0; i < LOTE; i++) {
+                Envio envio;
+                synchronized (this) {
+                    envio = pendientes.poll();
+                    if (envio == null) {
+                        enCurso = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(envio.datos());
+                } catch (Exception e) {
+                    // Cliente desconectado
+                    descartar(e);
+                    return;
+                }
+            }
+            // Lote completo: vuelve a la cola del pool para no acaparar un hilo
+            programar();
+        }
+
+        private void descartar(Exception causa) {
+            synchronized (this) {
+                pendientes.clear();
+                enCurso = false;
+                pausado = true;
+            }
+            quitar(eventoId, this);
+            emitter.completeWithError(causa);
+        }
+    }
+}
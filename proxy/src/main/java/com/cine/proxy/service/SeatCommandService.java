@@ -0,0 +1,289 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.client.CatedraClient;
+import com.cine.proxy.client.CatedraException;
+import com.cine.proxy.model.SeatBatchResult;
+import com.cine.proxy.model.SeatOperationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bloqueo y venta de varios asientos (cátedra + Redis local + backend), compartidos por los
+ * endpoints HTTP bloquear-asientos / realizar-ventas y por los comandos del WebSocket.
+ * La sesión ya viene validada por quien llama; la respuesta es la misma que la del endpoint HTTP.
+ * Como ReactiveSeatPurchaseService, devuelven un Mono que no ocupa el hilo mientras espera a
+ * Redis o a la cátedra (en modo blob, los pasos de Redis van a boundedElastic).
+ */
+@Service
+public class SeatCommandService {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatCommandService.class);
+
+    /** r{fila}c{columna}; hasta 4 dígitos para que el parseo no desborde. */
+    private static final Pattern SEAT_ID = Pattern.compile("r(\\d{1,4})c(\\d{1,4})");
+
+    private final RedisSeatService seatService;
+    private final CatedraClient catedraClient;
+    private final SaleOutbox saleOutbox;
+
+    public SeatCommandService(RedisSeatService seatService, CatedraClient catedraClient, SaleOutbox saleOutbox) {
+        this.seatService = seatService;
+        this.catedraClient = catedraClient;
+        this.saleOutbox = saleOutbox;
+    }
+
+    /**
+     * Bloqueo de varios asientos: un único script en Redis que los bloquea a todos o a ninguno y
+     * una llamada a la cátedra con todos los asientos. Primero se bloquea localmente: si la cátedra
+     * rechaza o no responde se deshacen las locks que creó este pedido y no queda nada tomado en la
+     * cátedra. Ningún paso bloquea el hilo (script por el cliente reactivo, postReactivo).
+     * Body: { "eventoId": 1, "seatIds": ["r1c1", "r1c2"] }
+     */
+    public Mono<ResponseEntity<?>> bloquearAsientos(Map<String, Object> request, String sessionId) {
+        Integer eventoId = parseEventoId(request.get("eventoId"));
+        if (eventoId == null) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "eventoId debe ser un número entero")));
+        }
+        if (!(request.get("seatIds") instanceof List<?> rawSeatIds) || rawSeatIds.isEmpty()) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "seatIds debe ser una lista no vacía")));
+        }
+
+        List<String> seatIds = new ArrayList<>(new java.util.LinkedHashSet<>(rawSeatIds.stream().map(String::valueOf).toList()));
+        List<Map<String, Object>> asientos = new ArrayList<>();
+        for (String seatId : seatIds) {
+            Map<String, Object> filaColumna = parseSeatId(seatId);
+            if (filaColumna == null) {
+                return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "Formato de seatId inválido (esperado r{fila}c{columna}): " + seatId)));
+            }
+            asientos.add(filaColumna);
+        }
+        String evento = String.valueOf(eventoId);
+
+        // 1. Todos o ninguno en el Redis local. El script informa qué locks creó: solo esos se
+        //    deshacen si la cátedra falla (un rebloqueo propio queda como estaba)
+        return seatService.bloquearAsientosReactivo(evento, seatIds, sessionId).flatMap(bloqueo -> {
+            if (!bloqueo.isOk()) {
+                return Mono.just(conflictos(bloqueo.getConflictos(), HttpStatus.CONFLICT));
+            }
+            List<String> creados = bloqueo.getCreados();
+
+            // 2. Cátedra
+            Map<String, Object> catedraBody = Map.of(
+                "eventoId", eventoId,
+                "asientos", asientos
+            );
+            return catedraClient.postReactivo(CatedraClient.Endpoint.BLOQUEOS, "/api/endpoints/v1/bloquear-asientos", catedraBody)
+                    .defaultIfEmpty(Map.of())
+                    .onErrorResume(e -> seatService.deshacerBloqueosReactivo(evento, creados, sessionId).then(Mono.error(e)))
+                    .flatMap(catedraResult -> {
+                        if (!Boolean.TRUE.equals(catedraResult.get("resultado"))) {
+                            return seatService.deshacerBloqueosReactivo(evento, creados, sessionId)
+                                    .then(Mono.just(ResponseEntity.status(HttpStatus.CONFLICT)
+                                        .body(Map.of("error", "No se pudo bloquear en cátedra", "detalle_catedra", catedraResult))));
+                        }
+                        Map<String, Object> ok = new HashMap<>();
+                        ok.put("message", "Asientos bloqueados. Tiene 5 minutos para comprar.");
+                        ok.put("seatIds", seatIds);
+                        ok.put("respuesta_catedra", catedraResult);
+                        return Mono.just(ResponseEntity.ok(ok));
+                    });
+        }).onErrorResume(e -> Mono.just(errorComando("Error bloqueando asientos", e)));
+    }
+
+    /**
+     * Venta de varios asientos, sin bloquear el hilo.
+     * Body: { "eventoId": 1, "seatIds": ["r1c1", "r1c2"], "persona": "...", "precioVenta": 1000 }
+     *
+     * 1. Verifica todos los bloqueos de la sesión en una sola operación de Redis.
+     * 2. Una única llamada realizar-venta a la cátedra con todos los asientos.
+     * 3. Marca todos como vendidos en una sola escritura.
+     * 4. La venta va al outbox del backend (SaleOutbox), sin esperar a que se guarde; solo si
+     *    se marcaron todos.
+     */
+    public Mono<ResponseEntity<?>> venderAsientos(Map<String, Object> request, String sessionId) {
+        Integer eventoId = parseEventoId(request.get("eventoId"));
+        if (eventoId == null) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "eventoId debe ser un número entero")));
+        }
+        String persona = request.get("persona") != null ? String.valueOf(request.get("persona")) : "Sin nombre";
+        Double precioVenta;
+        try {
+            precioVenta = request.get("precioVenta") != null ? Double.valueOf(request.get("precioVenta").toString()) : 1000.0;
+        } catch (NumberFormatException e) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "precioVenta debe ser un número")));
+        }
+        if (!(request.get("seatIds") instanceof List<?> rawSeatIds) || rawSeatIds.isEmpty()) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "seatIds debe ser una lista no vacía")));
+        }
+
+        List<String> seatIds = new ArrayList<>(new java.util.LinkedHashSet<>(rawSeatIds.stream().map(String::valueOf).toList()));
+        List<Map<String, Object>> filasColumnas = new ArrayList<>();
+        for (String seatId : seatIds) {
+            Map<String, Object> filaColumna = parseSeatId(seatId);
+            if (filaColumna == null) {
+                return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "Formato de seatId inválido (esperado r{fila}c{columna}): " + seatId)));
+            }
+            filasColumnas.add(filaColumna);
+        }
+        String evento = String.valueOf(eventoId);
+
+        // 1. Todos los asientos tienen que estar bloqueados por la sesión
+        return seatService.verificarBloqueosReactivo(evento, seatIds, sessionId).flatMap(sinBloqueo -> {
+            if (!sinBloqueo.isEmpty()) {
+                boolean tomadoPorOtro = sinBloqueo.values().stream().anyMatch(r ->
+                        r.getStatus() == SeatOperationResult.Status.HELD || r.getStatus() == SeatOperationResult.Status.SOLD);
+                return Mono.just(conflictos(sinBloqueo, tomadoPorOtro ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED));
+            }
+
+            // 2. Una sola venta en la cátedra con todos los asientos
+            List<Map<String, Object>> asientosCatedra = new ArrayList<>();
+            for (Map<String, Object> fc : filasColumnas) {
+                asientosCatedra.add(Map.of("fila", fc.get("fila"), "columna", fc.get("columna"), "persona", persona));
+            }
+            double total = precioVenta * seatIds.size();
+            Map<String, Object> catedraBody = Map.of(
+                "eventoId", eventoId,
+                "fecha", java.time.Instant.now().toString(),
+                "precioVenta", total,
+                "asientos", asientosCatedra
+            );
+            return catedraClient.postReactivo(CatedraClient.Endpoint.VENTAS, "/api/endpoints/v1/realizar-venta", catedraBody)
+                    .defaultIfEmpty(Map.of())
+                    .flatMap(catedraResult -> {
+                        if (!Boolean.TRUE.equals(catedraResult.get("resultado"))) {
+                            return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT)
+                                .body(Map.of("error", "Venta rechazada en cátedra", "detalle_catedra", catedraResult)));
+                        }
+
+                        // 3. La cátedra ya confirmó: marcar todos como vendidos y dejar la venta en el outbox
+                        //    (SaleOutboxRelay la guarda en el backend). Si algún asiento no se pudo marcar o no
+                        //    hay outbox, no se confirma al cliente.
+                        SaleOutbox.Venta venta = saleOutbox.nueva(ventaParaBackend(persona, eventoId, filasColumnas, precioVenta, total));
+                        return seatService.venderAsientosReactivo(evento, seatIds, sessionId, persona, venta)
+                                .then(Mono.<ResponseEntity<?>>fromSupplier(() -> {
+                                    Map<String, Object> ok = new HashMap<>();
+                                    ok.put("result", "venta_guardada_en_catedra");
+                                    ok.put("seatIds", seatIds);
+                                    ok.put("comprador", Map.of("persona", persona));
+                                    ok.put("ventaId_catedra", catedraResult.get("ventaId"));
+                                    ok.put("fechaVenta", catedraResult.get("fechaVenta") != null
+                                            ? catedraResult.get("fechaVenta") : java.time.Instant.now().toString());
+                                    ok.put("respuesta_catedra", catedraResult);
+                                    return ResponseEntity.ok(ok);
+                                }))
+                                .onErrorResume(IllegalStateException.class, e -> Mono.just(ventaNoRegistrada(catedraResult)));
+                    });
+        }).onErrorResume(e -> Mono.just(errorComando("Error vendiendo asientos", e)));
+    }
+
+    private ResponseEntity<?> conflictos(Map<String, SeatOperationResult> porAsiento, HttpStatus status) {
+        List<Map<String, Object>> conflictos = new ArrayList<>();
+        porAsiento.forEach((seatId, r) -> conflictos.add(conflicto(seatId, r.getStatus(), r.getOwner())));
+        return ResponseEntity.status(status).body(Map.of("error", "SEATS_NOT_AVAILABLE", "conflictos", conflictos));
+    }
+
+    /**
+     * Cátedra caída o con el circuito abierto: 503 (CatedraClient.noDisponible); cualquier otro error, 500.
+     */
+    private static ResponseEntity<?> errorComando(String contexto, Throwable e) {
+        if (e instanceof CatedraException ex) {
+            return CatedraClient.noDisponible(ex);
+        }
+        log.error("{}: {}", contexto, e.getMessage(), e);
+        Map<String, Object> err = new HashMap<>();
+        err.put("error", "internal");
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(err);
+    }
+
+    private Map<String, Object> conflicto(String seatId, SeatOperationResult.Status status, String owner) {
+        Map<String, Object> c = new HashMap<>();
+        c.put("seatId", seatId);
+        c.put("motivo", switch (status) {
+            case HELD -> "BLOCKED_BY_OTHER";
+            case NOT_HELD -> "SEAT_NOT_BLOCKED";
+            case EXPIRED -> "BLOCK_EXPIRED";
+            default -> "SEAT_NOT_AVAILABLE";
+        });
+        if (owner != null) {
+            c.put("owner", owner);
+        }
+        return c;
+    }
+
+    /**
+     * eventoId del body: entero (o texto con un entero). null si falta o no es válido.
+     */
+    public static Integer parseEventoId(Object valor) {
+        if (valor instanceof Integer || valor instanceof Long || valor instanceof Short) {
+            long id = ((Number) valor).longValue();
+            return id > 0 && id <= Integer.MAX_VALUE ? (int) id : null;
+        }
+        if (valor instanceof String texto && texto.matches("\\d{1,9}")) {
+            int id = Integer.parseInt(texto);
+            return id > 0 ? id : null;
+        }
+        return null;
+    }
+
+    /**
+     * r{fila}c{columna} -> {fila, columna}; null si el formato no es válido.
+     */
+    public static Map<String, Object> parseSeatId(String seatId) {
+        Matcher matcher = SEAT_ID.matcher(seatId == null ? "" : seatId);
+        if (!matcher.matches()) {
+            log.warn("No se pudo parsear seatId: {}", seatId);
+            return null;
+        }
+        int fila = Integer.parseInt(matcher.group(1));
+        int columna = Integer.parseInt(matcher.group(2));
+        if (fila < 1 || columna < 1) {
+            return null;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("fila", fila);
+        result.put("columna", columna);
+        return result;
+    }
+
+    /**
+     * Venta para el backend (formato realizar-ventas) de varios asientos ya confirmada por la cátedra.
+     */
+    private static Map<String, Object> ventaParaBackend(String persona, int eventoId, List<Map<String, Object>> filasColumnas,
+                                                        Double precio, double total) {
+        List<Map<String, Object>> asientos = new ArrayList<>();
+        for (Map<String, Object> fc : filasColumnas) {
+            asientos.add(Map.of("fila", fc.get("fila"), "columna", fc.get("columna"), "precio", precio));
+        }
+        Map<String, Object> venta = new HashMap<>();
+        venta.put("usuario", persona);
+        venta.put("eventoId", eventoId);
+        venta.put("total", total);
+        venta.put("fechaVenta", java.time.Instant.now().toString());
+        venta.put("asientos", asientos);
+        return venta;
+    }
+
+    /**
+     * La cátedra confirmó la venta pero no quedó registrada para el backend (ver SaleOutbox): no se
+     * responde como completa. La venta quedó en el log para cargarla a mano.
+     */
+    public static ResponseEntity<?> ventaNoRegistrada(Map<?, ?> catedraResult) {
+        Map<String, Object> err = new HashMap<>();
+        err.put("error", "SALE_NOT_RECORDED");
+        err.put("message", "La venta se confirmó en cátedra pero no se pudo registrar; no la reintente, contacte a soporte");
+        err.put("ventaId_catedra", catedraResult.get("ventaId"));
+        err.put("respuesta_catedra", catedraResult);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(err);
+    }
+}
@@ -0,0 +1,467 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.model.SeatChange;
+import com.cine.proxy.model.SeatGrid;
+import com.cine.proxy.model.SeatMapCodec;
+import com.cine.proxy.repository.HashSeatRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Grilla de asientos en memoria por evento, para que los polls de GET /asientos/{eventoId}
+ * no vayan a Redis.
+ *
+ * - Estado en un SeatGrid (arrays planos: byte por asiento, mismos valores que el bitmap, holders internados).
+ * - Cada bloqueo/venta/liberación se aplica en la grilla local y se publica en el canal
+ *   asientos:cambios; las demás instancias del proxy aplican el mismo cambio al recibirlo.
+ * - La grilla se vuelve a cargar desde el bitmap cada seats.grid.max-age-ms como red de seguridad
+ *   (mensajes pub/sub perdidos, cambios hechos en la cátedra).
+ * - Cada cambio incrementa eventos:{id}:version (en modo hash, el mismo script que lo hace); si
+ *   una recarga trae contenido distinto con la misma versión (cambio hecho en la cátedra) también
+ *   se incrementa. La versión es el ETag, también con la grilla deshabilitada.
+ * - Los bloqueos con vencimiento conocido se programan en una HoldTimingWheel: al vencer, el
+ *   asiento pasa a LIBRE en la grilla local y se avisa a los oyentes (streams SSE / WebSocket).
+ *   La escritura en Redis la hace HoldExpirySweeper.
+ */
+@Service
+public class SeatGridCache implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatGridCache.class);
+
+    /** Locks de carga de grilla, repartidos por hash del evento: cantidad fija, no crece con los eventos. */
+    private static final int LOCKS_CARGA = 64;
+    /** Lecturas de la grilla como máximo mientras la versión siga cambiando (ver leer). */
+    private static final int INTENTOS_LECTURA = 3;
+
+    public static final String CHANNEL = "asientos:cambios";
+
+    private final StringRedisTemplate redis;
+    private final ReactiveStringRedisTemplate reactiveRedis;
+    private final ObjectMapper mapper;
+    private final SeatBitmapService bitmapService;
+    private final HashSeatRepository hashSeatRepository;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final SeatChangeLog changeLog;
+    private final boolean enabled;
+    private final long maxAgeMs;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, Entrada> grids = new ConcurrentHashMap<>();
+    private final ReentrantLock[] cargas = new ReentrantLock[LOCKS_CARGA];
+    private final HoldTimingWheel vencimientos;
+    private final List<Consumer<SeatChange>> oyentesVencimiento = new CopyOnWriteArrayList<>();
+
+    public SeatGridCache(StringRedisTemplate redis,
+                         ReactiveStringRedisTemplate reactiveRedis,
+                         ObjectMapper mapper,
+                         SeatBitmapService bitmapService,
+                         HashSeatRepository hashSeatRepository,
+                         RedisMessageListenerContainer listenerContainer,
+                         SeatChangeLog changeLog,
+                         @Value("${seats.grid.enabled:true}") boolean enabled,
+                         @Value("${seats.grid.max-age-ms:5000}") long maxAgeMs,
+                         @Value("${seats.hold-wheel.tick-ms:250}") long tickMs,
+                         @Value("${seats.hold-wheel.size:512}") int wheelSize) {
+        this.redis = redis;
+        this.reactiveRedis = reactiveRedis;
+        this.mapper = mapper;
+        this.bitmapService = bitmapService;
+        this.hashSeatRepository = hashSeatRepository;
+        this.listenerContainer = listenerContainer;
+        this.changeLog = changeLog;
+        this.enabled = enabled;
+        this.maxAgeMs = maxAgeMs;
+        this.vencimientos = new HoldTimingWheel("asientos-vencimientos", tickMs, wheelSize, this::vencer);
+        for (int i = 0; i < cargas.length; i++) {
+            cargas[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    void suscribir() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        vencimientos.iniciar();
+    }
+
+    @PreDestroy
+    void detener() {
+        vencimientos.detener();
+    }
+
+    /**
+     * Registra a quien avisar cuando vence un bloqueo en memoria (cambio LIBRE sin versión).
+     * Se llama en el hilo de la rueda: no debe bloquear.
+     */
+    public void alVencerBloqueo(Consumer<SeatChange> oyente) {
+        oyentesVencimiento.add(oyente);
+    }
+
+    /**
+     * Mapa de asientos del evento servido desde memoria (mismo formato que SeatBitmapService.readSeatMap).
+     */
+    public List<Map<String, Object>> getSeatMap(String eventoId, int filas, int columnas) {
+        if (!enabled || filas <= 0 || columnas <= 0) {
+            return bitmapService.readSeatMap(eventoId, filas, columnas);
+        }
+        Entrada entrada = obtenerGrilla(eventoId, filas, columnas);
+        synchronized (entrada) {
+            return entrada.grid.toSeatMaps(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * ETag fuerte del mapa de asientos: versión del evento más la cantidad de bloqueos ya vencidos
+     * (un bloqueo vencido cambia la respuesta sin que haya una escritura). Null si la grilla está
+     * deshabilitada: el ETag sale entonces de getSeatMapVersion, con la sala leída de Redis.
+     */
+    public String etag(String eventoId, int filas, int columnas) {
+        if (!enabled || filas <= 0 || columnas <= 0) {
+            return null;
+        }
+        Entrada entrada = obtenerGrilla(eventoId, filas, columnas);
+        synchronized (entrada) {
+            return entrada.etag(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Mapa de asientos (lista y binario compacto) con su ETag, leídos bajo el mismo lock
+     * (para cachear la respuesta serializada). Con la grilla deshabilitada se lee de Redis en
+     * cada llamada, con el ETag de la versión leída junto con el bitmap.
+     * Null si no se conocen las dimensiones.
+     */
+    public SeatMapVersion getSeatMapVersion(String eventoId, int filas, int columnas) {
+        if (filas <= 0 || columnas <= 0) {
+            return null;
+        }
+        if (!enabled) {
+            Leida leida = leer(eventoId, () -> bitmapService.readGrid(eventoId, filas, columnas));
+            long ahora = System.currentTimeMillis();
+            return new SeatMapVersion(etag(leida.version(), leida.grid().expiredHolds(ahora)),
+                    leida.grid().toSeatMaps(ahora), SeatMapCodec.encode(leida.grid(), ahora, leida.version()));
+        }
+        Entrada entrada = obtenerGrilla(eventoId, filas, columnas);
+        long ahora = System.currentTimeMillis();
+        synchronized (entrada) {
+            return new SeatMapVersion(entrada.etag(ahora), entrada.grid.toSeatMaps(ahora),
+                    SeatMapCodec.encode(entrada.grid, ahora, entrada.version));
+        }
+    }
+
+    /**
+     * Versiona el cambio (si no trae la versión que le asignó el script), lo registra en el log de
+     * cambios, lo aplica en la grilla local y lo publica para el resto de las instancias
+     * (asientos:cambios) y para los streams SSE del evento (asientos:cambios:{id}).
+     * Un error publicando no afecta la operación: las otras instancias se ponen al día al recargar.
+     */
+    public void publicar(SeatChange change) {
+        change.setOrigen(instanceId);
+        if (change.getVersion() == 0) {
+            try {
+                Long version = redis.opsForValue().increment(HashSeatRepository.versionKeyForEvento(change.getEventoId()));
+                change.setVersion(version == null ? 0 : version);
+            } catch (Exception e) {
+                log.warn("No se pudo incrementar la versión del evento {}: {}", change.getEventoId(), e.getMessage());
+            }
+        }
+        changeLog.append(change);
+        aplicar(change);
+        try {
+            String json = mapper.writeValueAsString(change);
+            redis.convertAndSend(CHANNEL, json);
+            redis.convertAndSend(SeatChangeStream.channelForEvento(change.getEventoId()), json);
+        } catch (Exception e) {
+            log.warn("No se pudo publicar cambio de asiento {}:{}: {}", change.getEventoId(), change.getSeatId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Igual que publicar, sin bloquear el hilo (flujo de compra reactivo). Nunca termina con error:
+     * la operación ya se hizo en Redis y los clientes se resincronizan si se pierde el aviso.
+     */
+    public Mono<Void> publicarReactivo(SeatChange change) {
+        change.setOrigen(instanceId);
+        Mono<Long> version = change.getVersion() != 0 ? Mono.empty()
+                : reactiveRedis.opsForValue().increment(HashSeatRepository.versionKeyForEvento(change.getEventoId()));
+        return version
+                .doOnNext(change::setVersion)
+                .onErrorResume(e -> {
+                    log.warn("No se pudo incrementar la versión del evento {}: {}", change.getEventoId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then(Mono.defer(() -> changeLog.appendReactivo(change)))
+                .then(Mono.fromCallable(() -> {
+                    aplicar(change);
+                    return mapper.writeValueAsString(change);
+                }))
+                .flatMap(json -> Mono.when(
+                        reactiveRedis.convertAndSend(CHANNEL, json),
+                        reactiveRedis.convertAndSend(SeatChangeStream.channelForEvento(change.getEventoId()), json)))
+                .onErrorResume(e -> {
+                    log.warn("No se pudo publicar cambio de asiento {}:{}: {}", change.getEventoId(), change.getSeatId(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            SeatChange change = mapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8), SeatChange.class);
+            if (!instanceId.equals(change.getOrigen())) {
+                aplicar(change);
+            }
+        } catch (Exception e) {
+            log.warn("Mensaje inválido en {}: {}", CHANNEL, e.getMessage());
+        }
+    }
+
+    void aplicar(SeatChange change) {
+        String eventoId = change.getEventoId();
+        if (eventoId == null) return;
+        if (change.getStatus() == null || change.getVersion() == 0) {
+            grids.remove(eventoId);
+            return;
+        }
+        // Con o sin grilla cargada: el vencimiento también se avisa a los streams del evento
+        if ("BLOQUEADO".equals(change.getStatus()) && change.getExpiraEpochMs() > 0) {
+            vencimientos.programar(eventoId, change.getSeatId(), change.getExpiraEpochMs());
+        } else {
+            vencimientos.cancelar(eventoId, change.getSeatId());
+        }
+        Entrada entrada = grids.get(eventoId);
+        if (entrada == null) return;
+        SeatGrid grid = entrada.grid;
+        int i = grid.indexOf(change.getSeatId());
+        if (i < 0) {
+            grids.remove(eventoId);
+            return;
+        }
+        synchronized (entrada) {
+            switch (change.getStatus()) {
+                case "BLOQUEADO" -> grid.setBloqueado(i, change.getHolder(), change.getExpiraEpochMs());
+                case "VENDIDO" -> grid.setVendido(i, change.getPersona(), change.getFechaVenta());
+                default -> grid.setLibre(i);
+            }
+            entrada.version = Math.max(entrada.version, change.getVersion());
+        }
+    }
+
+    private Entrada obtenerGrilla(String eventoId, int filas, int columnas) {
+        long ahora = System.currentTimeMillis();
+        Entrada actual = grids.get(eventoId);
+        if (actual != null && actual.vigente(filas, columnas, ahora, maxAgeMs)) {
+            return actual;
+        }
+        // Las cargas concurrentes del mismo evento se serializan con un lock (compartido con los
+        // eventos de la misma franja de hash) y no dentro de grids.compute: la carga va a Redis y
+        // un hilo virtual bloqueado dentro del monitor de ConcurrentHashMap quedaría fijado a su carrier.
+        ReentrantLock carga = cargas[Math.floorMod(eventoId.hashCode(), LOCKS_CARGA)];
+        carga.lock();
+        try {
+            Entrada existente = grids.get(eventoId);
+            if (existente != null && existente.vigente(filas, columnas, System.currentTimeMillis(), maxAgeMs)) {
+                return existente;
+            }
+            String versionKey = HashSeatRepository.versionKeyForEvento(eventoId);
+            Leida leida = leer(eventoId, () -> cargar(eventoId, filas, columnas));
+            long version = leida.version();
+            SeatGrid grid = leida.grid();
+            if (existente != null && existente.version >= version) {
+                boolean igual;
+                synchronized (existente) {
+                    igual = existente.grid.sameContent(grid);
+                }
+                if (!igual) {
+                    // Cambio que no pasó por este proxy (p. ej. hecho en la cátedra)
+                    Long nueva = redis.opsForValue().increment(versionKey);
+                    version = nueva == null ? existente.version + 1 : nueva;
+                    SeatChange invalidacion = SeatChange.invalidar(eventoId);
+                    invalidacion.setVersion(version);
+                    changeLog.append(invalidacion);
+                    avisarStreams(invalidacion);
+                }
+            }
+            Entrada nueva = new Entrada(grid, System.currentTimeMillis());
+            nueva.version = version;
+            if (existente != null && existente.version == version) {
+                nueva.vencidos = existente.vencidos;
+            }
+            grids.put(eventoId, nueva);
+            return nueva;
+        } finally {
+            carga.unlock();
+        }
+    }
+
+    /**
+     * Bloqueo vencido según la rueda: si la grilla sigue teniendo ese mismo bloqueo lo pasa a
+     * LIBRE y avisa. Si la grilla no está cargada (o el bloqueo se renovó) no toca nada.
+     */
+    private void vencer(HoldTimingWheel.Vencimiento vencimiento) {
+        String eventoId = vencimiento.getEventoId();
+        Entrada entrada = grids.get(eventoId);
+        int i = entrada == null ? -1 : entrada.grid.indexOf(vencimiento.getSeatId());
+        if (i >= 0) {
+            synchronized (entrada) {
+                if (entrada.grid.status(i) != SeatGrid.BLOQUEADO
+                        || entrada.grid.holdUntil(i) != vencimiento.getVenceEpochMs()) {
+                    return;
+                }
+                entrada.grid.setLibre(i);
+                entrada.vencidos++;
+            }
+        }
+        SeatChange libre = SeatChange.libre(eventoId, vencimiento.getSeatId());
+        for (Consumer<SeatChange> oyente : oyentesVencimiento) {
+            oyente.accept(libre);
+        }
+    }
+
+    /**
+     * Carga la grilla del evento si no está en memoria, con lo que sus bloqueos vigentes quedan
+     * programados en la rueda de vencimientos (para el stream que se abre).
+     */
+    public void precargar(String eventoId, int filas, int columnas) {
+        if (enabled && filas > 0 && columnas > 0) {
+            obtenerGrilla(eventoId, filas, columnas);
+        }
+    }
+
+    private void avisarStreams(SeatChange change) {
+        try {
+            redis.convertAndSend(SeatChangeStream.channelForEvento(change.getEventoId()), mapper.writeValueAsString(change));
+        } catch (Exception e) {
+            log.warn("No se pudo avisar la invalidación del evento {}: {}", change.getEventoId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Lee la grilla junto con la versión que le corresponde: si la versión cambió durante la
+     * lectura se vuelve a leer. Asociar contenido más nuevo a una versión anterior haría que un
+     * cliente con esa versión reciba un 304 con el mapa viejo.
+     */
+    private Leida leer(String eventoId, Supplier<SeatGrid> lectura) {
+        String versionKey = HashSeatRepository.versionKeyForEvento(eventoId);
+        long version = versionGuardada(versionKey);
+        SeatGrid grid = lectura.get();
+        for (int intento = 1; intento < INTENTOS_LECTURA; intento++) {
+            long despues = versionGuardada(versionKey);
+            if (despues == version) {
+                break;
+            }
+            version = despues;
+            grid = lectura.get();
+        }
+        return new Leida(grid, version);
+    }
+
+    private long versionGuardada(String versionKey) {
+        String guardada = redis.opsForValue().get(versionKey);
+        return guardada == null ? 0 : Long.parseLong(guardada);
+    }
+
+    private SeatGrid cargar(String eventoId, int filas, int columnas) {
+        SeatGrid grid = bitmapService.readGrid(eventoId, filas, columnas);
+        // Vencimiento de los bloqueos locales, para liberarlos en memoria sin esperar la recarga
+        List<Integer> conHolder = new ArrayList<>();
+        List<String> conHolderIds = new ArrayList<>();
+        for (int i = 0; i < grid.size(); i++) {
+            if (grid.status(i) == SeatGrid.BLOQUEADO && grid.holdUntil(i) == SeatBitmapService.YA_VENCIDO) {
+                // Ya vencido: en memoria pasa a LIBRE, como cuando lo vence la rueda
+                grid.setLibre(i);
+            } else if (grid.status(i) == SeatGrid.BLOQUEADO && grid.holder(i) != null) {
+                conHolder.add(i);
+                conHolderIds.add(SeatGrid.seatId(i / columnas + 1, i % columnas + 1));
+            }
+        }
+        List<ObjectNode> locales = hashSeatRepository.findSeats(eventoId, conHolderIds);
+        for (int k = 0; k < locales.size(); k++) {
+            ObjectNode local = locales.get(k);
+            if (local != null && local.path("expiraEpoch").canConvertToLong()) {
+                long vence = local.path("expiraEpoch").asLong() * 1000;
+                grid.setHoldUntil(conHolder.get(k), vence);
+                vencimientos.programar(eventoId, conHolderIds.get(k), vence);
+            }
+        }
+        log.debug("Grilla de asientos cargada en memoria para evento {} ({}x{})", eventoId, filas, columnas);
+        return grid;
+    }
+
+    /** ETag fuerte: versión del evento y bloqueos vencidos sin liberar todavía. */
+    private static String etag(long version, long vencidos) {
+        return "\"" + version + "-" + vencidos + "\"";
+    }
+
+    /** Grilla leída de Redis y la versión del evento a la que corresponde. */
+    private record Leida(SeatGrid grid, long version) {}
+
+    /**
+     * Mapa de asientos (lista y formato binario compacto) armado junto con el ETag que le corresponde.
+     */
+    public static final class SeatMapVersion {
+        private final String etag;
+        private final List<Map<String, Object>> asientos;
+        private final byte[] compacto;
+
+        SeatMapVersion(String etag, List<Map<String, Object>> asientos, byte[] compacto) {
+            this.etag = etag;
+            this.asientos = asientos;
+            this.compacto = compacto;
+        }
+
+        public String getEtag() { return etag; }
+        public List<Map<String, Object>> getAsientos() { return asientos; }
+        public byte[] getCompacto() { return compacto; }
+    }
+
+    /**
+     * Grilla de un evento con el momento en que se cargó y su versión.
+     */
+    private static final class Entrada {
+        final SeatGrid grid;
+        final long loadedAt;
+        long version;
+        long vencidos;      // bloqueos que la rueda ya pasó a LIBRE en esta versión
+
+        Entrada(SeatGrid grid, long loadedAt) {
+            this.grid = grid;
+            this.loadedAt = loadedAt;
+        }
+
+        /**
+         * Un bloqueo vencido cuenta igual antes y después de que la rueda lo pase a LIBRE,
+         * así el ETag nunca vuelve a un valor anterior dentro de la misma versión.
+         */
+        String etag(long ahora) {
+            return SeatGridCache.etag(version, vencidos + grid.expiredHolds(ahora));
+        }
+
+        boolean vigente(int filas, int columnas, long ahora, long maxAgeMs) {
+            return grid.getFilas() == filas && grid.getColumnas() == columnas && ahora - loadedAt < maxAgeMs;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.cine.proxy.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Respuesta de GET /asientos/{eventoId} ya serializada por (evento, ETag): JSON plano, JSON gzip y
+ * el formato binario de SeatMapCodec.
+ *
+ * - Se guarda solo la última versión de cada evento: con un ETag nuevo la anterior ya no sirve.
+ * - Los misses concurrentes del mismo (evento, ETag) esperan a una única construcción.
+ * - El controller escribe los bytes directo en la respuesta, sin pasar por Jackson.
+ */
+@Service
+public class SeatMapResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatMapResponseCache.class);
+
+    private final SeatGridCache seatGridCache;
+    private final ObjectMapper mapper;
+
+    private final Map<String, Respuesta> ultimas = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Respuesta>> enConstruccion = new ConcurrentHashMap<>();
+
+    public SeatMapResponseCache(SeatGridCache seatGridCache, ObjectMapper mapper) {
+        this.seatGridCache = seatGridCache;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Respuesta para el ETag indicado (el que devolvió SeatGridCache.etag). Si la grilla cambió
+     * mientras tanto, la respuesta trae su propio ETag, más nuevo.
+     */
+    public Respuesta obtener(String eventoId, int filas, int columnas, String etag) {
+        Respuesta ultima = ultimas.get(eventoId);
+        if (ultima != null && ultima.etag.equals(etag)) {
+            return ultima;
+        }
+        String clave = eventoId + "|" + etag;
+        CompletableFuture<Respuesta> nueva = new CompletableFuture<>();
+        CompletableFuture<Respuesta> enCurso = enConstruccion.putIfAbsent(clave, nueva);
+        if (enCurso != null) {
+            try {
+                return enCurso.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+        try {
+            Respuesta respuesta = construir(eventoId, filas, columnas);
+            ultimas.put(eventoId, respuesta);
+            nueva.complete(respuesta);
+            return respuesta;
+        } catch (RuntimeException e) {
+            nueva.completeExceptionally(e);
+            throw e;
+        } finally {
+            enConstruccion.remove(clave, nueva);
+        }
+    }
+
+    private Respuesta construir(String eventoId, int filas, int columnas) {
+        SeatGridCache.SeatMapVersion mapa = seatGridCache.getSeatMapVersion(eventoId, filas, columnas);
+        if (mapa == null) {
+            throw new IllegalStateException("Grilla en memoria deshabilitada");
+        }
+        try {
+            byte[] plano = mapper.writeValueAsBytes(mapa.getAsientos());
+            ByteArrayOutputStream out = new ByteArrayOutputStream(plano.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(plano);
+            }
+            byte[] comprimido = out.toByteArray();
+            log.debug("Mapa de asientos del evento {} serializado ({} {} bytes, gzip {} bytes, binario {} bytes)",
+                    eventoId, mapa.getEtag(), plano.length, comprimido.length, mapa.getCompacto().length);
+            return new Respuesta(mapa.getEtag(), plano, comprimido, mapa.getCompacto());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Bytes de la respuesta para un ETag.
+     */
+    public static final class Respuesta {
+        private final String etag;
+        private final byte[] plano;
+        private final byte[] gzip;
+        private final byte[] compacto;
+
+        Respuesta(String etag, byte[] plano, byte[] gzip, byte[] compacto) {
+            this.etag = etag;
+            this.plano = plano;
+            this.gzip = gzip;
+            this.compacto = compacto;
+        }
+
+        public String getEtag() { return etag; }
+        public byte[] getPlano() { return plano; }
+        public byte[] getGzip() { return gzip; }
+        public byte[] getCompacto() { return compacto; }
+    }
+}
@@ -0,0 +1,204 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.config.SeatStorageProperties;
+import com.cine.proxy.repository.BlobSeatRepository;
+import com.cine.proxy.repository.HashSeatRepository;
+import com.cine.proxy.repository.SeatRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Migración única del formato blob (eventos:{id}) al formato hash (eventos:{id}:asientos).
+ *
+ * - Es idempotente: si el hash del evento ya existe no lo pisa.
+ * - No borra el blob original, así se puede volver a seats.storage.mode=blob.
+ * - Los asientos BLOQUEADO recuperan su key lock:{id}:{seatId} con el TTL que les queda (la lock
+ *   es la fuente de verdad del bloqueo) y su entrada en eventos:{id}:vencimientos para el barrido.
+ * - Se ejecuta al arrancar solo si seats.storage.migrate-on-startup=true.
+ *
+ * También copia periódicamente al hash los asientos que la cátedra marca como vendidos en
+ * evento_{id} (para tener su comprador). Antes se hacía al armar el bitmap, en el camino de lectura.
+ */
+@Service
+public class SeatStorageMigrationService implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatStorageMigrationService.class);
+    private static final Pattern BLOB_KEY = Pattern.compile("eventos:(\\d+)");
+    private static final Pattern CATEDRA_KEY = Pattern.compile("evento_(\\d+)");
+
+    private final StringRedisTemplate redis;
+    private final BlobSeatRepository blobRepository;
+    private final HashSeatRepository hashRepository;
+    private final SeatStorageProperties properties;
+    private final ObjectMapper mapper;
+
+    public SeatStorageMigrationService(StringRedisTemplate redis,
+                                       ObjectMapper mapper,
+                                       BlobSeatRepository blobRepository,
+                                       HashSeatRepository hashRepository,
+                                       SeatStorageProperties properties) {
+        this.redis = redis;
+        this.blobRepository = blobRepository;
+        this.hashRepository = hashRepository;
+        this.properties = properties;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (properties.isMigrateOnStartup()) {
+            migrateAll();
+        }
+    }
+
+    /**
+     * Recorre (SCAN) todas las keys eventos:{id} y migra cada evento.
+     *
+     * @return cantidad de eventos migrados
+     */
+    public int migrateAll() {
+        int migrated = 0;
+        ScanOptions options = ScanOptions.scanOptions().match("eventos:*").count(500).build();
+        try (Cursor<String> cursor = redis.scan(options)) {
+            while (cursor.hasNext()) {
+                var m = BLOB_KEY.matcher(cursor.next());
+                if (m.matches() && migrateEvento(m.group(1)) > 0) {
+                    migrated++;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error migrando asientos a formato hash: {}", e.getMessage(), e);
+        }
+        log.info("Migración blob -> hash finalizada: {} eventos migrados", migrated);
+        return migrated;
+    }
+
+    /**
+     * @return cantidad de asientos copiados (0 si no había blob o el hash ya existía)
+     */
+    public int migrateEvento(String eventoId) {
+        if (hashRepository.exists(eventoId)) {
+            log.debug("Evento {} ya tiene hash de asientos, se omite la migración", eventoId);
+            return 0;
+        }
+        List<ObjectNode> seats = blobRepository.findAll(eventoId);
+        if (seats.isEmpty()) {
+            return 0;
+        }
+        hashRepository.saveAll(eventoId, seats);
+        int bloqueos = restaurarBloqueos(eventoId, seats);
+        log.info("Evento {} migrado a formato hash: {} asientos, {} bloqueos", eventoId, seats.size(), bloqueos);
+        return seats.size();
+    }
+
+    /**
+     * Recorre (SCAN) los documentos evento_{id} de la cátedra y agrega al hash los asientos vendidos
+     * que todavía no tienen registro local (HSETNX: nunca pisa el estado local).
+     */
+    @Scheduled(initialDelayString = "${seats.storage.catedra-sync-ms:30000}",
+            fixedDelayString = "${seats.storage.catedra-sync-ms:30000}")
+    public void importarVendidosCatedra() {
+        ScanOptions options = ScanOptions.scanOptions().match("evento_*").count(500).build();
+        try (Cursor<String> cursor = redis.scan(options)) {
+            while (cursor.hasNext()) {
+                var m = CATEDRA_KEY.matcher(cursor.next());
+                if (m.matches()) {
+                    importarVendidosCatedra(m.group(1));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Error importando ventas de la cátedra: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return cantidad de asientos vendidos agregados al hash del evento
+     */
+    public int importarVendidosCatedra(String eventoId) {
+        String catedraJson = redis.opsForValue().get(SeatBitmapService.catedraKeyForEvento(eventoId));
+        if (catedraJson == null || catedraJson.isBlank()) {
+            return 0;
+        }
+        List<ObjectNode> vendidos = new ArrayList<>();
+        try {
+            for (JsonNode asiento : mapper.readTree(catedraJson).path("asientos")) {
+                int fila = asiento.path("fila").asInt(-1);
+                int columna = asiento.path("columna").asInt(-1);
+                if (fila < 1 || columna < 1 || !"Vendido".equalsIgnoreCase(asiento.path("estado").asText(""))) continue;
+                ObjectNode vendido = asiento.deepCopy();
+                vendido.put("seatId", "r" + fila + "c" + columna);
+                vendido.put("status", "VENDIDO");
+                vendidos.add(vendido);
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo parsear {}: {}", SeatBitmapService.catedraKeyForEvento(eventoId), e.getMessage());
+            return 0;
+        }
+        int agregados = hashRepository.saveAllIfAbsent(eventoId, vendidos);
+        if (agregados > 0) {
+            log.info("Evento {}: {} asientos vendidos en la cátedra agregados al hash", eventoId, agregados);
+        }
+        return agregados;
+    }
+
+    /**
+     * Lock (SET NX con el TTL restante) y vencimiento de cada bloqueo del blob. Los ya vencidos
+     * solo se anotan en vencimientos: el barrido los libera en la próxima pasada.
+     */
+    private int restaurarBloqueos(String eventoId, List<ObjectNode> seats) {
+        long ahoraMs = System.currentTimeMillis();
+        int restaurados = 0;
+        for (ObjectNode seat : seats) {
+            String seatId = SeatRepository.seatIdOf(seat);
+            String holder = seat.path("holder").asText("");
+            boolean bloqueado = "BLOQUEADO".equalsIgnoreCase(seat.path("status").asText(""))
+                    || "Bloqueado".equalsIgnoreCase(seat.path("estado").asText(""));
+            long venceMs = venceMs(seat);
+            if (seatId == null || !bloqueado || holder.isEmpty() || venceMs <= 0) {
+                continue;
+            }
+            if (venceMs > ahoraMs) {
+                redis.opsForValue().setIfAbsent(SeatRepository.lockKey(eventoId, seatId), holder,
+                        Duration.ofMillis(venceMs - ahoraMs));
+                restaurados++;
+            }
+            redis.opsForZSet().add(HashSeatRepository.vencimientosKeyForEvento(eventoId), seatId, venceMs);
+            redis.opsForSet().add(HashSeatRepository.EVENTOS_CON_BLOQUEOS_KEY, eventoId);
+        }
+        return restaurados;
+    }
+
+    /**
+     * Vencimiento del bloqueo en epoch ms (expiraEpoch en segundos o expira ISO); 0 si no tiene.
+     */
+    private static long venceMs(ObjectNode seat) {
+        if (seat.path("expiraEpoch").canConvertToLong() && seat.path("expiraEpoch").asLong() > 0) {
+            return seat.path("expiraEpoch").asLong() * 1000;
+        }
+        String expira = seat.path("expira").asText("");
+        if (!expira.isEmpty()) {
+            try {
+                return OffsetDateTime.parse(expira).toInstant().toEpochMilli();
+            } catch (Exception e) {
+                log.debug("expira inválido en asiento {}: {}", SeatRepository.seatIdOf(seat), expira);
+            }
+        }
+        return 0;
+    }
+}
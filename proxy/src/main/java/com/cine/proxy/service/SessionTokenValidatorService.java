@@ -1,30 +1,204 @@
 package com.cine.proxy.service;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Valida el token de sesión contra el backend (POST /validate-token) con una cache local de
+ * resultados, para no sumar un round trip al backend en cada bloqueo y cada venta.
+ *
+ * - Válido: se cachea session.cache.positive-ttl-ms, nunca más allá del expiresAt del token.
+ * - Inválido: se cachea session.cache.negative-ttl-ms (corto: el token puede ser de un login recién hecho).
+ * - Un error consultando al backend no se cachea; mientras tanto siguen valiendo las entradas vigentes.
+ * - Logout: el backend publica el token en sesiones:invalidadas y se saca de la cache.
+ * - Como mucho session.cache.max-entries entradas.
+ *
+ * Los tokens firmados (s1.*) no pasan por la cache ni por el backend: los verifica
+ * SignedSessionTokenVerifier con la clave compartida.
+ */
 @Service
-public class SessionTokenValidatorService {
-    @Autowired
-    private WebClient.Builder webClientBuilder;
+public class SessionTokenValidatorService implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionTokenValidatorService.class);
+
+    public static final String CANAL_SESIONES_INVALIDADAS = "sesiones:invalidadas";
+
+    private final WebClient webClient;
+    private final SignedSessionTokenVerifier signedVerifier;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String validateUrl;
+    private final long positiveTtlMs;
+    private final long negativeTtlMs;
+    private final int maxEntries;
+
+    private final Map<String, Resultado> cache = new ConcurrentHashMap<>();
+    // Cambia con cada invalidación: una validación que estaba en curso no vuelve a cachear un token recién invalidado
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    public SessionTokenValidatorService(WebClient.Builder webClientBuilder,
+                                        RedisMessageListenerContainer listenerContainer,
+                                        SignedSessionTokenVerifier signedVerifier,
+                                        @Value("${backend.base-url:http://localhost:8080}") String backendBaseUrl,
+                                        @Value("${session.cache.positive-ttl-ms:60000}") long positiveTtlMs,
+                                        @Value("${session.cache.negative-ttl-ms:5000}") long negativeTtlMs,
+                                        @Value("${session.cache.max-entries:10000}") int maxEntries) {
+        this.webClient = webClientBuilder.build();
+        this.listenerContainer = listenerContainer;
+        this.signedVerifier = signedVerifier;
+        this.validateUrl = (backendBaseUrl.endsWith("/") ? backendBaseUrl.substring(0, backendBaseUrl.length() - 1) : backendBaseUrl)
+                + "/validate-token";
+        this.positiveTtlMs = positiveTtlMs;
+        this.negativeTtlMs = negativeTtlMs;
+        this.maxEntries = maxEntries;
+    }
+
+    @PostConstruct
+    void suscribir() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CANAL_SESIONES_INVALIDADAS));
+    }
 
     public boolean isSessionTokenValidRemoto(String token) {
+        if (token == null || token.isBlank()) {
+            return false;
+        }
+        if (signedVerifier.aplica(token)) {
+            return signedVerifier.verificar(token);
+        }
+        Boolean cacheado = cacheado(token);
+        if (cacheado != null) {
+            return cacheado;
+        }
         try {
-            Map<String, String> req = Map.of("token", token);
-            Map resp = webClientBuilder.build()
-                .post()
-                .uri("http://localhost:8080/validate-token")
-                .bodyValue(req)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .block();
-            return resp != null && Boolean.TRUE.equals(resp.get("valid"));
+            return consultarBackend(token).block();
         } catch (Exception e) {
-            System.out.println("Error al validar token en backend: " + e.getMessage());
+            log.warn("Error al validar token en backend: {}", e.getMessage());
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Igual que isSessionTokenValidRemoto sin bloquear el hilo (flujo de compra reactivo).
+     */
+    public Mono<Boolean> validarReactivo(String token) {
+        if (token == null || token.isBlank()) {
+            return Mono.just(false);
+        }
+        if (signedVerifier.aplica(token)) {
+            return Mono.just(signedVerifier.verificar(token));
+        }
+        Boolean cacheado = cacheado(token);
+        if (cacheado != null) {
+            return Mono.just(cacheado);
+        }
+        return consultarBackend(token)
+                .onErrorResume(e -> {
+                    log.warn("Error al validar token en backend: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    private Boolean cacheado(String token) {
+        Resultado cacheado = cache.get(token);
+        return cacheado != null && cacheado.venceMs > System.currentTimeMillis() ? cacheado.valido : null;
+    }
+
+    private Mono<Boolean> consultarBackend(String token) {
+        long ahora = System.currentTimeMillis();
+        long generacion = invalidaciones.get();
+        return webClient
+            .post()
+            .uri(validateUrl)
+            .bodyValue(Map.of("token", token))
+            .retrieve()
+            .bodyToMono(Map.class)
+            .map(resp -> {
+                boolean valido = Boolean.TRUE.equals(resp.get("valid"));
+                if (generacion == invalidaciones.get()) {
+                    guardar(token, valido, valido ? venceValido(resp.get("expiresAt"), ahora) : ahora + negativeTtlMs);
+                }
+                return valido;
+            })
+            .defaultIfEmpty(false);
+    }
+
+    /**
+     * Saca el token de la cache: la próxima validación vuelve a consultar al backend.
+     */
+    public void invalidar(String token) {
+        if (signedVerifier.aplica(token)) {
+            signedVerifier.revocar(token);
+            return;
+        }
+        invalidaciones.incrementAndGet();
+        if (token != null && cache.remove(token) != null) {
+            log.info("Sesión invalidada en cache");
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        invalidar(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * positive-ttl-ms, o antes si el token vence antes. Sin expiresAt (backend viejo) se usa solo el TTL.
+     */
+    private long venceValido(Object expiresAt, long ahora) {
+        long vence = ahora + positiveTtlMs;
+        if (expiresAt != null) {
+            try {
+                vence = Math.min(vence, Instant.parse(expiresAt.toString()).toEpochMilli());
+            } catch (Exception e) {
+                log.debug("expiresAt inválido en /validate-token: {}", expiresAt);
+            }
+        }
+        return vence;
+    }
+
+    private void guardar(String token, boolean valido, long venceMs) {
+        if (cache.size() >= maxEntries) {
+            podar();
+        }
+        cache.put(token, new Resultado(valido, venceMs));
+    }
+
+    /**
+     * Con la cache llena: primero se sacan las vencidas y, si no alcanza, entradas cualquiera
+     * hasta dejar lugar (peor caso: una consulta más al backend).
+     */
+    private void podar() {
+        long ahora = System.currentTimeMillis();
+        cache.values().removeIf(r -> r.venceMs <= ahora);
+        Iterator<String> it = cache.keySet().iterator();
+        while (cache.size() >= maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static final class Resultado {
+        final boolean valido;
+        final long venceMs;
+
+        Resultado(boolean valido, long venceMs) {
+            this.valido = valido;
+            this.venceMs = venceMs;
+        }
+    }
+}
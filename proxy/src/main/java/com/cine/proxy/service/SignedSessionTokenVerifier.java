@@ -0,0 +1,142 @@
+package com.cine.proxy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verificación local de los tokens firmados que emite el backend (auth.token.signed=true).
+ *
+ * Formato: s1.{username base64url}.{expira epoch s}.{id}.{HMAC-SHA256 base64url}, con la misma
+ * clave que el backend (session.signing.secret). Firma y vencimiento se chequean sin red.
+ *
+ * Revocados (logout): el backend los agrega al ZSET sesiones:revocadas (score = vencimiento en ms).
+ * Se mantiene una copia en memoria que se recarga cada session.signing.revocations-refresh-ms
+ * y se completa al instante con el aviso de sesiones:invalidadas.
+ */
+@Service
+public class SignedSessionTokenVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(SignedSessionTokenVerifier.class);
+
+    public static final String PREFIJO = "s1.";
+    public static final String REVOCADOS_KEY = "sesiones:revocadas";
+
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private final StringRedisTemplate redis;
+    private final byte[] secreto;
+    private final boolean habilitado;
+
+    private final Map<String, Long> revocados = new ConcurrentHashMap<>();   // id -> vencimiento (epoch ms)
+
+    public SignedSessionTokenVerifier(StringRedisTemplate redis,
+                                      @Value("${session.signing.secret:}") String secret) {
+        this.redis = redis;
+        this.secreto = secret.getBytes(StandardCharsets.UTF_8);
+        this.habilitado = !secret.isBlank();
+    }
+
+    /**
+     * true si el token tiene el formato firmado y hay clave para verificarlo; si no, se valida
+     * contra el backend.
+     */
+    public boolean aplica(String token) {
+        return habilitado && token != null && token.startsWith(PREFIJO);
+    }
+
+    /**
+     * Firma correcta, no vencido y no revocado.
+     */
+    public boolean verificar(String token) {
+        Datos datos = leer(token);
+        return datos != null && !revocados.containsKey(datos.id);
+    }
+
+    /**
+     * Marca el token como revocado en esta instancia (aviso de logout por pub/sub).
+     */
+    public void revocar(String token) {
+        Datos datos = leer(token);
+        if (datos != null) {
+            revocados.put(datos.id, datos.expiraMs);
+        }
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${session.signing.revocations-refresh-ms:30000}")
+    public void recargarRevocados() {
+        if (!habilitado) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        try {
+            Set<ZSetOperations.TypedTuple<String>> vigentes =
+                    redis.opsForZSet().rangeByScoreWithScores(REVOCADOS_KEY, ahora, Double.POSITIVE_INFINITY);
+            if (vigentes != null) {
+                for (ZSetOperations.TypedTuple<String> revocado : vigentes) {
+                    Double vence = revocado.getScore();
+                    revocados.putIfAbsent(revocado.getValue(), vence == null ? Long.MAX_VALUE : vence.longValue());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo recargar la lista de sesiones revocadas: {}", e.getMessage());
+        }
+        revocados.values().removeIf(vence -> vence <= ahora);
+    }
+
+    private Datos leer(String token) {
+        if (!aplica(token)) {
+            return null;
+        }
+        String[] partes = token.split("\\.");
+        if (partes.length != 5) {
+            return null;
+        }
+        try {
+            String cuerpo = token.substring(0, token.lastIndexOf('.'));
+            if (!MessageDigest.isEqual(firmar(cuerpo), B64D.decode(partes[4]))) {
+                return null;
+            }
+            long expiraMs = Long.parseLong(partes[2]) * 1000;
+            if (expiraMs <= System.currentTimeMillis()) {
+                return null;
+            }
+            return new Datos(partes[3], expiraMs);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] firmar(String cuerpo) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secreto, "HmacSHA256"));
+            return mac.doFinal(cuerpo.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo verificar la firma del token", e);
+        }
+    }
+
+    private static final class Datos {
+        final String id;
+        final long expiraMs;
+
+        Datos(String id, long expiraMs) {
+            this.id = id;
+            this.expiraMs = expiraMs;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.cine.proxy.websocket;
+
+import com.cine.proxy.service.SeatChangeLog;
+import com.cine.proxy.service.SeatChangeStream;
+import com.cine.proxy.service.SeatCommandService;
+import com.cine.proxy.service.SessionTokenValidatorService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canal WebSocket del mapa de asientos (/ws/asientos).
+ *
+ * Mensajes del cliente (JSON):
+ * - {"type":"auth","session":"..."}   primer mensaje si el handshake no trajo X-Session-Id; sin él en
+ *                                     seats.ws.auth-timeout-ms se cierra la conexión
+ * - {"type":"subscribe","eventoId":"1","since":12}   since opcional: versión del mapa que ya tiene
+ * - {"type":"unsubscribe","eventoId":"1"}
+ * - {"type":"block","id":"c1","eventoId":1,"seatIds":["r1c1"]}             mismo body que bloquear-asientos
+ * - {"type":"sell","id":"c2","eventoId":1,"seatIds":["r1c1"],"persona":"..."} mismo body que realizar-ventas
+ *
+ * Mensajes del servidor:
+ * - {"type":"authenticated"}
+ * - {"type":"subscribed","eventoId":"1"}
+ * - {"type":"update","updates":[{"eventoId":"1","version":15,"resync":false,"cambios":[...]}]}
+ * - {"type":"result","id":"c1","status":200,"body":{...}}   respuesta del comando
+ * - {"type":"error","message":"..."}
+ *
+ * Los cambios llegan por SeatChangeStream (una suscripción pub/sub por evento e instancia) y se
+ * acumulan por cliente, uno por asiento, hasta el próximo flush: como mucho un frame "update" cada
+ * seats.ws.flush-ms y uno solo en vuelo por cliente, enviado por un pool acotado (seats.ws.send-threads). Mientras un frame no termina de salir los
+ * cambios se siguen acumulando; si superan seats.ws.max-pending se descartan y se manda resync, y
+ * si el frame lleva más de seats.ws.max-lag-ms sin salir se cierra la conexión. Las respuestas a
+ * comandos pasan por ConcurrentWebSocketSessionDecorator (send-time-limit-ms / buffer-size-limit).
+ */
+@Component
+public class SeatMapWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatMapWebSocketHandler.class);
+
+    public static final String SESSION_ATTR = "sessionId";
+    public static final String VALIDATED_AT_ATTR = "sessionValidatedAt";
+
+    private final ObjectMapper mapper;
+    private final SeatChangeStream seatChangeStream;
+    private final SeatChangeLog seatChangeLog;
+    private final SeatCommandService seatCommandService;
+    private final SessionTokenValidatorService sessionTokenValidatorService;
+    private final int sendTimeLimitMs;
+    private final int bufferSizeLimit;
+    private final long maxLagMs;
+    private final int maxPending;
+    private final long revalidateMs;
+    private final long authTimeoutMs;
+
+    private final Map<String, Cliente> clientes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> hilo(r, "ws-asientos-flush"));
+    // Un frame en vuelo por cliente: la cola del pool no pasa de un envío por conexión. Un cliente
+    // lento ocupa un hilo hasta max-lag-ms, cuando flush cierra su conexión
+    private final ThreadPoolExecutor envios;
+
+    public SeatMapWebSocketHandler(ObjectMapper mapper,
+                                   SeatChangeStream seatChangeStream,
+                                   SeatChangeLog seatChangeLog,
+                                   SeatCommandService seatCommandService,
+                                   SessionTokenValidatorService sessionTokenValidatorService,
+                                   @Value("${seats.ws.flush-ms:250}") long flushMs,
+                                   @Value("${seats.ws.send-time-limit-ms:5000}") int sendTimeLimitMs,
+                                   @Value("${seats.ws.buffer-size-limit:524288}") int bufferSizeLimit,
+                                   @Value("${seats.ws.max-lag-ms:5000}") long maxLagMs,
+                                   @Value("${seats.ws.max-pending:1000}") int maxPending,
+                                   @Value("${seats.ws.revalidate-ms:60000}") long revalidateMs,
+                                   @Value("${seats.ws.auth-timeout-ms:10000}") long authTimeoutMs,
+                                   @Value("${seats.ws.send-threads:8}") int sendThreads) {
+        this.mapper = mapper;
+        this.seatChangeStream = seatChangeStream;
+        this.seatChangeLog = seatChangeLog;
+        this.seatCommandService = seatCommandService;
+        this.sessionTokenValidatorService = sessionTokenValidatorService;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.maxLagMs = maxLagMs;
+        this.maxPending = maxPending;
+        this.revalidateMs = revalidateMs;
+        this.authTimeoutMs = authTimeoutMs;
+        AtomicInteger hilos = new AtomicInteger();
+        this.envios = new ThreadPoolExecutor(sendThreads, sendThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(10_000), r -> hilo(r, "ws-asientos-send-" + hilos.incrementAndGet()));
+        flusher.scheduleWithFixedDelay(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void cerrar() {
+        flusher.shutdownNow();
+        envios.shutdownNow();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        WebSocketSession concurrente = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, bufferSizeLimit);
+        clientes.put(session.getId(), new Cliente(concurrente));
+        if (!autenticado(session)) {
+            flusher.schedule(() -> {
+                if (session.isOpen() && !autenticado(session)) {
+                    cerrarSesion(session, CloseStatus.POLICY_VIOLATION.withReason("auth requerido"));
+                }
+            }, authTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Cliente cliente = clientes.remove(session.getId());
+        if (cliente != null) {
+            for (String eventoId : cliente.eventos()) {
+                seatChangeStream.quitarOyente(eventoId, cliente);
+            }
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        Cliente cliente = clientes.get(session.getId());
+        if (cliente == null) {
+            return;
+        }
+        Map<String, Object> msg;
+        try {
+            msg = mapper.readValue(message.getPayload(), new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            cliente.enviar(Map.of("type", "error", "message", "JSON inválido"));
+            return;
+        }
+        String type = String.valueOf(msg.get("type"));
+        if (!autenticado(session)) {
+            autenticar(cliente, type, msg);
+            return;
+        }
+        switch (type) {
+            case "subscribe" -> suscribir(cliente, msg);
+            case "unsubscribe" -> {
+                String eventoId = String.valueOf(msg.get("eventoId"));
+                cliente.quitarEvento(eventoId);
+                seatChangeStream.quitarOyente(eventoId, cliente);
+            }
+            case "block", "sell" -> comando(cliente, type, msg);
+            default -> cliente.enviar(Map.of("type", "error", "message", "type desconocido: " + type));
+        }
+    }
+
+    private void suscribir(Cliente cliente, Map<String, Object> msg) throws Exception {
+        Object rawEvento = msg.get("eventoId");
+        if (rawEvento == null) {
+            cliente.enviar(Map.of("type", "error", "message", "eventoId requerido"));
+            return;
+        }
+        String eventoId = String.valueOf(rawEvento);
+        if (cliente.agregarEvento(eventoId)) {
+            seatChangeStream.agregarOyente(eventoId, cliente);
+        }
+        cliente.enviar(Map.of("type", "subscribed", "eventoId", eventoId));
+        if (msg.get("since") instanceof Number since) {
+            // Lo que cambió desde la versión del cliente entra al próximo flush junto con lo que llegue
+            Map<String, Object> cambios = seatChangeLog.since(eventoId, since.longValue());
+            if (Boolean.TRUE.equals(cambios.get("resync"))) {
+                cliente.aviso(eventoId, "resync", cambios);
+            } else {
+                for (Object cambio : (List<?>) cambios.get("cambios")) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> asiento = (Map<String, Object>) cambio;
+                    cliente.aviso(eventoId, "asiento", asiento);
+                }
+            }
+        }
+    }
+
+    private static boolean autenticado(WebSocketSession session) {
+        return session.getAttributes().get(SESSION_ATTR) != null;
+    }
+
+    /**
+     * Conexión abierta sin X-Session-Id: el único mensaje aceptado es auth con el token.
+     */
+    private void autenticar(Cliente cliente, String type, Map<String, Object> msg) throws Exception {
+        Object token = msg.get("session");
+        if (!"auth".equals(type) || !(token instanceof String sessionId) || sessionId.isBlank()
+                || !sessionTokenValidatorService.isSessionTokenValidRemoto(sessionId)) {
+            cliente.enviar(Map.of("type", "error", "message", "Missing or invalid session"));
+            cliente.session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        cliente.session.getAttributes().put(SESSION_ATTR, sessionId);
+        cliente.session.getAttributes().put(VALIDATED_AT_ATTR, System.currentTimeMillis());
+        cliente.enviar(Map.of("type", "authenticated"));
+    }
+
+    private static void cerrarSesion(WebSocketSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            log.debug("Error cerrando la conexión {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * El comando no ocupa el hilo del WebSocket: la respuesta se envía cuando termina el Mono.
+     */
+    private void comando(Cliente cliente, String type, Map<String, Object> msg) {
+        String sessionId = (String) cliente.session.getAttributes().get(SESSION_ATTR);
+        Object id = msg.get("id");
+        sesionVigente(cliente, sessionId)
+                .flatMap(vigente -> {
+                    if (!vigente) {
+                        return Mono.<ResponseEntity<?>>just(ResponseEntity.status(401)
+                                .body(Map.of("error", "Missing or invalid X-Session-Id")));
+                    }
+                    return "block".equals(type)
+                            ? seatCommandService.bloquearAsientos(msg, sessionId)
+                            : seatCommandService.venderAsientos(msg, sessionId);
+                })
+                .onErrorResume(e -> {
+                    log.error("Error ejecutando comando {} por WebSocket: {}", type, e.getMessage(), e);
+                    return Mono.just(ResponseEntity.internalServerError().body(Map.of("error", "internal")));
+                })
+                .subscribe(respuesta -> {
+                    try {
+                        cliente.enviar(resultado(id, respuesta.getStatusCode().value(), respuesta.getBody()));
+                        if (respuesta.getStatusCode().value() == 401) {
+                            cliente.session.close(CloseStatus.POLICY_VIOLATION);
+                        }
+                    } catch (Exception e) {
+                        log.debug("Error enviando resultado al cliente {}: {}", cliente.session.getId(), e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * El token se validó en el handshake; se vuelve a validar si pasó seats.ws.revalidate-ms.
+     */
+    private Mono<Boolean> sesionVigente(Cliente cliente, String sessionId) {
+        Map<String, Object> attrs = cliente.session.getAttributes();
+        long validado = attrs.get(VALIDATED_AT_ATTR) instanceof Long l ? l : 0L;
+        long ahora = System.currentTimeMillis();
+        if (ahora - validado < revalidateMs) {
+            return Mono.just(true);
+        }
+        return sessionTokenValidatorService.validarReactivo(sessionId)
+                .doOnNext(valida -> {
+                    if (valida) {
+                        attrs.put(VALIDATED_AT_ATTR, ahora);
+                    }
+                });
+    }
+
+    private static Map<String, Object> resultado(Object id, int status, Object body) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("type", "result");
+        if (id != null) r.put("id", id);
+        r.put("status", status);
+        r.put("body", body);
+        return r;
+    }
+
+    private void flush() {
+        long ahora = System.currentTimeMillis();
+        for (Cliente cliente : clientes.values()) {
+            try {
+                cliente.flush(ahora);
+            } catch (Exception e) {
+                log.debug("Error preparando cambios para el cliente {}: {}", cliente.session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private static Thread hilo(Runnable r, String nombre) {
+        Thread t = new Thread(r, nombre);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Conexión de un cliente con sus cambios pendientes por evento.
+     */
+    private final class Cliente implements SeatChangeStream.Oyente {
+        final WebSocketSession session;
+        private final Map<String, Pendiente> pendientes = new HashMap<>();
+        private long enVueloDesde;   // 0 = sin frame en vuelo
+
+        Cliente(WebSocketSession session) {
+            this.session = session;
+        }
+
+        synchronized boolean agregarEvento(String eventoId) {
+            if (pendientes.containsKey(eventoId)) {
+                return false;
+            }
+            pendientes.put(eventoId, new Pendiente());
+            return true;
+        }
+
+        synchronized void quitarEvento(String eventoId) {
+            pendientes.remove(eventoId);
+        }
+
+        synchronized List<String> eventos() {
+            return new ArrayList<>(pendientes.keySet());
+        }
+
+        @Override
+        public synchronized void aviso(String eventoId, String tipo, Map<String, Object> data) {
+            Pendiente p = pendientes.get(eventoId);
+            if (p == null) {
+                return;
+            }
+            if (data.get("version") instanceof Number v) {
+                p.version = Math.max(p.version, v.longValue());
+            }
+            if ("resync".equals(tipo)) {
+                p.resync();
+            } else if (!p.resync) {
+                p.asientos.put(String.valueOf(data.get("seatId")), data);
+                if (p.asientos.size() > maxPending) {
+                    p.resync();
+                }
+            }
+        }
+
+        void flush(long ahora) throws Exception {
+            if (!session.isOpen()) {
+                return;
+            }
+            List<Map<String, Object>> updates = new ArrayList<>();
+            long sinLeerMs = 0;
+            synchronized (this) {
+                if (enVueloDesde != 0) {
+                    // El frame anterior todavía no salió: cliente lento
+                    sinLeerMs = ahora - enVueloDesde;
+                } else {
+                    for (Map.Entry<String, Pendiente> e : pendientes.entrySet()) {
+                        Pendiente p = e.getValue();
+                        if (p.vacio()) continue;
+                        Map<String, Object> update = new LinkedHashMap<>();
+                        update.put("eventoId", e.getKey());
+                        update.put("version", p.version);
+                        update.put("resync", p.resync);
+                        update.put("cambios", new ArrayList<>(p.asientos.values()));
+                        updates.add(update);
+                        p.limpiar();
+                    }
+                    if (!updates.isEmpty()) {
+                        enVueloDesde = ahora;
+                    }
+                }
+            }
+            // El cierre es I/O: fuera del monitor
+            if (sinLeerMs > maxLagMs) {
+                log.info("Cliente WebSocket {} sin leer hace {} ms, se cierra", session.getId(), sinLeerMs);
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                return;
+            }
+            if (updates.isEmpty()) {
+                return;
+            }
+            TextMessage frame = new TextMessage(mapper.writeValueAsString(Map.of("type", "update", "updates", updates)));
+            try {
+                envios.execute(() -> enviarFrame(frame));
+            } catch (RejectedExecutionException e) {
+                // Pool saturado: se corta la conexión, el cliente se vuelve a suscribir con since
+                synchronized (this) {
+                    enVueloDesde = 0;
+                }
+                cerrarSesion(session, CloseStatus.SERVICE_OVERLOAD);
+            }
+        }
+
+        private void enviarFrame(TextMessage frame) {
+            try {
+                session.sendMessage(frame);
+            } catch (Exception e) {
+                log.debug("Error enviando cambios al cliente {}: {}", session.getId(), e.getMessage());
+            } finally {
+                synchronized (this) {
+                    enVueloDesde = 0;
+                }
+            }
+        }
+
+        void enviar(Object payload) throws Exception {
+            // El decorador serializa los envíos y cierra la sesión si se pasa de los límites
+            session.sendMessage(new TextMessage(mapper.writeValueAsString(payload)));
+        }
+    }
+
+    /**
+     * Cambios de un evento todavía no enviados a un cliente (el último por asiento).
+     */
+    private static final class Pendiente {
+        final Map<String, Map<String, Object>> asientos = new LinkedHashMap<>();
+        long version;
+        boolean resync;
+
+        void resync() {
+            resync = true;
+            asientos.clear();
+        }
+
+        boolean vacio() {
+            return !resync && asientos.isEmpty();
+        }
+
+        void limpiar() {
+            resync = false;
+            asientos.clear();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+-- Compartido por los scripts de asientos: HashSeatRepository.script lo antepone al cargarlos.
+-- Bitmap de estados (2 bits por asiento: 0 libre, 1 bloqueado, 2 vendido) y contadores de
+-- disponibilidad, solo si el bitmap ya fue inicializado con las dimensiones (los contadores se
+-- arman junto con el bitmap). Dimensiones y existencia se leen una vez por ejecución.
+local CONTADORES = {'libres', 'bloqueados', 'vendidos'}
+local dimensiones
+
+local function marcar(bitmapKey, dimsKey, dispKey, seatId, nuevo)
+    if not dimensiones then
+        local dims = redis.call('HMGET', dimsKey, 'filas', 'columnas')
+        local cols = tonumber(dims[2])
+        dimensiones = {
+            filas = tonumber(dims[1]),
+            cols = cols,
+            bitmap = cols ~= nil and redis.call('EXISTS', bitmapKey) == 1,
+            contadores = redis.call('EXISTS', dispKey) == 1
+        }
+    end
+    local fila, columna = string.match(seatId, '^r(%d+)c(%d+)$')
+    if not dimensiones.bitmap or not fila then
+        return
+    end
+    fila, columna = tonumber(fila), tonumber(columna)
+    if fila < 1 or columna < 1 or columna > dimensiones.cols or (dimensiones.filas and fila > dimensiones.filas) then
+        return
+    end
+    local anterior = redis.call('BITFIELD', bitmapKey, 'SET', 'u2', '#' .. ((fila - 1) * dimensiones.cols + columna - 1), nuevo)[1]
+    if anterior ~= nuevo and dimensiones.contadores then
+        redis.call('HINCRBY', dispKey, CONTADORES[anterior + 1], -1)
+        redis.call('HINCRBY', dispKey, CONTADORES[nuevo + 1], 1)
+    end
+end
+
@@ -0,0 +1,54 @@
+-- Guarda el bitmap de estados recién armado y sus contadores de disponibilidad, solo si nadie
+-- lo armó mientras tanto. Bitmap y contadores viven lo mismo: se vuelven a armar juntos.
+-- KEYS[1] = eventos:{id}:estado (bitmap), KEYS[2] = eventos:{id}:disponibilidad
+-- KEYS[3] = eventos:{id}:dimensiones, KEYS[4] = eventos:{id}:asientos, KEYS[5] = eventos:{id}:version
+-- ARGV[1] = bitmap con el estado de la cátedra, ARGV[2] = TTL en segundos
+-- ARGV[3..5] = libres, bloqueados, vendidos de ese bitmap, ARGV[6..7] = filas, columnas
+-- ARGV[8] = prefijo de las keys de lock (lock:{id}:)
+-- Devuelve el bitmap guardado (el recién armado o el que ya existía)
+--
+-- El estado local se aplica acá y no en Java: un bloqueo o venta que ocurra mientras se arma el
+-- bitmap de la cátedra queda antes (y se aplica) o después (y lo marca su propio script).
+-- Las keys de lock se arman con ARGV[8] en lugar de venir en KEYS (no se conocen de antemano):
+-- vale para un Redis standalone, no para cluster.
+--
+-- El estado de la cátedra no pasa por los scripts de asientos: si su bitmap cambió desde el último
+-- armado (huella guardada en dimensiones) la versión del mapa sube, para que el ETag cambie.
+--
+-- marcar() (bitmap y contadores) viene de scripts/lib/marcar.lua, que se antepone al cargarlo.
+
+local actual = redis.call('GET', KEYS[1])
+if actual then
+    return actual
+end
+
+redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+redis.call('DEL', KEYS[2])
+redis.call('HSET', KEYS[2], 'libres', ARGV[3], 'bloqueados', ARGV[4], 'vendidos', ARGV[5])
+redis.call('EXPIRE', KEYS[2], ARGV[2])
+redis.call('HSET', KEYS[3], 'filas', ARGV[6], 'columnas', ARGV[7])
+
+local huella = redis.sha1hex(ARGV[1])
+local anterior = redis.call('HGET', KEYS[3], 'huella')
+if anterior ~= huella then
+    redis.call('HSET', KEYS[3], 'huella', huella)
+    if anterior then
+        redis.call('INCR', KEYS[5])
+    end
+end
+
+-- Estado local (pisa al de la cátedra): vendidos, y bloqueados con la key de lock viva
+local locales = redis.call('HGETALL', KEYS[4])
+for i = 1, #locales, 2 do
+    local seatId = locales[i]
+    local ok, seat = pcall(cjson.decode, locales[i + 1])
+    if ok and type(seat) == 'table' then
+        if string.upper(tostring(seat.status or '')) == 'VENDIDO' then
+            marcar(KEYS[1], KEYS[3], KEYS[2], seatId, 2)
+        elseif type(seat.holder) == 'string' and seat.holder ~= ''
+                and redis.call('EXISTS', ARGV[8] .. seatId) == 1 then
+            marcar(KEYS[1], KEYS[3], KEYS[2], seatId, 1)
+        end
+    end
+end
+return redis.call('GET', KEYS[1])
@@ -0,0 +1,76 @@
+-- Bloqueo atómico de varios asientos del mismo evento (formato hash): se bloquean todos o ninguno.
+-- KEYS[1] = eventos:{id}:asientos, KEYS[2] = eventos:{id}:estado (bitmap), KEYS[3] = eventos:{id}:dimensiones
+-- KEYS[4] = eventos:{id}:vencimientos, KEYS[5] = eventos:{id}:disponibilidad, KEYS[6] = eventos:con-bloqueos
+-- KEYS[7] = eventos:{id}:version
+-- KEYS[8..7+n] = lock:{id}:{seatId} de cada asiento, en el mismo orden que los pares de ARGV
+-- ARGV[1] = sessionId, ARGV[2] = ahora (epoch s), ARGV[3] = duración del bloqueo en ms, ARGV[4] = eventoId
+-- ARGV[5..] = pares seatId, JSON con los campos del asiento bloqueado
+-- Devuelve {'OK', version, seatIds creados...} | {'CONFLICT', seatId, 'SOLD'|'HELD', owner, ...} (owner '' si no aplica)
+--
+-- Los creados son los asientos cuya key de lock no existía (los demás ya eran de la sesión y solo
+-- se renovaron): si la cátedra rechaza el bloqueo, quien llama libera exactamente esos.
+--
+-- La versión del mapa sube en n (una por asiento) en la misma ejecución: version es la del
+-- último asiento, el i-ésimo tiene version - n + i.
+--
+-- marcar() (bitmap y contadores) viene de scripts/lib/marcar.lua, que se antepone al cargarlo.
+
+local session = ARGV[1]
+local n = #KEYS - 7
+local conflicts = {}
+local owners = {}
+local seats = {}
+
+-- 1. Verificar todos antes de escribir nada
+for i = 1, n do
+    local seatId = ARGV[3 + 2 * i]
+    local owner = redis.call('GET', KEYS[7 + i])
+    owners[i] = owner
+    if owner and owner ~= session then
+        table.insert(conflicts, seatId)
+        table.insert(conflicts, 'HELD')
+        table.insert(conflicts, owner)
+    else
+        local raw = redis.call('HGET', KEYS[1], seatId)
+        local seat = {}
+        if raw then
+            seat = cjson.decode(raw)
+            if string.upper(tostring(seat.status or '')) == 'VENDIDO' or seat.estado == 'Vendido' then
+                table.insert(conflicts, seatId)
+                table.insert(conflicts, 'SOLD')
+                table.insert(conflicts, '')
+            end
+        end
+        seats[i] = seat
+    end
+end
+
+if #conflicts > 0 then
+    table.insert(conflicts, 1, 'CONFLICT')
+    return conflicts
+end
+
+-- 2. Aplicar
+local creados = {}
+for i = 1, n do
+    local seatId = ARGV[3 + 2 * i]
+    local seat = seats[i]
+    for k, v in pairs(cjson.decode(ARGV[4 + 2 * i])) do
+        seat[k] = v
+    end
+    redis.call('HSET', KEYS[1], seatId, cjson.encode(seat))
+
+    marcar(KEYS[2], KEYS[3], KEYS[5], seatId, 1)
+
+    if owners[i] then
+        redis.call('SET', KEYS[7 + i], session, 'XX', 'PX', ARGV[3])
+    else
+        redis.call('SET', KEYS[7 + i], session, 'NX', 'PX', ARGV[3])
+        table.insert(creados, seatId)
+    end
+    redis.call('ZADD', KEYS[4], tonumber(ARGV[2]) * 1000 + tonumber(ARGV[3]), seatId)
+end
+redis.call('SADD', KEYS[6], ARGV[4])
+table.insert(creados, 1, redis.call('INCRBY', KEYS[7], n))
+table.insert(creados, 1, 'OK')
+return creados
@@ -0,0 +1,46 @@
+-- Bloqueo atómico de un asiento (formato hash).
+-- KEYS[1] = eventos:{id}:asientos, KEYS[2] = lock:{id}:{seatId}
+-- KEYS[3] = eventos:{id}:estado (bitmap), KEYS[4] = eventos:{id}:dimensiones
+-- KEYS[5] = eventos:{id}:vencimientos (ZSET seatId -> vencimiento en ms)
+-- KEYS[6] = eventos:{id}:disponibilidad, KEYS[7] = eventos:con-bloqueos, KEYS[8] = eventos:{id}:version
+-- ARGV[1] = seatId, ARGV[2] = sessionId, ARGV[3] = ahora (epoch s)
+-- ARGV[4] = JSON con los campos del asiento bloqueado (status, holder, expira, ...)
+-- ARGV[5] = eventoId, ARGV[6] = duración del bloqueo en ms (TTL de la key de lock)
+-- Devuelve {'OK', version} | {'SOLD'} | {'HELD', owner}
+--
+-- La key de lock es la fuente de verdad del bloqueo: expira sola en Redis.
+-- Un holder en el registro sin key de lock es un bloqueo vencido.
+-- La versión del mapa (ETag) se incrementa en la misma ejecución que el cambio.
+--
+-- marcar() (bitmap y contadores) viene de scripts/lib/marcar.lua, que se antepone al cargarlo.
+
+local owner = redis.call('GET', KEYS[2])
+if owner and owner ~= ARGV[2] then
+    return {'HELD', owner}
+end
+
+local raw = redis.call('HGET', KEYS[1], ARGV[1])
+local seat = {}
+if raw then
+    seat = cjson.decode(raw)
+    if string.upper(tostring(seat.status or '')) == 'VENDIDO' or seat.estado == 'Vendido' then
+        return {'SOLD'}
+    end
+end
+
+for k, v in pairs(cjson.decode(ARGV[4])) do
+    seat[k] = v
+end
+redis.call('HSET', KEYS[1], ARGV[1], cjson.encode(seat))
+
+marcar(KEYS[3], KEYS[4], KEYS[6], ARGV[1], 1)
+
+if owner then
+    redis.call('SET', KEYS[2], ARGV[2], 'XX', 'PX', ARGV[6])
+else
+    redis.call('SET', KEYS[2], ARGV[2], 'NX', 'PX', ARGV[6])
+end
+-- Vencimiento para el barrido de bloqueos vencidos
+redis.call('ZADD', KEYS[5], tonumber(ARGV[3]) * 1000 + tonumber(ARGV[6]), ARGV[1])
+redis.call('SADD', KEYS[7], ARGV[5])
+return {'OK', redis.call('INCR', KEYS[8])}
@@ -0,0 +1,55 @@
+-- Barrido de bloqueos vencidos de un evento (formato hash).
+-- KEYS[1] = eventos:{id}:asientos, KEYS[2] = eventos:{id}:estado (bitmap), KEYS[3] = eventos:{id}:dimensiones
+-- KEYS[4] = eventos:{id}:vencimientos, KEYS[5] = eventos:{id}:disponibilidad, KEYS[6] = eventos:con-bloqueos
+-- KEYS[7] = eventos:{id}:version
+-- KEYS[8..] = lock:{id}:{seatId} de cada candidato, en el mismo orden que ARGV[4..]
+-- ARGV[1] = eventoId, ARGV[2] = ahora (epoch ms), ARGV[3] = JSON con los campos del asiento libre
+-- ARGV[4..] = seatIds candidatos (los de ZRANGEBYSCORE vencimientos -inf ahora)
+-- Devuelve {version, seatIds liberados...}: la versión sube en uno por asiento liberado (0 si no se liberó ninguno)
+--
+-- Se vuelve a chequear cada candidato dentro del script: si la key de lock sigue viva el bloqueo
+-- se renovó y solo se reprograma su vencimiento; un asiento vendido no se toca.
+--
+-- marcar() (bitmap y contadores) viene de scripts/lib/marcar.lua, que se antepone al cargarlo.
+
+local ahora = tonumber(ARGV[2])
+local n = #KEYS - 7
+local liberados = {}
+
+for i = 1, n do
+    local seatId = ARGV[3 + i]
+    local vence = tonumber(redis.call('ZSCORE', KEYS[4], seatId))
+    if vence and vence <= ahora then
+        local pttl = redis.call('PTTL', KEYS[7 + i])
+        if pttl > 0 then
+            redis.call('ZADD', KEYS[4], ahora + pttl, seatId)
+        else
+            redis.call('ZREM', KEYS[4], seatId)
+            local raw = redis.call('HGET', KEYS[1], seatId)
+            if raw then
+                local seat = cjson.decode(raw)
+                local vendido = string.upper(tostring(seat.status or '')) == 'VENDIDO' or seat.estado == 'Vendido'
+                if not vendido and pttl == -2 then
+                    for k, v in pairs(cjson.decode(ARGV[3])) do
+                        seat[k] = v
+                    end
+                    seat.expira = nil
+                    seat.expiraEpoch = nil
+                    redis.call('HSET', KEYS[1], seatId, cjson.encode(seat))
+                    marcar(KEYS[2], KEYS[3], KEYS[5], seatId, 0)
+                    table.insert(liberados, seatId)
+                end
+            end
+        end
+    end
+end
+
+if redis.call('ZCARD', KEYS[4]) == 0 then
+    redis.call('SREM', KEYS[6], ARGV[1])
+end
+local version = 0
+if #liberados > 0 then
+    version = redis.call('INCRBY', KEYS[7], #liberados)
+end
+table.insert(liberados, 1, version)
+return liberados
@@ -0,0 +1,82 @@
+-- Venta atómica de varios asientos del mismo evento (formato hash): se venden todos o ninguno.
+-- KEYS[1] = eventos:{id}:asientos, KEYS[2] = eventos:{id}:estado (bitmap), KEYS[3] = eventos:{id}:dimensiones
+-- KEYS[4] = eventos:{id}:vencimientos, KEYS[5] = eventos:{id}:disponibilidad, KEYS[6] = eventos:con-bloqueos
+-- KEYS[7] = eventos:{id}:version
+-- KEYS[8..7+n] = lock:{id}:{seatId} de cada asiento, en el mismo orden que los pares de ARGV
+-- KEYS[8+n] = ventas:outbox
+-- ARGV[1] = sessionId, ARGV[2] = ahora (epoch s)
+-- ARGV[3] = 'verify' (solo chequea que la sesión tenga bloqueados todos los asientos)
+--         | 'apply'  (la cátedra ya confirmó: falla solo si un asiento está vendido o lo tiene otra sesión)
+-- ARGV[4] = eventoId
+-- ARGV[5..4+2n] = pares seatId, JSON con los campos del asiento vendido
+-- ARGV[5+2n], ARGV[6+2n] = idempotencia y JSON de la venta para el backend ('' = no encolar)
+-- Devuelve {'OK'} (verify) | {'OK', version} (apply) | {'CONFLICT', seatId, 'SOLD'|'HELD'|'EXPIRED'|'NOT_HELD', owner, ...} (owner '' si no aplica)
+--
+-- En 'apply' la versión del mapa sube en n, como en seat-block-many.
+-- En 'apply' la venta entra al outbox en la misma ejecución, solo si se marcaron todos los
+-- asientos: con un conflicto no se escribe nada y quien llama responde que la venta no quedó registrada.
+--
+-- marcar() (bitmap y contadores) viene de scripts/lib/marcar.lua, que se antepone al cargarlo.
+
+local session = ARGV[1]
+local apply = ARGV[3] == 'apply'
+local n = #KEYS - 8
+local conflicts = {}
+local seats = {}
+
+local function conflict(seatId, status, owner)
+    table.insert(conflicts, seatId)
+    table.insert(conflicts, status)
+    table.insert(conflicts, owner or '')
+end
+
+-- 1. Verificar todos antes de escribir nada
+for i = 1, n do
+    local seatId = ARGV[3 + 2 * i]
+    local owner = redis.call('GET', KEYS[7 + i])
+    local raw = redis.call('HGET', KEYS[1], seatId)
+    local seat = raw and cjson.decode(raw) or {}
+    seats[i] = seat
+    if owner and owner ~= session then
+        conflict(seatId, 'HELD', owner)
+    elseif string.upper(tostring(seat.status or '')) == 'VENDIDO' or seat.estado == 'Vendido' then
+        conflict(seatId, 'SOLD')
+    elseif not apply and not owner then
+        if raw and seat.holder == session then
+            conflict(seatId, 'EXPIRED')
+        else
+            conflict(seatId, 'NOT_HELD')
+        end
+    end
+end
+
+if #conflicts > 0 then
+    table.insert(conflicts, 1, 'CONFLICT')
+    return conflicts
+end
+if not apply then
+    return {'OK'}
+end
+
+-- 2. Marcar todos como vendidos
+for i = 1, n do
+    local seatId = ARGV[3 + 2 * i]
+    local seat = seats[i]
+    for k, v in pairs(cjson.decode(ARGV[4 + 2 * i])) do
+        seat[k] = v
+    end
+    seat.holder = nil
+    seat.expira = nil
+    seat.expiraEpoch = nil
+    seat.updatedAt = nil
+    seat.updatedAtEpoch = nil
+    redis.call('HSET', KEYS[1], seatId, cjson.encode(seat))
+
+    marcar(KEYS[2], KEYS[3], KEYS[5], seatId, 2)
+    redis.call('DEL', KEYS[7 + i])
+    redis.call('ZREM', KEYS[4], seatId)
+end
+if ARGV[5 + 2 * n] ~= '' then
+    redis.call('XADD', KEYS[8 + n], '*', 'idempotencia', ARGV[5 + 2 * n], 'venta', ARGV[6 + 2 * n])
+end
+return {'OK', redis.call('INCRBY', KEYS[7], n)}
@@ -0,0 +1,48 @@
+-- Venta atómica de un asiento bloqueado por la sesión (formato hash).
+-- KEYS[1] = eventos:{id}:asientos, KEYS[2] = lock:{id}:{seatId}
+-- KEYS[3] = eventos:{id}:estado (bitmap), KEYS[4] = eventos:{id}:dimensiones
+-- KEYS[5] = eventos:{id}:vencimientos (ZSET seatId -> vencimiento en ms)
+-- KEYS[6] = eventos:{id}:disponibilidad, KEYS[7] = eventos:con-bloqueos, KEYS[8] = eventos:{id}:version
+-- ARGV[1] = seatId, ARGV[2] = sessionId, ARGV[3] = ahora (epoch s)
+-- ARGV[4] = JSON con los campos de la venta (status, estado, comprador, fechaVenta), ARGV[5] = eventoId
+-- Devuelve {'OK', version} | {'SOLD'} | {'HELD', owner} | {'EXPIRED'} | {'NOT_HELD'}
+--
+-- marcar() (bitmap y contadores) viene de scripts/lib/marcar.lua, que se antepone al cargarlo.
+
+local owner = redis.call('GET', KEYS[2])
+if owner and owner ~= ARGV[2] then
+    return {'HELD', owner}
+end
+
+local raw = redis.call('HGET', KEYS[1], ARGV[1])
+if not raw then
+    return {'NOT_HELD'}
+end
+local seat = cjson.decode(raw)
+if string.upper(tostring(seat.status or '')) == 'VENDIDO' or seat.estado == 'Vendido' then
+    return {'SOLD'}
+end
+
+if not owner then
+    -- Sin key de lock: o nunca se bloqueó o el bloqueo ya venció
+    if seat.holder == ARGV[2] then
+        return {'EXPIRED'}
+    end
+    return {'NOT_HELD'}
+end
+
+for k, v in pairs(cjson.decode(ARGV[4])) do
+    seat[k] = v
+end
+seat.holder = nil
+seat.expira = nil
+seat.expiraEpoch = nil
+seat.updatedAt = nil
+seat.updatedAtEpoch = nil
+redis.call('HSET', KEYS[1], ARGV[1], cjson.encode(seat))
+
+marcar(KEYS[3], KEYS[4], KEYS[6], ARGV[1], 2)
+
+redis.call('DEL', KEYS[2])
+redis.call('ZREM', KEYS[5], ARGV[1])
+return {'OK', redis.call('INCR', KEYS[8])}
@@ -0,0 +1,117 @@
+package com.cine.proxy.client;
+
+import com.cine.proxy.config.CatedraProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatedraCircuitBreakerTest {
+
+    private static final long OPEN_MS = 1000;
+
+    private final CatedraCircuitBreaker breaker = new CatedraCircuitBreaker(config());
+
+    private static CatedraProperties.CircuitBreaker config() {
+        CatedraProperties.CircuitBreaker config = new CatedraProperties.CircuitBreaker();
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRatePercent(50);
+        config.setOpenMs(OPEN_MS);
+        config.setHalfOpenCalls(2);
+        return config;
+    }
+
+    @Test
+    void noAbreAntesDelMinimoDeLlamadas() {
+        registrar(false, false, false);
+
+        assertEquals(CatedraCircuitBreaker.Estado.CERRADO, breaker.getEstado());
+        assertTrue(breaker.permitir(0));
+    }
+
+    @Test
+    void abreConLaTasaDeFallasDeLaVentana() {
+        registrar(true, true, false, false);
+
+        assertEquals(CatedraCircuitBreaker.Estado.ABIERTO, breaker.getEstado());
+        assertEquals(1, breaker.getAperturas());
+        assertFalse(breaker.permitir(OPEN_MS - 1));
+    }
+
+    @Test
+    void laVentanaDescartaLasLlamadasViejas() {
+        registrar(false, true, true, true);
+        assertEquals(25, breaker.getTasaFallasPct());
+
+        // La falla sale de la ventana: 4 éxitos
+        registrar(true);
+        assertEquals(0, breaker.getTasaFallasPct());
+        registrar(false);
+        assertEquals(CatedraCircuitBreaker.Estado.CERRADO, breaker.getEstado());
+    }
+
+    @Test
+    void semiAbiertoCierraSiTodasLasPruebasSalenBien() {
+        abrir();
+
+        assertTrue(breaker.permitir(OPEN_MS));
+        assertEquals(CatedraCircuitBreaker.Estado.SEMI_ABIERTO, breaker.getEstado());
+        assertTrue(breaker.permitir(OPEN_MS));
+        assertFalse(breaker.permitir(OPEN_MS), "solo halfOpenCalls pruebas a la vez");
+
+        breaker.registrar(true, OPEN_MS);
+        assertEquals(CatedraCircuitBreaker.Estado.SEMI_ABIERTO, breaker.getEstado());
+        breaker.registrar(true, OPEN_MS);
+        assertEquals(CatedraCircuitBreaker.Estado.CERRADO, breaker.getEstado());
+        assertEquals(0, breaker.getTasaFallasPct());
+    }
+
+    @Test
+    void semiAbiertoVuelveAAbrirConUnaFalla() {
+        abrir();
+        assertTrue(breaker.permitir(OPEN_MS));
+
+        breaker.registrar(false, OPEN_MS + 5);
+
+        assertEquals(CatedraCircuitBreaker.Estado.ABIERTO, breaker.getEstado());
+        assertEquals(2, breaker.getAperturas());
+        assertFalse(breaker.permitir(OPEN_MS + 5 + OPEN_MS - 1));
+        assertTrue(breaker.permitir(OPEN_MS + 5 + OPEN_MS));
+    }
+
+    @Test
+    void liberarDevuelveElLugarDePrueba() {
+        abrir();
+        assertTrue(breaker.permitir(OPEN_MS));
+        assertTrue(breaker.permitir(OPEN_MS));
+        assertFalse(breaker.permitir(OPEN_MS));
+
+        breaker.liberar();
+
+        assertTrue(breaker.permitir(OPEN_MS));
+    }
+
+    @Test
+    void resultadoQueLlegaConElCircuitoAbiertoNoCambiaNada() {
+        abrir();
+
+        breaker.registrar(true, 10);
+
+        assertEquals(CatedraCircuitBreaker.Estado.ABIERTO, breaker.getEstado());
+        assertFalse(breaker.permitir(10));
+    }
+
+    private void abrir() {
+        registrar(false, false, false, false);
+        assertEquals(CatedraCircuitBreaker.Estado.ABIERTO, breaker.getEstado());
+    }
+
+    private void registrar(boolean... resultados) {
+        for (boolean ok : resultados) {
+            assertTrue(breaker.permitir(0));
+            breaker.registrar(ok, 0);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.cine.proxy.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark manual (no corre con los tests): arma el mapa de asientos a partir del documento
+ * de la cátedra con el algoritmo anterior (HashMap por asiento + loop anidado) y con SeatGrid.
+ *
+ * Uso: mvn -q test-compile && java -cp target/test-classes:target/classes:$(cat cp.txt) com.cine.proxy.model.SeatGridBenchmark
+ * (cp.txt con: mvn -q dependency:build-classpath -Dmdep.outputFile=cp.txt)
+ */
+public class SeatGridBenchmark {
+
+    /** Asientos procesados por medición (el algoritmo anterior es cuadrático: se ajustan las iteraciones). */
+    private static final long PRESUPUESTO = 2_000_000;
+
+    public static void main(String[] args) {
+        ObjectMapper mapper = new ObjectMapper();
+        int[][] salas = {{10, 10}, {50, 50}, {100, 100}};
+        System.out.printf("%-9s %14s %14s %9s%n", "sala", "anterior (us)", "SeatGrid (us)", "speedup");
+        for (int[] sala : salas) {
+            int filas = sala[0], columnas = sala[1];
+            JsonNode asientos = documentoCatedra(mapper, filas, columnas);
+            long now = Instant.now().getEpochSecond();
+
+            int n = filas * columnas;
+            int iterAnterior = (int) Math.max(3, PRESUPUESTO * 20 / ((long) n * n));
+            int iterGrid = (int) Math.max(3, PRESUPUESTO / n);
+
+            medir(() -> anterior(asientos, filas, columnas, now), iterAnterior);
+            medir(() -> seatGrid(asientos, filas, columnas, now), iterGrid);
+            double tAnterior = medir(() -> anterior(asientos, filas, columnas, now), iterAnterior);
+            double tGrid = medir(() -> seatGrid(asientos, filas, columnas, now), iterGrid);
+            System.out.printf("%-9s %14.1f %14.1f %8.1fx%n", filas + "x" + columnas, tAnterior, tGrid, tAnterior / tGrid);
+        }
+    }
+
+    /** @return microsegundos promedio por armado de sala */
+    private static double medir(Runnable r, int iteraciones) {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) {
+            r.run();
+        }
+        return (System.nanoTime() - t0) / 1000.0 / iteraciones;
+    }
+
+    /** Todos los asientos de la sala: 30% vendidos, 10% bloqueados vigentes, el resto libres. */
+    private static JsonNode documentoCatedra(ObjectMapper mapper, int filas, int columnas) {
+        ArrayNode asientos = mapper.createArrayNode();
+        String expira = Instant.now().plusSeconds(600).toString();
+        int i = 0;
+        for (int f = 1; f <= filas; f++) {
+            for (int c = 1; c <= columnas; c++, i++) {
+                ObjectNode a = asientos.addObject();
+                a.put("fila", f);
+                a.put("columna", c);
+                if (i % 10 < 3) {
+                    a.put("estado", "Vendido");
+                    a.putObject("comprador").put("persona", "Persona " + i).put("fechaVenta", "2025-11-01T20:00:00Z");
+                } else if (i % 10 == 3) {
+                    a.put("estado", "Bloqueado");
+                    a.put("expira", expira);
+                    a.put("holder", "sesion-" + (i % 7));
+                } else {
+                    a.put("estado", "Libre");
+                }
+            }
+        }
+        return asientos;
+    }
+
+    private static List<Map<String, Object>> seatGrid(JsonNode asientos, int filas, int columnas, long now) {
+        SeatGrid grid = new SeatGrid(filas, columnas);
+        grid.mergeCatedra(asientos, now);
+        return grid.toSeatMaps(now * 1000);
+    }
+
+    /** Copia del algoritmo que usaba AsientosController (generateBaseMatrix + mergeRedisStates). */
+    private static List<Map<String, Object>> anterior(JsonNode asientos, int filas, int columnas, long now) {
+        List<Map<String, Object>> allSeats = new ArrayList<>();
+        for (int fila = 1; fila <= filas; fila++) {
+            for (int columna = 1; columna <= columnas; columna++) {
+                Map<String, Object> seat = new HashMap<>();
+                seat.put("seatId", String.format("r%dc%d", fila, columna));
+                seat.put("status", "LIBRE");
+                seat.put("fila", fila);
+                seat.put("columna", columna);
+                allSeats.add(seat);
+            }
+        }
+        for (JsonNode asiento : asientos) {
+            int fila = asiento.path("fila").asInt(-1);
+            int columna = asiento.path("columna").asInt(-1);
+            String estado = asiento.path("estado").asText(null);
+            String status = "LIBRE";
+            if ("Vendido".equalsIgnoreCase(estado)) {
+                status = "VENDIDO";
+            } else if ("Bloqueado".equalsIgnoreCase(estado)) {
+                String expiracion = asiento.path("expira").asText(null);
+                status = expiracion != null && java.time.OffsetDateTime.parse(expiracion).toInstant().getEpochSecond() > now
+                        ? "BLOQUEADO" : "LIBRE";
+            }
+            for (Map<String, Object> seat : allSeats) {
+                Integer seatFila = (Integer) seat.get("fila");
+                Integer seatColumna = (Integer) seat.get("columna");
+                if (seatFila != null && seatColumna != null && seatFila.equals(fila) && seatColumna.equals(columna)) {
+                    if (!"VENDIDO".equals(seat.get("status"))) {
+                        seat.put("status", status);
+                        if ("BLOQUEADO".equals(status)) {
+                            seat.put("holder", asiento.path("holder").asText(null));
+                        } else if ("VENDIDO".equals(status)) {
+                            JsonNode compradorNode = asiento.path("comprador");
+                            Map<String, Object> compradorMap = new HashMap<>();
+                            compradorMap.put("persona", compradorNode.path("persona").asText(""));
+                            compradorMap.put("fechaVenta", compradorNode.path("fechaVenta").asText(""));
+                            seat.put("comprador", compradorMap);
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        return allSeats;
+    }
+}
@@ -0,0 +1,108 @@
+package com.cine.proxy.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SeatGridTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void indexOfAceptaSoloSeatIdsDentroDeLaSala() {
+        SeatGrid grid = new SeatGrid(3, 4);
+
+        assertEquals(0, grid.indexOf("r1c1"));
+        assertEquals(5, grid.indexOf("r2c2"));
+        assertEquals(11, grid.indexOf("r3c4"));
+
+        for (String invalido : new String[]{null, "", "r1c", "rc1", "x1c1", "r0c1", "r1c0", "r4c1", "r1c5", "rac1", "r1cb", "r-1c1"}) {
+            assertEquals(-1, grid.indexOf(invalido), invalido);
+        }
+    }
+
+    @Test
+    void mergeCatedraAplicaVendidosYBloqueosVigentes() throws Exception {
+        long ahora = Instant.now().getEpochSecond();
+        String futuro = OffsetDateTime.now(ZoneOffset.UTC).plusMinutes(5).toString();
+        String pasado = OffsetDateTime.now(ZoneOffset.UTC).minusMinutes(5).toString();
+        JsonNode asientos = mapper.readTree("""
+                [
+                  {"fila": 1, "columna": 1, "estado": "Vendido", "comprador": {"persona": "Ana", "fechaVenta": "2025-01-01"}},
+                  {"fila": 1, "columna": 2, "estado": "Bloqueado", "expira": "%s", "holder": "s1"},
+                  {"fila": 1, "columna": 3, "estado": "Bloqueado", "expira": "%s"},
+                  {"fila": 2, "columna": 1, "estado": "Bloqueado"},
+                  {"fila": 2, "columna": 2, "estado": "Vendido"},
+                  {"fila": 9, "columna": 1, "estado": "Vendido"}
+                ]
+                """.formatted(futuro, pasado));
+
+        SeatGrid grid = new SeatGrid(2, 3);
+        grid.mergeCatedra(asientos, ahora);
+
+        int r1c1 = grid.indexOf("r1c1");
+        assertEquals(SeatGrid.VENDIDO, grid.status(r1c1));
+        assertEquals("Ana", grid.persona(r1c1));
+        assertEquals("2025-01-01", grid.fechaVenta(r1c1));
+        assertEquals(SeatGrid.BLOQUEADO, grid.status(grid.indexOf("r1c2")));
+        assertEquals("s1", grid.holder(grid.indexOf("r1c2")));
+        assertEquals(SeatGrid.LIBRE, grid.status(grid.indexOf("r1c3")), "bloqueo vencido");
+        assertEquals(SeatGrid.LIBRE, grid.status(grid.indexOf("r2c1")), "bloqueo sin expira");
+        assertEquals(SeatGrid.VENDIDO, grid.status(grid.indexOf("r2c2")));
+        assertNull(grid.persona(grid.indexOf("r2c2")));
+    }
+
+    @Test
+    void mergeCatedraNoPisaUnVendido() throws Exception {
+        SeatGrid grid = new SeatGrid(1, 1);
+        grid.setVendido(0, "Local", "2025-01-01");
+
+        grid.mergeCatedra(mapper.readTree("[{\"fila\": 1, \"columna\": 1, \"estado\": \"Libre\"}]"), Instant.now().getEpochSecond());
+
+        assertEquals(SeatGrid.VENDIDO, grid.status(0));
+        assertEquals("Local", grid.persona(0));
+    }
+
+    @Test
+    void toSeatMapsInformaLosBloqueosVencidosComoLibres() {
+        long ahora = System.currentTimeMillis();
+        SeatGrid grid = new SeatGrid(1, 4);
+        grid.setBloqueado(0, "s1", ahora + 60_000);
+        grid.setBloqueado(1, "s2", ahora - 1);
+        grid.setVendido(2, "Ana", "2025-01-01");
+
+        List<Map<String, Object>> seats = grid.toSeatMaps(ahora);
+
+        assertEquals(4, seats.size());
+        assertEquals("r1c1", seats.get(0).get("seatId"));
+        assertEquals(1, seats.get(0).get("fila"));
+        assertEquals(1, seats.get(0).get("columna"));
+        assertEquals("BLOQUEADO", seats.get(0).get("status"));
+        assertEquals("s1", seats.get(0).get("holder"));
+        assertEquals("LIBRE", seats.get(1).get("status"));
+        assertFalse(seats.get(1).containsKey("holder"));
+        assertEquals("VENDIDO", seats.get(2).get("status"));
+        assertEquals(Map.of("persona", "Ana", "fechaVenta", "2025-01-01"), seats.get(2).get("comprador"));
+        assertEquals("LIBRE", seats.get(3).get("status"));
+    }
+
+    @Test
+    void holdersIgualesCompartenInstancia() {
+        SeatGrid grid = new SeatGrid(1, 2);
+        grid.setBloqueado(0, new String("sesion"), 0);
+        grid.setBloqueado(1, new String("sesion"), 0);
+
+        assertSame(grid.holder(0), grid.holder(1));
+    }
+}
@@ -0,0 +1,111 @@
+package com.cine.proxy.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatMapCodecTest {
+
+    /** Versión leída por el último decode. */
+    private long version;
+
+    @Test
+    void roundTripConservaEstadosHoldersYCompradores() {
+        long ahora = System.currentTimeMillis();
+        SeatGrid grid = new SeatGrid(3, 5);
+        grid.setBloqueado(grid.indexOf("r1c2"), "sesión-1", ahora + 60_000);
+        grid.setBloqueado(grid.indexOf("r1c3"), "sesión-1", 0);
+        grid.setBloqueado(grid.indexOf("r2c1"), "sesión-2", ahora - 1);
+        grid.setVendido(grid.indexOf("r2c5"), "Ana", "2025-01-01");
+        grid.setVendido(grid.indexOf("r3c5"), null, null);
+
+        SeatGrid leida = decode(SeatMapCodec.encode(grid, ahora, 42));
+
+        assertEquals(3, leida.getFilas());
+        assertEquals(5, leida.getColumnas());
+        assertEquals(42, version);
+        for (int i = 0; i < grid.size(); i++) {
+            int esperado = i == grid.indexOf("r2c1") ? SeatGrid.LIBRE : grid.status(i);
+            assertEquals(esperado, leida.status(i), "asiento " + i);
+        }
+        assertEquals("sesión-1", leida.holder(leida.indexOf("r1c2")));
+        assertEquals("sesión-1", leida.holder(leida.indexOf("r1c3")));
+        assertNull(leida.holder(leida.indexOf("r2c1")), "el bloqueo vencido no viaja");
+        assertEquals("Ana", leida.persona(leida.indexOf("r2c5")));
+        assertEquals("2025-01-01", leida.fechaVenta(leida.indexOf("r2c5")));
+        assertNull(leida.persona(leida.indexOf("r3c5")));
+    }
+
+    @Test
+    void salaLibreSeCodificaEnUnaSolaCorrida() {
+        byte[] datos = SeatMapCodec.encode(new SeatGrid(100, 100), 0, 0);
+
+        assertTrue(datos.length < 16, "largo " + datos.length);
+        SeatGrid leida = decode(datos);
+        for (int i = 0; i < leida.size(); i++) {
+            assertEquals(SeatGrid.LIBRE, leida.status(i));
+        }
+    }
+
+    /** Lector del formato documentado en SeatMapCodec, como el de un cliente. */
+    private SeatGrid decode(byte[] datos) {
+        ByteArrayInputStream in = new ByteArrayInputStream(datos);
+        assertEquals('S', in.read());
+        assertEquals('M', in.read());
+        assertEquals(SeatMapCodec.FORMATO, in.read());
+        int filas = (int) varint(in);
+        int columnas = (int) varint(in);
+        version = varint(in);
+        SeatGrid grid = new SeatGrid(filas, columnas);
+
+        byte[] estados = new byte[grid.size()];
+        int i = 0;
+        for (long runs = varint(in); runs > 0; runs--) {
+            byte status = (byte) in.read();
+            for (long largo = varint(in); largo > 0; largo--) {
+                estados[i++] = status;
+            }
+        }
+        assertEquals(grid.size(), i);
+
+        List<String> strings = new ArrayList<>();
+        for (long n = varint(in); n > 0; n--) {
+            byte[] utf8 = new byte[(int) varint(in)];
+            assertEquals(utf8.length, in.read(utf8, 0, utf8.length));
+            strings.add(new String(utf8, StandardCharsets.UTF_8));
+        }
+
+        for (int j = 0; j < estados.length; j++) {
+            if (estados[j] == SeatGrid.BLOQUEADO) grid.setBloqueado(j, null, 0);
+            else if (estados[j] == SeatGrid.VENDIDO) grid.setVendido(j, null, null);
+        }
+        int anterior = -1;
+        for (long n = varint(in); n > 0; n--) {
+            int j = anterior + 1 + (int) varint(in);
+            if (estados[j] == SeatGrid.BLOQUEADO) {
+                grid.setBloqueado(j, strings.get((int) varint(in)), 0);
+            } else {
+                grid.setVendido(j, strings.get((int) varint(in)), strings.get((int) varint(in)));
+            }
+            anterior = j;
+        }
+        assertEquals(0, in.available());
+        return grid;
+    }
+
+    private static long varint(ByteArrayInputStream in) {
+        long valor = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            valor |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return valor;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.cine.proxy.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Assumptions;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Redis real para los tests de los scripts Lua (HashSeatRepository).
+ *
+ * Con -Dtest.redis.host (y opcionalmente test.redis.port / test.redis.database, por defecto la
+ * base 15) se usa ese servidor; si no, un contenedor redis:7.0.15 de Testcontainers. Sin ninguno
+ * de los dos los tests se saltean. Cada test arranca con la base vacía (FLUSHDB).
+ */
+final class RedisDePrueba {
+
+    private static LettuceConnectionFactory conexion;
+    private static boolean intentado;
+
+    final StringRedisTemplate redis;
+    final ReactiveStringRedisTemplate reactiveRedis;
+    final HashSeatRepository repositorio;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private RedisDePrueba(LettuceConnectionFactory conexion) {
+        this.redis = new StringRedisTemplate(conexion);
+        this.reactiveRedis = new ReactiveStringRedisTemplate(conexion);
+        this.repositorio = new HashSeatRepository(redis, reactiveRedis, mapper);
+    }
+
+    /**
+     * Redis vacío para un test; lo saltea si no hay Redis disponible.
+     */
+    static RedisDePrueba limpio() {
+        LettuceConnectionFactory c = conexion();
+        Assumptions.assumeTrue(c != null, "Sin Redis para tests: definir -Dtest.redis.host o tener Docker");
+        RedisDePrueba r = new RedisDePrueba(c);
+        r.redis.execute((RedisCallback<Object>) con -> {
+            con.serverCommands().flushDb();
+            return null;
+        });
+        return r;
+    }
+
+    private static synchronized LettuceConnectionFactory conexion() {
+        if (intentado) {
+            return conexion;
+        }
+        intentado = true;
+        String host = System.getProperty("test.redis.host");
+        int port = Integer.getInteger("test.redis.port", 6379);
+        if (host == null || host.isBlank()) {
+            if (!DockerClientFactory.instance().isDockerAvailable()) {
+                return null;
+            }
+            GenericContainer<?> contenedor = new GenericContainer<>(DockerImageName.parse("redis:7.0.15"))
+                    .withExposedPorts(6379);
+            contenedor.start();
+            host = contenedor.getHost();
+            port = contenedor.getMappedPort(6379);
+        }
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(host, port);
+        config.setDatabase(Integer.getInteger("test.redis.database", 15));
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(config);
+        factory.afterPropertiesSet();
+        conexion = factory;
+        return conexion;
+    }
+
+    /**
+     * Arma el bitmap de estados (todo libre) y los contadores de un evento de filas x columnas,
+     * como SeatBitmapService al cargar el mapa.
+     */
+    void inicializarBitmap(String eventoId, int filas, int columnas) {
+        redis.opsForHash().put(HashSeatRepository.dimensionesKeyForEvento(eventoId), "filas", String.valueOf(filas));
+        redis.opsForHash().put(HashSeatRepository.dimensionesKeyForEvento(eventoId), "columnas", String.valueOf(columnas));
+        redis.opsForValue().setBit(HashSeatRepository.bitmapKeyForEvento(eventoId), (long) filas * columnas * 2 - 1, false);
+        redis.opsForHash().put(HashSeatRepository.disponibilidadKeyForEvento(eventoId), "libres", String.valueOf(filas * columnas));
+        redis.opsForHash().put(HashSeatRepository.disponibilidadKeyForEvento(eventoId), "bloqueados", "0");
+        redis.opsForHash().put(HashSeatRepository.disponibilidadKeyForEvento(eventoId), "vendidos", "0");
+    }
+
+    /** Estado del asiento en el bitmap: 0 libre, 1 bloqueado, 2 vendido. */
+    long estadoEnBitmap(String eventoId, int fila, int columna) {
+        int columnas = Integer.parseInt(String.valueOf(
+                redis.opsForHash().get(HashSeatRepository.dimensionesKeyForEvento(eventoId), "columnas")));
+        long offset = ((long) (fila - 1) * columnas + columna - 1) * 2;
+        boolean alto = Boolean.TRUE.equals(redis.opsForValue().getBit(HashSeatRepository.bitmapKeyForEvento(eventoId), offset));
+        boolean bajo = Boolean.TRUE.equals(redis.opsForValue().getBit(HashSeatRepository.bitmapKeyForEvento(eventoId), offset + 1));
+        return (alto ? 2 : 0) + (bajo ? 1 : 0);
+    }
+
+    long contador(String eventoId, String nombre) {
+        Object valor = redis.opsForHash().get(HashSeatRepository.disponibilidadKeyForEvento(eventoId), nombre);
+        return valor == null ? 0 : Long.parseLong(valor.toString());
+    }
+
+    String lock(String eventoId, String seatId) {
+        return redis.opsForValue().get(SeatRepository.lockKey(eventoId, seatId));
+    }
+
+    ObjectNode bloqueado(String sessionId) {
+        ObjectNode n = mapper.createObjectNode();
+        n.put("status", "BLOQUEADO");
+        n.put("estado", "Bloqueado");
+        n.put("holder", sessionId);
+        return n;
+    }
+
+    ObjectNode vendido(String persona) {
+        ObjectNode n = mapper.createObjectNode();
+        n.put("status", "VENDIDO");
+        n.put("estado", "Vendido");
+        n.putObject("comprador").put("persona", persona);
+        return n;
+    }
+
+    ObjectNode libre() {
+        ObjectNode n = mapper.createObjectNode();
+        n.put("status", "LIBRE");
+        n.put("estado", "Libre");
+        n.put("holder", "");
+        return n;
+    }
+
+    static long ahora() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,116 @@
+package com.cine.proxy.repository;
+
+import com.cine.proxy.model.SeatBatchResult;
+import com.cine.proxy.model.SeatOperationResult;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * seat-block-many contra un Redis real: todos o ninguno, los conflictos con su motivo y la lista
+ * de locks que creó (las que se deshacen si la cátedra no confirma).
+ */
+class SeatBlockManyRedisTest {
+
+    private static final String EVENTO = "902";
+    private static final Duration HOLD = Duration.ofMinutes(5);
+
+    private RedisDePrueba r;
+    private HashSeatRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        r = RedisDePrueba.limpio();
+        repo = r.repositorio;
+    }
+
+    private Map<String, ObjectNode> bloqueados(String sessionId, String... seatIds) {
+        Map<String, ObjectNode> campos = new LinkedHashMap<>();
+        for (String seatId : seatIds) {
+            campos.put(seatId, r.bloqueado(sessionId));
+        }
+        return campos;
+    }
+
+    @Test
+    void bloqueaTodosConUnaVersionPorAsiento() {
+        SeatBatchResult resultado = repo.tryBlockAll(EVENTO, "ana", RedisDePrueba.ahora(),
+                bloqueados("ana", "r1c1", "r1c2", "r1c3"), HOLD);
+
+        assertTrue(resultado.isOk());
+        assertEquals(List.of("r1c1", "r1c2", "r1c3"), resultado.getAsientos());
+        assertEquals(3, resultado.getVersion());
+        assertEquals(1, resultado.versionDe(0));
+        for (String seatId : List.of("r1c1", "r1c2", "r1c3")) {
+            assertEquals("ana", r.lock(EVENTO, seatId));
+            assertEquals("ana", repo.findSeat(EVENTO, seatId).path("holder").asText());
+        }
+    }
+
+    @Test
+    void conUnConflictoNoBloqueaNingunoYLosInforma() {
+        repo.tryBlock(EVENTO, "r1c2", "beto", RedisDePrueba.ahora(), r.bloqueado("beto"), HOLD);
+        repo.tryBlock(EVENTO, "r1c3", "beto", RedisDePrueba.ahora(), r.bloqueado("beto"), HOLD);
+        repo.trySell(EVENTO, "r1c3", "beto", RedisDePrueba.ahora(), r.vendido("Beto"));
+        String versionAntes = r.redis.opsForValue().get(HashSeatRepository.versionKeyForEvento(EVENTO));
+
+        SeatBatchResult resultado = repo.tryBlockAll(EVENTO, "ana", RedisDePrueba.ahora(),
+                bloqueados("ana", "r1c1", "r1c2", "r1c3"), HOLD);
+
+        assertFalse(resultado.isOk());
+        assertEquals(SeatOperationResult.Status.HELD, resultado.getConflictos().get("r1c2").getStatus());
+        assertEquals("beto", resultado.getConflictos().get("r1c2").getOwner());
+        assertEquals(SeatOperationResult.Status.SOLD, resultado.getConflictos().get("r1c3").getStatus());
+        assertFalse(resultado.getConflictos().containsKey("r1c1"));
+        assertNull(r.lock(EVENTO, "r1c1"));
+        assertNull(repo.findSeat(EVENTO, "r1c1"));
+        assertEquals("beto", r.lock(EVENTO, "r1c2"));
+        assertEquals(versionAntes, r.redis.opsForValue().get(HashSeatRepository.versionKeyForEvento(EVENTO)));
+    }
+
+    @Test
+    void creadosSonSoloLasLocksQueNoExistian() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+
+        SeatBatchResult resultado = repo.tryBlockAll(EVENTO, "ana", RedisDePrueba.ahora(),
+                bloqueados("ana", "r1c1", "r1c2"), HOLD);
+
+        assertTrue(resultado.isOk());
+        assertEquals(List.of("r1c2"), resultado.getCreados());
+    }
+
+    @Test
+    void deshacerLosCreadosDejaElRebloqueoPropio() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+        SeatBatchResult resultado = repo.tryBlockAll(EVENTO, "ana", RedisDePrueba.ahora(),
+                bloqueados("ana", "r1c1", "r1c2"), HOLD);
+
+        // La cátedra rechazó: quien llama libera solo los creados
+        for (String seatId : resultado.getCreados()) {
+            repo.release(EVENTO, seatId, "ana", RedisDePrueba.ahora(), r.libre());
+        }
+
+        assertEquals("ana", r.lock(EVENTO, "r1c1"));
+        assertNull(r.lock(EVENTO, "r1c2"));
+    }
+
+    @Test
+    void elClienteReactivoCorreElMismoScript() {
+        SeatBatchResult resultado = repo.tryBlockAllReactivo(EVENTO, "ana", RedisDePrueba.ahora(),
+                bloqueados("ana", "r2c1", "r2c2"), HOLD).block(Duration.ofSeconds(5));
+
+        assertTrue(resultado.isOk());
+        assertEquals(List.of("r2c1", "r2c2"), resultado.getCreados());
+        assertEquals("ana", r.lock(EVENTO, "r2c2"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.cine.proxy.repository;
+
+import com.cine.proxy.model.SeatBatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * seat-expire y el bitmap/contadores de lib/marcar.lua contra un Redis real: bloquear, vencer y
+ * vender dejan el bitmap y los contadores de disponibilidad consistentes, y el barrido limpia el
+ * ZSET de vencimientos y eventos:con-bloqueos.
+ */
+class SeatExpireRedisTest {
+
+    private static final String EVENTO = "904";
+    private static final Duration HOLD = Duration.ofMinutes(5);
+
+    private RedisDePrueba r;
+    private HashSeatRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        r = RedisDePrueba.limpio();
+        repo = r.repositorio;
+        r.inicializarBitmap(EVENTO, 3, 4);
+    }
+
+    private void esperarQueVenza(String seatId) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 2_000;
+        while (r.lock(EVENTO, seatId) != null && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+        assertNull(r.lock(EVENTO, seatId));
+    }
+
+    private void assertContadores(long libres, long bloqueados, long vendidos) {
+        assertEquals(libres, r.contador(EVENTO, "libres"), "libres");
+        assertEquals(bloqueados, r.contador(EVENTO, "bloqueados"), "bloqueados");
+        assertEquals(vendidos, r.contador(EVENTO, "vendidos"), "vendidos");
+    }
+
+    private boolean conBloqueos() {
+        return Boolean.TRUE.equals(r.redis.opsForSet().isMember(HashSeatRepository.EVENTOS_CON_BLOQUEOS_KEY, EVENTO));
+    }
+
+    private Double vencimiento(String seatId) {
+        return r.redis.opsForZSet().score(HashSeatRepository.vencimientosKeyForEvento(EVENTO), seatId);
+    }
+
+    @Test
+    void bloquearVencerYVenderMantienenBitmapYContadores() throws InterruptedException {
+        repo.tryBlock(EVENTO, "r2c3", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), Duration.ofMillis(100));
+        assertEquals(1, r.estadoEnBitmap(EVENTO, 2, 3));
+        assertContadores(11, 1, 0);
+
+        esperarQueVenza("r2c3");
+        SeatBatchResult barrido = repo.releaseExpired(EVENTO, System.currentTimeMillis(), 100, r.libre());
+
+        assertEquals(List.of("r2c3"), barrido.getAsientos());
+        assertEquals(0, r.estadoEnBitmap(EVENTO, 2, 3));
+        assertContadores(12, 0, 0);
+        assertEquals("LIBRE", repo.findSeat(EVENTO, "r2c3").path("status").asText());
+
+        repo.tryBlock(EVENTO, "r2c3", "beto", RedisDePrueba.ahora(), r.bloqueado("beto"), HOLD);
+        repo.trySell(EVENTO, "r2c3", "beto", RedisDePrueba.ahora(), r.vendido("Beto"));
+
+        assertEquals(2, r.estadoEnBitmap(EVENTO, 2, 3));
+        assertContadores(11, 0, 1);
+    }
+
+    @Test
+    void elBarridoLimpiaElZsetYElEventoConBloqueos() throws InterruptedException {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), Duration.ofMillis(100));
+        assertTrue(vencimiento("r1c1") != null);
+        assertTrue(conBloqueos());
+
+        esperarQueVenza("r1c1");
+        SeatBatchResult barrido = repo.releaseExpired(EVENTO, System.currentTimeMillis(), 100, r.libre());
+
+        assertEquals(1, barrido.getAsientos().size());
+        assertEquals(barrido.getVersion(), barrido.versionDe(0));
+        assertNull(vencimiento("r1c1"));
+        assertFalse(conBloqueos());
+    }
+
+    @Test
+    void unBloqueoRenovadoSoloSeReprograma() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+        // Vencimiento viejo en el ZSET pero la key de lock sigue viva
+        r.redis.opsForZSet().add(HashSeatRepository.vencimientosKeyForEvento(EVENTO), "r1c1", 0);
+
+        long ahora = System.currentTimeMillis();
+        SeatBatchResult barrido = repo.releaseExpired(EVENTO, ahora, 100, r.libre());
+
+        assertTrue(barrido.getAsientos().isEmpty());
+        assertEquals(0, barrido.getVersion());
+        assertTrue(vencimiento("r1c1") > ahora + 60_000);
+        assertEquals("ana", r.lock(EVENTO, "r1c1"));
+        assertEquals(1, r.estadoEnBitmap(EVENTO, 1, 1));
+        assertTrue(conBloqueos());
+    }
+
+    @Test
+    void unAsientoVendidoConVencimientoViejoNoSeLibera() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+        repo.trySell(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.vendido("Ana"));
+        r.redis.opsForZSet().add(HashSeatRepository.vencimientosKeyForEvento(EVENTO), "r1c1", 0);
+
+        SeatBatchResult barrido = repo.releaseExpired(EVENTO, System.currentTimeMillis(), 100, r.libre());
+
+        assertTrue(barrido.getAsientos().isEmpty());
+        assertEquals("VENDIDO", repo.findSeat(EVENTO, "r1c1").path("status").asText());
+        assertEquals(2, r.estadoEnBitmap(EVENTO, 1, 1));
+        assertContadores(11, 0, 1);
+        assertNull(vencimiento("r1c1"));
+    }
+
+    @Test
+    void asientoFueraDeLaSalaNoTocaElBitmapNiLosContadores() {
+        assertTrue(repo.tryBlock(EVENTO, "r9c9", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD).isOk());
+
+        assertContadores(12, 0, 0);
+    }
+
+    @Test
+    void sinBitmapInicializadoLosScriptsNoLoCrean() {
+        String otro = "905";
+        assertTrue(repo.tryBlock(otro, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD).isOk());
+        assertTrue(repo.trySell(otro, "r1c1", "ana", RedisDePrueba.ahora(), r.vendido("Ana")).isOk());
+
+        assertFalse(Boolean.TRUE.equals(r.redis.hasKey(HashSeatRepository.bitmapKeyForEvento(otro))));
+        assertFalse(Boolean.TRUE.equals(r.redis.hasKey(HashSeatRepository.disponibilidadKeyForEvento(otro))));
+    }
+
+    @Test
+    void rebloqueoDelMismoDuenoNoCuentaDosVeces() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+        repo.release(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.libre());
+
+        assertEquals(0, r.estadoEnBitmap(EVENTO, 1, 1));
+        assertContadores(12, 0, 0);
+    }
+}
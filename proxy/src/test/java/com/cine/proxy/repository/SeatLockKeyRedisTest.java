@@ -0,0 +1,91 @@
+package com.cine.proxy.repository;
+
+import com.cine.proxy.model.SeatOperationResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Key lock:{evento}:{asiento} contra un Redis real: la crea SET NX PX con el dueño, un rebloqueo
+ * del mismo dueño la renueva con SET XX PX y vence sola en Redis.
+ */
+class SeatLockKeyRedisTest {
+
+    private static final String EVENTO = "901";
+
+    private RedisDePrueba r;
+    private HashSeatRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        r = RedisDePrueba.limpio();
+        repo = r.repositorio;
+    }
+
+    private long pttl(String seatId) {
+        Long ms = r.redis.getExpire(SeatRepository.lockKey(EVENTO, seatId), TimeUnit.MILLISECONDS);
+        return ms == null ? -2 : ms;
+    }
+
+    @Test
+    void elBloqueoCreaLaKeyConElDuenoYElTtl() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), Duration.ofSeconds(60));
+
+        assertEquals("ana", r.lock(EVENTO, "r1c1"));
+        long ttl = pttl("r1c1");
+        assertTrue(ttl > 55_000 && ttl <= 60_000, "pttl " + ttl);
+    }
+
+    @Test
+    void otraSesionNoPisaLaKey() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), Duration.ofSeconds(60));
+
+        SeatOperationResult otro = repo.tryBlock(EVENTO, "r1c1", "beto", RedisDePrueba.ahora(), r.bloqueado("beto"),
+                Duration.ofSeconds(600));
+
+        assertEquals(SeatOperationResult.Status.HELD, otro.getStatus());
+        assertEquals("ana", r.lock(EVENTO, "r1c1"));
+        assertTrue(pttl("r1c1") <= 60_000);
+    }
+
+    @Test
+    void rebloqueoDelDuenoRenuevaElTtl() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), Duration.ofSeconds(10));
+
+        assertTrue(repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), Duration.ofSeconds(60)).isOk());
+
+        assertEquals("ana", r.lock(EVENTO, "r1c1"));
+        assertTrue(pttl("r1c1") > 10_000, "pttl " + pttl("r1c1"));
+    }
+
+    @Test
+    void laKeyVenceSolaYElAsientoQuedaBloqueable() throws InterruptedException {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), Duration.ofMillis(100));
+        long limite = System.currentTimeMillis() + 2_000;
+        while (r.lock(EVENTO, "r1c1") != null && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+        assertNull(r.lock(EVENTO, "r1c1"));
+
+        assertTrue(repo.tryBlock(EVENTO, "r1c1", "beto", RedisDePrueba.ahora(), r.bloqueado("beto"), Duration.ofMinutes(5)).isOk());
+        assertEquals("beto", r.lock(EVENTO, "r1c1"));
+    }
+
+    @Test
+    void liberarYVenderBorranLaKey() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), Duration.ofMinutes(5));
+        repo.tryBlock(EVENTO, "r1c2", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), Duration.ofMinutes(5));
+
+        repo.release(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.libre());
+        repo.trySell(EVENTO, "r1c2", "ana", RedisDePrueba.ahora(), r.vendido("Ana"));
+
+        assertNull(r.lock(EVENTO, "r1c1"));
+        assertNull(r.lock(EVENTO, "r1c2"));
+    }
+}
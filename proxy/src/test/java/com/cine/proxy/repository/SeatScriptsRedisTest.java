@@ -0,0 +1,109 @@
+package com.cine.proxy.repository;
+
+import com.cine.proxy.model.SeatOperationResult;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * seat-block / seat-sell / seat-release contra un Redis real: el chequeo y la escritura van en el
+ * mismo script y cada uno devuelve OK, SOLD, HELD (con el dueño), EXPIRED o NOT_HELD.
+ */
+class SeatScriptsRedisTest {
+
+    private static final String EVENTO = "900";
+    private static final Duration HOLD = Duration.ofMinutes(5);
+
+    private RedisDePrueba r;
+    private HashSeatRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        r = RedisDePrueba.limpio();
+        repo = r.repositorio;
+    }
+
+    @Test
+    void bloqueoLibreEsOkYElMismoAsientoParaOtraSesionEsHeldConDueno() {
+        SeatOperationResult primero = repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+        SeatOperationResult segundo = repo.tryBlock(EVENTO, "r1c1", "beto", RedisDePrueba.ahora(), r.bloqueado("beto"), HOLD);
+
+        assertTrue(primero.isOk());
+        assertEquals(SeatOperationResult.Status.HELD, segundo.getStatus());
+        assertEquals("ana", segundo.getOwner());
+        assertEquals("ana", repo.findSeat(EVENTO, "r1c1").path("holder").asText());
+    }
+
+    @Test
+    void ventaDelDuenoMarcaVendidoYLimpiaElBloqueo() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+
+        SeatOperationResult venta = repo.trySell(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.vendido("Ana"));
+
+        assertTrue(venta.isOk());
+        ObjectNode asiento = repo.findSeat(EVENTO, "r1c1");
+        assertEquals("VENDIDO", asiento.path("status").asText());
+        assertTrue(asiento.path("holder").isMissingNode());
+        assertNull(r.lock(EVENTO, "r1c1"));
+    }
+
+    @Test
+    void asientoVendidoNoSeBloqueaNiSeVendeNiSeLibera() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+        repo.trySell(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.vendido("Ana"));
+
+        assertEquals(SeatOperationResult.Status.SOLD,
+                repo.tryBlock(EVENTO, "r1c1", "beto", RedisDePrueba.ahora(), r.bloqueado("beto"), HOLD).getStatus());
+        assertEquals(SeatOperationResult.Status.SOLD,
+                repo.trySell(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.vendido("Ana")).getStatus());
+        assertEquals(SeatOperationResult.Status.SOLD,
+                repo.release(EVENTO, "r1c1", "", RedisDePrueba.ahora(), r.libre()).getStatus());
+    }
+
+    @Test
+    void ventaSinBloqueoVigenteEsExpiredParaElDuenoYNotHeldParaLosDemas() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+        // La key de lock venció: el registro todavía dice holder=ana
+        r.redis.delete(SeatRepository.lockKey(EVENTO, "r1c1"));
+
+        assertEquals(SeatOperationResult.Status.EXPIRED,
+                repo.trySell(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.vendido("Ana")).getStatus());
+        assertEquals(SeatOperationResult.Status.NOT_HELD,
+                repo.trySell(EVENTO, "r1c1", "beto", RedisDePrueba.ahora(), r.vendido("Beto")).getStatus());
+        assertEquals(SeatOperationResult.Status.NOT_HELD,
+                repo.trySell(EVENTO, "r9c9", "ana", RedisDePrueba.ahora(), r.vendido("Ana")).getStatus());
+    }
+
+    @Test
+    void liberarSoloLoHaceElDuenoOSinSesion() {
+        repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+
+        SeatOperationResult ajeno = repo.release(EVENTO, "r1c1", "beto", RedisDePrueba.ahora(), r.libre());
+        assertEquals(SeatOperationResult.Status.HELD, ajeno.getStatus());
+        assertEquals("ana", r.lock(EVENTO, "r1c1"));
+
+        assertTrue(repo.release(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.libre()).isOk());
+        assertEquals("LIBRE", repo.findSeat(EVENTO, "r1c1").path("status").asText());
+        assertNull(r.lock(EVENTO, "r1c1"));
+
+        repo.tryBlock(EVENTO, "r1c2", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD);
+        assertTrue(repo.release(EVENTO, "r1c2", "", RedisDePrueba.ahora(), r.libre()).isOk());
+    }
+
+    @Test
+    void cadaCambioSubeLaVersionEnUno() {
+        long bloqueo = repo.tryBlock(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.bloqueado("ana"), HOLD).getVersion();
+        long venta = repo.trySell(EVENTO, "r1c1", "ana", RedisDePrueba.ahora(), r.vendido("Ana")).getVersion();
+        repo.tryBlock(EVENTO, "r1c1", "beto", RedisDePrueba.ahora(), r.bloqueado("beto"), HOLD);
+
+        assertEquals(1, bloqueo);
+        assertEquals(2, venta);
+        assertEquals("2", r.redis.opsForValue().get(HashSeatRepository.versionKeyForEvento(EVENTO)));
+    }
+}
@@ -0,0 +1,145 @@
+package com.cine.proxy.repository;
+
+import com.cine.proxy.model.SeatBatchResult;
+import com.cine.proxy.model.SeatOperationResult;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * seat-sell-many contra un Redis real: 'verify' solo chequea los bloqueos de la sesión; 'apply'
+ * marca todos vendidos y encola la venta en ventas:outbox, o no escribe nada si hay un conflicto.
+ */
+class SeatSellManyRedisTest {
+
+    private static final String EVENTO = "903";
+    private static final Duration HOLD = Duration.ofMinutes(5);
+
+    private RedisDePrueba r;
+    private HashSeatRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        r = RedisDePrueba.limpio();
+        repo = r.repositorio;
+    }
+
+    private void bloquear(String sessionId, String... seatIds) {
+        for (String seatId : seatIds) {
+            repo.tryBlock(EVENTO, seatId, sessionId, RedisDePrueba.ahora(), r.bloqueado(sessionId), HOLD);
+        }
+    }
+
+    private Map<String, ObjectNode> vendidos(String... seatIds) {
+        Map<String, ObjectNode> campos = new LinkedHashMap<>();
+        for (String seatId : seatIds) {
+            campos.put(seatId, r.vendido("Ana"));
+        }
+        return campos;
+    }
+
+    private List<MapRecord<String, Object, Object>> outbox() {
+        List<MapRecord<String, Object, Object>> ventas = r.redis.opsForStream()
+                .range(HashSeatRepository.VENTAS_OUTBOX_KEY, Range.unbounded());
+        return ventas == null ? List.of() : ventas;
+    }
+
+    @Test
+    void verifyInformaCadaMotivoSinModificarNada() {
+        bloquear("ana", "r1c1", "r1c2");
+        bloquear("beto", "r1c3");
+        r.redis.delete(SeatRepository.lockKey(EVENTO, "r1c2"));
+        String versionAntes = r.redis.opsForValue().get(HashSeatRepository.versionKeyForEvento(EVENTO));
+
+        Map<String, SeatOperationResult> conflictos = repo.verifyHolds(EVENTO, "ana", RedisDePrueba.ahora(),
+                List.of("r1c1", "r1c2", "r1c3", "r1c4"));
+
+        assertFalse(conflictos.containsKey("r1c1"));
+        assertEquals(SeatOperationResult.Status.EXPIRED, conflictos.get("r1c2").getStatus());
+        assertEquals(SeatOperationResult.Status.HELD, conflictos.get("r1c3").getStatus());
+        assertEquals("beto", conflictos.get("r1c3").getOwner());
+        assertEquals(SeatOperationResult.Status.NOT_HELD, conflictos.get("r1c4").getStatus());
+        assertEquals("ana", r.lock(EVENTO, "r1c1"));
+        assertEquals(versionAntes, r.redis.opsForValue().get(HashSeatRepository.versionKeyForEvento(EVENTO)));
+        assertTrue(outbox().isEmpty());
+    }
+
+    @Test
+    void verifyConTodosBloqueadosEsVacio() {
+        bloquear("ana", "r1c1", "r1c2");
+
+        assertTrue(repo.verifyHolds(EVENTO, "ana", RedisDePrueba.ahora(), List.of("r1c1", "r1c2")).isEmpty());
+        assertTrue(repo.verifyHoldsReactivo(EVENTO, "ana", RedisDePrueba.ahora(), List.of("r1c1", "r1c2"))
+                .block(Duration.ofSeconds(5)).isEmpty());
+    }
+
+    @Test
+    void applyVendeTodosYEncolaLaVentaUnaVez() {
+        bloquear("ana", "r1c1", "r1c2");
+
+        SeatBatchResult resultado = repo.trySellAll(EVENTO, "ana", RedisDePrueba.ahora(), vendidos("r1c1", "r1c2"),
+                "venta-1", "{\"total\":2000}");
+
+        assertTrue(resultado.isOk());
+        assertEquals(List.of("r1c1", "r1c2"), resultado.getAsientos());
+        for (String seatId : List.of("r1c1", "r1c2")) {
+            assertEquals("VENDIDO", repo.findSeat(EVENTO, seatId).path("status").asText());
+            assertNull(r.lock(EVENTO, seatId));
+        }
+        List<MapRecord<String, Object, Object>> ventas = outbox();
+        assertEquals(1, ventas.size());
+        assertEquals("venta-1", ventas.get(0).getValue().get("idempotencia"));
+        assertEquals("{\"total\":2000}", ventas.get(0).getValue().get("venta"));
+    }
+
+    @Test
+    void applyConUnAsientoDeOtraSesionNoVendeNingunoNiEncola() {
+        bloquear("ana", "r1c1");
+        bloquear("beto", "r1c2");
+
+        SeatBatchResult resultado = repo.trySellAll(EVENTO, "ana", RedisDePrueba.ahora(), vendidos("r1c1", "r1c2"),
+                "venta-1", "{}");
+
+        assertFalse(resultado.isOk());
+        assertEquals(SeatOperationResult.Status.HELD, resultado.getConflictos().get("r1c2").getStatus());
+        assertEquals("BLOQUEADO", repo.findSeat(EVENTO, "r1c1").path("status").asText());
+        assertEquals("ana", r.lock(EVENTO, "r1c1"));
+        assertTrue(outbox().isEmpty());
+    }
+
+    @Test
+    void applyConUnAsientoYaVendidoNoVendeNingunoNiEncola() {
+        bloquear("ana", "r1c1", "r1c2");
+        repo.trySellAll(EVENTO, "ana", RedisDePrueba.ahora(), vendidos("r1c2"), "venta-1", "{}");
+
+        SeatBatchResult resultado = repo.trySellAllReactivo(EVENTO, "ana", RedisDePrueba.ahora(), vendidos("r1c1", "r1c2"),
+                "venta-2", "{}").block(Duration.ofSeconds(5));
+
+        assertFalse(resultado.isOk());
+        assertEquals(SeatOperationResult.Status.SOLD, resultado.getConflictos().get("r1c2").getStatus());
+        assertEquals("BLOQUEADO", repo.findSeat(EVENTO, "r1c1").path("status").asText());
+        assertEquals(1, outbox().size());
+    }
+
+    @Test
+    void applyConLaLockVencidaIgualVendeSiNadieLaTomo() {
+        // La cátedra ya confirmó la venta: solo un vendido o una lock ajena lo impiden
+        bloquear("ana", "r1c1");
+        r.redis.delete(SeatRepository.lockKey(EVENTO, "r1c1"));
+
+        assertTrue(repo.trySellAll(EVENTO, "ana", RedisDePrueba.ahora(), vendidos("r1c1"), "venta-1", "{}").isOk());
+        assertEquals("VENDIDO", repo.findSeat(EVENTO, "r1c1").path("status").asText());
+    }
+}
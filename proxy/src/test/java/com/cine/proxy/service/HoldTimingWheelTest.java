@@ -0,0 +1,81 @@
+package com.cine.proxy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HoldTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    private final List<HoldTimingWheel.Vencimiento> vencidos = new CopyOnWriteArrayList<>();
+    private CountDownLatch avisos = new CountDownLatch(1);
+    private final HoldTimingWheel rueda = new HoldTimingWheel("rueda-test", TICK_MS, 8, v -> {
+        vencidos.add(v);
+        avisos.countDown();
+    });
+
+    @AfterEach
+    void detener() {
+        rueda.detener();
+    }
+
+    @Test
+    void venceDespuesDeSuHoraConResolucionDeUnTick() throws Exception {
+        rueda.iniciar();
+        long vence = System.currentTimeMillis() + 50;
+        rueda.programar("1", "r1c1", vence);
+
+        assertTrue(avisos.await(2, TimeUnit.SECONDS));
+        long avisado = System.currentTimeMillis();
+        assertTrue(avisado >= vence, "avisó " + (vence - avisado) + " ms antes");
+        assertEquals("1", vencidos.get(0).getEventoId());
+        assertEquals("r1c1", vencidos.get(0).getSeatId());
+        assertEquals(0, rueda.activos());
+    }
+
+    @Test
+    void vencimientoMasLargoQueUnaVueltaEsperaLasVueltas() throws Exception {
+        rueda.iniciar();
+        // 8 casillas de 10 ms: 300 ms son casi 4 vueltas
+        long vence = System.currentTimeMillis() + 300;
+        rueda.programar("1", "r1c1", vence);
+
+        assertTrue(avisos.await(2, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() >= vence);
+    }
+
+    @Test
+    void cancelarEvitaElAviso() throws Exception {
+        rueda.iniciar();
+        rueda.programar("1", "r1c1", System.currentTimeMillis() + 30);
+        rueda.cancelar("1", "r1c1");
+
+        assertEquals(0, rueda.activos());
+        assertFalse(avisos.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(vencidos.isEmpty());
+    }
+
+    @Test
+    void reprogramarReemplazaAlAnterior() throws Exception {
+        avisos = new CountDownLatch(2);
+        rueda.iniciar();
+        long primero = System.currentTimeMillis() + 30;
+        long segundo = primero + 100;
+        rueda.programar("1", "r1c1", primero);
+        rueda.programar("1", "r1c1", segundo);
+
+        assertEquals(1, rueda.activos());
+        assertFalse(avisos.await(400, TimeUnit.MILLISECONDS), "un solo aviso por asiento");
+        assertEquals(1, vencidos.size());
+        assertEquals(segundo, vencidos.get(0).getVenceEpochMs());
+    }
+}
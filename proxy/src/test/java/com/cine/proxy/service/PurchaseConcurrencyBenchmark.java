@@ -0,0 +1,212 @@
+package com.cine.proxy.service;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark manual (no corre con los tests): N compras simultáneas contra un proxy levantado
+ * aparte, para comparar spring.threads.virtual.enabled=true/false. Cada compra es
+ * bloquear-asiento + realizar-venta de un asiento propio con una sesión propia.
+ *
+ * La cátedra es un stub de este mismo proceso (puerto 18095) que responde resultado=true después
+ * de una demora fija, como una cátedra remota. Los tokens son s1.* firmados con la clave "bench",
+ * así la validación no sale del proxy. Se corren dos rondas de calentamiento (JIT) y tres
+ * medidas, cada una sobre un evento nuevo.
+ *
+ * Uso:
+ *   java -jar target/proxy-0.0.1-SNAPSHOT.jar --catedra.base-url=http://127.0.0.1:18095 \
+ *       --session.signing.secret=bench --catedra.bulkhead.max-concurrent=1000 \
+ *       --catedra.max-connections-per-endpoint.bloqueos=200 --catedra.max-connections-per-endpoint.ventas=200 \
+ *       --management.endpoints.web.exposure.include=health,metrics --spring.threads.virtual.enabled=true|false
+ *   mvn -q test-compile && java -cp target/test-classes:target/classes com.cine.proxy.service.PurchaseConcurrencyBenchmark [proxy] [compras] [demoraMs]
+ *
+ * Resultados (JDK 21.0.1, una vCPU compartida por el proxy, Redis y este proceso; 1000 compras,
+ * cátedra a 100 ms; dos corridas por modo con el proxy recién levantado, mediana de las 3 rondas):
+ *
+ *   hilos        compras/s    p50 (ms)       p99 (ms)       hilos de plataforma del proxy (pico)
+ *   plataforma   83 / 107     11016 / 8773   11771 / 9178   229
+ *   virtuales    76 / 74      10655 / 11979  12710 / 13058  32
+ *
+ * En todos los casos las 1000 compras respondieron 200. Las compras no bloquean hilos (ver
+ * ReactiveSeatPurchaseService): la espera a la cátedra no ocupa un hilo de Tomcat en ningún modo y
+ * con una sola CPU el límite es la CPU, así que los hilos virtuales no suben el throughput de
+ * compras (quedó algo por debajo, con rondas que varían hasta un 25% dentro de un mismo modo). Lo
+ * que baja es el pico de hilos de plataforma: Tomcat ya no crece hasta server.tomcat.threads.max.
+ * La ganancia esperable está en los handlers que siguen bloqueando (CatedraClient.get,
+ * EventoDimensionesCache, el RestTemplate del backend).
+ */
+public class PurchaseConcurrencyBenchmark {
+
+    private static final int PUERTO_CATEDRA = 18095;
+    private static final String SECRETO = "bench";
+    private static final int COLUMNAS = 40;
+    private static final int CALENTAMIENTO = 2;
+    private static final int RONDAS = 3;
+
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Pattern VALOR = Pattern.compile("\"value\"\\s*:\\s*([0-9.]+)");
+
+    public static void main(String[] args) throws Exception {
+        String proxy = args.length > 0 ? args[0] : "http://127.0.0.1:8088";
+        int compras = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long demoraMs = args.length > 2 ? Long.parseLong(args[2]) : 100;
+
+        HttpServer catedra = catedra(demoraMs);
+        try (HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build()) {
+            // Un evento nuevo por ronda: los asientos de la anterior quedaron vendidos
+            int evento = (int) (System.currentTimeMillis() / 1000 % 100_000) * 10;
+            for (int i = 0; i < CALENTAMIENTO; i++) {
+                ronda(http, proxy, evento++, compras);
+            }
+
+            System.out.printf("%-6s %9s %10s %9s %9s %9s  %s%n",
+                    "ronda", "total ms", "compras/s", "p50 ms", "p95 ms", "p99 ms", "respuestas");
+            for (int i = 1; i <= RONDAS; i++) {
+                Ronda r = ronda(http, proxy, evento++, compras);
+                System.out.printf("%-6d %9d %10.0f %9d %9d %9d  %s%n",
+                        i, r.totalMs, compras * 1000.0 / r.totalMs, r.percentil(50), r.percentil(95), r.percentil(99), r.estados);
+            }
+            System.out.println("hilos de plataforma del proxy (pico): " + metrica(http, proxy, "jvm.threads.peak"));
+        } finally {
+            catedra.stop(0);
+        }
+    }
+
+    private record Ronda(long totalMs, long[] latenciasMs, Map<Integer, AtomicInteger> estados) {
+        long percentil(int p) {
+            return latenciasMs[Math.min(latenciasMs.length - 1, latenciasMs.length * p / 100)];
+        }
+    }
+
+    /** Todas las compras arrancan juntas; la ronda termina cuando respondió la última. */
+    private static Ronda ronda(HttpClient http, String proxy, int eventoId, int compras) {
+        long[] latencias = new long[compras];
+        Map<Integer, AtomicInteger> estados = new ConcurrentSkipListMap<>();
+        CountDownLatch largada = new CountDownLatch(1);
+        long inicio = 0;
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < compras; i++) {
+                int n = i;
+                clientes.submit(() -> {
+                    largada.await();
+                    long t0 = System.nanoTime();
+                    int status = comprar(http, proxy, eventoId, n);
+                    latencias[n] = (System.nanoTime() - t0) / 1_000_000;
+                    estados.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                    return null;
+                });
+            }
+            inicio = System.nanoTime();
+            largada.countDown();
+        }
+        long totalMs = (System.nanoTime() - inicio) / 1_000_000;
+        Arrays.sort(latencias);
+        return new Ronda(totalMs, latencias, estados);
+    }
+
+    /** @return 200 si la compra terminó, si no el status del paso que falló (-1: error de conexión) */
+    private static int comprar(HttpClient http, String proxy, int eventoId, int n) {
+        String seatId = "r" + (n / COLUMNAS + 1) + "c" + (n % COLUMNAS + 1);
+        String token = token("bench" + n, "compra-" + eventoId + "-" + n);
+        try {
+            int bloqueo = post(http, proxy + "/api/endpoints/v1/bloquear-asiento", token,
+                    "{\"eventoId\":" + eventoId + ",\"seatId\":\"" + seatId + "\"}");
+            if (bloqueo != 200) {
+                return bloqueo;
+            }
+            return post(http, proxy + "/api/endpoints/v1/realizar-venta", token,
+                    "{\"eventoId\":" + eventoId + ",\"seatId\":\"" + seatId + "\",\"persona\":\"Bench " + n
+                            + "\",\"precioVenta\":1000}");
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static int post(HttpClient http, String url, String token, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .header("X-Session-Id", token)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /** Valor de /actuator/metrics/{nombre}, o "?" si el proxy no expone metrics. */
+    private static String metrica(HttpClient http, String proxy, String nombre) {
+        try {
+            HttpResponse<String> r = http.send(HttpRequest.newBuilder(URI.create(proxy + "/actuator/metrics/" + nombre)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher m = VALOR.matcher(r.body());
+            return r.statusCode() == 200 && m.find() ? m.group(1) : "?";
+        } catch (IOException e) {
+            return "?";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "?";
+        }
+    }
+
+    /** Cátedra: resultado=true a bloquear-asientos y realizar-venta después de demoraMs. */
+    private static HttpServer catedra(long demoraMs) throws IOException {
+        // Por defecto cierra las keep-alive ociosas por encima de 200: el pool del proxy las reusaría
+        // cerradas ("Connection prematurely closed") y el circuito se abriría
+        System.setProperty("sun.net.httpserver.maxIdleConnections", "2000");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", PUERTO_CATEDRA), 4096);
+        AtomicLong ventas = new AtomicLong();
+        server.createContext("/api/endpoints/v1/", exchange -> {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(demoraMs);
+                byte[] body = ("{\"resultado\":true,\"ventaId\":" + ventas.incrementAndGet() + "}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return server;
+    }
+
+    /** Mismo formato que SessionTokenSigner del backend. */
+    private static String token(String username, String id) {
+        String cuerpo = SignedSessionTokenVerifier.PREFIJO + B64.encodeToString(username.getBytes(StandardCharsets.UTF_8))
+                + "." + Instant.now().plusSeconds(3600).getEpochSecond() + "." + id;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRETO.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return cuerpo + "." + B64.encodeToString(mac.doFinal(cuerpo.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.config.SeatStorageProperties;
+import com.cine.proxy.model.Seat;
+import com.cine.proxy.model.SeatChange;
+import com.cine.proxy.model.SeatOperationResult;
+import com.cine.proxy.repository.HashSeatRepository;
+import com.cine.proxy.repository.SeatRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisSeatServiceUpsertTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private SeatRepository seatRepository;
+    private HashSeatRepository hashSeatRepository;
+    private SeatGridCache seatGridCache;
+    private RedisSeatService service;
+
+    @BeforeEach
+    void setUp() {
+        seatRepository = mock(SeatRepository.class);
+        hashSeatRepository = mock(HashSeatRepository.class);
+        seatGridCache = mock(SeatGridCache.class);
+        SeatStorageProperties props = new SeatStorageProperties();
+        props.setMode(SeatStorageProperties.Mode.HASH);
+        service = new RedisSeatService(null, mapper, seatRepository, hashSeatRepository, props, seatGridCache, null);
+        when(hashSeatRepository.tryBlock(anyString(), anyString(), anyString(), anyLong(), any(ObjectNode.class), any(Duration.class)))
+                .thenReturn(SeatOperationResult.ok());
+    }
+
+    @Test
+    void bloqueadoPasaPorElScriptDeBloqueoConElTiempoQueLeQueda() {
+        Instant hace2Min = Instant.now().minusSeconds(120);
+
+        service.upsertSeatWithTimestamp("7", new Seat("r1c2", "BLOQUEADO", "sesion-1", hace2Min));
+
+        ArgumentCaptor<Duration> ttl = ArgumentCaptor.forClass(Duration.class);
+        verify(hashSeatRepository).tryBlock(eq("7"), eq("r1c2"), eq("sesion-1"), anyLong(), any(ObjectNode.class), ttl.capture());
+        assertTrue(Math.abs(ttl.getValue().toMillis() - 180_000) < 2_000, "ttl " + ttl.getValue());
+        verify(seatRepository, never()).save(anyString(), any(ObjectNode.class));
+        ArgumentCaptor<SeatChange> cambio = ArgumentCaptor.forClass(SeatChange.class);
+        verify(seatGridCache).publicar(cambio.capture());
+        assertEquals("BLOQUEADO", cambio.getValue().getStatus());
+        assertEquals("sesion-1", cambio.getValue().getHolder());
+    }
+
+    @Test
+    void bloqueoYaVencidoNoSeEscribe() {
+        service.upsertSeatWithTimestamp("7", new Seat("r1c2", "BLOQUEADO", "sesion-1", Instant.now().minusSeconds(600)));
+
+        verify(hashSeatRepository, never()).tryBlock(anyString(), anyString(), anyString(), anyLong(), any(), any());
+        verify(seatRepository, never()).save(anyString(), any(ObjectNode.class));
+    }
+
+    @Test
+    void bloqueoMasViejoQueElGuardadoNoSeEscribe() {
+        ObjectNode guardado = mapper.createObjectNode();
+        guardado.put("updatedAt", Instant.now().toString());
+        when(seatRepository.findSeat("7", "r1c2")).thenReturn(guardado);
+
+        service.upsertSeatWithTimestamp("7", new Seat("r1c2", "BLOQUEADO", "sesion-1", Instant.now().minusSeconds(60)));
+
+        verify(hashSeatRepository, never()).tryBlock(anyString(), anyString(), anyString(), anyLong(), any(), any());
+    }
+
+    @Test
+    void bloqueadoSinHolderSeRechaza() {
+        assertThrows(RuntimeException.class,
+                () -> service.upsertSeatWithTimestamp("7", new Seat("r1c2", "BLOQUEADO", null, Instant.now())));
+        verify(seatRepository, never()).save(anyString(), any(ObjectNode.class));
+    }
+}
@@ -0,0 +1,129 @@
+package com.cine.proxy.service;
+
+import com.cine.proxy.model.SeatChange;
+import com.cine.proxy.repository.HashSeatRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SeatChangeLogTest {
+
+    private static final String EVENTO = "7";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private StringRedisTemplate redis;
+    private ZSetOperations<String, String> zset;
+    private SeatChangeLog changeLog;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        zset = mock(ZSetOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(redis.opsForZSet()).thenReturn(zset);
+        when(values.get(HashSeatRepository.versionKeyForEvento(EVENTO))).thenReturn("5");
+        changeLog = new SeatChangeLog(redis, null, mapper, 500);
+    }
+
+    @Test
+    void alDiaNoDevuelveCambios() {
+        Map<String, Object> r = changeLog.since(EVENTO, 5);
+
+        assertEquals(5L, r.get("version"));
+        assertEquals(false, r.get("resync"));
+        assertEquals(List.of(), r.get("cambios"));
+        verify(zset, never()).rangeByScoreWithScores(anyString(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void versionDelClienteMayorALaActualPideResync() {
+        assertEquals(true, changeLog.since(EVENTO, 9).get("resync"));
+    }
+
+    @Test
+    void devuelveElUltimoCambioDeCadaAsiento() throws Exception {
+        entradas(3, 5,
+                SeatChange.bloqueado(EVENTO, "r1c1", "s1", 1000),
+                SeatChange.bloqueado(EVENTO, "r2c3", "s2", 2000),
+                SeatChange.vendido(EVENTO, "r1c1", "Ana", "2025-01-01"));
+
+        Map<String, Object> r = changeLog.since(EVENTO, 2);
+
+        assertEquals(false, r.get("resync"));
+        assertEquals(5L, r.get("version"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> cambios = (List<Map<String, Object>>) r.get("cambios");
+        assertEquals(2, cambios.size());
+        assertEquals("r2c3", cambios.get(0).get("seatId"));
+        assertEquals("BLOQUEADO", cambios.get(0).get("status"));
+        assertEquals(2, cambios.get(0).get("fila"));
+        assertEquals(3, cambios.get(0).get("columna"));
+        assertEquals("r1c1", cambios.get(1).get("seatId"));
+        assertEquals("VENDIDO", cambios.get(1).get("status"));
+        assertEquals(5L, cambios.get(1).get("version"));
+    }
+
+    @Test
+    void huecoEnElLogPideResync() throws Exception {
+        SeatChange v3 = SeatChange.libre(EVENTO, "r1c1");
+        v3.setVersion(3);
+        SeatChange v5 = SeatChange.libre(EVENTO, "r1c2");
+        v5.setVersion(5);
+        Set<ZSetOperations.TypedTuple<String>> conHueco = new LinkedHashSet<>();
+        conHueco.add(new DefaultTypedTuple<>(mapper.writeValueAsString(v3), 3.0));
+        conHueco.add(new DefaultTypedTuple<>(mapper.writeValueAsString(v5), 5.0));
+        when(zset.rangeByScoreWithScores(SeatChangeLog.keyForEvento(EVENTO), 3, 5)).thenReturn(conHueco);
+
+        assertEquals(true, changeLog.since(EVENTO, 2).get("resync"));
+    }
+
+    @Test
+    void logRecortadoPideResync() {
+        when(zset.rangeByScoreWithScores(SeatChangeLog.keyForEvento(EVENTO), 1, 5)).thenReturn(Set.of());
+
+        assertEquals(true, changeLog.since(EVENTO, 0).get("resync"));
+    }
+
+    @Test
+    void invalidacionCompletaPideResync() throws Exception {
+        entradas(4, 5,
+                SeatChange.libre(EVENTO, "r1c1"),
+                SeatChange.invalidar(EVENTO));
+
+        Map<String, Object> r = changeLog.since(EVENTO, 3);
+
+        assertEquals(true, r.get("resync"));
+        assertEquals(List.of(), r.get("cambios"));
+    }
+
+    /** Cambios con versiones consecutivas desde "desde", como los devuelve el ZSET. */
+    private void entradas(long desde, long hasta, SeatChange... cambios) throws Exception {
+        Set<ZSetOperations.TypedTuple<String>> tuplas = new LinkedHashSet<>();
+        long version = desde;
+        for (SeatChange cambio : cambios) {
+            cambio.setVersion(version);
+            tuplas.add(new DefaultTypedTuple<>(mapper.writeValueAsString(cambio), (double) version));
+            version++;
+        }
+        when(zset.rangeByScoreWithScores(SeatChangeLog.keyForEvento(EVENTO), desde, hasta)).thenReturn(tuplas);
+    }
+}
@@ -0,0 +1,98 @@
+package com.cine.proxy.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class SignedSessionTokenVerifierTest {
+
+    private static final String SECRETO = "clave-de-prueba";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+
+    private final SignedSessionTokenVerifier verifier =
+            new SignedSessionTokenVerifier(mock(StringRedisTemplate.class), SECRETO);
+
+    @Test
+    void tokenFirmadoYVigenteEsValido() {
+        String token = token(SECRETO, "ana", Instant.now().plusSeconds(600), "id1");
+
+        assertTrue(verifier.aplica(token));
+        assertTrue(verifier.verificar(token));
+    }
+
+    @Test
+    void tokenAlteradoNoEsValido() {
+        String token = token(SECRETO, "ana", Instant.now().plusSeconds(600), "id1");
+        String[] partes = token.split("\\.");
+
+        // Otro usuario con la firma original
+        String otroUsuario = String.join(".", partes[0], B64.encodeToString("admin".getBytes(StandardCharsets.UTF_8)),
+                partes[2], partes[3], partes[4]);
+        // Vencimiento extendido con la firma original
+        String otroVencimiento = String.join(".", partes[0], partes[1],
+                String.valueOf(Long.parseLong(partes[2]) + 3600), partes[3], partes[4]);
+        // Firma cambiada en un carácter (el primero: el último puede caer en bits de relleno)
+        int i = token.lastIndexOf('.') + 1;
+        String otraFirma = token.substring(0, i) + (token.charAt(i) == 'A' ? 'B' : 'A') + token.substring(i + 1);
+
+        assertFalse(verifier.verificar(otroUsuario));
+        assertFalse(verifier.verificar(otroVencimiento));
+        assertFalse(verifier.verificar(otraFirma));
+        assertFalse(verifier.verificar(token + ".extra"));
+        assertFalse(verifier.verificar(token.substring(0, token.lastIndexOf('.'))));
+        assertFalse(verifier.verificar(String.join(".", partes[0], partes[1], partes[2], partes[3], "%%%")));
+    }
+
+    @Test
+    void tokenFirmadoConOtraClaveNoEsValido() {
+        assertFalse(verifier.verificar(token("otra-clave", "ana", Instant.now().plusSeconds(600), "id1")));
+    }
+
+    @Test
+    void tokenVencidoNoEsValido() {
+        assertFalse(verifier.verificar(token(SECRETO, "ana", Instant.now().minusSeconds(1), "id1")));
+    }
+
+    @Test
+    void tokenRevocadoNoEsValido() {
+        String token = token(SECRETO, "ana", Instant.now().plusSeconds(600), "id1");
+        String otro = token(SECRETO, "ana", Instant.now().plusSeconds(600), "id2");
+
+        verifier.revocar(token);
+
+        assertFalse(verifier.verificar(token));
+        assertTrue(verifier.verificar(otro));
+    }
+
+    @Test
+    void sinClaveNoAplica() {
+        SignedSessionTokenVerifier sinClave = new SignedSessionTokenVerifier(mock(StringRedisTemplate.class), "");
+        String token = token(SECRETO, "ana", Instant.now().plusSeconds(600), "id1");
+
+        assertFalse(sinClave.aplica(token));
+        assertFalse(sinClave.verificar(token));
+        assertFalse(verifier.aplica("550e8400-e29b-41d4-a716-446655440000"));
+    }
+
+    /** Mismo formato que SessionTokenSigner del backend. */
+    private static String token(String secreto, String username, Instant expira, String id) {
+        String cuerpo = SignedSessionTokenVerifier.PREFIJO + B64.encodeToString(username.getBytes(StandardCharsets.UTF_8))
+                + "." + expira.getEpochSecond() + "." + id;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secreto.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return cuerpo + "." + B64.encodeToString(mac.doFinal(cuerpo.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}